@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import com.torchmind.utility.cidr.AddressAcl.Rule;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the decision throughput of a compiled {@link AddressAcl} compared to a sequential
+ * first-match evaluation of the same rules as well as the cost of recompiling a list after a
+ * single rule has changed.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AclBenchmark {
+
+  private static final int ADDRESS_COUNT = 1 << 12;
+
+  @Param({"100", "10000"})
+  public int ruleCount;
+
+  private Rule[] rules;
+  private AddressAcl acl;
+  private AddressAcl.Compiler compiler;
+  private int[] addresses;
+  private int position;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    List<Rule> rules = new ArrayList<>();
+
+    for (int i = 0; i < this.ruleCount; i++) {
+      int prefixLength = 8 + random.nextInt(25);
+      AddressRange range = AddressRange
+          .of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength);
+      rules.add(random.nextBoolean() ? Rule.allow(range) : Rule.deny(range));
+    }
+
+    this.rules = rules.toArray(new Rule[0]);
+    this.compiler = AddressAcl.compiler();
+    rules.forEach(this.compiler::add);
+    this.acl = this.compiler.compile();
+
+    this.addresses = new int[ADDRESS_COUNT];
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      this.addresses[i] = random.nextInt();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int compiled() {
+    int sum = 0;
+
+    for (int address : this.addresses) {
+      sum += this.acl.lookup(address);
+    }
+
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int sequential() {
+    int sum = 0;
+
+    for (int address : this.addresses) {
+      int decision = -1;
+
+      for (int i = 0; i < this.rules.length; i++) {
+        if (this.rules[i].range().matches(address)) {
+          decision = i;
+          break;
+        }
+      }
+
+      sum += decision;
+    }
+
+    return sum;
+  }
+
+  @Benchmark
+  public AddressAcl recompile() {
+    // swaps two rules in order to alter two regions per compilation
+    int a = this.position;
+    int b = (this.position + this.rules.length / 2) % this.rules.length;
+    this.position = (this.position + 1) % this.rules.length;
+
+    Rule rule = this.rules[a];
+    this.rules[a] = this.rules[b];
+    this.rules[b] = rule;
+
+    this.compiler.set(a, this.rules[a]).set(b, this.rules[b]);
+    return this.compiler.compile();
+  }
+}
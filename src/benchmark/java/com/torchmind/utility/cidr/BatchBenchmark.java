@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of batch matching at varying batch sizes (reported as batches per
+ * second).
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BatchBenchmark {
+
+  @Param({"64", "1024", "65536"})
+  public int batchSize;
+
+  private AddressRange4 range4;
+  private AddressRange6 range6;
+  private AddressRange4Table<Boolean> table;
+  private int[] addresses4;
+  private long[] addresses6;
+  private long[] result;
+  private ByteBuffer packets;
+  private int[] offsets;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+
+    this.range4 = AddressRange.of(0x0A000000, 9);
+    this.range6 = AddressRange.of(0x20010DB800000000L, 0L, 33);
+    this.table = AddressRange4Table.<Boolean>builder()
+        .put(this.range4, true)
+        .put(AddressRange.of(0xC0A80000, 16), true)
+        .put(AddressRange.of(0x0A0A0A80, 25), true)
+        .build();
+
+    this.addresses4 = new int[this.batchSize];
+    this.addresses6 = new long[this.batchSize * 2];
+    for (int i = 0; i < this.batchSize; i++) {
+      this.addresses4[i] = 0x0A000000 | (random.nextInt() & 0x00FFFFFF);
+      this.addresses6[i * 2] = 0x20010DB800000000L | (random.nextLong() & 0xFFFFFFFFL);
+      this.addresses6[i * 2 + 1] = random.nextLong();
+    }
+
+    this.result = new long[(this.batchSize + 63) >>> 6];
+
+    // a capture buffer of bare 20 byte IPv4 headers (source addresses are located at offset 12)
+    this.packets = ByteBuffer.allocateDirect(this.batchSize * 20);
+    this.offsets = new int[this.batchSize];
+    for (int i = 0; i < this.batchSize; i++) {
+      this.offsets[i] = i * 20 + 12;
+      this.packets.putInt(this.offsets[i], this.addresses4[i]);
+    }
+  }
+
+  @Benchmark
+  public long[] range4Batch() {
+    this.range4.matches(this.addresses4, 0, this.batchSize, this.result);
+    return this.result;
+  }
+
+  @Benchmark
+  public void range4Scalar(Blackhole blackhole) {
+    for (int address : this.addresses4) {
+      blackhole.consume(this.range4.matches(address));
+    }
+  }
+
+  @Benchmark
+  public long[] range6Batch() {
+    this.range6.matches(this.addresses6, 0, this.batchSize, this.result);
+    return this.result;
+  }
+
+  @Benchmark
+  public long[] range4Packets() {
+    this.range4.matches(this.packets, 4, this.offsets, 0, this.batchSize, this.result);
+    return this.result;
+  }
+
+  @Benchmark
+  public long[] table4Batch() {
+    this.table.matches(this.addresses4, 0, this.batchSize, this.result);
+    return this.result;
+  }
+
+  @Benchmark
+  public long[] table4Packets() {
+    this.table.matches(this.packets, 4, this.offsets, 0, this.batchSize, this.result);
+    return this.result;
+  }
+}
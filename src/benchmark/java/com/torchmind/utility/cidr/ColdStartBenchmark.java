@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the first invocation of the most frequently used operations within a fresh JVM (e.g.
+ * including class loading and interpretation).
+ *
+ * Each fork performs exactly one invocation of each benchmark, thus the amount of forks should be
+ * kept high in order to obtain stable results.
+ *
+ * @author Johannes Donath
+ * @see RangeBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class ColdStartBenchmark {
+
+  @Param({"IPv4", "IPv6"})
+  public String family;
+
+  private String notation;
+  private String literal;
+  private InetAddress address;
+
+  @Setup
+  public void setup() throws UnknownHostException {
+    boolean inet6 = "IPv6".equals(this.family);
+
+    this.notation = (inet6 ? "2001:db8:1234::/48" : "10.10.0.0/16");
+    this.literal = (inet6 ? "2001:db8:1234::1337" : "10.10.13.37");
+    this.address = InetAddress.getByName(this.literal);
+  }
+
+  @Benchmark
+  public AddressRange parse() throws UnknownHostException {
+    return AddressRange.of(this.notation);
+  }
+
+  @Benchmark
+  public boolean parseAndMatchInetAddress() throws UnknownHostException {
+    return AddressRange.of(this.notation).matches(this.address);
+  }
+
+  @Benchmark
+  public boolean parseAndMatchString() throws UnknownHostException {
+    return AddressRange.of(this.notation).matches(this.literal);
+  }
+}
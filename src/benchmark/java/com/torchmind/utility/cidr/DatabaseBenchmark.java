@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time required to open a compiled {@link AddressRangeDatabase} (with and without
+ * checksum verification) as well as its lookup throughput using a synthetic routing table.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DatabaseBenchmark {
+
+  private static final int ADDRESS_COUNT = 1 << 16;
+
+  private Path path;
+  private AddressRangeDatabase database;
+  private int[] addresses;
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(0xC1D8);
+    AddressRangeDatabase.Writer writer = AddressRangeDatabase.writer();
+    Table4Benchmark.routingTable(random)
+        .forEach((range, value) -> writer.put(range, Integer.toString(value)));
+
+    this.path = Files.createTempFile("cidr", ".db");
+    writer.write(this.path);
+    this.database = AddressRangeDatabase.open(this.path);
+
+    this.addresses = new int[ADDRESS_COUNT];
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      this.addresses[i] = random.nextInt();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.path);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Measurement(iterations = 20)
+  public AddressRangeDatabase open() throws IOException {
+    return AddressRangeDatabase.open(this.path, false);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Measurement(iterations = 20)
+  public AddressRangeDatabase openVerified() throws IOException {
+    return AddressRangeDatabase.open(this.path, true);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int lookup() {
+    int sum = 0;
+
+    for (int address : this.addresses) {
+      sum += this.database.lookup(address);
+    }
+
+    return sum;
+  }
+}
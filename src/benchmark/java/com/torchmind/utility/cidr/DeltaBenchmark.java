@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the transition between two versions of a list of 1,000,000 ranges which differ in 20
+ * entries by applying a computed {@link AddressRangeDelta} compared to a full rebuild.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DeltaBenchmark {
+
+  private static final int RANGE_COUNT = 1000000;
+  private static final int CHANGE_COUNT = 20;
+
+  private List<AddressRange> previous;
+  private List<AddressRange> next;
+  private AddressRangeSnapshot<Boolean> snapshot;
+  private AddressRangeDelta<Boolean> delta;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    this.previous = new ArrayList<>(RANGE_COUNT);
+
+    for (int i = 0; i < RANGE_COUNT; i++) {
+      int prefixLength = 16 + random.nextInt(17);
+      this.previous.add(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+          prefixLength));
+    }
+    this.previous.sort(AddressRangeDelta.order());
+
+    this.next = new ArrayList<>(this.previous);
+    for (int i = 0; i < CHANGE_COUNT / 2; i++) {
+      this.next.remove(random.nextInt(this.next.size()));
+      this.next.add(AddressRange.of(random.nextInt(), 32));
+    }
+    this.next.sort(AddressRangeDelta.order());
+
+    this.snapshot = AddressRangeSnapshot.<Boolean>empty()
+        .apply(AddressRangeDelta.diff(new ArrayList<>(), this.previous, Boolean.TRUE));
+    this.delta = AddressRangeDelta.diff(this.previous, this.next, Boolean.TRUE);
+  }
+
+  @Benchmark
+  public AddressRangeDelta<Boolean> diff() {
+    return AddressRangeDelta.diff(this.previous, this.next, Boolean.TRUE);
+  }
+
+  @Benchmark
+  public AddressRangeSnapshot<Boolean> apply() {
+    return this.snapshot.apply(this.delta);
+  }
+
+  @Benchmark
+  public AddressRangeSnapshot<Boolean> diffAndApply() {
+    return this.snapshot.apply(AddressRangeDelta.diff(this.previous, this.next, Boolean.TRUE));
+  }
+
+  @Benchmark
+  public AddressRangeSnapshot<Boolean> rebuild() {
+    AddressRangeDelta.Builder<Boolean> builder = AddressRangeDelta.builder();
+    for (AddressRange range : this.next) {
+      builder.put(range, Boolean.TRUE);
+    }
+
+    return AddressRangeSnapshot.<Boolean>empty().apply(builder.build());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures lookups of mostly unlisted addresses against a deny-list of 2,000,000 ranges (mostly
+ * single hosts) using an {@link AddressRangeTrie} with and without an {@link AddressRangeFilter}.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FilterBenchmark {
+
+  private static final int RANGE_COUNT = 2000000;
+  private static final int QUERY_COUNT = 4096;
+
+  private AddressRangeTrie<Boolean> trie;
+  private AddressMatcher guarded;
+  private int[] addresses;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    AddressRangeFilter.Builder builder = AddressRangeFilter.builder().falsePositiveRate(0.001);
+    this.trie = new AddressRangeTrie<>();
+
+    for (int i = 0; i < RANGE_COUNT; i++) {
+      int prefixLength = (random.nextInt(1000) == 0 ? 16 + random.nextInt(9) : 32);
+      AddressRange range = AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+          prefixLength);
+
+      this.trie.put(range, Boolean.TRUE);
+      builder.add(range);
+    }
+    this.guarded = builder.build().guard(this.trie);
+
+    this.addresses = new int[QUERY_COUNT];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      this.addresses[i] = random.nextInt();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERY_COUNT)
+  public void trie(Blackhole blackhole) {
+    for (int address : this.addresses) {
+      blackhole.consume(this.trie.matches(address));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERY_COUNT)
+  public void filtered(Blackhole blackhole) {
+    for (int address : this.addresses) {
+      blackhole.consume(this.guarded.matches(address));
+    }
+  }
+}
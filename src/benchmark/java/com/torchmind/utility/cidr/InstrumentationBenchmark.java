@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of {@link InstrumentedMatcher} on single ranges and on lookup tables.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InstrumentationBenchmark {
+
+  private static final int ADDRESS_COUNT = 1024;
+
+  private AddressMatcher range;
+  private AddressMatcher instrumentedRange;
+  private AddressMatcher trie;
+  private AddressMatcher instrumentedTrie;
+  private int[] addresses;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+
+    this.range = AddressRange.of(0x0A000000, 8);
+    this.instrumentedRange = AddressMatchers.instrument(this.range);
+
+    AddressRangeTrie<Integer> trie = new AddressRangeTrie<>();
+    for (int i = 0; i < 100000; i++) {
+      int prefixLength = 8 + random.nextInt(25);
+      trie.put(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength),
+          i);
+    }
+    this.trie = trie;
+    this.instrumentedTrie = AddressMatchers.instrument(trie, new MatchListener() {
+    }, TimeUnit.MILLISECONDS.toNanos(1), AddressMatchers.DEFAULT_SAMPLE_INTERVAL);
+
+    this.addresses = new int[ADDRESS_COUNT];
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      this.addresses[i] = random.nextInt();
+    }
+  }
+
+  private static int count(AddressMatcher matcher, int[] addresses) {
+    int count = 0;
+
+    for (int address : addresses) {
+      if (matcher.matches(address)) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int range() {
+    return count(this.range, this.addresses);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int rangeInstrumented() {
+    return count(this.instrumentedRange, this.addresses);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int trie() {
+    return count(this.trie, this.addresses);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int trieInstrumented() {
+    return count(this.instrumentedTrie, this.addresses);
+  }
+}
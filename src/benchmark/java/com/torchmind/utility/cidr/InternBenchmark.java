@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.UnknownHostException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures repeated parsing of 1,024 notations (drawn from a pool of 256 distinct ranges) using
+ * {@link AddressRange#of(String)} compared to an {@link AddressRangeInterner}.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InternBenchmark {
+
+  private static final int DISTINCT_COUNT = 256;
+  private static final int NOTATION_COUNT = 1024;
+
+  private String[] notations;
+  private AddressRangeInterner interner;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    String[] distinct = new String[DISTINCT_COUNT];
+
+    for (int i = 0; i < DISTINCT_COUNT; i++) {
+      if ((i & 3) == 0) {
+        int prefixLength = 32 + random.nextInt(33);
+        distinct[i] = AddressRange.of((0x20010DB800000000L | (random.nextLong() & 0xFFFFFFFFL))
+            & AddressRange6.maskHigh(prefixLength), 0, prefixLength).toString();
+      } else {
+        int prefixLength = 8 + random.nextInt(25);
+        distinct[i] = AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+            prefixLength).toString();
+      }
+    }
+
+    this.notations = new String[NOTATION_COUNT];
+    for (int i = 0; i < NOTATION_COUNT; i++) {
+      this.notations[i] = distinct[random.nextInt(DISTINCT_COUNT)];
+    }
+    this.interner = new AddressRangeInterner(AddressRangeInterner.DEFAULT_CAPACITY);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NOTATION_COUNT)
+  public void parse(Blackhole blackhole) throws UnknownHostException {
+    for (String notation : this.notations) {
+      blackhole.consume(AddressRange.of(notation));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NOTATION_COUNT)
+  public void intern(Blackhole blackhole) {
+    for (String notation : this.notations) {
+      blackhole.consume(this.interner.parse(notation));
+    }
+  }
+}
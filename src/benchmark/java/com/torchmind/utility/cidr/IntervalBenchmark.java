@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the parsing and decomposition of start-end intervals as well as lookups against an
+ * {@link AddressIntervalMap} of 100,000 disjoint intervals.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntervalBenchmark {
+
+  private static final int INTERVAL_COUNT = 100000;
+  private static final int QUERY_COUNT = 1024;
+
+  private String[] notations;
+  private AddressInterval[] intervals;
+  private AddressIntervalMap<Integer> map;
+  private int[] addresses;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    AddressIntervalMap.Builder<Integer> builder = AddressIntervalMap.builder();
+
+    // disjoint intervals of random length separated by random gaps
+    long next = 0;
+    for (int i = 0; i < INTERVAL_COUNT; i++) {
+      long first = next + random.nextInt(1 << 14);
+      long last = first + random.nextInt(1 << 14);
+
+      builder.put(AddressInterval.of((int) first, (int) last), i);
+      next = last + 1;
+    }
+    this.map = builder.build();
+
+    this.notations = new String[QUERY_COUNT];
+    this.intervals = new AddressInterval[QUERY_COUNT];
+    this.addresses = new int[QUERY_COUNT];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      this.intervals[i] = this.map.interval(random.nextInt(INTERVAL_COUNT));
+      this.notations[i] = this.intervals[i].toString();
+      this.addresses[i] = (int) ((random.nextLong() >>> 1) % next);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERY_COUNT)
+  public void parse(Blackhole blackhole) {
+    for (String notation : this.notations) {
+      blackhole.consume(AddressParser.parseInterval(notation));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERY_COUNT)
+  public void decompose(Blackhole blackhole) {
+    for (AddressInterval interval : this.intervals) {
+      interval.forEachRange(blackhole::consume);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERY_COUNT)
+  public void lookup(Blackhole blackhole) {
+    for (int address : this.addresses) {
+      blackhole.consume(this.map.lookup(address));
+    }
+  }
+}
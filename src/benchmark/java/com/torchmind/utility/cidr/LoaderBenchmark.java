@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link AddressRangeLoader} against sequential line by line parsing using a file of
+ * one million ranges.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LoaderBenchmark {
+
+  private static final int LINE_COUNT = 1000000;
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  private Path path;
+  private ForkJoinPool pool;
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(0xC1D8);
+    this.path = Files.createTempFile("cidr", ".txt");
+    this.pool = new ForkJoinPool(this.parallelism);
+
+    try (BufferedWriter writer = Files.newBufferedWriter(this.path, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < LINE_COUNT; i++) {
+        int prefixLength = 8 + random.nextInt(25);
+        writer.write(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+            prefixLength).toString());
+        writer.newLine();
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.pool.shutdown();
+    Files.deleteIfExists(this.path);
+  }
+
+  @Benchmark
+  public long load() throws IOException {
+    long[] sum = new long[1];
+    new AddressRangeLoader(this.pool).load(this.path, (r) -> sum[0] += r.prefixLength());
+    return sum[0];
+  }
+
+  @Benchmark
+  public long sequential() throws IOException {
+    long sum = 0;
+
+    try (Stream<String> lines = Files.lines(this.path, StandardCharsets.UTF_8)) {
+      Iterator<String> it = lines.iterator();
+      while (it.hasNext()) {
+        sum += AddressRange.of(it.next()).prefixLength();
+      }
+    } catch (UnknownHostException ex) {
+      throw new AssertionError(ex);
+    }
+
+    return sum;
+  }
+}
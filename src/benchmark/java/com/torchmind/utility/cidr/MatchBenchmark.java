@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of matching a single address against a single address range.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MatchBenchmark {
+
+  private AddressRange4 range4;
+  private AddressRange6 range6;
+  private InetAddress address4;
+  private InetAddress address6;
+  private int numeric4;
+  private long numeric6High;
+  private long numeric6Low;
+
+  @Setup
+  public void setup() throws Exception {
+    this.range4 = (AddressRange4) AddressRange.of("10.10.0.0/16");
+    this.range6 = (AddressRange6) AddressRange.of("2001:db8:1234::/48");
+    this.address4 = InetAddress.getByName("10.10.13.37");
+    this.address6 = InetAddress.getByName("2001:db8:1234::1337");
+    this.numeric4 = 0x0A0A0D25;
+    this.numeric6High = 0x20010DB812340000L;
+    this.numeric6Low = 0x1337L;
+  }
+
+  @Benchmark
+  public boolean matchesInet4Address() {
+    return this.range4.matches(this.address4);
+  }
+
+  @Benchmark
+  public boolean matchesInet6Address() {
+    return this.range6.matches(this.address6);
+  }
+
+  @Benchmark
+  public boolean matchesInt() {
+    return this.range4.matches(this.numeric4);
+  }
+
+  @Benchmark
+  public boolean matchesLongPair() {
+    return this.range6.matches(this.numeric6High, this.numeric6Low);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how filtering large address sets scales with the amount of available cores.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MatchingBenchmark {
+
+  private static final int ADDRESS_COUNT = 1000000;
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  private AddressRange range;
+  private Set<InetAddress> addresses;
+  private ForkJoinPool pool;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+
+    this.range = AddressRange.of(0x0A000000, 9);
+    this.addresses = new HashSet<>();
+    while (this.addresses.size() < ADDRESS_COUNT) {
+      this.addresses.add(AddressRange4.encode(0x0A000000 | (random.nextInt() & 0x00FFFFFF)));
+    }
+
+    this.pool = new ForkJoinPool(this.parallelism);
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.pool.shutdown();
+  }
+
+  @Benchmark
+  public Set<InetAddress> sequential() {
+    return this.range.matching(this.addresses);
+  }
+
+  @Benchmark
+  public Set<InetAddress> parallel() {
+    return this.range.matching(this.addresses, this.pool);
+  }
+}
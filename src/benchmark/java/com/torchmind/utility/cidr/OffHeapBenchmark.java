@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the construction and lookup throughput of {@link OffHeapAddressRangeMap} compared to
+ * {@link AddressRangeTrie} using a synthetic routing table.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OffHeapBenchmark {
+
+  private static final int ADDRESS_COUNT = 1 << 16;
+
+  private Map<AddressRange4, Integer> ranges;
+  private OffHeapAddressRangeMap<Integer> map;
+  private AddressRangeTrie<Integer> trie;
+  private int[] addresses;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    this.ranges = Table4Benchmark.routingTable(random);
+    this.map = OffHeapAddressRangeMap.of(this.ranges);
+    this.trie = new AddressRangeTrie<>();
+    this.ranges.forEach(this.trie::put);
+
+    this.addresses = new int[ADDRESS_COUNT];
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      this.addresses[i] = random.nextInt();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.map.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 5)
+  public long build() {
+    try (OffHeapAddressRangeMap<Integer> map = OffHeapAddressRangeMap.of(this.ranges)) {
+      return map.footprint();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int lookup() {
+    int sum = 0;
+
+    for (int address : this.addresses) {
+      sum += this.map.lookup(address);
+    }
+
+    return sum;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int trie() {
+    int sum = 0;
+
+    for (int address : this.addresses) {
+      Integer value = this.trie.longestMatch(address);
+      if (value != null) {
+        sum += value;
+      }
+    }
+
+    return sum;
+  }
+}
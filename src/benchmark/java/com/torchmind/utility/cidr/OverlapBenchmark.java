@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of overlap queries against 200,000 registered ranges using {@link
+ * AddressRangeTrie} compared to a linear scan.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OverlapBenchmark {
+
+  private static final int RANGE_COUNT = 200000;
+  private static final int QUERY_COUNT = 256;
+
+  private AddressRange[] ranges;
+  private AddressRange[] queries;
+  private AddressRangeTrie<AddressRange> trie;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    List<AddressRange> ranges = new ArrayList<>();
+    this.trie = new AddressRangeTrie<>();
+
+    while (ranges.size() < RANGE_COUNT) {
+      int prefixLength = 16 + random.nextInt(13);
+      AddressRange range = AddressRange
+          .of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength);
+
+      if (this.trie.put(range, range) == null) {
+        ranges.add(range);
+      }
+    }
+
+    this.ranges = ranges.toArray(new AddressRange[0]);
+    this.queries = new AddressRange[QUERY_COUNT];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      int prefixLength = 12 + random.nextInt(13);
+      this.queries[i] = AddressRange
+          .of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERY_COUNT)
+  public void trie(Blackhole blackhole) {
+    for (AddressRange query : this.queries) {
+      this.trie.forEachOverlapping(query, (range, value) -> blackhole.consume(value));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERY_COUNT)
+  public void scan(Blackhole blackhole) {
+    for (AddressRange query : this.queries) {
+      for (AddressRange range : this.ranges) {
+        if (range.overlaps(query)) {
+          blackhole.consume(range);
+        }
+      }
+    }
+  }
+}
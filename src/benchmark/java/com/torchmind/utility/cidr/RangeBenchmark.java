@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the public API of a single address range with a warm JIT (for both address families).
+ *
+ * All state is shared between benchmark threads and is never modified thus permitting the same
+ * benchmarks to be executed concurrently (using {@code -t}). Allocation rates are reported when
+ * executed with {@code -prof gc}.
+ *
+ * @author Johannes Donath
+ * @see ColdStartBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RangeBenchmark {
+
+  private static final int SET_SIZE = 1024;
+
+  @Param({"IPv4", "IPv6"})
+  public String family;
+
+  private String notation;
+  private String literal;
+  private AddressRange range;
+  private InetAddress address;
+  private Set<InetAddress> addresses;
+
+  @Setup
+  public void setup() throws UnknownHostException {
+    boolean inet6 = "IPv6".equals(this.family);
+    Random random = new Random(0xC1D8);
+
+    this.notation = (inet6 ? "2001:db8:1234::/48" : "10.10.0.0/16");
+    this.literal = (inet6 ? "2001:db8:1234::1337" : "10.10.13.37");
+    this.range = AddressRange.of(this.notation);
+    this.address = InetAddress.getByName(this.literal);
+
+    // roughly half of all addresses within the set are matched by the range
+    this.addresses = new HashSet<>();
+    while (this.addresses.size() < SET_SIZE) {
+      byte[] encoded = this.address.getAddress();
+      for (int i = (random.nextBoolean() ? 0 : encoded.length / 2); i < encoded.length; i++) {
+        encoded[i] = (byte) random.nextInt();
+      }
+
+      this.addresses.add(InetAddress.getByAddress(encoded));
+    }
+  }
+
+  @Benchmark
+  public AddressRange parse() throws UnknownHostException {
+    return AddressRange.of(this.notation);
+  }
+
+  @Benchmark
+  public boolean matchesInetAddress() {
+    return this.range.matches(this.address);
+  }
+
+  @Benchmark
+  public boolean matchesString() throws UnknownHostException {
+    return this.range.matches(this.literal);
+  }
+
+  @Benchmark
+  public Set<InetAddress> matchingSet() {
+    return this.range.matching(this.addresses);
+  }
+
+  @Benchmark
+  public byte[] encoded() {
+    return this.range.encoded();
+  }
+
+  @Benchmark
+  public long blockSize() {
+    return this.range.blockSize();
+  }
+}
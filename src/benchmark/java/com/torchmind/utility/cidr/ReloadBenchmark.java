@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the lookup throughput of {@link ConcurrentAddressRangeTable} while a background thread
+ * keeps publishing new snapshots. Read scalability is evaluated by running the benchmark with a
+ * varying amount of threads (e.g. {@code -t 1}, {@code -t 2} and {@code -t 4}).
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReloadBenchmark {
+
+  private static final int PREFIX_COUNT = 100000;
+  private static final int DELTA_SIZE = 1000;
+  private static final int ADDRESS_COUNT = 1 << 12;
+
+  /**
+   * Specifies the delay between two reloads (in milliseconds). A negative value disables reloads
+   * entirely while zero publishes new snapshots back to back.
+   */
+  @Param({"-1", "10", "0"})
+  public int reloadInterval;
+
+  private ConcurrentAddressRangeTable<Integer> table;
+  private AddressRangeTrie<Integer> trie;
+  private int[] addresses;
+
+  private volatile boolean running;
+  private Thread writer;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    List<AddressRange> ranges = new ArrayList<>();
+    AddressRangeDelta.Builder<Integer> builder = AddressRangeDelta.builder();
+    this.trie = new AddressRangeTrie<>();
+
+    while (this.trie.size() < PREFIX_COUNT) {
+      int prefixLength = 8 + random.nextInt(17);
+      AddressRange range = AddressRange
+          .of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength);
+
+      int value = this.trie.size();
+
+      if (this.trie.put(range, value) == null) {
+        ranges.add(range);
+        builder.put(range, value);
+      }
+    }
+
+    this.table = new ConcurrentAddressRangeTable<>();
+    this.table.apply(builder.build());
+
+    this.addresses = new int[ADDRESS_COUNT];
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      this.addresses[i] = random.nextInt();
+    }
+
+    if (this.reloadInterval < 0) {
+      return;
+    }
+
+    this.running = true;
+    this.writer = new Thread(() -> {
+      Random deltas = new Random(0xC1D9);
+
+      while (this.running) {
+        AddressRangeDelta.Builder<Integer> delta = AddressRangeDelta.builder();
+        for (int i = 0; i < DELTA_SIZE; i++) {
+          AddressRange range = ranges.get(deltas.nextInt(ranges.size()));
+
+          if (deltas.nextBoolean()) {
+            delta.remove(range);
+          } else {
+            delta.put(range, deltas.nextInt());
+          }
+        }
+
+        this.table.apply(delta.build());
+
+        if (this.reloadInterval > 0) {
+          try {
+            Thread.sleep(this.reloadInterval);
+          } catch (InterruptedException ex) {
+            return;
+          }
+        }
+      }
+    }, "reload");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    this.running = false;
+
+    if (this.writer != null) {
+      this.writer.interrupt();
+      this.writer.join();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int table() {
+    int sum = 0;
+
+    for (int address : this.addresses) {
+      Integer value = this.table.longestMatch(address);
+      if (value != null) {
+        sum += value;
+      }
+    }
+
+    return sum;
+  }
+
+  /**
+   * Provides a baseline which performs the same lookups against a mutable trie which is never
+   * reloaded.
+   */
+  @Benchmark
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int trie() {
+    int sum = 0;
+
+    for (int address : this.addresses) {
+      Integer value = this.trie.longestMatch(address);
+      if (value != null) {
+        sum += value;
+      }
+    }
+
+    return sum;
+  }
+}
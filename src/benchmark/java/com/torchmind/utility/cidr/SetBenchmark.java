@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the construction and set operation performance of {@link AddressRangeSet} using two
+ * million overlapping IPv4 and IPv6 ranges.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SetBenchmark {
+
+  private static final int RANGE_COUNT = 2000000;
+
+  private List<AddressRange> ranges;
+  private AddressRangeSet a;
+  private AddressRangeSet b;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    this.ranges = new ArrayList<>(RANGE_COUNT);
+
+    for (int i = 0; i < RANGE_COUNT; i++) {
+      if ((i & 7) == 0) {
+        int prefixLength = 32 + random.nextInt(97);
+        this.ranges.add(AddressRange.of(
+            0x20010DB800000000L | (random.nextLong() & AddressRange6.maskHigh(prefixLength)
+                & 0xFFFFFFFFL),
+            random.nextLong() & AddressRange6.maskLow(prefixLength), prefixLength));
+      } else {
+        int prefixLength = 20 + random.nextInt(13);
+        this.ranges.add(
+            AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength));
+      }
+    }
+
+    this.a = AddressRangeSet.of(this.ranges.subList(0, RANGE_COUNT / 2));
+    this.b = AddressRangeSet.of(this.ranges.subList(RANGE_COUNT / 2, RANGE_COUNT));
+  }
+
+  @Benchmark
+  public AddressRangeSet build() {
+    return AddressRangeSet.of(this.ranges);
+  }
+
+  @Benchmark
+  public AddressRangeSet union() {
+    return this.a.union(this.b);
+  }
+
+  @Benchmark
+  public AddressRangeSet intersect() {
+    return this.a.intersect(this.b);
+  }
+
+  @Benchmark
+  public AddressRangeSet subtract() {
+    return this.a.subtract(this.b);
+  }
+
+  @Benchmark
+  public AddressRangeSet complement() {
+    return this.a.complement();
+  }
+}
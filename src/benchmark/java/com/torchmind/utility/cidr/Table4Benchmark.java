@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the construction and lookup throughput of {@link AddressRange4Table} using a
+ * synthetic table which resembles a full global routing table.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Table4Benchmark {
+
+  private static final int PREFIX_COUNT = 1000000;
+  private static final int ADDRESS_COUNT = 1 << 16;
+
+  /**
+   * Approximates the prefix length distribution of the global IPv4 routing table (as a
+   * cumulative share per mille for prefixes of length 8 through 32).
+   */
+  private static final int[] DISTRIBUTION = new int[]{
+      1, 1, 2, 3, 5, 8, 13, 20, 40, 60, 80, 110, 150, 190, 260, 400, 995,
+      996, 997, 997, 998, 998, 999, 999, 1000
+  };
+
+  private Map<AddressRange4, Integer> ranges;
+  private AddressRange4Table<Integer> table;
+  private int[] addresses;
+
+  /**
+   * Generates a synthetic routing table.
+   *
+   * @param random a source of randomness.
+   * @return a map of ranges and their respective values.
+   */
+  static Map<AddressRange4, Integer> routingTable(Random random) {
+    Map<AddressRange4, Integer> ranges = new HashMap<>();
+
+    while (ranges.size() < PREFIX_COUNT) {
+      int share = random.nextInt(1000);
+      int prefixLength = 8;
+      while (DISTRIBUTION[prefixLength - 8] <= share) {
+        prefixLength++;
+      }
+
+      ranges.put(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+          prefixLength), random.nextInt(256));
+    }
+
+    return ranges;
+  }
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    this.ranges = routingTable(random);
+    this.table = AddressRange4Table.of(this.ranges);
+
+    this.addresses = new int[ADDRESS_COUNT];
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      this.addresses[i] = random.nextInt();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 5)
+  public AddressRange4Table<Integer> build() {
+    return AddressRange4Table.of(this.ranges);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(ADDRESS_COUNT)
+  public int lookup() {
+    int sum = 0;
+
+    for (int address : this.addresses) {
+      sum += this.table.lookup(address);
+    }
+
+    return sum;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures longest-prefix-match lookups within {@link AddressRangeTrie} at varying table sizes.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TrieBenchmark {
+
+  private static final int ADDRESS_COUNT = 1 << 16;
+
+  @Param({"1000", "100000", "1000000"})
+  public int prefixes;
+
+  private AddressRangeTrie<Integer> trie;
+  private int[] addresses4;
+  private long[] addresses6;
+  private int index;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0xC1D8);
+    this.trie = new AddressRangeTrie<>();
+
+    while (this.trie.size() < this.prefixes) {
+      // prefix lengths are roughly distributed like a global routing table (mostly /16 to /24
+      // for IPv4 and /32 to /48 for IPv6)
+      int prefixLength4 = 8 + random.nextInt(17);
+      this.trie.put(AddressRange
+              .of(random.nextInt() & AddressRange4.mask(prefixLength4), prefixLength4),
+          this.trie.size());
+
+      int prefixLength6 = 16 + random.nextInt(33);
+      this.trie.put(AddressRange
+              .of(random.nextLong() & AddressRange6.maskHigh(prefixLength6), 0, prefixLength6),
+          this.trie.size());
+    }
+
+    this.addresses4 = new int[ADDRESS_COUNT];
+    this.addresses6 = new long[ADDRESS_COUNT * 2];
+    for (int i = 0; i < ADDRESS_COUNT; i++) {
+      this.addresses4[i] = random.nextInt();
+      this.addresses6[i * 2] = random.nextLong();
+      this.addresses6[i * 2 + 1] = random.nextLong();
+    }
+  }
+
+  @Benchmark
+  public Integer longestMatch4() {
+    int i = (this.index++) & (ADDRESS_COUNT - 1);
+    return this.trie.longestMatch(this.addresses4[i]);
+  }
+
+  @Benchmark
+  public Integer longestMatch6() {
+    int i = (this.index++) & (ADDRESS_COUNT - 1);
+    return this.trie.longestMatch(this.addresses6[i * 2], this.addresses6[i * 2 + 1]);
+  }
+}
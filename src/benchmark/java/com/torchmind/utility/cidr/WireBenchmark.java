@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures encoding and decoding of 100,000 ranges (three quarters of which are IPv4 ranges)
+ * using {@link AddressRangeCodec} compared to newline separated CIDR notations which are parsed
+ * using {@link AddressRange#of(String)}.
+ *
+ * The resulting payload sizes are listed within the benchmark README.
+ *
+ * @author Johannes Donath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WireBenchmark {
+
+  private static final int RANGE_COUNT = 100000;
+
+  private List<AddressRange> ranges;
+  private byte[] binary;
+  private byte[] text;
+
+  @Setup
+  public void setup() throws IOException {
+    Random random = new Random(0xC1D8);
+    this.ranges = new ArrayList<>(RANGE_COUNT);
+
+    for (int i = 0; i < RANGE_COUNT; i++) {
+      if ((i & 3) == 0) {
+        int prefixLength = 32 + random.nextInt(33);
+        this.ranges.add(AddressRange.of((0x20010DB800000000L | (random.nextLong() & 0xFFFFFFFFL))
+            & AddressRange6.maskHigh(prefixLength), 0, prefixLength));
+      } else {
+        int prefixLength = 16 + random.nextInt(17);
+        this.ranges.add(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+            prefixLength));
+      }
+    }
+
+    this.binary = this.encode();
+    this.text = this.format();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RANGE_COUNT)
+  public byte[] encode() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(RANGE_COUNT * 4);
+    AddressRangeCodec.write(this.ranges, Channels.newChannel(out));
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RANGE_COUNT)
+  public void decode(Blackhole blackhole) throws IOException {
+    AddressRangeCodec.read(Channels.newChannel(new ByteArrayInputStream(this.binary)),
+        blackhole::consume);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RANGE_COUNT)
+  public AddressRangeSet decodeSet() throws IOException {
+    return AddressRangeCodec.readSet(Channels.newChannel(new ByteArrayInputStream(this.binary)));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RANGE_COUNT)
+  public byte[] format() {
+    StringBuilder builder = new StringBuilder(RANGE_COUNT * 20);
+    for (AddressRange range : this.ranges) {
+      builder.append(range).append('\n');
+    }
+
+    return builder.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RANGE_COUNT)
+  public void parse(Blackhole blackhole) throws UnknownHostException {
+    String payload = new String(this.text, StandardCharsets.US_ASCII);
+    int start = 0;
+
+    for (int end = payload.indexOf('\n'); end != -1; end = payload.indexOf('\n', start)) {
+      blackhole.consume(AddressRange.of(payload.substring(start, end)));
+      start = end + 1;
+    }
+  }
+}
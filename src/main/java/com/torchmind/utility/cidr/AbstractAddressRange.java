@@ -17,11 +17,8 @@
 package com.torchmind.utility.cidr;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Provides an abstract implementation for address ranges within networks of arbitrary address sizes
@@ -31,32 +28,38 @@ import java.util.stream.Collectors;
  */
 abstract class AbstractAddressRange<A extends InetAddress> implements AddressRange {
 
-  private final A base;
+  private A base;
   private final int prefixLength;
 
-  protected AbstractAddressRange(@NonNull A base, int prefixLength) {
+  protected AbstractAddressRange(@Nullable A base, int prefixLength, int maxPrefixLength) {
+    if (prefixLength < 0 || prefixLength > maxPrefixLength) {
+      throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+    }
+
     this.base = base;
     this.prefixLength = prefixLength;
-
-    byte[] encoded = base.getAddress();
-    byte[] mask = this.encoded();
-
-    for (int i = 0; i < mask.length; i++) {
-      if ((encoded[i] & (~mask[i])) != 0x0) {
-        throw new IllegalArgumentException("Invalid address range: Base address is not part of block");
-      }
-    }
   }
 
   /**
    * Retrieves the base address.
    *
+   * Ranges which have been constructed from their numeric representation create their base address
+   * upon first access. The result is not cached in a thread safe manner since concurrent accesses
+   * will merely construct equal address objects.
+   *
    * @return the address.
    */
   @NonNull
   @Override
   public A base() {
-    return this.base;
+    A base = this.base;
+
+    if (base == null) {
+      base = this.createBase();
+      this.base = base;
+    }
+
+    return base;
   }
 
   /**
@@ -69,86 +72,12 @@ abstract class AbstractAddressRange<A extends InetAddress> implements AddressRan
   public abstract AddressRange base(@NonNull A base);
 
   /**
-   * {@inheritDoc}
-   */
-  @NonNull
-  protected byte[] encoded(int size) {
-    byte[] encoded = new byte[size];
-
-    for (int i = 0; i < this.prefixLength(); i++) {
-      int index = (i / 8);
-      int offset = (i % 8);
-
-      encoded[index] |= (0x80 >> offset);
-    }
-
-    return encoded;
-  }
-
-  /**
-   * {@inheritDoc}
-   */
-  @Override
-  public boolean equals(Object o) {
-    if (this == o) {
-      return true;
-    }
-    if (!(o instanceof AbstractAddressRange)) {
-      return false;
-    }
-    AbstractAddressRange<?> that = (AbstractAddressRange<?>) o;
-    return this.prefixLength == that.prefixLength &&
-        Objects.equals(this.base, that.base);
-  }
-
-  /**
-   * {@inheritDoc}
-   */
-  @Override
-  public int hashCode() {
-    return Objects.hash(this.base, this.prefixLength);
-  }
-
-  /**
-   * {@inheritDoc}
-   */
-  @Override
-  public boolean matches(@NonNull InetAddress address) {
-    if (!this.base.getClass().isAssignableFrom(address.getClass())) {
-      return false;
-    }
-    byte[] mask = this.encoded();
-    byte[] base = this.base().getAddress();
-    byte[] encoded = address.getAddress();
-
-    for (int i = 0; i < mask.length; i++) {
-      if ((encoded[i] & mask[i]) != base[i]) {
-        return false;
-      }
-    }
-
-    return true;
-  }
-
-  /**
-   * {@inheritDoc}
-   */
-  @Override
-  public boolean matches(@NonNull String address)
-      throws IllegalArgumentException, UnknownHostException {
-    return this.matches(InetAddress.getByName(address));
-  }
-
-  /**
-   * {@inheritDoc}
+   * Constructs the base address based on the numeric representation of this range.
+   *
+   * @return the address.
    */
   @NonNull
-  @Override
-  public Set<InetAddress> matching(@NonNull Set<InetAddress> addresses) {
-    return addresses.stream()
-        .filter(this::matches)
-        .collect(Collectors.toSet());
-  }
+  protected abstract A createBase();
 
   /**
    * {@inheritDoc}
@@ -0,0 +1,900 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Represents a compiled access control list which consists of an ordered list of allow and deny
+ * rules and is evaluated using first-match semantics.
+ *
+ * Rules are compiled into a sorted list of disjoint address intervals (one per address family)
+ * each of which is associated with the first rule that matches its addresses. Shadowed and
+ * overlapping rules are thus resolved at compile time while lookups perform a single binary search
+ * (O(log n)) regardless of the order of the rules. Addresses which are not matched by any rule
+ * receive the default action of the list.
+ *
+ * Lists are immutable and may be shared between threads freely. Changes are applied through a
+ * {@link Compiler} which recompiles only the address regions which are affected by the rules that
+ * changed since its previous compilation.
+ *
+ * @author Johannes Donath
+ */
+public final class AddressAcl implements AddressMatcher {
+
+  private final Rule[] rules;
+  private final Action defaultAction;
+  private final int[] starts4;
+  private final int[] rules4;
+  private final long[] starts6;
+  private final int[] rules6;
+
+  private AddressAcl(@NonNull Rule[] rules, @NonNull Action defaultAction,
+      @NonNull int[] starts4, @NonNull int[] rules4, @NonNull long[] starts6,
+      @NonNull int[] rules6) {
+    this.rules = rules;
+    this.defaultAction = defaultAction;
+    this.starts4 = starts4;
+    this.rules4 = rules4;
+    this.starts6 = starts6;
+    this.rules6 = rules6;
+  }
+
+  /**
+   * Creates a new empty compiler which denies all addresses that are not matched by any rule.
+   *
+   * @return a compiler.
+   */
+  @NonNull
+  public static Compiler compiler() {
+    return (new Compiler());
+  }
+
+  /**
+   * Compiles the specified ordered list of rules.
+   *
+   * @param rules an ordered list of rules.
+   * @param defaultAction the action for addresses which are not matched by any rule.
+   * @return a compiled list.
+   * @throws IllegalArgumentException when a rule with an unsupported range type is passed.
+   */
+  @NonNull
+  public static AddressAcl of(@NonNull List<Rule> rules, @NonNull Action defaultAction) {
+    Compiler compiler = compiler().defaultAction(defaultAction);
+    rules.forEach(compiler::add);
+    return compiler.compile();
+  }
+
+  /**
+   * Retrieves the action which applies to the specified address.
+   *
+   * @param address an address.
+   * @return an action.
+   */
+  @NonNull
+  public Action decide(@NonNull InetAddress address) {
+    return this.action(this.lookup(address));
+  }
+
+  /**
+   * Retrieves the action which applies to the specified address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return an action.
+   */
+  @NonNull
+  public Action decide(int address) {
+    return this.action(this.lookup(address));
+  }
+
+  /**
+   * Retrieves the action which applies to the specified address.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return an action.
+   */
+  @NonNull
+  public Action decide(long high, long low) {
+    return this.action(this.lookup(high, low));
+  }
+
+  /**
+   * Resolves the action of a rule.
+   *
+   * @param rule a rule index or -1 for the default action.
+   * @return an action.
+   */
+  @NonNull
+  private Action action(int rule) {
+    return (rule == -1 ? this.defaultAction : this.rules[rule].action);
+  }
+
+  /**
+   * Retrieves the action which applies to addresses which are not matched by any rule.
+   *
+   * @return an action.
+   */
+  @NonNull
+  public Action defaultAction() {
+    return this.defaultAction;
+  }
+
+  /**
+   * Retrieves the index of the first rule which matches the specified address (e.g. the rule
+   * which decides whether the address is permitted).
+   *
+   * @param address an address.
+   * @return a rule index or -1 if no rule matches.
+   */
+  public int lookup(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.lookup(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.lookup(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return -1;
+  }
+
+  /**
+   * Retrieves the index of the first rule which matches the specified address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a rule index or -1 if no rule matches.
+   */
+  public int lookup(int address) {
+    int[] starts = this.starts4;
+    int key = address ^ Integer.MIN_VALUE;
+    int lower = 0;
+    int upper = starts.length - 1;
+
+    // the first interval always begins at the start of the address space
+    while (lower < upper) {
+      int middle = (lower + upper + 1) >>> 1;
+
+      if ((starts[middle] ^ Integer.MIN_VALUE) > key) {
+        upper = middle - 1;
+      } else {
+        lower = middle;
+      }
+    }
+
+    return this.rules4[lower];
+  }
+
+  /**
+   * Retrieves the index of the first rule which matches the specified address.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a rule index or -1 if no rule matches.
+   */
+  public int lookup(long high, long low) {
+    long[] starts = this.starts6;
+    int lower = 0;
+    int upper = this.rules6.length - 1;
+
+    while (lower < upper) {
+      int middle = (lower + upper + 1) >>> 1;
+
+      if (AddressIntervals.compare(starts[middle * 2], starts[middle * 2 + 1], high, low) > 0) {
+        upper = middle - 1;
+      } else {
+        lower = middle;
+      }
+    }
+
+    return this.rules6[lower];
+  }
+
+  /**
+   * Evaluates whether the specified address is permitted by this list.
+   *
+   * @param address the address.
+   * @return true if permitted, false otherwise.
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.decide(address) == Action.ALLOW;
+  }
+
+  /**
+   * Evaluates whether the specified address is permitted by this list.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return true if permitted, false otherwise.
+   */
+  @Override
+  public boolean matches(int address) {
+    return this.decide(address) == Action.ALLOW;
+  }
+
+  /**
+   * Evaluates whether the specified address is permitted by this list.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return true if permitted, false otherwise.
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return this.decide(high, low) == Action.ALLOW;
+  }
+
+  /**
+   * Retrieves the rule with the specified index.
+   *
+   * @param index a rule index.
+   * @return a rule.
+   * @throws IndexOutOfBoundsException when the index is out of bounds.
+   */
+  @NonNull
+  public Rule rule(int index) {
+    return this.rules[index];
+  }
+
+  /**
+   * Retrieves the ordered list of rules from which this list has been compiled.
+   *
+   * @return an unmodifiable list of rules.
+   */
+  @NonNull
+  public List<Rule> rules() {
+    return Collections.unmodifiableList(Arrays.asList(this.rules));
+  }
+
+  /**
+   * Retrieves the indices of all rules which never decide the fate of an address as they are
+   * entirely covered by preceding rules.
+   *
+   * @return an ordered array of rule indices.
+   */
+  @NonNull
+  public int[] shadowedRules() {
+    boolean[] effective = new boolean[this.rules.length];
+
+    for (int rule : this.rules4) {
+      if (rule != -1) {
+        effective[rule] = true;
+      }
+    }
+    for (int rule : this.rules6) {
+      if (rule != -1) {
+        effective[rule] = true;
+      }
+    }
+
+    int count = 0;
+    int[] shadowed = new int[this.rules.length];
+    for (int i = 0; i < effective.length; i++) {
+      if (!effective[i]) {
+        shadowed[count++] = i;
+      }
+    }
+
+    return Arrays.copyOf(shadowed, count);
+  }
+
+  /**
+   * Retrieves the total amount of compiled intervals (e.g. the amount of distinct decisions across
+   * both address families).
+   *
+   * @return an amount of intervals.
+   */
+  public int size() {
+    return this.rules4.length + this.rules6.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "AddressAcl{rules=" + this.rules.length + ", intervals=" + this.size()
+        + ", defaultAction=" + this.defaultAction + "}";
+  }
+
+  /**
+   * Enumerates the actions of a rule.
+   */
+  public enum Action {
+
+    /**
+     * Permits matching addresses.
+     */
+    ALLOW,
+
+    /**
+     * Rejects matching addresses.
+     */
+    DENY
+  }
+
+  /**
+   * Represents a single rule which applies an action to all addresses within a range.
+   */
+  public static final class Rule {
+
+    private final AddressRange range;
+    private final Action action;
+
+    private Rule(@NonNull AddressRange range, @NonNull Action action) {
+      if (!(range instanceof AddressRange4) && !(range instanceof AddressRange6)) {
+        throw new IllegalArgumentException(
+            "Unsupported address range type: " + range.getClass().getCanonicalName());
+      }
+
+      this.range = range;
+      this.action = action;
+    }
+
+    /**
+     * Creates a new rule which permits all addresses within the specified range.
+     *
+     * @param range an address range.
+     * @return a rule.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public static Rule allow(@NonNull AddressRange range) {
+      return (new Rule(range, Action.ALLOW));
+    }
+
+    /**
+     * Creates a new rule which rejects all addresses within the specified range.
+     *
+     * @param range an address range.
+     * @return a rule.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public static Rule deny(@NonNull AddressRange range) {
+      return (new Rule(range, Action.DENY));
+    }
+
+    /**
+     * Retrieves the action of this rule.
+     *
+     * @return an action.
+     */
+    @NonNull
+    public Action action() {
+      return this.action;
+    }
+
+    /**
+     * Retrieves the range to which this rule applies.
+     *
+     * @return an address range.
+     */
+    @NonNull
+    public AddressRange range() {
+      return this.range;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || this.getClass() != o.getClass()) {
+        return false;
+      }
+      Rule rule = (Rule) o;
+      return this.action == rule.action && Objects.equals(this.range, rule.range);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.range, this.action);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public String toString() {
+      return this.action.name().toLowerCase() + " " + this.range;
+    }
+  }
+
+  /**
+   * Compiles ordered lists of rules.
+   *
+   * Compilers retain an index of their rules as well as the intervals of their previous
+   * compilation. Subsequent compilations only re-evaluate the address regions which are covered by
+   * rules that have been added or replaced in the meantime (falling back to a full compilation when
+   * a large share of the rules has changed). Replacing the action of a rule without altering its
+   * range requires no re-evaluation at all.
+   *
+   * This implementation is not thread safe: Concurrent modifications need to be synchronized
+   * externally.
+   */
+  public static final class Compiler {
+
+    private static final AddressRange4 SPACE4 = AddressRange.of(0, 0);
+    private static final AddressRange6 SPACE6 = AddressRange.of(0L, 0L, 0);
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final AddressRangeTrie<int[]> index = new AddressRangeTrie<>();
+    private final List<AddressRange> changes = new ArrayList<>();
+    private Action defaultAction = Action.DENY;
+    private MatchListener listener;
+
+    private Intervals intervals4;
+    private Intervals intervals6;
+
+    private Compiler() {
+    }
+
+    /**
+     * Appends a rule to the end of the list.
+     *
+     * @param rule a rule.
+     * @return a reference to this compiler.
+     */
+    @NonNull
+    public Compiler add(@NonNull Rule rule) {
+      int position = this.rules.size();
+      this.rules.add(rule);
+
+      // appended rules are the last candidate for all addresses and thus keep the index sorted
+      int[] positions = this.index.get(rule.range);
+      if (positions == null) {
+        this.index.put(rule.range, new int[]{position});
+      } else {
+        int[] extended = Arrays.copyOf(positions, positions.length + 1);
+        extended[positions.length] = position;
+        this.index.put(rule.range, extended);
+      }
+
+      this.changes.add(rule.range);
+      return this;
+    }
+
+    /**
+     * Appends a rule which permits the specified range.
+     *
+     * @param range an address range.
+     * @return a reference to this compiler.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public Compiler allow(@NonNull AddressRange range) {
+      return this.add(Rule.allow(range));
+    }
+
+    /**
+     * Appends a rule which rejects the specified range.
+     *
+     * @param range an address range.
+     * @return a reference to this compiler.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public Compiler deny(@NonNull AddressRange range) {
+      return this.add(Rule.deny(range));
+    }
+
+    /**
+     * Replaces the rule at the specified position.
+     *
+     * @param position a rule index.
+     * @param rule a rule.
+     * @return a reference to this compiler.
+     * @throws IndexOutOfBoundsException when the position is out of bounds.
+     */
+    @NonNull
+    public Compiler set(int position, @NonNull Rule rule) {
+      Rule previous = this.rules.set(position, rule);
+      if (previous.range.equals(rule.range)) {
+        return this;
+      }
+
+      int[] positions = this.index.get(previous.range);
+      if (positions.length == 1) {
+        this.index.remove(previous.range);
+      } else {
+        int[] reduced = new int[positions.length - 1];
+        int offset = Arrays.binarySearch(positions, position);
+        System.arraycopy(positions, 0, reduced, 0, offset);
+        System.arraycopy(positions, offset + 1, reduced, offset, reduced.length - offset);
+        this.index.put(previous.range, reduced);
+      }
+
+      positions = this.index.get(rule.range);
+      if (positions == null) {
+        this.index.put(rule.range, new int[]{position});
+      } else {
+        int[] extended = new int[positions.length + 1];
+        int offset = -(Arrays.binarySearch(positions, position) + 1);
+        System.arraycopy(positions, 0, extended, 0, offset);
+        extended[offset] = position;
+        System.arraycopy(positions, offset, extended, offset + 1, positions.length - offset);
+        this.index.put(rule.range, extended);
+      }
+
+      this.changes.add(previous.range);
+      this.changes.add(rule.range);
+      return this;
+    }
+
+    /**
+     * Selects the action which applies to addresses that are not matched by any rule.
+     *
+     * @param action an action.
+     * @return a reference to this compiler.
+     */
+    @NonNull
+    public Compiler defaultAction(@NonNull Action action) {
+      this.defaultAction = Objects.requireNonNull(action, "action");
+      return this;
+    }
+
+    /**
+     * Registers a listener which is notified whenever a list is compiled by this compiler.
+     *
+     * @param listener a listener or null to remove a previously registered listener.
+     * @return a reference to this compiler.
+     */
+    @NonNull
+    public Compiler listener(@Nullable MatchListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Compiles the current list of rules.
+     *
+     * @return a compiled list.
+     */
+    @NonNull
+    public AddressAcl compile() {
+      long startTime = System.nanoTime();
+
+      if (this.intervals4 == null
+          || this.changes.size() > Math.max(16, this.rules.size() / 16)) {
+        this.intervals4 = this.evaluate(null, SPACE4, 0, 0xFFFFFFFFL);
+        this.intervals6 = this.evaluate(null, SPACE6, -1, -1);
+      } else {
+        for (AddressRange region : this.changes) {
+          if (region instanceof AddressRange4) {
+            this.intervals4 = this.evaluate(this.intervals4, region, 0, 0xFFFFFFFFL);
+          } else {
+            this.intervals6 = this.evaluate(this.intervals6, region, -1, -1);
+          }
+        }
+      }
+      this.changes.clear();
+
+      Intervals intervals4 = this.intervals4;
+      int[] starts4 = new int[intervals4.count];
+      for (int i = 0; i < intervals4.count; i++) {
+        starts4[i] = (int) intervals4.starts[i * 2 + 1];
+      }
+
+      Intervals intervals6 = this.intervals6;
+      AddressAcl acl = new AddressAcl(this.rules.toArray(new Rule[0]), this.defaultAction,
+          starts4, Arrays.copyOf(intervals4.rules, intervals4.count),
+          Arrays.copyOf(intervals6.starts, intervals6.count * 2),
+          Arrays.copyOf(intervals6.rules, intervals6.count));
+
+      if (this.listener != null) {
+        this.listener.rebuilt(acl, acl.size(), System.nanoTime() - startTime);
+      }
+
+      return acl;
+    }
+
+    /**
+     * Re-evaluates the intervals within the specified region and splices them into a list of
+     * previously compiled intervals.
+     *
+     * @param previous a list of intervals which covers the entire address space or null to
+     *     compile the region (which must cover the entire address space) from scratch.
+     * @param region an address region.
+     * @param maxHigh the upper half of the last address within the address space.
+     * @param maxLow the lower half of the last address within the address space.
+     * @return a list of intervals.
+     */
+    @NonNull
+    private Intervals evaluate(@Nullable Intervals previous, @NonNull AddressRange region,
+        long maxHigh, long maxLow) {
+      Intervals intervals = new Intervals((previous == null ? 0 : previous.count) + 16);
+      Region compiled = new Region(region, intervals);
+      int last = 0;
+
+      if (previous != null) {
+        int first = previous.search(compiled.firstHigh, compiled.firstLow);
+        last = previous.search(compiled.lastHigh, compiled.lastLow);
+
+        for (int i = 0; i <= first; i++) {
+          intervals.add(previous.starts[i * 2], previous.starts[i * 2 + 1], previous.rules[i]);
+        }
+      }
+
+      this.index.forEachOverlapping(region, compiled);
+      compiled.finish();
+
+      if (previous != null) {
+        if (compiled.lastHigh != maxHigh || compiled.lastLow != maxLow) {
+          long low = compiled.lastLow + 1;
+          long high = compiled.lastHigh + (low == 0 ? 1 : 0);
+          intervals.add(high, low, previous.rules[last]);
+        }
+
+        for (int i = last + 1; i < previous.count; i++) {
+          intervals.add(previous.starts[i * 2], previous.starts[i * 2 + 1], previous.rules[i]);
+        }
+      }
+
+      return intervals;
+    }
+  }
+
+  /**
+   * Computes the first matching rule for every address within a region based on the rules which
+   * overlap it.
+   *
+   * Rules are expected in the order in which they are reported by {@link
+   * AddressRangeTrie#forEachOverlapping(AddressRange, BiConsumer)}: Rules which contain the
+   * region are followed by all rules within the region sorted by their first address and prefix
+   * length. As ranges never partially overlap, the rules within the region form a tree which is
+   * traversed using a stack.
+   */
+  private static final class Region implements BiConsumer<AddressRange, int[]> {
+
+    private final int prefixLength;
+    private final long firstHigh;
+    private final long firstLow;
+    private final long lastHigh;
+    private final long lastLow;
+
+    private final Intervals intervals;
+    private final long[] endHigh = new long[AddressRange6.MAX_PREFIX_LENGTH + 1];
+    private final long[] endLow = new long[AddressRange6.MAX_PREFIX_LENGTH + 1];
+    private final int[] winner = new int[AddressRange6.MAX_PREFIX_LENGTH + 1];
+    private int depth;
+    private int base = -1;
+    private boolean started;
+
+    private Region(@NonNull AddressRange region, @NonNull Intervals intervals) {
+      this.prefixLength = region.prefixLength();
+      this.intervals = intervals;
+
+      if (region instanceof AddressRange4) {
+        AddressRange4 region4 = (AddressRange4) region;
+        this.firstHigh = 0;
+        this.firstLow = Integer.toUnsignedLong(region4.network());
+        this.lastHigh = 0;
+        this.lastLow = Integer.toUnsignedLong(region4.last());
+      } else {
+        AddressRange6 region6 = (AddressRange6) region;
+        this.firstHigh = region6.networkHigh();
+        this.firstLow = region6.networkLow();
+        this.lastHigh = region6.lastHigh();
+        this.lastLow = region6.lastLow();
+      }
+    }
+
+    /**
+     * Selects the earlier of two rules.
+     *
+     * @param a a rule index or -1.
+     * @param b a rule index or -1.
+     * @return a rule index or -1.
+     */
+    private static int first(int a, int b) {
+      if (a == -1) {
+        return b;
+      }
+      if (b == -1) {
+        return a;
+      }
+
+      return Math.min(a, b);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void accept(@NonNull AddressRange range, @NonNull int[] positions) {
+      // rules which contain the entire region decide all of its addresses unless preceded by a
+      // more specific rule (these are always reported first)
+      if (range.prefixLength() <= this.prefixLength) {
+        this.base = first(this.base, positions[0]);
+        return;
+      }
+
+      this.start();
+
+      long firstHigh;
+      long firstLow;
+      long lastHigh;
+      long lastLow;
+      if (range instanceof AddressRange4) {
+        AddressRange4 range4 = (AddressRange4) range;
+        firstHigh = 0;
+        firstLow = Integer.toUnsignedLong(range4.network());
+        lastHigh = 0;
+        lastLow = Integer.toUnsignedLong(range4.last());
+      } else {
+        AddressRange6 range6 = (AddressRange6) range;
+        firstHigh = range6.networkHigh();
+        firstLow = range6.networkLow();
+        lastHigh = range6.lastHigh();
+        lastLow = range6.lastLow();
+      }
+
+      while (this.depth != 0 && AddressIntervals.compare(this.endHigh[this.depth - 1],
+          this.endLow[this.depth - 1], firstHigh, firstLow) < 0) {
+        this.pop();
+      }
+
+      int rule = first(positions[0], this.current());
+      this.intervals.add(firstHigh, firstLow, rule);
+
+      this.endHigh[this.depth] = lastHigh;
+      this.endLow[this.depth] = lastLow;
+      this.winner[this.depth] = rule;
+      this.depth++;
+    }
+
+    /**
+     * Retrieves the rule which decides the addresses at the current position.
+     *
+     * @return a rule index or -1.
+     */
+    private int current() {
+      return (this.depth == 0 ? this.base : this.winner[this.depth - 1]);
+    }
+
+    /**
+     * Appends the remaining intervals of this region.
+     */
+    private void finish() {
+      this.start();
+
+      while (this.depth != 0) {
+        this.pop();
+      }
+    }
+
+    /**
+     * Closes the innermost open range and resumes its parent (unless the range ends with the
+     * region).
+     */
+    private void pop() {
+      this.depth--;
+
+      long high = this.endHigh[this.depth];
+      long low = this.endLow[this.depth];
+      if (high == this.lastHigh && low == this.lastLow) {
+        return;
+      }
+
+      low++;
+      if (low == 0) {
+        high++;
+      }
+
+      this.intervals.add(high, low, this.current());
+    }
+
+    /**
+     * Opens the region once all rules which contain it have been reported.
+     */
+    private void start() {
+      if (!this.started) {
+        this.started = true;
+        this.intervals.add(this.firstHigh, this.firstLow, this.base);
+      }
+    }
+  }
+
+  /**
+   * Provides a growable list of intervals which are identified by their first address (each
+   * interval ends where its successor begins) and merges consecutive intervals which are decided
+   * by the same rule.
+   */
+  private static final class Intervals {
+
+    private long[] starts;
+    private int[] rules;
+    private int count;
+
+    private Intervals(int capacity) {
+      this.starts = new long[capacity * 2];
+      this.rules = new int[capacity];
+    }
+
+    /**
+     * Appends an interval. When the interval begins at the same address as the last interval, it
+     * replaces the last interval instead.
+     *
+     * @param high the upper half of the first address.
+     * @param low the lower half of the first address.
+     * @param rule a rule index or -1.
+     */
+    private void add(long high, long low, int rule) {
+      if (this.count != 0 && this.starts[this.count * 2 - 2] == high
+          && this.starts[this.count * 2 - 1] == low) {
+        this.count--;
+      }
+      if (this.count != 0 && this.rules[this.count - 1] == rule) {
+        return;
+      }
+
+      if (this.count == this.rules.length) {
+        this.starts = Arrays.copyOf(this.starts, this.count * 4);
+        this.rules = Arrays.copyOf(this.rules, this.count * 2);
+      }
+
+      this.starts[this.count * 2] = high;
+      this.starts[this.count * 2 + 1] = low;
+      this.rules[this.count] = rule;
+      this.count++;
+    }
+
+    /**
+     * Locates the interval which contains the specified address.
+     *
+     * @param high the upper half of the address.
+     * @param low the lower half of the address.
+     * @return an interval index.
+     */
+    private int search(long high, long low) {
+      int lower = 0;
+      int upper = this.count - 1;
+
+      while (lower < upper) {
+        int middle = (lower + upper + 1) >>> 1;
+
+        if (AddressIntervals.compare(this.starts[middle * 2], this.starts[middle * 2 + 1], high,
+            low) > 0) {
+          upper = middle - 1;
+        } else {
+          lower = middle;
+        }
+      }
+
+      return lower;
+    }
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.math.BigInteger;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Represents an arbitrary consecutive span of IPv4 or IPv6 addresses which is given by its first
+ * and last address (such as {@code 10.0.0.5 - 10.0.0.17}) and is thus not necessarily aligned to
+ * a prefix.
+ *
+ * Both bounds are kept in their numeric form (IPv4 addresses occupy the lower 32 bits of the lower
+ * half while the upper half is zero) which permits constant time matching. Intervals convert
+ * to and from the minimal list of CIDR blocks which cover exactly the same addresses.
+ *
+ * @author Johannes Donath
+ * @see AddressIntervalMap
+ */
+public final class AddressInterval implements AddressMatcher {
+
+  private static final BigInteger LOW_MASK = BigInteger.ONE.shiftLeft(64)
+      .subtract(BigInteger.ONE);
+
+  private final boolean inet6;
+  private final long firstHigh;
+  private final long firstLow;
+  private final long lastHigh;
+  private final long lastLow;
+
+  AddressInterval(boolean inet6, long firstHigh, long firstLow, long lastHigh, long lastLow) {
+    if (AddressIntervals.compare(firstHigh, firstLow, lastHigh, lastLow) > 0) {
+      throw new IllegalArgumentException(
+          "Invalid address interval: First address exceeds last address");
+    }
+
+    this.inet6 = inet6;
+    this.firstHigh = firstHigh;
+    this.firstLow = firstLow;
+    this.lastHigh = lastHigh;
+    this.lastLow = lastLow;
+  }
+
+  /**
+   * Creates a new IPv4 interval.
+   *
+   * @param first the first numeric address (in network byte order).
+   * @param last the last numeric address (in network byte order).
+   * @return an interval.
+   * @throws IllegalArgumentException when the first address exceeds the last address.
+   */
+  @NonNull
+  public static AddressInterval of(int first, int last) {
+    return (new AddressInterval(false, 0, Integer.toUnsignedLong(first), 0,
+        Integer.toUnsignedLong(last)));
+  }
+
+  /**
+   * Creates a new IPv6 interval.
+   *
+   * @param firstHigh the upper 64 bits of the first address (in network byte order).
+   * @param firstLow the lower 64 bits of the first address (in network byte order).
+   * @param lastHigh the upper 64 bits of the last address (in network byte order).
+   * @param lastLow the lower 64 bits of the last address (in network byte order).
+   * @return an interval.
+   * @throws IllegalArgumentException when the first address exceeds the last address.
+   */
+  @NonNull
+  public static AddressInterval of(long firstHigh, long firstLow, long lastHigh, long lastLow) {
+    return (new AddressInterval(true, firstHigh, firstLow, lastHigh, lastLow));
+  }
+
+  /**
+   * Creates a new interval which spans the specified addresses.
+   *
+   * @param first the first address.
+   * @param last the last address.
+   * @return an interval.
+   * @throws IllegalArgumentException when the addresses are of differing families or the first
+   *     address exceeds the last address.
+   */
+  @NonNull
+  public static AddressInterval of(@NonNull InetAddress first, @NonNull InetAddress last) {
+    if (first instanceof Inet4Address && last instanceof Inet4Address) {
+      return of(AddressRange4.decode(first.getAddress(), 0),
+          AddressRange4.decode(last.getAddress(), 0));
+    }
+    if (first instanceof Inet6Address && last instanceof Inet6Address) {
+      byte[] encodedFirst = first.getAddress();
+      byte[] encodedLast = last.getAddress();
+
+      return of(AddressRange6.decode(encodedFirst, 0), AddressRange6.decode(encodedFirst, 8),
+          AddressRange6.decode(encodedLast, 0), AddressRange6.decode(encodedLast, 8));
+    }
+
+    throw new IllegalArgumentException("Invalid address interval: Mixed address families");
+  }
+
+  /**
+   * Creates a new interval which spans exactly the addresses of the specified range.
+   *
+   * @param range an address range.
+   * @return an interval.
+   * @throws IllegalArgumentException when an unsupported range type is passed.
+   */
+  @NonNull
+  public static AddressInterval of(@NonNull AddressRange range) {
+    if (range instanceof AddressRange4) {
+      AddressRange4 range4 = (AddressRange4) range;
+      return of(range4.network(), range4.last());
+    }
+    if (range instanceof AddressRange6) {
+      AddressRange6 range6 = (AddressRange6) range;
+      return of(range6.networkHigh(), range6.networkLow(), range6.lastHigh(), range6.lastLow());
+    }
+
+    throw new IllegalArgumentException(
+        "Unsupported address range type: " + range.getClass().getCanonicalName());
+  }
+
+  /**
+   * Parses an interval notation (such as {@code 10.0.0.5 - 10.0.0.17} or {@code 2001:db8::1-
+   * 2001:db8::ff}).
+   *
+   * @param notation a notation.
+   * @return an interval.
+   * @throws IllegalArgumentException when the notation is malformed.
+   * @see AddressParser#parseInterval(CharSequence)
+   */
+  @NonNull
+  public static AddressInterval parse(@NonNull CharSequence notation) {
+    return AddressParser.parseInterval(notation);
+  }
+
+  /**
+   * Evaluates whether this interval contains every address of the specified range.
+   *
+   * @param range an address range.
+   * @return true if contained, false otherwise.
+   */
+  public boolean contains(@NonNull AddressRange range) {
+    if (range instanceof AddressRange4) {
+      AddressRange4 range4 = (AddressRange4) range;
+      return !this.inet6
+          && this.contains(0, Integer.toUnsignedLong(range4.network()), 0,
+          Integer.toUnsignedLong(range4.last()));
+    }
+    if (range instanceof AddressRange6) {
+      AddressRange6 range6 = (AddressRange6) range;
+      return this.inet6 && this.contains(range6.networkHigh(), range6.networkLow(),
+          range6.lastHigh(), range6.lastLow());
+    }
+
+    return false;
+  }
+
+  /**
+   * Evaluates whether this interval contains every address of the specified interval.
+   *
+   * @param interval an interval.
+   * @return true if contained, false otherwise.
+   */
+  public boolean contains(@NonNull AddressInterval interval) {
+    return this.inet6 == interval.inet6 && this.contains(interval.firstHigh, interval.firstLow,
+        interval.lastHigh, interval.lastLow);
+  }
+
+  /**
+   * Evaluates whether this interval contains the specified span of the same address family.
+   *
+   * @param firstHigh the upper half of the first address.
+   * @param firstLow the lower half of the first address.
+   * @param lastHigh the upper half of the last address.
+   * @param lastLow the lower half of the last address.
+   * @return true if contained, false otherwise.
+   */
+  private boolean contains(long firstHigh, long firstLow, long lastHigh, long lastLow) {
+    return AddressIntervals.compare(this.firstHigh, this.firstLow, firstHigh, firstLow) <= 0
+        && AddressIntervals.compare(lastHigh, lastLow, this.lastHigh, this.lastLow) <= 0;
+  }
+
+  /**
+   * Retrieves the exact amount of addresses within this interval.
+   *
+   * @return an amount of addresses.
+   */
+  @NonNull
+  public BigInteger exactSize() {
+    long low = this.lastLow - this.firstLow;
+    long high = this.lastHigh - this.firstHigh
+        - (Long.compareUnsigned(this.lastLow, this.firstLow) < 0 ? 1 : 0);
+
+    return BigInteger.valueOf(high).and(LOW_MASK).shiftLeft(64)
+        .or(BigInteger.valueOf(low).and(LOW_MASK))
+        .add(BigInteger.ONE);
+  }
+
+  /**
+   * Retrieves the first address within this interval.
+   *
+   * @return an address.
+   */
+  @NonNull
+  public InetAddress first() {
+    if (this.inet6) {
+      return AddressRange6.encode(this.firstHigh, this.firstLow);
+    }
+
+    return AddressRange4.encode((int) this.firstLow);
+  }
+
+  /**
+   * Retrieves the upper 64 bits of the first address (always zero for IPv4 intervals).
+   *
+   * @return the upper half of an address.
+   */
+  public long firstHigh() {
+    return this.firstHigh;
+  }
+
+  /**
+   * Retrieves the lower 64 bits of the first address (IPv4 addresses are given as an unsigned
+   * value).
+   *
+   * @return the lower half of an address.
+   */
+  public long firstLow() {
+    return this.firstLow;
+  }
+
+  /**
+   * Passes the minimal list of CIDR blocks which cover exactly the addresses of this interval to
+   * the specified consumer (in ascending order).
+   *
+   * @param consumer a consumer.
+   */
+  public void forEachRange(@NonNull Consumer<? super AddressRange> consumer) {
+    if (this.inet6) {
+      AddressIntervals.decompose(this.firstHigh, this.firstLow, this.lastHigh, this.lastLow,
+          AddressRange6.MAX_PREFIX_LENGTH,
+          (high, low, prefixLength) -> consumer.accept(new AddressRange6(high, low, prefixLength)));
+    } else {
+      AddressIntervals.decompose(0, this.firstLow, 0, this.lastLow,
+          AddressRange4.MAX_PREFIX_LENGTH,
+          (high, low, prefixLength) -> consumer.accept(new AddressRange4((int) low, prefixLength)));
+    }
+  }
+
+  /**
+   * Evaluates whether this interval consists of IPv6 addresses.
+   *
+   * @return true if IPv6, false if IPv4.
+   */
+  public boolean isInet6() {
+    return this.inet6;
+  }
+
+  /**
+   * Retrieves the last address within this interval.
+   *
+   * @return an address.
+   */
+  @NonNull
+  public InetAddress last() {
+    if (this.inet6) {
+      return AddressRange6.encode(this.lastHigh, this.lastLow);
+    }
+
+    return AddressRange4.encode((int) this.lastLow);
+  }
+
+  /**
+   * Retrieves the upper 64 bits of the last address (always zero for IPv4 intervals).
+   *
+   * @return the upper half of an address.
+   */
+  public long lastHigh() {
+    return this.lastHigh;
+  }
+
+  /**
+   * Retrieves the lower 64 bits of the last address (IPv4 addresses are given as an unsigned
+   * value).
+   *
+   * @return the lower half of an address.
+   */
+  public long lastLow() {
+    return this.lastLow;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.matches(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.matches(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    long value = Integer.toUnsignedLong(address);
+    return !this.inet6 && this.firstLow <= value && value <= this.lastLow;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return this.inet6
+        && AddressIntervals.compare(this.firstHigh, this.firstLow, high, low) <= 0
+        && AddressIntervals.compare(high, low, this.lastHigh, this.lastLow) <= 0;
+  }
+
+  /**
+   * Evaluates whether this interval shares at least one address with the specified interval.
+   *
+   * @param interval an interval.
+   * @return true if overlapping, false otherwise.
+   */
+  public boolean overlaps(@NonNull AddressInterval interval) {
+    return this.inet6 == interval.inet6
+        && AddressIntervals.compare(this.firstHigh, this.firstLow, interval.lastHigh,
+        interval.lastLow) <= 0
+        && AddressIntervals.compare(interval.firstHigh, interval.firstLow, this.lastHigh,
+        this.lastLow) <= 0;
+  }
+
+  /**
+   * Retrieves the minimal list of CIDR blocks which cover exactly the addresses of this interval
+   * (in ascending order).
+   *
+   * @return a list of ranges.
+   */
+  @NonNull
+  public List<AddressRange> ranges() {
+    List<AddressRange> ranges = new ArrayList<>();
+    this.forEachRange(ranges::add);
+    return ranges;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    AddressInterval that = (AddressInterval) o;
+    return this.inet6 == that.inet6
+        && this.firstHigh == that.firstHigh
+        && this.firstLow == that.firstLow
+        && this.lastHigh == that.lastHigh
+        && this.lastLow == that.lastLow;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    int result = Boolean.hashCode(this.inet6);
+    result = 31 * result + Long.hashCode(this.firstHigh);
+    result = 31 * result + Long.hashCode(this.firstLow);
+    result = 31 * result + Long.hashCode(this.lastHigh);
+    result = 31 * result + Long.hashCode(this.lastLow);
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return this.first().getHostAddress() + " - " + this.last().getHostAddress();
+  }
+}
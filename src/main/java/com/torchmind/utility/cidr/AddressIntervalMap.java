@@ -0,0 +1,386 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Provides an immutable mapping of disjoint address intervals to arbitrary values (such as the
+ * start-end ranges found within vendor feeds).
+ *
+ * Intervals are kept within a sorted array of their numeric bounds (one per address family) and
+ * are located using a binary search. Lookups thus complete in logarithmic time without
+ * decomposing any interval into CIDR blocks and without allocating.
+ *
+ * Instances are immutable and may be shared between threads freely.
+ *
+ * @param <V> the value type.
+ * @author Johannes Donath
+ * @see AddressInterval
+ */
+public final class AddressIntervalMap<V> implements AddressMatcher {
+
+  private final long[] intervals4;
+  private final long[] intervals6;
+  private final Object[] values;
+
+  private AddressIntervalMap(@NonNull long[] intervals4, @NonNull long[] intervals6,
+      @NonNull Object[] values) {
+    this.intervals4 = intervals4;
+    this.intervals6 = intervals6;
+    this.values = values;
+  }
+
+  /**
+   * Creates a new empty map builder.
+   *
+   * @param <V> the value type.
+   * @return a builder.
+   */
+  @NonNull
+  public static <V> Builder<V> builder() {
+    return (new Builder<>());
+  }
+
+  /**
+   * Creates a new map from the specified intervals and their associated values.
+   *
+   * @param intervals a map of intervals and values.
+   * @param <V> the value type.
+   * @return a map.
+   * @throws IllegalArgumentException when two intervals overlap.
+   */
+  @NonNull
+  public static <V> AddressIntervalMap<V> of(
+      @NonNull Map<? extends AddressInterval, ? extends V> intervals) {
+    Builder<V> builder = builder();
+    intervals.forEach(builder::put);
+    return builder.build();
+  }
+
+  /**
+   * Passes every interval and its associated value to the specified consumer (IPv4 intervals in
+   * ascending order followed by IPv6 intervals in ascending order).
+   *
+   * @param consumer a consumer.
+   */
+  public void forEach(@NonNull BiConsumer<? super AddressInterval, ? super V> consumer) {
+    for (int i = 0; i < this.values.length; i++) {
+      consumer.accept(this.interval(i), this.value(i));
+    }
+  }
+
+  /**
+   * Retrieves the value of the interval which contains the specified address.
+   *
+   * @param address an address.
+   * @return a value or null if no interval contains the address.
+   */
+  @Nullable
+  public V get(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.get(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.get(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return null;
+  }
+
+  /**
+   * Retrieves the value of the interval which contains the specified address.
+   *
+   * @param address a numeric IPv4 address (in network byte order).
+   * @return a value or null if no interval contains the address.
+   */
+  @Nullable
+  public V get(int address) {
+    int index = this.lookup(address);
+    return (index == -1 ? null : this.value(index));
+  }
+
+  /**
+   * Retrieves the value of the interval which contains the specified address.
+   *
+   * @param high the upper 64 bits of a numeric IPv6 address (in network byte order).
+   * @param low the lower 64 bits of a numeric IPv6 address (in network byte order).
+   * @return a value or null if no interval contains the address.
+   */
+  @Nullable
+  public V get(long high, long low) {
+    int index = this.lookup(high, low);
+    return (index == -1 ? null : this.value(index));
+  }
+
+  /**
+   * Retrieves the interval with the specified index.
+   *
+   * @param index an index (IPv4 intervals are indexed before IPv6 intervals).
+   * @return an interval.
+   * @throws IndexOutOfBoundsException when the index is out of bounds.
+   */
+  @NonNull
+  public AddressInterval interval(int index) {
+    if (index < 0 || index >= this.values.length) {
+      throw new IndexOutOfBoundsException("Index out of bounds: " + index);
+    }
+
+    int count4 = this.intervals4.length / AddressIntervals.STRIDE;
+    if (index < count4) {
+      int offset = index * AddressIntervals.STRIDE;
+      return (new AddressInterval(false, 0, this.intervals4[offset + 1], 0,
+          this.intervals4[offset + 3]));
+    }
+
+    int offset = (index - count4) * AddressIntervals.STRIDE;
+    return (new AddressInterval(true, this.intervals6[offset], this.intervals6[offset + 1],
+        this.intervals6[offset + 2], this.intervals6[offset + 3]));
+  }
+
+  /**
+   * Retrieves a list of all intervals within this map (IPv4 intervals in ascending order followed
+   * by IPv6 intervals in ascending order).
+   *
+   * @return a list of intervals.
+   */
+  @NonNull
+  public List<AddressInterval> intervals() {
+    List<AddressInterval> intervals = new ArrayList<>(this.values.length);
+    for (int i = 0; i < this.values.length; i++) {
+      intervals.add(this.interval(i));
+    }
+
+    return intervals;
+  }
+
+  /**
+   * Evaluates whether this map is empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return this.values.length == 0;
+  }
+
+  /**
+   * Retrieves the index of the interval which contains the specified address.
+   *
+   * @param address a numeric IPv4 address (in network byte order).
+   * @return an index or -1 if no interval contains the address.
+   */
+  public int lookup(int address) {
+    return AddressIntervals.indexOf(this.intervals4, 0, Integer.toUnsignedLong(address));
+  }
+
+  /**
+   * Retrieves the index of the interval which contains the specified address.
+   *
+   * @param high the upper 64 bits of a numeric IPv6 address (in network byte order).
+   * @param low the lower 64 bits of a numeric IPv6 address (in network byte order).
+   * @return an index or -1 if no interval contains the address.
+   */
+  public int lookup(long high, long low) {
+    int index = AddressIntervals.indexOf(this.intervals6, high, low);
+    return (index == -1 ? -1 : this.intervals4.length / AddressIntervals.STRIDE + index);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.get(address) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return this.lookup(address) != -1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return this.lookup(high, low) != -1;
+  }
+
+  /**
+   * Retrieves the amount of intervals within this map.
+   *
+   * @return an amount of intervals.
+   */
+  public int size() {
+    return this.values.length;
+  }
+
+  /**
+   * Retrieves the value of the interval with the specified index.
+   *
+   * @param index an index.
+   * @return a value.
+   * @throws IndexOutOfBoundsException when the index is out of bounds.
+   */
+  @NonNull
+  @SuppressWarnings("unchecked")
+  public V value(int index) {
+    return (V) this.values[index];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "AddressIntervalMap{size=" + this.values.length + "}";
+  }
+
+  /**
+   * Provides a factory for immutable interval maps.
+   */
+  public static final class Builder<V> {
+
+    private final List<AddressInterval> intervals = new ArrayList<>();
+    private final List<V> values = new ArrayList<>();
+    private MatchListener listener;
+
+    private Builder() {
+    }
+
+    /**
+     * Sorts the intervals of a single address family and verifies that none of them overlap.
+     *
+     * @param order the indices of all staged intervals of the family.
+     * @param count the amount of indices.
+     * @return an array of sorted intervals.
+     * @throws IllegalArgumentException when two intervals overlap.
+     */
+    @NonNull
+    private long[] flatten(@NonNull Integer[] order, int count) {
+      Arrays.sort(order, 0, count, (a, b) -> {
+        AddressInterval first = this.intervals.get(a);
+        AddressInterval second = this.intervals.get(b);
+
+        return AddressIntervals.compare(first.firstHigh(), first.firstLow(), second.firstHigh(),
+            second.firstLow());
+      });
+
+      long[] result = new long[count * AddressIntervals.STRIDE];
+      for (int i = 0; i < count; i++) {
+        AddressInterval interval = this.intervals.get(order[i]);
+        int offset = i * AddressIntervals.STRIDE;
+
+        if (i != 0 && AddressIntervals.compare(interval.firstHigh(), interval.firstLow(),
+            result[offset - 2], result[offset - 1]) <= 0) {
+          throw new IllegalArgumentException(
+              "Overlapping intervals: " + this.intervals.get(order[i - 1]) + " and " + interval);
+        }
+
+        result[offset] = interval.firstHigh();
+        result[offset + 1] = interval.firstLow();
+        result[offset + 2] = interval.lastHigh();
+        result[offset + 3] = interval.lastLow();
+      }
+
+      return result;
+    }
+
+    /**
+     * Builds a new immutable map based on the current state of this builder.
+     *
+     * @return a map.
+     * @throws IllegalArgumentException when two intervals overlap.
+     */
+    @NonNull
+    public AddressIntervalMap<V> build() {
+      long startTime = System.nanoTime();
+
+      int size = this.intervals.size();
+      Integer[] order4 = new Integer[size];
+      Integer[] order6 = new Integer[size];
+      int count4 = 0;
+      int count6 = 0;
+      for (int i = 0; i < size; i++) {
+        if (this.intervals.get(i).isInet6()) {
+          order6[count6++] = i;
+        } else {
+          order4[count4++] = i;
+        }
+      }
+
+      long[] intervals4 = this.flatten(order4, count4);
+      long[] intervals6 = this.flatten(order6, count6);
+
+      Object[] values = new Object[size];
+      for (int i = 0; i < count4; i++) {
+        values[i] = this.values.get(order4[i]);
+      }
+      for (int i = 0; i < count6; i++) {
+        values[count4 + i] = this.values.get(order6[i]);
+      }
+
+      AddressIntervalMap<V> map = new AddressIntervalMap<>(intervals4, intervals6, values);
+      if (this.listener != null) {
+        this.listener.rebuilt(map, size, System.nanoTime() - startTime);
+      }
+
+      return map;
+    }
+
+    /**
+     * Registers a listener which is notified whenever a map is built by this builder.
+     *
+     * @param listener a listener or null to remove a previously registered listener.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder<V> listener(@Nullable MatchListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Associates the specified interval with a value.
+     *
+     * @param interval an interval.
+     * @param value a value.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder<V> put(@NonNull AddressInterval interval, @NonNull V value) {
+      this.intervals.add(Objects.requireNonNull(interval, "interval"));
+      this.values.add(Objects.requireNonNull(value, "value"));
+      return this;
+    }
+  }
+}
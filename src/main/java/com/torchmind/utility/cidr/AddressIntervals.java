@@ -0,0 +1,450 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Arrays;
+
+/**
+ * Provides primitive operations on sorted lists of inclusive 128-bit address intervals.
+ *
+ * Intervals are stored within flat arrays where each interval occupies four consecutive elements
+ * (the upper and lower half of its first address followed by the upper and lower half of its
+ * last address). IPv4 intervals are stored within the lower half with the upper half set to zero.
+ * Unless stated otherwise, lists are expected to be sorted by their first address, free of
+ * overlaps and free of adjacent intervals.
+ *
+ * @author Johannes Donath
+ */
+final class AddressIntervals {
+
+  /**
+   * Defines the amount of array elements occupied by a single interval.
+   */
+  static final int STRIDE = 4;
+
+  /**
+   * Represents an empty list of intervals.
+   */
+  static final long[] EMPTY = new long[0];
+
+  private AddressIntervals() {
+  }
+
+  /**
+   * Compares two unsigned 128-bit values.
+   *
+   * @param high1 the upper half of the first value.
+   * @param low1 the lower half of the first value.
+   * @param high2 the upper half of the second value.
+   * @param low2 the lower half of the second value.
+   * @return a negative value, zero or a positive value if the first value is less than, equal to
+   *     or greater than the second value respectively.
+   */
+  static int compare(long high1, long low1, long high2, long low2) {
+    int result = Long.compareUnsigned(high1, high2);
+    return (result != 0 ? result : Long.compareUnsigned(low1, low2));
+  }
+
+  /**
+   * Appends the interval which is covered by an address range to an array (growing it when
+   * required).
+   *
+   * @param intervals an array of intervals.
+   * @param count the amount of intervals within the array.
+   * @param range an address range.
+   * @return the passed array or a grown copy.
+   */
+  @NonNull
+  static long[] append(@NonNull long[] intervals, int count, @NonNull AddressRange range) {
+    if (range instanceof AddressRange4) {
+      AddressRange4 range4 = (AddressRange4) range;
+      long start = range4.network() & 0xFFFFFFFFL;
+      long end = (range4.network() | ~range4.mask()) & 0xFFFFFFFFL;
+
+      return append(intervals, count, 0, start, 0, end);
+    }
+    if (range instanceof AddressRange6) {
+      AddressRange6 range6 = (AddressRange6) range;
+
+      return append(intervals, count, range6.networkHigh(), range6.networkLow(),
+          range6.networkHigh() | ~range6.maskHigh(), range6.networkLow() | ~range6.maskLow());
+    }
+
+    throw new IllegalArgumentException(
+        "Unsupported address range type: " + range.getClass().getCanonicalName());
+  }
+
+  /**
+   * Appends an interval to an array (growing it when required).
+   *
+   * @param intervals an array of intervals.
+   * @param count the amount of intervals within the array.
+   * @param startHigh the upper half of the first address.
+   * @param startLow the lower half of the first address.
+   * @param endHigh the upper half of the last address.
+   * @param endLow the lower half of the last address.
+   * @return the passed array or a grown copy.
+   */
+  @NonNull
+  static long[] append(@NonNull long[] intervals, int count, long startHigh, long startLow,
+      long endHigh, long endLow) {
+    int offset = count * STRIDE;
+
+    if (offset + STRIDE > intervals.length) {
+      intervals = Arrays.copyOf(intervals, Math.max(16 * STRIDE, intervals.length * 2));
+    }
+
+    intervals[offset] = startHigh;
+    intervals[offset + 1] = startLow;
+    intervals[offset + 2] = endHigh;
+    intervals[offset + 3] = endLow;
+    return intervals;
+  }
+
+  /**
+   * Sorts an unsorted list of (possibly overlapping) intervals by their first address and merges
+   * all overlapping and adjacent intervals.
+   *
+   * @param intervals an array of intervals.
+   * @param count the amount of intervals within the array.
+   * @return an exactly sized array of normalized intervals.
+   */
+  @NonNull
+  static long[] normalize(@NonNull long[] intervals, int count) {
+    if (count == 0) {
+      return EMPTY;
+    }
+
+    long[] sorted = sort(Arrays.copyOf(intervals, count * STRIDE), count);
+    return coalesce(sorted, count);
+  }
+
+  /**
+   * Sorts a list of intervals by their first address (using a stable bottom-up merge sort).
+   *
+   * @param intervals an array of intervals.
+   * @param count the amount of intervals within the array.
+   * @return an array which contains the sorted intervals (either the passed array or a buffer of
+   *     identical size).
+   */
+  @NonNull
+  static long[] sort(@NonNull long[] intervals, int count) {
+    long[] source = intervals;
+    long[] target = new long[intervals.length];
+
+    for (int width = 1; width < count; width *= 2) {
+      for (int left = 0; left < count; left += width * 2) {
+        int middle = Math.min(left + width, count);
+        int right = Math.min(left + width * 2, count);
+        int i = left;
+        int j = middle;
+        int k = left;
+
+        while (i < middle && j < right) {
+          if (compare(source[j * STRIDE], source[j * STRIDE + 1], source[i * STRIDE],
+              source[i * STRIDE + 1]) < 0) {
+            System.arraycopy(source, (j++) * STRIDE, target, (k++) * STRIDE, STRIDE);
+          } else {
+            System.arraycopy(source, (i++) * STRIDE, target, (k++) * STRIDE, STRIDE);
+          }
+        }
+
+        System.arraycopy(source, i * STRIDE, target, k * STRIDE, (middle - i) * STRIDE);
+        k += middle - i;
+        System.arraycopy(source, j * STRIDE, target, k * STRIDE, (right - j) * STRIDE);
+      }
+
+      long[] swap = source;
+      source = target;
+      target = swap;
+    }
+
+    return source;
+  }
+
+  /**
+   * Merges all overlapping and adjacent intervals within a sorted list.
+   *
+   * @param intervals an array of sorted intervals.
+   * @param count the amount of intervals within the array.
+   * @return an exactly sized array of normalized intervals.
+   */
+  @NonNull
+  static long[] coalesce(@NonNull long[] intervals, int count) {
+    int length = 0;
+
+    for (int i = 0; i < count; i++) {
+      int offset = i * STRIDE;
+
+      if (length != 0) {
+        int last = (length - 1) * STRIDE;
+        long endHigh = intervals[last + 2];
+        long endLow = intervals[last + 3];
+
+        // intervals are merged when they overlap or the current interval begins directly after the
+        // previous interval
+        if (endHigh == -1 && endLow == -1
+            || compare(intervals[offset], intervals[offset + 1], endHigh + (endLow == -1 ? 1 : 0),
+            endLow + 1) <= 0) {
+          if (compare(intervals[offset + 2], intervals[offset + 3], endHigh, endLow) > 0) {
+            intervals[last + 2] = intervals[offset + 2];
+            intervals[last + 3] = intervals[offset + 3];
+          }
+
+          continue;
+        }
+      }
+
+      System.arraycopy(intervals, offset, intervals, length * STRIDE, STRIDE);
+      length++;
+    }
+
+    return Arrays.copyOf(intervals, length * STRIDE);
+  }
+
+  /**
+   * Computes the union of two normalized lists of intervals.
+   *
+   * @param a a list of intervals.
+   * @param b a list of intervals.
+   * @return a normalized list of intervals.
+   */
+  @NonNull
+  static long[] union(@NonNull long[] a, @NonNull long[] b) {
+    if (a.length == 0) {
+      return b;
+    }
+    if (b.length == 0) {
+      return a;
+    }
+
+    long[] merged = new long[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+
+    while (i < a.length && j < b.length) {
+      if (compare(b[j], b[j + 1], a[i], a[i + 1]) < 0) {
+        System.arraycopy(b, j, merged, k, STRIDE);
+        j += STRIDE;
+      } else {
+        System.arraycopy(a, i, merged, k, STRIDE);
+        i += STRIDE;
+      }
+
+      k += STRIDE;
+    }
+
+    System.arraycopy(a, i, merged, k, a.length - i);
+    k += a.length - i;
+    System.arraycopy(b, j, merged, k, b.length - j);
+
+    return coalesce(merged, merged.length / STRIDE);
+  }
+
+  /**
+   * Computes the intersection of two normalized lists of intervals.
+   *
+   * @param a a list of intervals.
+   * @param b a list of intervals.
+   * @return a normalized list of intervals.
+   */
+  @NonNull
+  static long[] intersect(@NonNull long[] a, @NonNull long[] b) {
+    long[] result = EMPTY;
+    int count = 0;
+    int i = 0;
+    int j = 0;
+
+    while (i < a.length && j < b.length) {
+      boolean startA = compare(a[i], a[i + 1], b[j], b[j + 1]) >= 0;
+      long startHigh = (startA ? a[i] : b[j]);
+      long startLow = (startA ? a[i + 1] : b[j + 1]);
+
+      boolean endA = compare(a[i + 2], a[i + 3], b[j + 2], b[j + 3]) <= 0;
+      long endHigh = (endA ? a[i + 2] : b[j + 2]);
+      long endLow = (endA ? a[i + 3] : b[j + 3]);
+
+      if (compare(startHigh, startLow, endHigh, endLow) <= 0) {
+        result = append(result, count++, startHigh, startLow, endHigh, endLow);
+      }
+
+      if (endA) {
+        i += STRIDE;
+      } else {
+        j += STRIDE;
+      }
+    }
+
+    return Arrays.copyOf(result, count * STRIDE);
+  }
+
+  /**
+   * Computes the complement of a normalized list of intervals within a given address space.
+   *
+   * @param intervals a list of intervals.
+   * @param maxHigh the upper half of the last address within the address space.
+   * @param maxLow the lower half of the last address within the address space.
+   * @return a normalized list of intervals.
+   */
+  @NonNull
+  static long[] complement(@NonNull long[] intervals, long maxHigh, long maxLow) {
+    long[] result = EMPTY;
+    int count = 0;
+
+    // the next address which is not covered by any of the preceding intervals
+    long nextHigh = 0;
+    long nextLow = 0;
+    boolean exhausted = false;
+
+    for (int i = 0; i < intervals.length; i += STRIDE) {
+      if (compare(intervals[i], intervals[i + 1], nextHigh, nextLow) > 0) {
+        long gapLow = intervals[i + 1] - 1;
+        long gapHigh = intervals[i] - (intervals[i + 1] == 0 ? 1 : 0);
+        result = append(result, count++, nextHigh, nextLow, gapHigh, gapLow);
+      }
+
+      long endHigh = intervals[i + 2];
+      long endLow = intervals[i + 3];
+      if (endHigh == maxHigh && endLow == maxLow) {
+        exhausted = true;
+        break;
+      }
+
+      nextLow = endLow + 1;
+      nextHigh = endHigh + (nextLow == 0 ? 1 : 0);
+    }
+
+    if (!exhausted) {
+      result = append(result, count++, nextHigh, nextLow, maxHigh, maxLow);
+    }
+
+    return Arrays.copyOf(result, count * STRIDE);
+  }
+
+  /**
+   * Computes the difference of two normalized lists of intervals.
+   *
+   * @param a a list of intervals.
+   * @param b a list of intervals to remove from the first list.
+   * @param maxHigh the upper half of the last address within the address space.
+   * @param maxLow the lower half of the last address within the address space.
+   * @return a normalized list of intervals.
+   */
+  @NonNull
+  static long[] subtract(@NonNull long[] a, @NonNull long[] b, long maxHigh, long maxLow) {
+    if (a.length == 0 || b.length == 0) {
+      return a;
+    }
+
+    return intersect(a, complement(b, maxHigh, maxLow));
+  }
+
+  /**
+   * Locates the interval which contains the specified address.
+   *
+   * @param intervals a normalized list of intervals.
+   * @param high the upper half of the address.
+   * @param low the lower half of the address.
+   * @return the index of the interval (in intervals) or -1 if no interval contains the address.
+   */
+  static int indexOf(@NonNull long[] intervals, long high, long low) {
+    int lower = 0;
+    int upper = intervals.length / STRIDE - 1;
+
+    while (lower <= upper) {
+      int middle = (lower + upper) >>> 1;
+      int offset = middle * STRIDE;
+
+      if (compare(intervals[offset], intervals[offset + 1], high, low) > 0) {
+        upper = middle - 1;
+      } else if (compare(intervals[offset + 2], intervals[offset + 3], high, low) < 0) {
+        lower = middle + 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Decomposes an interval into the minimal list of prefix aligned blocks which exactly cover it.
+   *
+   * @param startHigh the upper half of the first address.
+   * @param startLow the lower half of the first address.
+   * @param endHigh the upper half of the last address.
+   * @param endLow the lower half of the last address.
+   * @param maxPrefixLength the address size (in bits).
+   * @param consumer a consumer which receives each block.
+   */
+  static void decompose(long startHigh, long startLow, long endHigh, long endLow,
+      int maxPrefixLength, @NonNull BlockConsumer consumer) {
+    while (true) {
+      // the largest block is bound by the alignment of its first address
+      int hostLength;
+      if (startLow != 0) {
+        hostLength = Long.numberOfTrailingZeros(startLow);
+      } else if (startHigh != 0) {
+        hostLength = 64 + Long.numberOfTrailingZeros(startHigh);
+      } else {
+        hostLength = 128;
+      }
+
+      // as well as the amount of remaining addresses (end - start + 1 which only overflows when
+      // the interval spans the entire address space)
+      long remainingLow = endLow - startLow + 1;
+      long remainingHigh = endHigh - startHigh
+          - (Long.compareUnsigned(endLow, startLow) < 0 ? 1 : 0) + (remainingLow == 0 ? 1 : 0);
+      if (remainingHigh != 0) {
+        hostLength = Math.min(hostLength, 127 - Long.numberOfLeadingZeros(remainingHigh));
+      } else if (remainingLow != 0) {
+        hostLength = Math.min(hostLength, 63 - Long.numberOfLeadingZeros(remainingLow));
+      }
+      hostLength = Math.min(hostLength, maxPrefixLength);
+
+      long lastHigh = startHigh | ~AddressRange6.maskHigh(128 - hostLength);
+      long lastLow = startLow | ~AddressRange6.maskLow(128 - hostLength);
+
+      consumer.accept(startHigh, startLow, maxPrefixLength - hostLength);
+
+      if (lastHigh == endHigh && lastLow == endLow) {
+        return;
+      }
+
+      startLow = lastLow + 1;
+      startHigh = lastHigh + (startLow == 0 ? 1 : 0);
+    }
+  }
+
+  /**
+   * Receives prefix aligned blocks.
+   */
+  @FunctionalInterface
+  interface BlockConsumer {
+
+    /**
+     * Accepts a single block.
+     *
+     * @param high the upper half of the first address of the block.
+     * @param low the lower half of the first address of the block.
+     * @param prefixLength the prefix length of the block.
+     */
+    void accept(long high, long low, int prefixLength);
+  }
+}
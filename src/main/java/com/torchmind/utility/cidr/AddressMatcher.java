@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Represents an arbitrary structure (such as a single address range or a collection of ranges)
+ * which is capable of deciding whether an address is part of it.
+ *
+ * @author Johannes Donath
+ */
+public interface AddressMatcher {
+
+  /**
+   * Evaluates whether the specified address is matched.
+   *
+   * @param address the address.
+   * @return true if the address matches, false otherwise.
+   */
+  boolean matches(@NonNull InetAddress address);
+
+  /**
+   * Evaluates whether the specified numeric IPv4 address is matched.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return true if the address matches, false otherwise.
+   */
+  boolean matches(int address);
+
+  /**
+   * Evaluates whether the specified numeric IPv6 address is matched.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return true if the address matches, false otherwise.
+   */
+  boolean matches(long high, long low);
+
+  /**
+   * Evaluates a batch of numeric IPv4 addresses.
+   *
+   * The result of address {@code addresses[offset + i]} is stored within bit {@code i & 63} of
+   * {@code result[i >>> 6]}. All words of the result array which are touched by the batch are
+   * overwritten entirely (e.g. bits beyond {@code length} are cleared) while no other words are
+   * altered.
+   *
+   * @param addresses an array of numeric addresses (in network byte order).
+   * @param offset the index of the first address to evaluate.
+   * @param length the amount of addresses to evaluate.
+   * @param result a bitset which receives the results.
+   * @throws IndexOutOfBoundsException when the batch exceeds the bounds of either array.
+   */
+  default void matches(@NonNull int[] addresses, int offset, int length, @NonNull long[] result) {
+    AddressMatchers.checkBatch(addresses.length, offset, length, result.length);
+
+    for (int word = 0; word * 64 < length; word++) {
+      int start = offset + word * 64;
+      int count = Math.min(64, length - word * 64);
+      long bits = 0;
+
+      for (int i = 0; i < count; i++) {
+        if (this.matches(addresses[start + i])) {
+          bits |= 1L << i;
+        }
+      }
+
+      result[word] = bits;
+    }
+  }
+
+  /**
+   * Evaluates a batch of numeric IPv6 addresses.
+   *
+   * Addresses are packed into pairs of longs where {@code addresses[(offset + i) * 2]} holds the
+   * upper and {@code addresses[(offset + i) * 2 + 1]} holds the lower 64 bits of the address with
+   * index {@code i}. Offset and length are thus given in addresses rather than array elements.
+   * Results are stored as described in {@link #matches(int[], int, int, long[])}.
+   *
+   * @param addresses an array of packed numeric addresses (in network byte order).
+   * @param offset the index of the first address to evaluate.
+   * @param length the amount of addresses to evaluate.
+   * @param result a bitset which receives the results.
+   * @throws IndexOutOfBoundsException when the batch exceeds the bounds of either array.
+   */
+  default void matches(@NonNull long[] addresses, int offset, int length,
+      @NonNull long[] result) {
+    AddressMatchers.checkBatch(addresses.length / 2, offset, length, result.length);
+
+    for (int word = 0; word * 64 < length; word++) {
+      int start = (offset + word * 64) * 2;
+      int count = Math.min(64, length - word * 64);
+      long bits = 0;
+
+      for (int i = 0; i < count; i++) {
+        if (this.matches(addresses[start + i * 2], addresses[start + i * 2 + 1])) {
+          bits |= 1L << i;
+        }
+      }
+
+      result[word] = bits;
+    }
+  }
+
+  /**
+   * Evaluates whether the big-endian address at the specified offset within a raw buffer (such as
+   * a captured packet) is matched without copying it.
+   *
+   * @param buffer a buffer.
+   * @param offset the offset of the first address byte.
+   * @param length the length of the address (4 for IPv4 or 16 for IPv6).
+   * @return true if the address matches, false otherwise.
+   * @throws IllegalArgumentException when an unsupported address length is passed.
+   * @throws IndexOutOfBoundsException when the address exceeds the bounds of the buffer.
+   */
+  default boolean matches(@NonNull byte[] buffer, int offset, int length) {
+    switch (length) {
+      case 4:
+        return this.matches(AddressRange4.decode(buffer, offset));
+      case 16:
+        return this.matches(AddressRange6.decode(buffer, offset),
+            AddressRange6.decode(buffer, offset + 8));
+      default:
+        throw new IllegalArgumentException("Unsupported address length: " + length);
+    }
+  }
+
+  /**
+   * Evaluates whether the big-endian address at the specified absolute offset within a raw buffer
+   * (such as a captured packet) is matched without copying it.
+   *
+   * Addresses are always decoded in network byte order regardless of the order of the buffer
+   * while its position and limit remain untouched.
+   *
+   * @param buffer a buffer.
+   * @param offset the absolute offset of the first address byte.
+   * @param length the length of the address (4 for IPv4 or 16 for IPv6).
+   * @return true if the address matches, false otherwise.
+   * @throws IllegalArgumentException when an unsupported address length is passed.
+   * @throws IndexOutOfBoundsException when the address exceeds the bounds of the buffer.
+   */
+  default boolean matches(@NonNull ByteBuffer buffer, int offset, int length) {
+    switch (length) {
+      case 4:
+        return this.matches(AddressMatchers.getInt(buffer, offset));
+      case 16:
+        return this.matches(AddressMatchers.getLong(buffer, offset),
+            AddressMatchers.getLong(buffer, offset + 8));
+      default:
+        throw new IllegalArgumentException("Unsupported address length: " + length);
+    }
+  }
+
+  /**
+   * Evaluates a batch of big-endian addresses which are located at the specified offsets within a
+   * raw buffer (such as the source addresses of a set of captured packets).
+   *
+   * The result of the address at {@code buffer[offsets[offset + i]]} is stored as described in
+   * {@link #matches(int[], int, int, long[])}.
+   *
+   * @param buffer a buffer.
+   * @param addressLength the length of each address (4 for IPv4 or 16 for IPv6).
+   * @param offsets an array of address offsets within the buffer.
+   * @param offset the index of the first address offset to evaluate.
+   * @param length the amount of addresses to evaluate.
+   * @param result a bitset which receives the results.
+   * @throws IllegalArgumentException when an unsupported address length is passed.
+   * @throws IndexOutOfBoundsException when the batch exceeds the bounds of either array or an
+   *     address exceeds the bounds of the buffer.
+   */
+  default void matches(@NonNull byte[] buffer, int addressLength, @NonNull int[] offsets,
+      int offset, int length, @NonNull long[] result) {
+    AddressMatchers.checkBatch(offsets.length, offset, length, result.length);
+    if (addressLength != 4 && addressLength != 16) {
+      throw new IllegalArgumentException("Unsupported address length: " + addressLength);
+    }
+
+    for (int word = 0; word * 64 < length; word++) {
+      int start = offset + word * 64;
+      int count = Math.min(64, length - word * 64);
+      long bits = 0;
+
+      for (int i = 0; i < count; i++) {
+        if (this.matches(buffer, offsets[start + i], addressLength)) {
+          bits |= 1L << i;
+        }
+      }
+
+      result[word] = bits;
+    }
+  }
+
+  /**
+   * Evaluates a batch of big-endian addresses which are located at the specified absolute offsets
+   * within a raw buffer (such as the source addresses of a set of captured packets).
+   *
+   * Addresses are decoded as described in {@link #matches(ByteBuffer, int, int)} while results
+   * are stored as described in {@link #matches(int[], int, int, long[])}.
+   *
+   * @param buffer a buffer.
+   * @param addressLength the length of each address (4 for IPv4 or 16 for IPv6).
+   * @param offsets an array of absolute address offsets within the buffer.
+   * @param offset the index of the first address offset to evaluate.
+   * @param length the amount of addresses to evaluate.
+   * @param result a bitset which receives the results.
+   * @throws IllegalArgumentException when an unsupported address length is passed.
+   * @throws IndexOutOfBoundsException when the batch exceeds the bounds of either array or an
+   *     address exceeds the bounds of the buffer.
+   */
+  default void matches(@NonNull ByteBuffer buffer, int addressLength, @NonNull int[] offsets,
+      int offset, int length, @NonNull long[] result) {
+    AddressMatchers.checkBatch(offsets.length, offset, length, result.length);
+    if (addressLength != 4 && addressLength != 16) {
+      throw new IllegalArgumentException("Unsupported address length: " + addressLength);
+    }
+
+    for (int word = 0; word * 64 < length; word++) {
+      int start = offset + word * 64;
+      int count = Math.min(64, length - word * 64);
+      long bits = 0;
+
+      for (int i = 0; i < count; i++) {
+        if (this.matches(buffer, offsets[start + i], addressLength)) {
+          bits |= 1L << i;
+        }
+      }
+
+      result[word] = bits;
+    }
+  }
+
+  /**
+   * Creates a new set consisting only of matching addresses (omitting any of the addresses
+   * contained within the set which are of an incompatible address type or do not match).
+   *
+   * @param addresses a set of addresses.
+   * @return a set of matching addresses.
+   */
+  @NonNull
+  default Set<InetAddress> matching(@NonNull Set<InetAddress> addresses) {
+    Set<InetAddress> matches = new HashSet<>();
+
+    for (InetAddress address : addresses) {
+      if (this.matches(address)) {
+        matches.add(address);
+      }
+    }
+
+    return matches;
+  }
+
+  /**
+   * Creates a new set consisting only of matching addresses while filtering the passed collection
+   * concurrently within the specified pool.
+   *
+   * The collection is split into sections (using its {@link java.util.Spliterator}) which are
+   * filtered independently. The resulting set is allocated at its final size once all sections
+   * have been processed. The collection must not be modified while this operation is in progress.
+   *
+   * @param addresses a collection of addresses.
+   * @param pool a pool which executes the operation.
+   * @return a set of matching addresses.
+   */
+  @NonNull
+  default Set<InetAddress> matching(@NonNull Collection<? extends InetAddress> addresses,
+      @NonNull ForkJoinPool pool) {
+    long threshold = Math.max(1024, addresses.size() / (pool.getParallelism() * 4L));
+
+    MatchingTask task = new MatchingTask(this, addresses.spliterator(), threshold);
+    pool.invoke(task);
+
+    Set<InetAddress> matches = new HashSet<>(Math.max(16, (int) (task.count() / .75f) + 1));
+    for (List<InetAddress> section : task.results()) {
+      matches.addAll(section);
+    }
+
+    return matches;
+  }
+
+  /**
+   * Lazily filters a stream of addresses (the returned stream retains the characteristics of the
+   * source stream and may thus be consumed in parallel).
+   *
+   * @param addresses a stream of addresses.
+   * @param <A> the address type.
+   * @return a stream of matching addresses.
+   */
+  @NonNull
+  default <A extends InetAddress> Stream<A> matching(@NonNull Stream<A> addresses) {
+    return addresses.filter(this::matches);
+  }
+
+  /**
+   * Lazily filters an iterator of addresses.
+   *
+   * @param addresses an iterator of addresses.
+   * @param <A> the address type.
+   * @return an iterator of matching addresses.
+   */
+  @NonNull
+  default <A extends InetAddress> Iterator<A> matching(@NonNull Iterator<A> addresses) {
+    return (new Iterator<A>() {
+      private A next;
+
+      @Override
+      public boolean hasNext() {
+        while (this.next == null && addresses.hasNext()) {
+          A candidate = addresses.next();
+
+          if (AddressMatcher.this.matches(candidate)) {
+            this.next = candidate;
+          }
+        }
+
+        return this.next != null;
+      }
+
+      @Override
+      public A next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        A next = this.next;
+        this.next = null;
+        return next;
+      }
+    });
+  }
+}
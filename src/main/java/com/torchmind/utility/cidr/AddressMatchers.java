@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Provides utility methods for working with {@link AddressMatcher} implementations.
+ *
+ * @author Johannes Donath
+ */
+public final class AddressMatchers {
+
+  /**
+   * Defines the default amount of evaluations per latency sample.
+   */
+  public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+  private AddressMatchers() {
+  }
+
+  /**
+   * Wraps a matcher in order to record hit and miss counts as well as a sample of lookup
+   * latencies.
+   *
+   * @param matcher a matcher.
+   * @return an instrumented matcher.
+   * @see #DEFAULT_SAMPLE_INTERVAL
+   */
+  @NonNull
+  public static InstrumentedMatcher instrument(@NonNull AddressMatcher matcher) {
+    return instrument(matcher, null, Long.MAX_VALUE, DEFAULT_SAMPLE_INTERVAL);
+  }
+
+  /**
+   * Wraps a matcher in order to record hit and miss counts as well as a sample of lookup
+   * latencies and to notify a listener of sampled lookups which take at least the specified amount
+   * of time.
+   *
+   * @param matcher a matcher.
+   * @param listener a listener or null.
+   * @param slowThreshold a duration (in nanoseconds).
+   * @param sampleInterval the average amount of evaluations per latency sample (must be a power
+   *     of two; one measures every evaluation).
+   * @return an instrumented matcher.
+   * @throws IllegalArgumentException when a negative threshold or an invalid interval is passed.
+   */
+  @NonNull
+  public static InstrumentedMatcher instrument(@NonNull AddressMatcher matcher,
+      @Nullable MatchListener listener, long slowThreshold, int sampleInterval) {
+    if (slowThreshold < 0) {
+      throw new IllegalArgumentException("Invalid threshold: " + slowThreshold);
+    }
+    if (sampleInterval <= 0 || Integer.bitCount(sampleInterval) != 1) {
+      throw new IllegalArgumentException("Invalid sample interval: " + sampleInterval);
+    }
+
+    return (new InstrumentedMatcher(matcher, listener, slowThreshold, sampleInterval));
+  }
+
+  /**
+   * Wraps a matcher in order to cache the results of up to the specified amount of addresses per
+   * address family.
+   *
+   * When a {@link ConcurrentAddressRangeTable} is passed, its current snapshot is decorated
+   * instead and cached results are discarded automatically whenever a new snapshot is published.
+   * Any other matcher is expected to be immutable (or to be invalidated explicitly via {@link
+   * CachingMatcher#invalidate()} when it is mutated).
+   *
+   * @param matcher a matcher.
+   * @param capacity the maximum amount of cached results (rounded up to the next power of two).
+   * @return a caching matcher.
+   * @throws IllegalArgumentException when the capacity is not positive or exceeds 2^30.
+   */
+  @NonNull
+  public static CachingMatcher cache(@NonNull AddressMatcher matcher, int capacity) {
+    if (matcher instanceof ConcurrentAddressRangeTable) {
+      return cache(((ConcurrentAddressRangeTable<?>) matcher)::snapshot, capacity);
+    }
+
+    return cache(() -> matcher, capacity);
+  }
+
+  /**
+   * Wraps the matcher which is returned by the specified source in order to cache the results of
+   * up to the specified amount of addresses per address family.
+   *
+   * The source is consulted upon every evaluation (and should thus merely return a reference,
+   * such as {@code table::snapshot}). Cached results are discarded whenever it returns a
+   * different instance than before.
+   *
+   * @param source a source of matchers.
+   * @param capacity the maximum amount of cached results (rounded up to the next power of two).
+   * @return a caching matcher.
+   * @throws IllegalArgumentException when the capacity is not positive or exceeds 2^30.
+   */
+  @NonNull
+  public static CachingMatcher cache(@NonNull Supplier<? extends AddressMatcher> source,
+      int capacity) {
+    if (capacity <= 0 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+
+    return (new CachingMatcher(source, capacity));
+  }
+
+  /**
+   * Wraps a matcher in order to evaluate IPv4-mapped, IPv4-compatible and NAT64 addresses against
+   * their IPv4 equivalents as well.
+   *
+   * @param matcher a matcher.
+   * @return a dual-stack matcher.
+   * @see #dualStack(AddressMatcher, Set)
+   */
+  @NonNull
+  public static AddressMatcher dualStack(@NonNull AddressMatcher matcher) {
+    return dualStack(matcher, EnumSet.allOf(Inet4Embedding.class));
+  }
+
+  /**
+   * Wraps a matcher in order to evaluate IPv6 addresses which embed an IPv4 address in any of the
+   * specified formats against their IPv4 equivalents as well.
+   *
+   * Embedded addresses are detected and converted using their numeric form (e.g. without
+   * allocating intermediate address objects). They match when either the IPv6 address or its IPv4
+   * equivalent is matched by the passed matcher.
+   *
+   * @param matcher a matcher.
+   * @param embeddings a set of recognized formats.
+   * @return a dual-stack matcher.
+   */
+  @NonNull
+  public static AddressMatcher dualStack(@NonNull AddressMatcher matcher,
+      @NonNull Set<Inet4Embedding> embeddings) {
+    return (new DualStackMatcher(matcher, Inet4Embedding.mask(embeddings)));
+  }
+
+  /**
+   * Distributes the bits of a key across an entire hash (using the finalizer of MurmurHash3).
+   *
+   * @param key a key.
+   * @return a hash.
+   */
+  static int hash(long key) {
+    key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+    key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return (int) (key ^ (key >>> 33));
+  }
+
+  /**
+   * Reads a big-endian 32-bit value from the specified absolute offset regardless of the byte
+   * order of the buffer.
+   *
+   * @param buffer a buffer.
+   * @param offset an absolute offset.
+   * @return a value.
+   */
+  static int getInt(@NonNull ByteBuffer buffer, int offset) {
+    int value = buffer.getInt(offset);
+    return (buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value));
+  }
+
+  /**
+   * Reads a big-endian 64-bit value from the specified absolute offset regardless of the byte
+   * order of the buffer.
+   *
+   * @param buffer a buffer.
+   * @param offset an absolute offset.
+   * @return a value.
+   */
+  static long getLong(@NonNull ByteBuffer buffer, int offset) {
+    long value = buffer.getLong(offset);
+    return (buffer.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value));
+  }
+
+  /**
+   * Verifies the bounds of a batch operation.
+   *
+   * @param addressCount the total amount of addresses within the source array.
+   * @param offset the index of the first address to evaluate.
+   * @param length the amount of addresses to evaluate.
+   * @param resultLength the length of the result bitset (in words).
+   * @throws IndexOutOfBoundsException when the batch exceeds the bounds of either array.
+   */
+  static void checkBatch(int addressCount, int offset, int length, int resultLength) {
+    if (offset < 0 || length < 0 || offset > addressCount - length) {
+      throw new IndexOutOfBoundsException(
+          "Batch of " + length + " addresses at offset " + offset + " exceeds " + addressCount
+              + " addresses");
+    }
+    if (((length + 63) >>> 6) > resultLength) {
+      throw new IndexOutOfBoundsException(
+          "Batch of " + length + " addresses exceeds result bitset of " + resultLength + " words");
+    }
+  }
+}
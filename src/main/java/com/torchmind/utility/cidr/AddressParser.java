@@ -0,0 +1,542 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Provides a strict parser for IPv4 and IPv6 address literals and CIDR notations.
+ *
+ * Unlike {@link java.net.InetAddress#getByName(String)}, this parser never consults a resolver:
+ * Host names, scoped addresses and any other input which is not a plain literal are rejected with
+ * an {@link IllegalArgumentException}. All methods operate directly on the passed character
+ * sequence and produce the numeric form of the address without intermediate objects.
+ *
+ * @author Johannes Donath
+ */
+public final class AddressParser {
+
+  private AddressParser() {
+  }
+
+  /**
+   * Evaluates whether the specified literal is of the IPv6 family (e.g. contains a colon).
+   *
+   * @param literal a literal.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return true if the literal is expected to be an IPv6 literal, false otherwise.
+   */
+  static boolean isInet6(@NonNull CharSequence literal, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (literal.charAt(i) == ':') {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Parses a dotted quad IPv4 literal (such as 10.0.0.1).
+   *
+   * @param literal a literal.
+   * @return a numeric address (in network byte order).
+   * @throws IllegalArgumentException when the literal is malformed.
+   */
+  public static int parseInet4(@NonNull CharSequence literal) {
+    return parseInet4(literal, 0, literal.length());
+  }
+
+  /**
+   * Parses a dotted quad IPv4 literal (such as 10.0.0.1) from a section of a character sequence.
+   *
+   * @param literal a literal.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return a numeric address (in network byte order).
+   * @throws IllegalArgumentException when the literal is malformed.
+   */
+  public static int parseInet4(@NonNull CharSequence literal, int start, int end) {
+    int address = 0;
+    int octets = 0;
+    int i = start;
+
+    while (i < end) {
+      if (octets != 0) {
+        if (literal.charAt(i) != '.') {
+          throw invalid("IPv4", literal, start, end);
+        }
+
+        i++;
+      }
+
+      int value = 0;
+      int digits = 0;
+      while (i < end && digits < 4) {
+        char c = literal.charAt(i);
+        if (c < '0' || c > '9') {
+          break;
+        }
+
+        value = value * 10 + (c - '0');
+        digits++;
+        i++;
+      }
+
+      if (digits == 0 || digits > 3 || value > 255 || octets == 4) {
+        throw invalid("IPv4", literal, start, end);
+      }
+
+      address = (address << 8) | value;
+      octets++;
+    }
+
+    if (octets != 4) {
+      throw invalid("IPv4", literal, start, end);
+    }
+
+    return address;
+  }
+
+  /**
+   * Parses an IPv6 literal (such as 2001:db8::1 or ::ffff:10.0.0.1).
+   *
+   * @param literal a literal.
+   * @param result an array of at least two elements which will receive the upper and lower 64
+   *     bits of the address respectively.
+   * @throws IllegalArgumentException when the literal is malformed.
+   */
+  public static void parseInet6(@NonNull CharSequence literal, @NonNull long[] result) {
+    parseInet6(literal, 0, literal.length(), result);
+  }
+
+  /**
+   * Parses an IPv6 literal (such as 2001:db8::1 or ::ffff:10.0.0.1) from a section of a character
+   * sequence.
+   *
+   * Compressed notations ({@code ::}) as well as embedded IPv4 addresses within the last 32 bits
+   * are supported while zone identifiers (such as {@code %eth0}) and brackets are rejected.
+   *
+   * @param literal a literal.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @param result an array of at least two elements which will receive the upper and lower 64
+   *     bits of the address respectively.
+   * @throws IllegalArgumentException when the literal is malformed.
+   */
+  public static void parseInet6(@NonNull CharSequence literal, int start, int end,
+      @NonNull long[] result) {
+    // groups are accumulated into two separate 128-bit values: one for all groups preceding the
+    // compression marker (head) and one for all groups following it (tail)
+    long headHigh = 0;
+    long headLow = 0;
+    long tailHigh = 0;
+    long tailLow = 0;
+    int headGroups = 0;
+    int tailGroups = 0;
+    boolean compressed = false;
+
+    int i = start;
+    if (end - start >= 2 && literal.charAt(i) == ':' && literal.charAt(i + 1) == ':') {
+      compressed = true;
+      i += 2;
+    } else if (i < end && literal.charAt(i) == ':') {
+      throw invalid("IPv6", literal, start, end);
+    }
+
+    while (i < end) {
+      int groupStart = i;
+      int value = 0;
+      int digits = 0;
+
+      while (i < end) {
+        int digit = hexDigit(literal.charAt(i));
+        if (digit == -1) {
+          break;
+        }
+
+        value = (value << 4) | digit;
+        digits++;
+        i++;
+      }
+
+      long groupHigh = 0;
+      long groupLow;
+      int groupCount;
+
+      if (i < end && literal.charAt(i) == '.') {
+        // embedded IPv4 addresses are only permitted at the very end of the literal
+        groupLow = parseInet4(literal, groupStart, end) & 0xFFFFFFFFL;
+        groupCount = 2;
+        i = end;
+      } else {
+        if (digits == 0 || digits > 4) {
+          throw invalid("IPv6", literal, start, end);
+        }
+
+        groupLow = value;
+        groupCount = 1;
+      }
+
+      if (compressed) {
+        tailHigh = (tailHigh << (groupCount * 16)) | (tailLow >>> (64 - groupCount * 16));
+        tailLow = (tailLow << (groupCount * 16)) | groupLow;
+        tailGroups += groupCount;
+      } else {
+        headHigh = (headHigh << (groupCount * 16)) | (headLow >>> (64 - groupCount * 16));
+        headLow = (headLow << (groupCount * 16)) | groupLow;
+        headGroups += groupCount;
+      }
+
+      if (headGroups + tailGroups > 8) {
+        throw invalid("IPv6", literal, start, end);
+      }
+
+      if (i == end) {
+        break;
+      }
+      if (literal.charAt(i) != ':') {
+        throw invalid("IPv6", literal, start, end);
+      }
+
+      i++;
+      if (i < end && literal.charAt(i) == ':') {
+        if (compressed) {
+          throw invalid("IPv6", literal, start, end);
+        }
+
+        compressed = true;
+        i++;
+      } else if (i == end) {
+        // single trailing colons are not permitted
+        throw invalid("IPv6", literal, start, end);
+      }
+    }
+
+    int groups = headGroups + tailGroups;
+    if (compressed ? groups > 7 : groups != 8) {
+      throw invalid("IPv6", literal, start, end);
+    }
+
+    // the head is shifted into position above the groups which are covered by the tail and the
+    // compressed section
+    int shift = (8 - headGroups) * 16;
+    if (shift == 128) {
+      headHigh = 0;
+      headLow = 0;
+    } else if (shift >= 64) {
+      headHigh = headLow << (shift - 64);
+      headLow = 0;
+    } else if (shift != 0) {
+      headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+      headLow = headLow << shift;
+    }
+
+    result[0] = headHigh | tailHigh;
+    result[1] = headLow | tailLow;
+  }
+
+  /**
+   * Parses a CIDR notation (such as 10.0.0.0/8 or 2001:db8::/32).
+   *
+   * When no prefix length is given, IPv4 ranges default to a length of 32 bits while IPv6 ranges
+   * default to a length of 64 bits.
+   *
+   * @param notation a notation.
+   * @return an address range.
+   * @throws IllegalArgumentException when the notation is malformed.
+   */
+  @NonNull
+  public static AddressRange parseRange(@NonNull CharSequence notation) {
+    return parseRange(notation, 0, notation.length());
+  }
+
+  /**
+   * Parses a CIDR notation (such as 10.0.0.0/8 or 2001:db8::/32) from a section of a character
+   * sequence.
+   *
+   * @param notation a notation.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return an address range.
+   * @throws IllegalArgumentException when the notation is malformed.
+   * @see #parseRange(CharSequence)
+   */
+  @NonNull
+  public static AddressRange parseRange(@NonNull CharSequence notation, int start, int end) {
+    int addressEnd = indexOfPrefixLength(notation, start, end);
+    int prefixLength = (addressEnd == end ? -1 : parsePrefixLength(notation, addressEnd + 1, end));
+
+    return parseRange(notation, start, addressEnd, prefixLength);
+  }
+
+  /**
+   * Parses a CIDR notation from a section of a character sequence into its numeric form without
+   * constructing a range.
+   *
+   * Upon return, the passed array holds the upper and lower 64 bits of the address (IPv4
+   * addresses are stored within the lower half) followed by the prefix length. Omitted prefix
+   * lengths are substituted with the same defaults as applied by {@link
+   * #parseRange(CharSequence)}.
+   *
+   * @param notation a notation.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @param result an array of at least three elements which will receive the address and prefix
+   *     length.
+   * @return true if the notation describes an IPv6 range, false otherwise.
+   * @throws IllegalArgumentException when the notation is malformed.
+   */
+  static boolean parseNumericRange(@NonNull CharSequence notation, int start, int end,
+      @NonNull long[] result) {
+    int addressEnd = indexOfPrefixLength(notation, start, end);
+    int prefixLength = (addressEnd == end ? -1 : parsePrefixLength(notation, addressEnd + 1, end));
+
+    if (isInet6(notation, start, addressEnd)) {
+      parseInet6(notation, start, addressEnd, result);
+      result[2] = defaultPrefixLength(true, prefixLength);
+      return true;
+    }
+
+    result[0] = 0;
+    result[1] = parseInet4(notation, start, addressEnd);
+    result[2] = defaultPrefixLength(false, prefixLength);
+    return false;
+  }
+
+  /**
+   * Parses an interval notation (such as {@code 10.0.0.5 - 10.0.0.17} or {@code
+   * 2001:db8::1-2001:db8::ff}) where both addresses may be surrounded by whitespace.
+   *
+   * @param notation a notation.
+   * @return an interval.
+   * @throws IllegalArgumentException when the notation is malformed, mixes address families or
+   *     its first address exceeds its last address.
+   */
+  @NonNull
+  public static AddressInterval parseInterval(@NonNull CharSequence notation) {
+    return parseInterval(notation, 0, notation.length());
+  }
+
+  /**
+   * Parses an interval notation (such as {@code 10.0.0.5 - 10.0.0.17}) from a section of a
+   * character sequence.
+   *
+   * @param notation a notation.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return an interval.
+   * @throws IllegalArgumentException when the notation is malformed, mixes address families or
+   *     its first address exceeds its last address.
+   * @see #parseInterval(CharSequence)
+   */
+  @NonNull
+  public static AddressInterval parseInterval(@NonNull CharSequence notation, int start,
+      int end) {
+    int separator = -1;
+    for (int i = start; i < end; i++) {
+      if (notation.charAt(i) == '-') {
+        separator = i;
+        break;
+      }
+    }
+    if (separator == -1) {
+      throw invalid("interval", notation, start, end);
+    }
+
+    int firstStart = skipWhitespace(notation, start, separator);
+    int firstEnd = trimWhitespace(notation, firstStart, separator);
+    int lastStart = skipWhitespace(notation, separator + 1, end);
+    int lastEnd = trimWhitespace(notation, lastStart, end);
+
+    boolean inet6 = isInet6(notation, firstStart, firstEnd);
+    if (inet6 != isInet6(notation, lastStart, lastEnd)) {
+      throw invalid("interval", notation, start, end);
+    }
+
+    try {
+      if (inet6) {
+        long[] first = new long[2];
+        long[] last = new long[2];
+        parseInet6(notation, firstStart, firstEnd, first);
+        parseInet6(notation, lastStart, lastEnd, last);
+
+        return AddressInterval.of(first[0], first[1], last[0], last[1]);
+      }
+
+      return AddressInterval.of(parseInet4(notation, firstStart, firstEnd),
+          parseInet4(notation, lastStart, lastEnd));
+    } catch (IllegalArgumentException ex) {
+      throw new IllegalArgumentException(
+          "Invalid interval literal: \"" + notation.subSequence(start, end) + "\"", ex);
+    }
+  }
+
+  /**
+   * Locates the prefix length separator within a section of a character sequence.
+   *
+   * @param notation a notation.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return the index of the separator or end when no prefix length is present.
+   */
+  private static int indexOfPrefixLength(@NonNull CharSequence notation, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (notation.charAt(i) == '/') {
+        return i;
+      }
+    }
+
+    return end;
+  }
+
+  /**
+   * Substitutes an omitted prefix length with the default length of an address family.
+   *
+   * @param inet6 true if the address is an IPv6 address, false otherwise.
+   * @param prefixLength a prefix length or -1 to select the default length.
+   * @return a prefix length.
+   */
+  private static int defaultPrefixLength(boolean inet6, int prefixLength) {
+    if (prefixLength != -1) {
+      return prefixLength;
+    }
+
+    return (inet6 ? 64 : AddressRange4.MAX_PREFIX_LENGTH);
+  }
+
+  /**
+   * Locates the first non-whitespace character within a section of a character sequence.
+   *
+   * @param literal a literal.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return the index of the first non-whitespace character or end.
+   */
+  private static int skipWhitespace(@NonNull CharSequence literal, int start, int end) {
+    while (start < end && Character.isWhitespace(literal.charAt(start))) {
+      start++;
+    }
+
+    return start;
+  }
+
+  /**
+   * Locates the end of a section of a character sequence without its trailing whitespace.
+   *
+   * @param literal a literal.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return the index following the last non-whitespace character or start.
+   */
+  private static int trimWhitespace(@NonNull CharSequence literal, int start, int end) {
+    while (end > start && Character.isWhitespace(literal.charAt(end - 1))) {
+      end--;
+    }
+
+    return end;
+  }
+
+  /**
+   * Parses an address literal from a section of a character sequence and combines it with the
+   * specified prefix length.
+   *
+   * @param literal a literal.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @param prefixLength a prefix length or -1 to select the default length of the address family.
+   * @return an address range.
+   * @throws IllegalArgumentException when the literal or resulting mask is invalid.
+   */
+  @NonNull
+  static AddressRange parseRange(@NonNull CharSequence literal, int start, int end,
+      int prefixLength) {
+    if (isInet6(literal, start, end)) {
+      long[] address = new long[2];
+      parseInet6(literal, start, end, address);
+
+      return (new AddressRange6(address[0], address[1], defaultPrefixLength(true, prefixLength)));
+    }
+
+    return (new AddressRange4(parseInet4(literal, start, end),
+        defaultPrefixLength(false, prefixLength)));
+  }
+
+  /**
+   * Parses a decimal prefix length.
+   *
+   * @param notation a notation.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return a prefix length.
+   * @throws IllegalArgumentException when the prefix length is malformed.
+   */
+  static int parsePrefixLength(@NonNull CharSequence notation, int start, int end) {
+    if (start == end || end - start > 3) {
+      throw invalid("prefix length", notation, start, end);
+    }
+
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      char c = notation.charAt(i);
+      if (c < '0' || c > '9') {
+        throw invalid("prefix length", notation, start, end);
+      }
+
+      value = value * 10 + (c - '0');
+    }
+
+    return value;
+  }
+
+  /**
+   * Decodes a single hexadecimal digit.
+   *
+   * @param c a character.
+   * @return a value or -1 if the character is not a hexadecimal digit.
+   */
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Constructs an exception for an invalid section of a literal.
+   *
+   * @param type a human readable type description.
+   * @param literal a literal.
+   * @param start the index of the first character (inclusive).
+   * @param end the index of the last character (exclusive).
+   * @return an exception.
+   */
+  @NonNull
+  private static IllegalArgumentException invalid(@NonNull String type,
+      @NonNull CharSequence literal, int start, int end) {
+    return (new IllegalArgumentException(
+        "Invalid " + type + " literal: \"" + literal.subSequence(start, end) + "\""));
+  }
+}
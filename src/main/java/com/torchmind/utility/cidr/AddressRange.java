@@ -17,54 +17,52 @@
 package com.torchmind.utility.cidr;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.math.BigInteger;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.util.stream.Stream;
 
 /**
  * Represents an arbitrary range of one or more addresses of a specific address type.
  *
  * @author Johannes Donath
  */
-public interface AddressRange {
+public interface AddressRange extends AddressMatcher {
 
   /**
    * Parses an address range from its human readable CIDR based notation (such as 192.168.0.0/16).
    *
+   * Only address literals are accepted (see {@link AddressParser}) thus this method will never
+   * block on a name lookup.
+   *
    * @param address The address.
    * @return the notation.
-   * @throws IllegalArgumentException when the mask is invalid.
-   * @throws UnknownHostException when the system cannot find the address.
+   * @throws IllegalArgumentException when the address literal or mask is invalid.
+   * @throws UnknownHostException never (retained for compatibility with previous releases).
    */
   @NonNull
   static AddressRange of(@NonNull String address)
       throws IllegalArgumentException, UnknownHostException {
-    int lengthOffset = address.indexOf('/');
-
-    int prefixLength = -1;
-    if (lengthOffset != -1) {
-      prefixLength = Integer.parseUnsignedInt(address.substring((lengthOffset + 1)));
-      address = address.substring(0, lengthOffset);
-    }
-
-    return of(address, prefixLength);
+    return AddressParser.parseRange(address);
   }
 
   /**
    * Creates an address range based on a pre-defined address and prefix length.
    *
-   * @param address the address.
+   * @param address the address literal.
    * @param prefixLength the prefix length.
    * @return the notation.
-   * @throws IllegalArgumentException when the address type, address or resulting mask is invalid.
-   * @throws UnknownHostException when the passed address cannot be resolved.
+   * @throws IllegalArgumentException when the address literal or resulting mask is invalid.
+   * @throws UnknownHostException never (retained for compatibility with previous releases).
    */
   @NonNull
   static AddressRange of(@NonNull String address, int prefixLength)
       throws IllegalArgumentException, UnknownHostException {
-    return of(InetAddress.getByName(address), prefixLength);
+    return AddressParser.parseRange(address, 0, address.length(), prefixLength);
   }
 
   /**
@@ -123,6 +121,47 @@ public interface AddressRange {
     return (new AddressRange6(address, prefixLength));
   }
 
+  /**
+   * Creates an address range based on a numeric 32-bit address and prefix length.
+   *
+   * @param address the address (in network byte order).
+   * @param prefixLength the prefix length.
+   * @return the notation.
+   * @throws IllegalArgumentException when the resulting mask is invalid.
+   */
+  @NonNull
+  static AddressRange4 of(int address, int prefixLength) {
+    return (new AddressRange4(address, prefixLength));
+  }
+
+  /**
+   * Creates an address range based on a numeric 128-bit address and prefix length.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @param prefixLength the prefix length.
+   * @return the notation.
+   * @throws IllegalArgumentException when the resulting mask is invalid.
+   */
+  @NonNull
+  static AddressRange6 of(long high, long low, int prefixLength) {
+    return (new AddressRange6(high, low, prefixLength));
+  }
+
+  /**
+   * Parses an address range from its CIDR notation and retrieves a canonical instance which is
+   * shared with all other callers that intern an equal range.
+   *
+   * @param address the notation.
+   * @return a canonical range.
+   * @throws IllegalArgumentException when the address literal or mask is invalid.
+   * @see AddressRangeInterner#shared()
+   */
+  @NonNull
+  static AddressRange intern(@NonNull String address) {
+    return AddressRangeInterner.shared().parse(address);
+  }
+
   /**
    * Retrieves the base address which addresses match against.
    *
@@ -134,10 +173,44 @@ public interface AddressRange {
   /**
    * Retrieves the amount of addresses within the block.
    *
+   * IPv6 blocks which contain more than {@link Long#MAX_VALUE} addresses (e.g. all blocks with a
+   * prefix length of 65 or shorter) report {@link Long#MAX_VALUE} instead. Refer to {@link
+   * #hostLength()} or {@link #exactBlockSize()} when an exact result is required.
+   *
    * @return a total amount of addresses.
    */
   long blockSize();
 
+  /**
+   * Retrieves the exact amount of addresses within the block.
+   *
+   * @return a total amount of addresses.
+   */
+  @NonNull
+  default BigInteger exactBlockSize() {
+    return BigInteger.ONE.shiftLeft(this.hostLength());
+  }
+
+  /**
+   * Evaluates whether this range contains every address of the specified range (e.g. the
+   * specified range is equal to this range or one of its subnets). Ranges of differing address
+   * families never contain each other.
+   *
+   * @param range an address range.
+   * @return true if contained, false otherwise.
+   */
+  boolean contains(@NonNull AddressRange range);
+
+  /**
+   * Evaluates whether this range immediately precedes or follows the specified range (e.g. both
+   * ranges could be joined into a single consecutive span of addresses). Ranges of differing
+   * address families are never adjacent.
+   *
+   * @param range an address range.
+   * @return true if adjacent, false otherwise.
+   */
+  boolean isAdjacent(@NonNull AddressRange range);
+
   /**
    * Retrieves a binary representation of the address netmask (e.g. a bitmask which exposes the
    * relevant elements of the address).
@@ -156,25 +229,63 @@ public interface AddressRange {
   boolean matches(@NonNull InetAddress address);
 
   /**
-   * Evaluates whether the specified address is part of this address range.
+   * Evaluates whether the big-endian address of this range's family (4 bytes for IPv4 and 16
+   * bytes for IPv6) at the specified offset within a raw buffer is part of this address range.
    *
-   * @param address the address.
+   * @param buffer a buffer.
+   * @param offset the offset of the first address byte.
+   * @return true if the address matches, false otherwise.
+   * @throws IndexOutOfBoundsException when the address exceeds the bounds of the buffer.
+   * @see #matches(byte[], int, int)
+   */
+  boolean matches(@NonNull byte[] buffer, int offset);
+
+  /**
+   * Evaluates whether the big-endian address of this range's family (4 bytes for IPv4 and 16
+   * bytes for IPv6) at the specified absolute offset within a raw buffer is part of this address
+   * range.
+   *
+   * @param buffer a buffer.
+   * @param offset the absolute offset of the first address byte.
    * @return true if the address matches, false otherwise.
-   * @throws IllegalArgumentException when an invalid address was supplied.
-   * @throws UnknownHostException when an unknown host was supplied.
+   * @throws IndexOutOfBoundsException when the address exceeds the bounds of the buffer.
+   * @see #matches(ByteBuffer, int, int)
+   */
+  boolean matches(@NonNull ByteBuffer buffer, int offset);
+
+  /**
+   * Evaluates whether the specified address literal is part of this address range.
+   *
+   * IPv4-mapped IPv6 literals (such as {@code ::ffff:10.0.0.1}) are treated as their embedded IPv4
+   * address, consistent with {@link #matches(InetAddress)} when passed the result of {@link
+   * InetAddress#getByName(String)}.
+   *
+   * @param address the address literal.
+   * @return true if the address matches, false otherwise.
+   * @throws IllegalArgumentException when an invalid address literal was supplied.
+   * @throws UnknownHostException never (retained for compatibility with previous releases).
    */
   boolean matches(@NonNull String address) throws IllegalArgumentException, UnknownHostException;
 
   /**
-   * Creates a new set consisting only of addresses which fall within this address range (omitting
-   * any of the addresses contained within the set which are of an incompatible address type or fall
-   * outside of this range).
+   * Evaluates whether this range shares at least one address with the specified range. As both
+   * ranges are aligned to their prefix, this is only the case when either range contains the
+   * other.
    *
-   * @param addresses a set of addresses.
-   * @return a set of matching addresses.
+   * @param range an address range.
+   * @return true if overlapping, false otherwise.
    */
-  @NonNull
-  Set<InetAddress> matching(@NonNull Set<InetAddress> addresses);
+  default boolean overlaps(@NonNull AddressRange range) {
+    return this.contains(range) || range.contains(this);
+  }
+
+  /**
+   * Retrieves the amount of host bits (e.g. the amount of bits which are not part of the prefix).
+   * Every block contains exactly {@code 2^hostLength} addresses.
+   *
+   * @return a host length.
+   */
+  int hostLength();
 
   /**
    * Retrieves the total prefix length (in bits).
@@ -192,6 +303,51 @@ public interface AddressRange {
   @NonNull
   AddressRange prefixLength(int prefixLength);
 
+  /**
+   * Retrieves the other half of the direct supernet of this range (e.g. 10.1.0.0/16 for
+   * 10.0.0.0/16).
+   *
+   * @return a sibling range or null if this range covers the entire address space.
+   */
+  @Nullable
+  AddressRange sibling();
+
+  /**
+   * Retrieves a lazy stream of all subnets of the specified prefix length within this range (in
+   * ascending order).
+   *
+   * Subnets are computed on demand and the stream may be processed in parallel (splitting divides
+   * the remaining subnets in half). Streams which contain more than {@link Long#MAX_VALUE} subnets
+   * report an unknown size.
+   *
+   * @param prefixLength a prefix length (equal to or longer than the prefix length of this range).
+   * @return a stream of subnets.
+   * @throws IllegalArgumentException when the prefix length is shorter than the prefix length of
+   *     this range or exceeds the maximum prefix length.
+   */
+  @NonNull
+  Stream<? extends AddressRange> subnets(int prefixLength);
+
+  /**
+   * Retrieves the direct supernet of this range (e.g. a range with a prefix which is one bit
+   * shorter).
+   *
+   * @return a supernet or null if this range covers the entire address space.
+   */
+  @Nullable
+  AddressRange supernet();
+
+  /**
+   * Retrieves the supernet of the specified prefix length which contains this range.
+   *
+   * @param prefixLength a prefix length (equal to or shorter than the prefix length of this range).
+   * @return a supernet.
+   * @throws IllegalArgumentException when the prefix length is negative or longer than the prefix
+   *     length of this range.
+   */
+  @NonNull
+  AddressRange supernet(int prefixLength);
+
   /**
    * Encodes an address range into its human readable CIDR notation.
    *
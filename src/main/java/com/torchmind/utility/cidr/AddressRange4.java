@@ -17,7 +17,15 @@
 package com.torchmind.utility.cidr;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents a 32-bit address range (as implemented by IPv4).
@@ -31,8 +39,82 @@ public final class AddressRange4 extends AbstractAddressRange<Inet4Address> {
    */
   public static final int MAX_PREFIX_LENGTH = 32;
 
+  private final int network;
+  private final int mask;
+
   protected AddressRange4(@NonNull Inet4Address base, int prefixLength) {
-    super(base, prefixLength);
+    this(base, decode(base.getAddress(), 0), prefixLength);
+  }
+
+  AddressRange4(int network, int prefixLength) {
+    this(null, network, prefixLength);
+  }
+
+  private AddressRange4(@Nullable Inet4Address base, int network, int prefixLength) {
+    super(base, prefixLength, MAX_PREFIX_LENGTH);
+    this.network = network;
+    this.mask = mask(prefixLength);
+
+    if ((network & ~this.mask) != 0) {
+      throw new IllegalArgumentException(
+          "Invalid address range: Base address is not part of block");
+    }
+  }
+
+  /**
+   * Decodes a big-endian 32-bit address from the specified array.
+   *
+   * @param encoded an encoded address.
+   * @param offset an offset within the array.
+   * @return a numeric address.
+   */
+  static int decode(@NonNull byte[] encoded, int offset) {
+    return ((encoded[offset] & 0xFF) << 24)
+        | ((encoded[offset + 1] & 0xFF) << 16)
+        | ((encoded[offset + 2] & 0xFF) << 8)
+        | (encoded[offset + 3] & 0xFF);
+  }
+
+  /**
+   * Converts a numeric 32-bit address into its respective address object.
+   *
+   * @param address a numeric address.
+   * @return an address.
+   */
+  @NonNull
+  static Inet4Address encode(int address) {
+    try {
+      return (Inet4Address) InetAddress.getByAddress(new byte[]{
+          (byte) (address >>> 24),
+          (byte) (address >>> 16),
+          (byte) (address >>> 8),
+          (byte) address
+      });
+    } catch (UnknownHostException ex) {
+      throw new AssertionError("Rejected 4 byte address", ex);
+    }
+  }
+
+  /**
+   * Computes the netmask for a given prefix length.
+   *
+   * @param prefixLength a prefix length.
+   * @return a netmask.
+   */
+  static int mask(int prefixLength) {
+    return (prefixLength == 0 ? 0 : (0xFFFFFFFF << (MAX_PREFIX_LENGTH - prefixLength)));
+  }
+
+  /**
+   * Retrieves a lazy stream of all numeric addresses within this range (in ascending order).
+   *
+   * The stream is backed by {@link #spliterator()} and may thus be processed in parallel.
+   *
+   * @return a stream of numeric addresses (in network byte order).
+   */
+  @NonNull
+  public IntStream addresses() {
+    return StreamSupport.intStream(this.spliterator(), false);
   }
 
   /**
@@ -49,7 +131,30 @@ public final class AddressRange4 extends AbstractAddressRange<Inet4Address> {
    */
   @Override
   public long blockSize() {
-    return ((long) Math.pow(2, (MAX_PREFIX_LENGTH - this.prefixLength())));
+    return 1L << this.hostLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  protected Inet4Address createBase() {
+    return encode(this.network);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean contains(@NonNull AddressRange range) {
+    if (!(range instanceof AddressRange4)) {
+      return false;
+    }
+
+    AddressRange4 other = (AddressRange4) range;
+    return this.prefixLength() <= other.prefixLength()
+        && (other.network & this.mask) == this.network;
   }
 
   /**
@@ -58,7 +163,174 @@ public final class AddressRange4 extends AbstractAddressRange<Inet4Address> {
   @NonNull
   @Override
   public byte[] encoded() {
-    return this.encoded(4);
+    return (new byte[]{
+        (byte) (this.mask >>> 24),
+        (byte) (this.mask >>> 16),
+        (byte) (this.mask >>> 8),
+        (byte) this.mask
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof AddressRange4)) {
+      return false;
+    }
+    AddressRange4 that = (AddressRange4) o;
+    return this.network == that.network && this.prefixLength() == that.prefixLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return 31 * this.network + this.prefixLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hostLength() {
+    return MAX_PREFIX_LENGTH - this.prefixLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isAdjacent(@NonNull AddressRange range) {
+    if (!(range instanceof AddressRange4)) {
+      return false;
+    }
+
+    AddressRange4 other = (AddressRange4) range;
+    long first = Integer.toUnsignedLong(this.network);
+    long otherFirst = Integer.toUnsignedLong(other.network);
+    return first + this.blockSize() == otherFirst || otherFirst + other.blockSize() == first;
+  }
+
+  /**
+   * Retrieves the last address within this range in its numeric form.
+   *
+   * @return a numeric address.
+   */
+  public int last() {
+    return this.network | ~this.mask;
+  }
+
+  /**
+   * Retrieves the netmask of this range in its numeric form.
+   *
+   * @return a netmask.
+   */
+  public int mask() {
+    return this.mask;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    if (!(address instanceof Inet4Address)) {
+      return false;
+    }
+
+    return this.matches(decode(address.getAddress(), 0));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return (address & this.mask) == this.network;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void matches(@NonNull int[] addresses, int offset, int length, @NonNull long[] result) {
+    AddressMatchers.checkBatch(addresses.length, offset, length, result.length);
+
+    int mask = this.mask;
+    int network = this.network;
+
+    for (int word = 0; word * 64 < length; word++) {
+      int start = offset + word * 64;
+      int count = Math.min(64, length - word * 64);
+      long bits = 0;
+
+      // results are shifted in from the most significant end while the loop body is kept free of
+      // branches in order to permit the compiler to unroll it
+      for (int i = count - 1; i >= 0; i--) {
+        int difference = (addresses[start + i] & mask) ^ network;
+        bits = (bits << 1) | (((difference - 1) & ~difference) >>> 31);
+      }
+
+      result[word] = bits;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull byte[] buffer, int offset) {
+    return this.matches(decode(buffer, offset));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull ByteBuffer buffer, int offset) {
+    return this.matches(AddressMatchers.getInt(buffer, offset));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull String address) {
+    if (AddressParser.isInet6(address, 0, address.length())) {
+      // IPv4-mapped literals are unwrapped in order to match the result of
+      // InetAddress#getByName while all other IPv6 literals are still validated in order to reject
+      // malformed input consistently
+      long[] encoded = new long[2];
+      AddressParser.parseInet6(address, encoded);
+
+      return Inet4Embedding.MAPPED.isEmbedded(encoded[0], encoded[1])
+          && this.matches(Inet4Embedding.extract(encoded[1]));
+    }
+
+    return this.matches(AddressParser.parseInet4(address));
+  }
+
+  /**
+   * Retrieves the base address of this range in its numeric form.
+   *
+   * @return a numeric address.
+   */
+  public int network() {
+    return this.network;
   }
 
   /**
@@ -69,4 +341,75 @@ public final class AddressRange4 extends AbstractAddressRange<Inet4Address> {
   public AddressRange prefixLength(int prefixLength) {
     return (new AddressRange4(this.base(), prefixLength));
   }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public AddressRange4 sibling() {
+    int prefixLength = this.prefixLength();
+
+    if (prefixLength == 0) {
+      return null;
+    }
+
+    return (new AddressRange4(this.network ^ (1 << (MAX_PREFIX_LENGTH - prefixLength)),
+        prefixLength));
+  }
+
+  /**
+   * Retrieves a lazy spliterator over all numeric addresses within this range (in ascending
+   * order). Splitting divides the remaining addresses in half.
+   *
+   * @return a spliterator of numeric addresses (in network byte order).
+   */
+  @NonNull
+  public Spliterator.OfInt spliterator() {
+    long first = Integer.toUnsignedLong(this.network);
+    return (new AddressSpliterator4(first, first + this.blockSize()));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Stream<AddressRange4> subnets(int prefixLength) {
+    if (prefixLength < this.prefixLength() || prefixLength > MAX_PREFIX_LENGTH) {
+      throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+    }
+
+    // subnets are enumerated by their prefix (e.g. the network shifted by the new host length)
+    int shift = MAX_PREFIX_LENGTH - prefixLength;
+    long first = Integer.toUnsignedLong(this.network) >>> shift;
+    long count = 1L << (prefixLength - this.prefixLength());
+
+    return StreamSupport.intStream(new AddressSpliterator4(first, first + count), false)
+        .mapToObj(key -> new AddressRange4((int) (Integer.toUnsignedLong(key) << shift),
+            prefixLength));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public AddressRange4 supernet() {
+    int prefixLength = this.prefixLength();
+    return (prefixLength == 0 ? null : this.supernet(prefixLength - 1));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public AddressRange4 supernet(int prefixLength) {
+    if (prefixLength < 0 || prefixLength > this.prefixLength()) {
+      throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+    }
+
+    return (new AddressRange4(this.network & mask(prefixLength), prefixLength));
+  }
 }
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Provides an immutable longest-prefix-match table for IPv4 ranges which answers every lookup
+ * within at most two array loads (following the DIR-24-8 scheme).
+ *
+ * The table consists of a first level array with one entry for each /24 block of the address
+ * space and a second level array which is made up of 256 entry chunks. First level entries
+ * either refer to the value of the most specific range covering the entire /24 block or, if
+ * any range longer than /24 exists within the block, to a chunk which holds one entry per address
+ * within the block.
+ *
+ * The first level array occupies a constant 64 MiB while each /24 block which contains a range
+ * longer than /24 occupies another 1 KiB. A table built from a full global routing table (roughly
+ * one million prefixes of which only a few thousand exceed /24) thus occupies between 64 and 70
+ * MiB. Construction is dominated by sorting the ranges and filling the first level array and
+ * completes in less than a second for tables of that size (see {@code Table4Benchmark}).
+ *
+ * @param <V> the value type.
+ * @author Johannes Donath
+ */
+public final class AddressRange4Table<V> implements AddressMatcher {
+
+  private static final int CHUNK_SIZE = 256;
+
+  private final int[] blocks;
+  private final int[] chunks;
+  private final Object[] values;
+  private final int size;
+
+  private AddressRange4Table(@NonNull int[] blocks, @NonNull int[] chunks,
+      @NonNull Object[] values, int size) {
+    this.blocks = blocks;
+    this.chunks = chunks;
+    this.values = values;
+    this.size = size;
+  }
+
+  /**
+   * Creates a new empty table builder.
+   *
+   * @param <V> the value type.
+   * @return a builder.
+   */
+  @NonNull
+  public static <V> Builder<V> builder() {
+    return (new Builder<>());
+  }
+
+  /**
+   * Creates a new table from the specified ranges and their associated values.
+   *
+   * @param ranges a map of ranges and their respective values.
+   * @param <V> the value type.
+   * @return a table.
+   */
+  @NonNull
+  public static <V> AddressRange4Table<V> of(
+      @NonNull Map<? extends AddressRange4, ? extends V> ranges) {
+    Builder<V> builder = builder();
+    ranges.forEach(builder::put);
+    return builder.build();
+  }
+
+  /**
+   * Retrieves the approximate amount of memory occupied by the lookup arrays of this table (in
+   * bytes).
+   *
+   * @return an amount of bytes.
+   */
+  public long footprint() {
+    return (((long) this.blocks.length) + this.chunks.length) * Integer.BYTES;
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param address an address.
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V get(@NonNull InetAddress address) {
+    if (!(address instanceof Inet4Address)) {
+      return null;
+    }
+
+    return this.get(AddressRange4.decode(address.getAddress(), 0));
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public V get(int address) {
+    int index = this.lookup(address);
+    return (index == -1 ? null : (V) this.values[index]);
+  }
+
+  /**
+   * Retrieves the index of the value of the most specific range which contains the specified
+   * address.
+   *
+   * Every distinct value is assigned a stable index between zero (inclusive) and {@link
+   * #valueCount()} (exclusive) which permits callers to keep primitive payloads within their own
+   * arrays.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value index or -1 if no range matches.
+   */
+  public int lookup(int address) {
+    int entry = this.blocks[address >>> 8];
+
+    if (entry < 0) {
+      entry = this.chunks[((~entry) << 8) | (address & 0xFF)];
+    }
+
+    return entry - 1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.get(address) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return this.lookup(address) != -1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void matches(@NonNull int[] addresses, int offset, int length, @NonNull long[] result) {
+    AddressMatchers.checkBatch(addresses.length, offset, length, result.length);
+
+    int[] blocks = this.blocks;
+    int[] chunks = this.chunks;
+
+    for (int word = 0; word * 64 < length; word++) {
+      int start = offset + word * 64;
+      int count = Math.min(64, length - word * 64);
+      long bits = 0;
+
+      for (int i = count - 1; i >= 0; i--) {
+        int address = addresses[start + i];
+        int entry = blocks[address >>> 8];
+
+        if (entry < 0) {
+          entry = chunks[((~entry) << 8) | (address & 0xFF)];
+        }
+
+        bits = (bits << 1) | ((-entry) >>> 31);
+      }
+
+      result[word] = bits;
+    }
+  }
+
+  /**
+   * Retrieves the amount of ranges within this table.
+   *
+   * @return an amount of ranges.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Retrieves the value with the specified index.
+   *
+   * @param index a value index.
+   * @return a value.
+   * @throws IndexOutOfBoundsException when the index is out of bounds.
+   * @see #lookup(int)
+   */
+  @NonNull
+  @SuppressWarnings("unchecked")
+  public V value(int index) {
+    return (V) this.values[index];
+  }
+
+  /**
+   * Retrieves the amount of distinct values within this table.
+   *
+   * @return an amount of values.
+   */
+  public int valueCount() {
+    return this.values.length;
+  }
+
+  /**
+   * Provides a factory for immutable IPv4 lookup tables.
+   *
+   * @param <V> the value type.
+   */
+  public static final class Builder<V> {
+
+    private final Map<AddressRange4, V> ranges = new LinkedHashMap<>();
+    private MatchListener listener;
+
+    private Builder() {
+    }
+
+    /**
+     * Registers a listener which is notified whenever a table is built by this builder.
+     *
+     * @param listener a listener or null to remove a previously registered listener.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder<V> listener(@Nullable MatchListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Associates the specified range with a value (replacing any previously associated value).
+     *
+     * @param range an address range.
+     * @param value a value.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder<V> put(@NonNull AddressRange4 range, @NonNull V value) {
+      this.ranges.put(range, Objects.requireNonNull(value, "value"));
+      return this;
+    }
+
+    /**
+     * Removes the specified range from this builder.
+     *
+     * @param range an address range.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder<V> remove(@NonNull AddressRange4 range) {
+      this.ranges.remove(range);
+      return this;
+    }
+
+    /**
+     * Builds a new immutable table based on the current state of this builder.
+     *
+     * @return a table.
+     */
+    @NonNull
+    public AddressRange4Table<V> build() {
+      long startTime = System.nanoTime();
+
+      // ranges are painted in order of their prefix length thus permitting more specific ranges to
+      // overwrite the entries of their respective parents
+      int[] counts = new int[AddressRange4.MAX_PREFIX_LENGTH + 2];
+      for (AddressRange4 range : this.ranges.keySet()) {
+        counts[range.prefixLength() + 1]++;
+      }
+      for (int i = 1; i < counts.length; i++) {
+        counts[i] += counts[i - 1];
+      }
+
+      Map<V, Integer> valueIndices = new HashMap<>();
+      Object[] values = new Object[this.ranges.size()];
+      AddressRange4[] sortedRanges = new AddressRange4[this.ranges.size()];
+      int[] sortedValues = new int[this.ranges.size()];
+
+      for (Map.Entry<AddressRange4, V> entry : this.ranges.entrySet()) {
+        Integer index = valueIndices.get(entry.getValue());
+        if (index == null) {
+          index = valueIndices.size();
+          valueIndices.put(entry.getValue(), index);
+          values[index] = entry.getValue();
+        }
+
+        int position = counts[entry.getKey().prefixLength()]++;
+        sortedRanges[position] = entry.getKey();
+        sortedValues[position] = index + 1;
+      }
+
+      int[] blocks = new int[1 << 24];
+      int[] chunks = new int[0];
+      int chunkCount = 0;
+
+      for (int i = 0; i < sortedRanges.length; i++) {
+        AddressRange4 range = sortedRanges[i];
+        int network = range.network();
+        int prefixLength = range.prefixLength();
+
+        if (prefixLength <= 24) {
+          int start = network >>> 8;
+          Arrays.fill(blocks, start, start + (1 << (24 - prefixLength)), sortedValues[i]);
+          continue;
+        }
+
+        int block = network >>> 8;
+        int entry = blocks[block];
+        if (entry >= 0) {
+          if ((chunkCount + 1) * CHUNK_SIZE > chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(16, chunkCount * 2) * CHUNK_SIZE);
+          }
+
+          Arrays.fill(chunks, chunkCount * CHUNK_SIZE, (chunkCount + 1) * CHUNK_SIZE, entry);
+          entry = ~chunkCount++;
+          blocks[block] = entry;
+        }
+
+        int start = ((~entry) * CHUNK_SIZE) | (network & 0xFF);
+        Arrays.fill(chunks, start, start + (1 << (32 - prefixLength)), sortedValues[i]);
+      }
+
+      AddressRange4Table<V> table = new AddressRange4Table<>(blocks,
+          Arrays.copyOf(chunks, chunkCount * CHUNK_SIZE),
+          Arrays.copyOf(values, valueIndices.size()), sortedRanges.length);
+
+      if (this.listener != null) {
+        this.listener.rebuilt(table, table.size, System.nanoTime() - startTime);
+      }
+
+      return table;
+    }
+  }
+}
@@ -17,7 +17,15 @@
 package com.torchmind.utility.cidr;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents a 128-bit address range (as implemented by IPv6).
@@ -31,8 +39,174 @@ public final class AddressRange6 extends AbstractAddressRange<Inet6Address> {
    */
   public static final int MAX_PREFIX_LENGTH = 128;
 
+  private final long networkHigh;
+  private final long networkLow;
+  private final long maskHigh;
+  private final long maskLow;
+
   protected AddressRange6(@NonNull Inet6Address base, int prefixLength) {
-    super(base, prefixLength);
+    this(base, base.getAddress(), prefixLength);
+  }
+
+  AddressRange6(long networkHigh, long networkLow, int prefixLength) {
+    this(null, networkHigh, networkLow, prefixLength);
+  }
+
+  private AddressRange6(@NonNull Inet6Address base, @NonNull byte[] encoded, int prefixLength) {
+    this(base, decode(encoded, 0), decode(encoded, 8), prefixLength);
+  }
+
+  private AddressRange6(@Nullable Inet6Address base, long networkHigh, long networkLow,
+      int prefixLength) {
+    super(base, prefixLength, MAX_PREFIX_LENGTH);
+    this.networkHigh = networkHigh;
+    this.networkLow = networkLow;
+    this.maskHigh = maskHigh(prefixLength);
+    this.maskLow = maskLow(prefixLength);
+
+    if ((networkHigh & ~this.maskHigh) != 0 || (networkLow & ~this.maskLow) != 0) {
+      throw new IllegalArgumentException(
+          "Invalid address range: Base address is not part of block");
+    }
+  }
+
+  /**
+   * Decodes a big-endian 64-bit address half from the specified array.
+   *
+   * @param encoded an encoded address.
+   * @param offset an offset within the array.
+   * @return a numeric address half.
+   */
+  static long decode(@NonNull byte[] encoded, int offset) {
+    long value = 0;
+
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (encoded[offset + i] & 0xFF);
+    }
+
+    return value;
+  }
+
+  /**
+   * Converts a numeric 128-bit address into its respective address object.
+   *
+   * @param high the upper 64 bits of the address.
+   * @param low the lower 64 bits of the address.
+   * @return an address.
+   */
+  @NonNull
+  static Inet6Address encode(long high, long low) {
+    byte[] encoded = new byte[16];
+
+    for (int i = 0; i < 8; i++) {
+      encoded[i] = (byte) (high >>> (56 - i * 8));
+      encoded[i + 8] = (byte) (low >>> (56 - i * 8));
+    }
+
+    try {
+      // Inet6Address#getByAddress is used explicitly as InetAddress would convert IPv4 mapped
+      // addresses into their IPv4 representation
+      return Inet6Address.getByAddress(null, encoded, -1);
+    } catch (UnknownHostException ex) {
+      throw new AssertionError("Rejected 16 byte address", ex);
+    }
+  }
+
+  /**
+   * Computes the upper 64 bits of a 128-bit value which is shifted to the left.
+   *
+   * @param high the upper 64 bits of the value.
+   * @param low the lower 64 bits of the value.
+   * @param distance the shift distance (between 0 and 128).
+   * @return the upper half of the shifted value.
+   */
+  static long shiftLeftHigh(long high, long low, int distance) {
+    if (distance == 0) {
+      return high;
+    }
+    if (distance < 64) {
+      return (high << distance) | (low >>> (64 - distance));
+    }
+
+    return (distance < 128 ? low << (distance - 64) : 0);
+  }
+
+  /**
+   * Computes the lower 64 bits of a 128-bit value which is shifted to the left.
+   *
+   * @param low the lower 64 bits of the value.
+   * @param distance the shift distance (between 0 and 128).
+   * @return the lower half of the shifted value.
+   */
+  static long shiftLeftLow(long low, int distance) {
+    return (distance < 64 ? low << distance : 0);
+  }
+
+  /**
+   * Computes the upper 64 bits of a 128-bit value which is shifted to the right.
+   *
+   * @param high the upper 64 bits of the value.
+   * @param distance the shift distance (between 0 and 128).
+   * @return the upper half of the shifted value.
+   */
+  static long shiftRightHigh(long high, int distance) {
+    return (distance < 64 ? high >>> distance : 0);
+  }
+
+  /**
+   * Computes the lower 64 bits of a 128-bit value which is shifted to the right.
+   *
+   * @param high the upper 64 bits of the value.
+   * @param low the lower 64 bits of the value.
+   * @param distance the shift distance (between 0 and 128).
+   * @return the lower half of the shifted value.
+   */
+  static long shiftRightLow(long high, long low, int distance) {
+    if (distance == 0) {
+      return low;
+    }
+    if (distance < 64) {
+      return (low >>> distance) | (high << (64 - distance));
+    }
+
+    return (distance < 128 ? high >>> (distance - 64) : 0);
+  }
+
+  /**
+   * Computes the upper 64 bits of the netmask for a given prefix length.
+   *
+   * @param prefixLength a prefix length.
+   * @return the upper half of a netmask.
+   */
+  static long maskHigh(int prefixLength) {
+    if (prefixLength == 0) {
+      return 0;
+    }
+
+    return (prefixLength >= 64 ? -1L : (-1L << (64 - prefixLength)));
+  }
+
+  /**
+   * Computes the lower 64 bits of the netmask for a given prefix length.
+   *
+   * @param prefixLength a prefix length.
+   * @return the lower half of a netmask.
+   */
+  static long maskLow(int prefixLength) {
+    return (prefixLength <= 64 ? 0 : (-1L << (MAX_PREFIX_LENGTH - prefixLength)));
+  }
+
+  /**
+   * Retrieves a lazy stream of all addresses within this range (in ascending order).
+   *
+   * Callers which wish to avoid the construction of address objects should use the numeric
+   * methods of {@link #spliterator()} instead.
+   *
+   * @return a stream of addresses.
+   */
+  @NonNull
+  public Stream<Inet6Address> addresses() {
+    return StreamSupport.stream(this.spliterator(), false);
   }
 
   /**
@@ -49,7 +223,32 @@ public final class AddressRange6 extends AbstractAddressRange<Inet6Address> {
    */
   @Override
   public long blockSize() {
-    return ((long) Math.pow(2, (MAX_PREFIX_LENGTH - this.prefixLength())));
+    int hostLength = this.hostLength();
+    return (hostLength >= 63 ? Long.MAX_VALUE : 1L << hostLength);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  protected Inet6Address createBase() {
+    return encode(this.networkHigh, this.networkLow);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean contains(@NonNull AddressRange range) {
+    if (!(range instanceof AddressRange6)) {
+      return false;
+    }
+
+    AddressRange6 other = (AddressRange6) range;
+    return this.prefixLength() <= other.prefixLength()
+        && (other.networkHigh & this.maskHigh) == this.networkHigh
+        && (other.networkLow & this.maskLow) == this.networkLow;
   }
 
   /**
@@ -58,7 +257,228 @@ public final class AddressRange6 extends AbstractAddressRange<Inet6Address> {
   @NonNull
   @Override
   public byte[] encoded() {
-    return this.encoded(16);
+    byte[] encoded = new byte[16];
+
+    for (int i = 0; i < 8; i++) {
+      encoded[i] = (byte) (this.maskHigh >>> (56 - i * 8));
+      encoded[i + 8] = (byte) (this.maskLow >>> (56 - i * 8));
+    }
+
+    return encoded;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof AddressRange6)) {
+      return false;
+    }
+    AddressRange6 that = (AddressRange6) o;
+    return this.networkHigh == that.networkHigh && this.networkLow == that.networkLow
+        && this.prefixLength() == that.prefixLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Long.hashCode(this.networkHigh) + Long.hashCode(this.networkLow))
+        + this.prefixLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hostLength() {
+    return MAX_PREFIX_LENGTH - this.prefixLength();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isAdjacent(@NonNull AddressRange range) {
+    if (!(range instanceof AddressRange6)) {
+      return false;
+    }
+
+    AddressRange6 other = (AddressRange6) range;
+    return follows(other.networkHigh, other.networkLow, this.lastHigh(), this.lastLow())
+        || follows(this.networkHigh, this.networkLow, other.lastHigh(), other.lastLow());
+  }
+
+  /**
+   * Evaluates whether an address immediately follows another address (without wrapping around at
+   * the end of the address space).
+   *
+   * @param high the upper 64 bits of the address.
+   * @param low the lower 64 bits of the address.
+   * @param previousHigh the upper 64 bits of the preceding address.
+   * @param previousLow the lower 64 bits of the preceding address.
+   * @return true if adjacent, false otherwise.
+   */
+  private static boolean follows(long high, long low, long previousHigh, long previousLow) {
+    if (previousLow != -1) {
+      return high == previousHigh && low == previousLow + 1;
+    }
+
+    return previousHigh != -1 && high == previousHigh + 1 && low == 0;
+  }
+
+  /**
+   * Retrieves the upper 64 bits of the last address within this range.
+   *
+   * @return the upper half of a numeric address.
+   */
+  public long lastHigh() {
+    return this.networkHigh | ~this.maskHigh;
+  }
+
+  /**
+   * Retrieves the lower 64 bits of the last address within this range.
+   *
+   * @return the lower half of a numeric address.
+   */
+  public long lastLow() {
+    return this.networkLow | ~this.maskLow;
+  }
+
+  /**
+   * Retrieves the upper 64 bits of the netmask of this range.
+   *
+   * @return the upper half of a netmask.
+   */
+  public long maskHigh() {
+    return this.maskHigh;
+  }
+
+  /**
+   * Retrieves the lower 64 bits of the netmask of this range.
+   *
+   * @return the lower half of a netmask.
+   */
+  public long maskLow() {
+    return this.maskLow;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    if (!(address instanceof Inet6Address)) {
+      return false;
+    }
+
+    byte[] encoded = address.getAddress();
+    return this.matches(decode(encoded, 0), decode(encoded, 8));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return (high & this.maskHigh) == this.networkHigh && (low & this.maskLow) == this.networkLow;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void matches(@NonNull long[] addresses, int offset, int length,
+      @NonNull long[] result) {
+    AddressMatchers.checkBatch(addresses.length / 2, offset, length, result.length);
+
+    long maskHigh = this.maskHigh;
+    long maskLow = this.maskLow;
+    long networkHigh = this.networkHigh;
+    long networkLow = this.networkLow;
+
+    for (int word = 0; word * 64 < length; word++) {
+      int start = (offset + word * 64) * 2;
+      int count = Math.min(64, length - word * 64);
+      long bits = 0;
+
+      // results are shifted in from the most significant end while the loop body is kept free of
+      // branches in order to permit the compiler to unroll it
+      for (int i = count - 1; i >= 0; i--) {
+        long difference = ((addresses[start + i * 2] & maskHigh) ^ networkHigh)
+            | ((addresses[start + i * 2 + 1] & maskLow) ^ networkLow);
+        bits = (bits << 1) | (((difference - 1) & ~difference) >>> 63);
+      }
+
+      result[word] = bits;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull byte[] buffer, int offset) {
+    return this.matches(decode(buffer, offset), decode(buffer, offset + 8));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull ByteBuffer buffer, int offset) {
+    return this.matches(AddressMatchers.getLong(buffer, offset),
+        AddressMatchers.getLong(buffer, offset + 8));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull String address) {
+    if (!AddressParser.isInet6(address, 0, address.length())) {
+      // IPv4 literals are still validated in order to reject malformed input consistently
+      AddressParser.parseInet4(address);
+      return false;
+    }
+
+    // IPv4-mapped literals are treated as IPv4 addresses in order to match the result of
+    // InetAddress#getByName
+    long[] encoded = new long[2];
+    AddressParser.parseInet6(address, encoded);
+    return !Inet4Embedding.MAPPED.isEmbedded(encoded[0], encoded[1])
+        && this.matches(encoded[0], encoded[1]);
+  }
+
+  /**
+   * Retrieves the upper 64 bits of the base address of this range.
+   *
+   * @return the upper half of a numeric address.
+   */
+  public long networkHigh() {
+    return this.networkHigh;
+  }
+
+  /**
+   * Retrieves the lower 64 bits of the base address of this range.
+   *
+   * @return the lower half of a numeric address.
+   */
+  public long networkLow() {
+    return this.networkLow;
   }
 
   /**
@@ -69,4 +489,151 @@ public final class AddressRange6 extends AbstractAddressRange<Inet6Address> {
   public AddressRange prefixLength(int prefixLength) {
     return (new AddressRange6(this.base(), prefixLength));
   }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public AddressRange6 sibling() {
+    int prefixLength = this.prefixLength();
+
+    if (prefixLength == 0) {
+      return null;
+    }
+
+    int hostLength = MAX_PREFIX_LENGTH - prefixLength;
+    return (new AddressRange6(this.networkHigh ^ shiftLeftHigh(0, 1, hostLength),
+        this.networkLow ^ shiftLeftLow(1, hostLength), prefixLength));
+  }
+
+  /**
+   * Retrieves a lazy spliterator over all addresses within this range (in ascending order).
+   * Splitting divides the remaining addresses in half.
+   *
+   * @return a spliterator.
+   */
+  @NonNull
+  public AddressSpliterator6 spliterator() {
+    return (new AddressSpliterator6(this.networkHigh, this.networkLow, this.lastHigh(),
+        this.lastLow()));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Stream<AddressRange6> subnets(int prefixLength) {
+    if (prefixLength < this.prefixLength() || prefixLength > MAX_PREFIX_LENGTH) {
+      throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+    }
+
+    // subnets are enumerated by their prefix (e.g. the network shifted by the new host length)
+    int shift = MAX_PREFIX_LENGTH - prefixLength;
+    AddressSpliterator6 prefixes = new AddressSpliterator6(
+        shiftRightHigh(this.networkHigh, shift),
+        shiftRightLow(this.networkHigh, this.networkLow, shift),
+        shiftRightHigh(this.lastHigh(), shift),
+        shiftRightLow(this.lastHigh(), this.lastLow(), shift));
+
+    return StreamSupport.stream(new SubnetSpliterator(prefixes, prefixLength), false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public AddressRange6 supernet() {
+    int prefixLength = this.prefixLength();
+    return (prefixLength == 0 ? null : this.supernet(prefixLength - 1));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public AddressRange6 supernet(int prefixLength) {
+    if (prefixLength < 0 || prefixLength > this.prefixLength()) {
+      throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+    }
+
+    return (new AddressRange6(this.networkHigh & maskHigh(prefixLength),
+        this.networkLow & maskLow(prefixLength), prefixLength));
+  }
+
+  /**
+   * Maps a spliterator of shifted subnet prefixes to their respective ranges.
+   */
+  private static final class SubnetSpliterator implements Spliterator<AddressRange6> {
+
+    private final AddressSpliterator6 prefixes;
+    private final int prefixLength;
+    private final int shift;
+
+    private SubnetSpliterator(@NonNull AddressSpliterator6 prefixes, int prefixLength) {
+      this.prefixes = prefixes;
+      this.prefixLength = prefixLength;
+      this.shift = MAX_PREFIX_LENGTH - prefixLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int characteristics() {
+      return this.prefixes.characteristics();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long estimateSize() {
+      return this.prefixes.estimateSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachRemaining(@NonNull Consumer<? super AddressRange6> action) {
+      this.prefixes
+          .forEachRemaining((long high, long low) -> action.accept(this.create(high, low)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean tryAdvance(@NonNull Consumer<? super AddressRange6> action) {
+      return this.prefixes
+          .tryAdvance((long high, long low) -> action.accept(this.create(high, low)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    @Override
+    public Spliterator<AddressRange6> trySplit() {
+      AddressSpliterator6 prefix = this.prefixes.trySplit();
+      return (prefix == null ? null : new SubnetSpliterator(prefix, this.prefixLength));
+    }
+
+    /**
+     * Creates the subnet which corresponds to the specified shifted prefix.
+     *
+     * @param high the upper half of a shifted prefix.
+     * @param low the lower half of a shifted prefix.
+     * @return a subnet.
+     */
+    @NonNull
+    private AddressRange6 create(long high, long low) {
+      return (new AddressRange6(shiftLeftHigh(high, low, this.shift), shiftLeftLow(low, this.shift),
+          this.prefixLength));
+    }
+  }
 }
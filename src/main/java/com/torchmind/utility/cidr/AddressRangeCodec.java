@@ -0,0 +1,476 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Provides a compact binary encoding for collections of address ranges (for instance in order to
+ * distribute range lists between nodes).
+ *
+ * Ranges are sorted and deduplicated before they are encoded. Each network address is then
+ * stored as the (unsigned) difference to its predecessor using variable length integers (LEB128)
+ * and thus typically occupies between one and four bytes. Payloads are read and written through
+ * a fixed size buffer and may thus be streamed over arbitrary channels.
+ *
+ * All fixed size values are stored in network byte order. A payload consists of:
+ *
+ * <ol>
+ * <li>An eight byte header: the magic {@code "CIDW"}, the format version (u16) and two reserved
+ * bytes (which are zero).</li>
+ * <li>The amount of IPv4 ranges (varint) followed by one varint per range which holds the
+ * network delta shifted left by six bits combined with the prefix length.</li>
+ * <li>The amount of IPv6 ranges (varint) followed by the prefix length (u8), the delta of the
+ * upper half (varint) and the lower half (varint) of each range. The lower half is stored as a
+ * delta when the upper half is unchanged and as an absolute value otherwise.</li>
+ * <li>The CRC32 of all preceding bytes following the header (u32).</li>
+ * </ol>
+ *
+ * @author Johannes Donath
+ */
+public final class AddressRangeCodec {
+
+  /**
+   * Defines the format version which is written and understood by this implementation.
+   */
+  public static final int VERSION = 1;
+
+  private static final int MAGIC = 0x43494457;
+  private static final int HEADER_SIZE = 8;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private AddressRangeCodec() {
+  }
+
+  /**
+   * Decodes a payload from the specified channel and passes each range to the specified consumer
+   * (IPv4 ranges in ascending order followed by IPv6 ranges in ascending order).
+   *
+   * The payload is decoded and verified in its entirety before any range is passed to the
+   * consumer, thus the consumer never observes ranges of a corrupted payload. The channel is read
+   * up to the end of the payload (but not necessarily to its end) and is not closed by this
+   * method.
+   *
+   * @param channel a channel.
+   * @param consumer a consumer.
+   * @return the amount of decoded ranges.
+   * @throws IOException when reading from the channel fails or the payload is malformed.
+   */
+  public static int read(@NonNull ReadableByteChannel channel,
+      @NonNull Consumer<? super AddressRange> consumer) throws IOException {
+    Input input = new Input(channel);
+
+    input.require(HEADER_SIZE);
+    if (input.buffer.getInt() != MAGIC) {
+      throw new IOException("Invalid payload: Missing header");
+    }
+    int version = input.buffer.getShort() & 0xFFFF;
+    if (version != VERSION) {
+      throw new IOException("Unsupported payload version: " + version);
+    }
+    if (input.buffer.getShort() != 0) {
+      throw new IOException("Invalid payload: Reserved header bits are set");
+    }
+    input.mark = input.buffer.position();
+
+    // ranges are staged until the checksum has been verified while the decoded counts are not
+    // trusted for presizing
+    List<AddressRange> ranges = new ArrayList<>();
+    try {
+      int count4 = count(input.readVarLong());
+      long network = 0;
+      for (int i = 0; i < count4; i++) {
+        long value = input.readVarLong();
+
+        network += value >>> 6;
+        if (network > 0xFFFFFFFFL) {
+          throw new IOException("Invalid payload: IPv4 address out of bounds");
+        }
+        ranges.add(new AddressRange4((int) network, (int) value & 0x3F));
+      }
+
+      int count6 = count(input.readVarLong());
+      long high = 0;
+      long low = 0;
+      for (int i = 0; i < count6; i++) {
+        int prefixLength = input.readByte() & 0xFF;
+        long highDelta = input.readVarLong();
+        long lowValue = input.readVarLong();
+
+        high += highDelta;
+        low = (highDelta == 0 ? low + lowValue : lowValue);
+        ranges.add(new AddressRange6(high, low, prefixLength));
+      }
+    } catch (IllegalArgumentException ex) {
+      throw new IOException("Invalid payload: " + ex.getMessage(), ex);
+    }
+
+    int checksum = input.checksum();
+    input.require(Integer.BYTES);
+    if (input.buffer.getInt() != checksum) {
+      throw new IOException("Invalid payload: Checksum mismatch");
+    }
+
+    ranges.forEach(consumer);
+    return ranges.size();
+  }
+
+  /**
+   * Decodes a payload from the specified channel into a list.
+   *
+   * @param channel a channel.
+   * @return a list of ranges.
+   * @throws IOException when reading from the channel fails or the payload is malformed.
+   * @see #read(ReadableByteChannel, Consumer)
+   */
+  @NonNull
+  public static List<AddressRange> readList(@NonNull ReadableByteChannel channel)
+      throws IOException {
+    List<AddressRange> ranges = new ArrayList<>();
+    read(channel, ranges::add);
+    return ranges;
+  }
+
+  /**
+   * Decodes a payload from the specified channel into a set.
+   *
+   * @param channel a channel.
+   * @return a set.
+   * @throws IOException when reading from the channel fails or the payload is malformed.
+   * @see #read(ReadableByteChannel, Consumer)
+   */
+  @NonNull
+  public static AddressRangeSet readSet(@NonNull ReadableByteChannel channel) throws IOException {
+    AddressRangeSet.Builder builder = AddressRangeSet.builder();
+    read(channel, builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Encodes the specified ranges and writes the resulting payload to the specified channel (which
+   * is not closed by this method).
+   *
+   * @param ranges a collection of ranges.
+   * @param channel a channel.
+   * @return the amount of written bytes.
+   * @throws IOException when writing to the channel fails.
+   * @throws IllegalArgumentException when an unsupported range type is passed.
+   */
+  public static long write(@NonNull Collection<? extends AddressRange> ranges,
+      @NonNull WritableByteChannel channel) throws IOException {
+    long[] keys4 = new long[ranges.size()];
+    long[] entries6 = AddressIntervals.EMPTY;
+    int count4 = 0;
+    int count6 = 0;
+
+    // IPv4 ranges are sorted by a single key while IPv6 ranges are sorted by their network
+    // address with the prefix length in place of the interval end
+    for (AddressRange range : ranges) {
+      if (range instanceof AddressRange4) {
+        keys4[count4++] = (Integer.toUnsignedLong(((AddressRange4) range).network()) << 6)
+            | range.prefixLength();
+      } else if (range instanceof AddressRange6) {
+        AddressRange6 range6 = (AddressRange6) range;
+        entries6 = AddressIntervals.append(entries6, count6++, range6.networkHigh(),
+            range6.networkLow(), range6.prefixLength(), 0);
+      } else {
+        throw new IllegalArgumentException(
+            "Unsupported address range type: " + range.getClass().getCanonicalName());
+      }
+    }
+    Arrays.sort(keys4, 0, count4);
+    entries6 = AddressIntervals.sort(entries6, count6);
+
+    Output output = new Output(channel);
+    output.buffer.putInt(MAGIC);
+    output.buffer.putShort((short) VERSION);
+    output.buffer.putShort((short) 0);
+    output.mark = output.buffer.position();
+
+    int unique4 = 0;
+    for (int i = 0; i < count4; i++) {
+      if (i == 0 || keys4[i] != keys4[i - 1]) {
+        keys4[unique4++] = keys4[i];
+      }
+    }
+    output.writeVarLong(unique4);
+    long previous = 0;
+    for (int i = 0; i < unique4; i++) {
+      long network = keys4[i] >>> 6;
+      output.writeVarLong(((network - previous) << 6) | (keys4[i] & 0x3F));
+      previous = network;
+    }
+
+    int unique6 = deduplicate6(entries6, count6);
+    output.writeVarLong(unique6);
+    long high = 0;
+    long low = 0;
+    for (int i = 0; i < unique6; i++) {
+      int offset = i * AddressIntervals.STRIDE;
+      long highDelta = entries6[offset] - high;
+
+      output.writeByte((int) entries6[offset + 2]);
+      output.writeVarLong(highDelta);
+      output.writeVarLong(highDelta == 0 ? entries6[offset + 1] - low : entries6[offset + 1]);
+      high = entries6[offset];
+      low = entries6[offset + 1];
+    }
+
+    int checksum = output.checksum();
+    output.require(Integer.BYTES);
+    output.buffer.putInt(checksum);
+    return output.flush();
+  }
+
+  /**
+   * Validates a decoded element count.
+   *
+   * @param value a decoded value.
+   * @return a count.
+   * @throws IOException when the count is out of bounds.
+   */
+  private static int count(long value) throws IOException {
+    if (value < 0 || value > Integer.MAX_VALUE) {
+      throw new IOException("Invalid payload: Element count out of bounds");
+    }
+
+    return (int) value;
+  }
+
+  /**
+   * Orders IPv6 entries which share a network address by their prefix length and removes
+   * duplicates.
+   *
+   * @param entries an array of entries sorted by network address.
+   * @param count the amount of entries within the array.
+   * @return the amount of remaining entries.
+   */
+  private static int deduplicate6(@NonNull long[] entries, int count) {
+    final int stride = AddressIntervals.STRIDE;
+
+    // runs of equal network addresses are short, thus an insertion sort suffices
+    for (int i = 1; i < count; i++) {
+      long high = entries[i * stride];
+      long low = entries[i * stride + 1];
+      long prefixLength = entries[i * stride + 2];
+
+      int j = i - 1;
+      while (j >= 0 && entries[j * stride] == high && entries[j * stride + 1] == low
+          && entries[j * stride + 2] > prefixLength) {
+        entries[(j + 1) * stride + 2] = entries[j * stride + 2];
+        j--;
+      }
+      entries[(j + 1) * stride + 2] = prefixLength;
+    }
+
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      int offset = i * stride;
+      int previous = (unique - 1) * stride;
+
+      if (unique == 0 || entries[offset] != entries[previous]
+          || entries[offset + 1] != entries[previous + 1]
+          || entries[offset + 2] != entries[previous + 2]) {
+        System.arraycopy(entries, offset, entries, unique * stride, stride);
+        unique++;
+      }
+    }
+
+    return unique;
+  }
+
+  /**
+   * Reads a payload from a channel through a fixed size buffer.
+   */
+  private static final class Input {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 checksum = new CRC32();
+    private int mark;
+
+    private Input(@NonNull ReadableByteChannel channel) {
+      this.channel = channel;
+      this.buffer.flip();
+    }
+
+    /**
+     * Computes the checksum of all bytes which have been consumed since the header.
+     *
+     * @return a checksum.
+     */
+    private int checksum() {
+      this.checksum.update(this.buffer.array(), this.mark, this.buffer.position() - this.mark);
+      this.mark = this.buffer.position();
+      return (int) this.checksum.getValue();
+    }
+
+    /**
+     * Reads a single byte.
+     *
+     * @return a byte.
+     * @throws IOException when reading fails or the channel ends prematurely.
+     */
+    private byte readByte() throws IOException {
+      if (!this.buffer.hasRemaining()) {
+        this.require(1);
+      }
+
+      return this.buffer.get();
+    }
+
+    /**
+     * Reads an unsigned variable length integer (LEB128).
+     *
+     * @return a value.
+     * @throws IOException when reading fails or the value is malformed.
+     */
+    private long readVarLong() throws IOException {
+      long value = 0;
+
+      for (int shift = 0; shift < Long.SIZE; shift += 7) {
+        byte b = this.readByte();
+        value |= (long) (b & 0x7F) << shift;
+
+        if (b >= 0) {
+          return value;
+        }
+      }
+
+      throw new IOException("Invalid payload: Malformed variable length integer");
+    }
+
+    /**
+     * Ensures that at least the specified amount of bytes is available within the buffer.
+     *
+     * @param length an amount of bytes.
+     * @throws IOException when reading fails or the channel ends prematurely.
+     */
+    private void require(int length) throws IOException {
+      if (this.buffer.remaining() >= length) {
+        return;
+      }
+
+      this.checksum.update(this.buffer.array(), this.mark, this.buffer.position() - this.mark);
+      this.buffer.compact();
+      this.mark = 0;
+
+      while (this.buffer.position() < length) {
+        if (this.channel.read(this.buffer) == -1) {
+          throw new EOFException("Invalid payload: Unexpected end of stream");
+        }
+      }
+
+      this.buffer.flip();
+    }
+  }
+
+  /**
+   * Writes a payload to a channel through a fixed size buffer.
+   */
+  private static final class Output {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 checksum = new CRC32();
+    private int mark;
+    private long written;
+
+    private Output(@NonNull WritableByteChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * Computes the checksum of all bytes which have been written since the header.
+     *
+     * @return a checksum.
+     */
+    private int checksum() {
+      this.checksum.update(this.buffer.array(), this.mark, this.buffer.position() - this.mark);
+      this.mark = this.buffer.position();
+      return (int) this.checksum.getValue();
+    }
+
+    /**
+     * Writes all buffered bytes to the channel.
+     *
+     * @return the total amount of written bytes.
+     * @throws IOException when writing fails.
+     */
+    private long flush() throws IOException {
+      this.buffer.flip();
+      while (this.buffer.hasRemaining()) {
+        this.written += this.channel.write(this.buffer);
+      }
+      this.buffer.clear();
+
+      return this.written;
+    }
+
+    /**
+     * Ensures that at least the specified amount of bytes may be written to the buffer.
+     *
+     * @param length an amount of bytes.
+     * @throws IOException when writing fails.
+     */
+    private void require(int length) throws IOException {
+      if (this.buffer.remaining() < length) {
+        this.checksum.update(this.buffer.array(), this.mark, this.buffer.position() - this.mark);
+        this.mark = 0;
+        this.flush();
+      }
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param value a byte.
+     * @throws IOException when writing fails.
+     */
+    private void writeByte(int value) throws IOException {
+      this.require(1);
+      this.buffer.put((byte) value);
+    }
+
+    /**
+     * Writes an unsigned variable length integer (LEB128).
+     *
+     * @param value a value.
+     * @throws IOException when writing fails.
+     */
+    private void writeVarLong(long value) throws IOException {
+      this.require(10);
+
+      while ((value & ~0x7FL) != 0) {
+        this.buffer.put((byte) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      this.buffer.put((byte) value);
+    }
+  }
+}
@@ -0,0 +1,783 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Provides a read-only longest-prefix-match table which is backed by a compiled binary file.
+ *
+ * Databases are compiled using a {@link Writer} which flattens all ranges into a sorted list of
+ * disjoint intervals (each of which carries the value of the most specific range covering it).
+ * Opening a database maps its file into memory and performs lookups directly against the mapped
+ * buffer (using a binary search) without any deserialization. Opening thus only inspects the
+ * header and value table (unless checksum verification is requested) while the mapped pages are
+ * shared between all processes which open the same file.
+ *
+ * All values within the file are stored in network byte order. A file consists of the following
+ * sections (where each section begins at an offset which is a multiple of eight bytes):
+ *
+ * <ol>
+ * <li>A 32 byte header: the magic {@code "CIDR"}, the format version (u16), reserved (u16), the
+ * amount of IPv4 intervals, the amount of IPv6 intervals, the amount of values, the size of the
+ * value data (in bytes), the CRC32 of all following sections and four reserved bytes.</li>
+ * <li>The first addresses, last addresses and value indices of all IPv4 intervals (as three
+ * separate int arrays).</li>
+ * <li>The first addresses, last addresses (as pairs of longs) and value indices (as ints) of all
+ * IPv6 intervals.</li>
+ * <li>The value table: {@code valueCount + 1} offsets into the value data followed by the UTF-8
+ * encoded value data.</li>
+ * </ol>
+ *
+ * Instances are immutable and may be shared between threads freely.
+ *
+ * @author Johannes Donath
+ */
+public final class AddressRangeDatabase implements AddressMatcher {
+
+  /**
+   * Defines the format version which is written and understood by this implementation.
+   */
+  public static final int VERSION = 1;
+
+  private static final int MAGIC = 0x43494452;
+  private static final int HEADER_SIZE = 32;
+
+  private final ByteBuffer buffer;
+  private final int version;
+  private final int count4;
+  private final int count6;
+  private final int valueCount;
+
+  private final int ends4;
+  private final int values4;
+  private final int starts6;
+  private final int ends6;
+  private final int values6;
+  private final int valueOffsets;
+  private final int valueData;
+
+  private AddressRangeDatabase(@NonNull ByteBuffer buffer, boolean verifyChecksum)
+      throws IOException {
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Invalid database: Missing file header");
+    }
+
+    this.buffer = buffer;
+    this.version = buffer.getShort(4) & 0xFFFF;
+    if (this.version != VERSION) {
+      throw new IOException("Unsupported database version: " + this.version);
+    }
+
+    this.count4 = buffer.getInt(8);
+    this.count6 = buffer.getInt(12);
+    this.valueCount = buffer.getInt(16);
+    int valueSize = buffer.getInt(20);
+
+    if (this.count4 < 0 || this.count6 < 0 || this.valueCount < 0 || valueSize < 0) {
+      throw new IOException("Invalid database: Negative section size");
+    }
+
+    // the layout is computed in long arithmetic as a crafted header could otherwise wrap the
+    // section offsets; all offsets fit into an int once the total size has been verified
+    long ends4 = HEADER_SIZE + (long) this.count4 * Integer.BYTES;
+    long values4 = ends4 + (long) this.count4 * Integer.BYTES;
+    long starts6 = align(values4 + (long) this.count4 * Integer.BYTES);
+    long ends6 = starts6 + (long) this.count6 * 2 * Long.BYTES;
+    long values6 = ends6 + (long) this.count6 * 2 * Long.BYTES;
+    long valueOffsets = align(values6 + (long) this.count6 * Integer.BYTES);
+    long valueData = valueOffsets + ((long) this.valueCount + 1) * Integer.BYTES;
+
+    if (valueData + valueSize != buffer.capacity()) {
+      throw new IOException("Invalid database: Expected " + (valueData + valueSize)
+          + " bytes but got " + buffer.capacity());
+    }
+
+    this.ends4 = (int) ends4;
+    this.values4 = (int) values4;
+    this.starts6 = (int) starts6;
+    this.ends6 = (int) ends6;
+    this.values6 = (int) values6;
+    this.valueOffsets = (int) valueOffsets;
+    this.valueData = (int) valueData;
+
+    int previous = 0;
+    for (int i = 0; i <= this.valueCount; i++) {
+      int offset = buffer.getInt(this.valueOffsets + i * Integer.BYTES);
+
+      if (offset < previous || offset > valueSize || (i == 0 && offset != 0)) {
+        throw new IOException("Invalid database: Value offset out of bounds: " + offset);
+      }
+      previous = offset;
+    }
+
+    if (verifyChecksum) {
+      ByteBuffer payload = buffer.duplicate();
+      payload.position(HEADER_SIZE);
+
+      CRC32 checksum = new CRC32();
+      checksum.update(payload);
+
+      if ((int) checksum.getValue() != buffer.getInt(24)) {
+        throw new IOException("Invalid database: Checksum mismatch");
+      }
+
+      // the file has been read in its entirety already, thus the value indices of all intervals
+      // are verified as well
+      for (int i = 0; i < this.count4; i++) {
+        this.checkValueIndex(buffer.getInt(this.values4 + i * Integer.BYTES));
+      }
+      for (int i = 0; i < this.count6; i++) {
+        this.checkValueIndex(buffer.getInt(this.values6 + i * Integer.BYTES));
+      }
+    }
+  }
+
+  /**
+   * Aligns an offset to the next multiple of eight bytes.
+   *
+   * @param offset an offset.
+   * @return an aligned offset.
+   */
+  private static long align(long offset) {
+    return (offset + 7) & ~7;
+  }
+
+  /**
+   * Verifies a value index which has been read from the underlying buffer.
+   *
+   * @param index a value index.
+   * @return the value index.
+   * @throws IOException when the index is out of bounds.
+   */
+  private int checkValueIndex(int index) throws IOException {
+    if (index < 0 || index >= this.valueCount) {
+      throw new IOException("Invalid database: Value index out of bounds: " + index);
+    }
+
+    return index;
+  }
+
+  /**
+   * Opens the database which is stored within the specified file and verifies its checksum.
+   *
+   * @param path a file path.
+   * @return a database.
+   * @throws IOException when reading the file fails or the file is not a valid database.
+   */
+  @NonNull
+  public static AddressRangeDatabase open(@NonNull Path path) throws IOException {
+    return open(path, true);
+  }
+
+  /**
+   * Opens the database which is stored within the specified file.
+   *
+   * Skipping the checksum verification permits databases to be opened without reading all of
+   * their intervals. Note that the header and value table are verified regardless of this setting
+   * while the value indices of intervals are verified upon lookup instead.
+   *
+   * @param path a file path.
+   * @param verifyChecksum true if the checksum shall be verified, false otherwise.
+   * @return a database.
+   * @throws IOException when reading the file fails or the file is not a valid database.
+   */
+  @NonNull
+  public static AddressRangeDatabase open(@NonNull Path path, boolean verifyChecksum)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Invalid database: File exceeds 2 GiB");
+      }
+
+      // mappings remain valid when their channel is closed
+      return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), verifyChecksum);
+    }
+  }
+
+  /**
+   * Creates a database which is backed by the specified buffer.
+   *
+   * @param buffer a buffer which holds an entire database file.
+   * @param verifyChecksum true if the checksum shall be verified, false otherwise.
+   * @return a database.
+   * @throws IOException when the buffer does not hold a valid database.
+   */
+  @NonNull
+  public static AddressRangeDatabase wrap(@NonNull ByteBuffer buffer, boolean verifyChecksum)
+      throws IOException {
+    return (new AddressRangeDatabase(buffer.duplicate(), verifyChecksum));
+  }
+
+  /**
+   * Creates a new empty database writer.
+   *
+   * @return a writer.
+   */
+  @NonNull
+  public static Writer writer() {
+    return (new Writer());
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param address an address.
+   * @return a value or null if no range matches.
+   * @throws UncheckedIOException when the matching interval refers to an invalid value.
+   */
+  @Nullable
+  public String get(@NonNull InetAddress address) {
+    byte[] encoded = address.getAddress();
+
+    if (address instanceof Inet4Address) {
+      return this.get(AddressRange4.decode(encoded, 0));
+    }
+    if (address instanceof Inet6Address) {
+      return this.get(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return null;
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value or null if no range matches.
+   * @throws UncheckedIOException when the matching interval refers to an invalid value.
+   */
+  @Nullable
+  public String get(int address) {
+    int index = this.lookup(address);
+    return (index == -1 ? null : this.value(index));
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a value or null if no range matches.
+   * @throws UncheckedIOException when the matching interval refers to an invalid value.
+   */
+  @Nullable
+  public String get(long high, long low) {
+    int index = this.lookup(high, low);
+    return (index == -1 ? null : this.value(index));
+  }
+
+  /**
+   * Retrieves the amount of intervals which make up this database.
+   *
+   * @return an amount of intervals.
+   */
+  public int intervalCount() {
+    return this.count4 + this.count6;
+  }
+
+  /**
+   * Retrieves the index of the value of the most specific range which contains the specified
+   * address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value index or -1 if no range matches.
+   * @throws UncheckedIOException when the matching interval refers to an invalid value.
+   * @see #value(int)
+   */
+  public int lookup(int address) {
+    ByteBuffer buffer = this.buffer;
+    int key = address ^ Integer.MIN_VALUE;
+    int lower = 0;
+    int upper = this.count4 - 1;
+
+    // locate the last interval which begins at or before the address
+    while (lower <= upper) {
+      int middle = (lower + upper) >>> 1;
+
+      if ((buffer.getInt(HEADER_SIZE + middle * Integer.BYTES) ^ Integer.MIN_VALUE) > key) {
+        upper = middle - 1;
+      } else {
+        lower = middle + 1;
+      }
+    }
+
+    if (upper == -1
+        || (buffer.getInt(this.ends4 + upper * Integer.BYTES) ^ Integer.MIN_VALUE) < key) {
+      return -1;
+    }
+
+    return this.valueIndex(buffer.getInt(this.values4 + upper * Integer.BYTES));
+  }
+
+  /**
+   * Retrieves the index of the value of the most specific range which contains the specified
+   * address.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a value index or -1 if no range matches.
+   * @throws UncheckedIOException when the matching interval refers to an invalid value.
+   * @see #value(int)
+   */
+  public int lookup(long high, long low) {
+    ByteBuffer buffer = this.buffer;
+    int lower = 0;
+    int upper = this.count6 - 1;
+
+    while (lower <= upper) {
+      int middle = (lower + upper) >>> 1;
+      int offset = this.starts6 + middle * 2 * Long.BYTES;
+
+      if (AddressIntervals.compare(buffer.getLong(offset), buffer.getLong(offset + Long.BYTES),
+          high, low) > 0) {
+        upper = middle - 1;
+      } else {
+        lower = middle + 1;
+      }
+    }
+
+    if (upper == -1) {
+      return -1;
+    }
+
+    int offset = this.ends6 + upper * 2 * Long.BYTES;
+    if (AddressIntervals.compare(buffer.getLong(offset), buffer.getLong(offset + Long.BYTES), high,
+        low) < 0) {
+      return -1;
+    }
+
+    return this.valueIndex(buffer.getInt(this.values6 + upper * Integer.BYTES));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.get(address) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return this.lookup(address) != -1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return this.lookup(high, low) != -1;
+  }
+
+  /**
+   * Retrieves the value with the specified index (decoding it from the underlying buffer).
+   *
+   * @param index a value index.
+   * @return a value.
+   * @throws IndexOutOfBoundsException when the index is out of bounds.
+   * @see #lookup(int)
+   * @see #lookup(long, long)
+   */
+  @NonNull
+  public String value(int index) {
+    if (index < 0 || index >= this.valueCount) {
+      throw new IndexOutOfBoundsException("Invalid value index: " + index);
+    }
+
+    int start = this.buffer.getInt(this.valueOffsets + index * Integer.BYTES);
+    int end = this.buffer.getInt(this.valueOffsets + (index + 1) * Integer.BYTES);
+
+    byte[] encoded = new byte[end - start];
+    ByteBuffer data = this.buffer.duplicate();
+    data.position(this.valueData + start);
+    data.get(encoded);
+
+    return (new String(encoded, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Verifies a value index which has been read from the underlying buffer during a lookup.
+   *
+   * @param index a value index.
+   * @return the value index.
+   * @throws UncheckedIOException when the index is out of bounds.
+   */
+  private int valueIndex(int index) {
+    try {
+      return this.checkValueIndex(index);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Retrieves the amount of distinct values within this database.
+   *
+   * @return an amount of values.
+   */
+  public int valueCount() {
+    return this.valueCount;
+  }
+
+  /**
+   * Retrieves the format version of this database.
+   *
+   * @return a version.
+   */
+  public int version() {
+    return this.version;
+  }
+
+  /**
+   * Provides a factory for compiled database files.
+   */
+  public static final class Writer {
+
+    private final Map<AddressRange, String> ranges = new LinkedHashMap<>();
+    private MatchListener listener;
+
+    private Writer() {
+    }
+
+    /**
+     * Flattens a list of ranges (sorted by their first address and prefix length) into a list of
+     * disjoint intervals which carry the value of the most specific range covering them.
+     *
+     * @param ranges a sorted list of ranges.
+     * @param values the value indices of all ranges (in the same order).
+     * @param intervals a list which receives the intervals.
+     * @param intervalValues a list which receives the value index of each interval.
+     */
+    private static void flatten(@NonNull List<AddressRange> ranges, @NonNull int[] values,
+        @NonNull List<long[]> intervals, @NonNull List<Integer> intervalValues) {
+      long[] stack = new long[AddressRange6.MAX_PREFIX_LENGTH + 1];
+      int[] stackValues = new int[AddressRange6.MAX_PREFIX_LENGTH + 1];
+      int depth = 0;
+
+      // the first address which has not been assigned to an interval yet
+      long cursorHigh = 0;
+      long cursorLow = 0;
+      boolean exhausted = false;
+
+      for (int i = 0; i <= ranges.size(); i++) {
+        long startHigh = 0;
+        long startLow = 0;
+        long endHigh = -1;
+        long endLow = -1;
+
+        if (i != ranges.size()) {
+          long[] interval = AddressIntervals.append(new long[AddressIntervals.STRIDE], 0,
+              ranges.get(i));
+          startHigh = interval[0];
+          startLow = interval[1];
+          endHigh = interval[2];
+          endLow = interval[3];
+        }
+
+        // close all enclosing ranges which end before the current range (or all ranges once the
+        // end of the list has been reached)
+        while (depth != 0 && (i == ranges.size() || AddressIntervals
+            .compare(stack[(depth - 1) * 2], stack[(depth - 1) * 2 + 1], startHigh, startLow)
+            < 0)) {
+          depth--;
+          long topHigh = stack[depth * 2];
+          long topLow = stack[depth * 2 + 1];
+
+          if (!exhausted
+              && AddressIntervals.compare(cursorHigh, cursorLow, topHigh, topLow) <= 0) {
+            emit(intervals, intervalValues, cursorHigh, cursorLow, topHigh, topLow,
+                stackValues[depth]);
+          }
+
+          exhausted = topHigh == -1 && topLow == -1;
+          cursorLow = topLow + 1;
+          cursorHigh = topHigh + (cursorLow == 0 ? 1 : 0);
+        }
+
+        if (i == ranges.size()) {
+          break;
+        }
+
+        if (depth != 0 && AddressIntervals.compare(cursorHigh, cursorLow, startHigh, startLow)
+            < 0) {
+          emit(intervals, intervalValues, cursorHigh, cursorLow,
+              startHigh - (startLow == 0 ? 1 : 0), startLow - 1, stackValues[depth - 1]);
+        }
+
+        stack[depth * 2] = endHigh;
+        stack[depth * 2 + 1] = endLow;
+        stackValues[depth++] = values[i];
+        cursorHigh = startHigh;
+        cursorLow = startLow;
+        exhausted = false;
+      }
+    }
+
+    /**
+     * Appends an interval to a list (merging it with its predecessor when both are adjacent and
+     * carry the same value).
+     */
+    private static void emit(@NonNull List<long[]> intervals, @NonNull List<Integer> values,
+        long startHigh, long startLow, long endHigh, long endLow, int value) {
+      int last = intervals.size() - 1;
+
+      if (last != -1 && values.get(last) == value) {
+        long[] previous = intervals.get(last);
+        long nextLow = previous[3] + 1;
+        long nextHigh = previous[2] + (nextLow == 0 ? 1 : 0);
+
+        if (nextHigh == startHigh && nextLow == startLow) {
+          previous[2] = endHigh;
+          previous[3] = endLow;
+          return;
+        }
+      }
+
+      intervals.add(new long[]{startHigh, startLow, endHigh, endLow});
+      values.add(value);
+    }
+
+    /**
+     * Registers a listener which is notified whenever a database is compiled by this writer.
+     *
+     * @param listener a listener or null to remove a previously registered listener.
+     * @return a reference to this writer.
+     */
+    @NonNull
+    public Writer listener(@Nullable MatchListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Associates the specified range with a value (replacing any previously associated value).
+     *
+     * @param range an address range.
+     * @param value a value.
+     * @return a reference to this writer.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public Writer put(@NonNull AddressRange range, @NonNull String value) {
+      if (!(range instanceof AddressRange4) && !(range instanceof AddressRange6)) {
+        throw new IllegalArgumentException(
+            "Unsupported address range type: " + range.getClass().getCanonicalName());
+      }
+
+      this.ranges.put(range, Objects.requireNonNull(value, "value"));
+      return this;
+    }
+
+    /**
+     * Associates all specified ranges with their respective values.
+     *
+     * @param ranges a map of ranges and their respective values.
+     * @return a reference to this writer.
+     */
+    @NonNull
+    public Writer putAll(@NonNull Map<? extends AddressRange, String> ranges) {
+      ranges.forEach(this::put);
+      return this;
+    }
+
+    /**
+     * Removes the specified range from this writer.
+     *
+     * @param range an address range.
+     * @return a reference to this writer.
+     */
+    @NonNull
+    public Writer remove(@NonNull AddressRange range) {
+      this.ranges.remove(range);
+      return this;
+    }
+
+    /**
+     * Compiles the current state of this writer into a new database file.
+     *
+     * @return a buffer which holds the entire file.
+     * @throws IllegalStateException when the resulting file would exceed 2 GiB.
+     */
+    @NonNull
+    public ByteBuffer compile() {
+      long startTime = System.nanoTime();
+      Map<String, Integer> valueIndices = new LinkedHashMap<>();
+      List<AddressRange> ranges4 = new ArrayList<>();
+      List<AddressRange> ranges6 = new ArrayList<>();
+
+      for (Map.Entry<AddressRange, String> entry : this.ranges.entrySet()) {
+        valueIndices.putIfAbsent(entry.getValue(), valueIndices.size());
+        (entry.getKey() instanceof AddressRange4 ? ranges4 : ranges6).add(entry.getKey());
+      }
+
+      // enclosing ranges are ordered before the ranges they contain
+      ranges4.sort(Comparator.<AddressRange>comparingLong(
+          (r) -> ((AddressRange4) r).network() & 0xFFFFFFFFL)
+          .thenComparingInt(AddressRange::prefixLength));
+      ranges6.sort((a, b) -> {
+        AddressRange6 a6 = (AddressRange6) a;
+        AddressRange6 b6 = (AddressRange6) b;
+
+        int result = AddressIntervals
+            .compare(a6.networkHigh(), a6.networkLow(), b6.networkHigh(), b6.networkLow());
+        return (result != 0 ? result : Integer.compare(a6.prefixLength(), b6.prefixLength()));
+      });
+
+      List<long[]> intervals4 = new ArrayList<>();
+      List<Integer> intervalValues4 = new ArrayList<>();
+      flatten(ranges4, this.valueIndices(ranges4, valueIndices), intervals4, intervalValues4);
+
+      List<long[]> intervals6 = new ArrayList<>();
+      List<Integer> intervalValues6 = new ArrayList<>();
+      flatten(ranges6, this.valueIndices(ranges6, valueIndices), intervals6, intervalValues6);
+
+      List<byte[]> encodedValues = new ArrayList<>(valueIndices.size());
+      long valueSize = 0;
+      for (String value : valueIndices.keySet()) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        encodedValues.add(encoded);
+        valueSize += encoded.length;
+      }
+
+      int count4 = intervals4.size();
+      int count6 = intervals6.size();
+      long size = align(align(HEADER_SIZE + (long) count4 * 3 * Integer.BYTES)
+          + (long) count6 * (4 * Long.BYTES + Integer.BYTES))
+          + ((long) encodedValues.size() + 1) * Integer.BYTES + valueSize;
+      if (size > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Database exceeds 2 GiB");
+      }
+
+      int starts6 = (int) align(HEADER_SIZE + count4 * 3 * Integer.BYTES);
+      int valueOffsets = (int) align(starts6 + count6 * (4 * Long.BYTES + Integer.BYTES));
+      int valueData = valueOffsets + (encodedValues.size() + 1) * Integer.BYTES;
+
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      buffer.putInt(0, MAGIC);
+      buffer.putShort(4, (short) VERSION);
+      buffer.putInt(8, count4);
+      buffer.putInt(12, count6);
+      buffer.putInt(16, encodedValues.size());
+      buffer.putInt(20, (int) valueSize);
+
+      for (int i = 0; i < count4; i++) {
+        long[] interval = intervals4.get(i);
+        buffer.putInt(HEADER_SIZE + i * Integer.BYTES, (int) interval[1]);
+        buffer.putInt(HEADER_SIZE + (count4 + i) * Integer.BYTES, (int) interval[3]);
+        buffer.putInt(HEADER_SIZE + (count4 * 2 + i) * Integer.BYTES, intervalValues4.get(i));
+      }
+
+      for (int i = 0; i < count6; i++) {
+        long[] interval = intervals6.get(i);
+        buffer.putLong(starts6 + i * 2 * Long.BYTES, interval[0]);
+        buffer.putLong(starts6 + (i * 2 + 1) * Long.BYTES, interval[1]);
+        buffer.putLong(starts6 + (count6 + i) * 2 * Long.BYTES, interval[2]);
+        buffer.putLong(starts6 + ((count6 + i) * 2 + 1) * Long.BYTES, interval[3]);
+        buffer.putInt(starts6 + count6 * 4 * Long.BYTES + i * Integer.BYTES,
+            intervalValues6.get(i));
+      }
+
+      int offset = 0;
+      buffer.position(valueData);
+      for (int i = 0; i < encodedValues.size(); i++) {
+        buffer.putInt(valueOffsets + i * Integer.BYTES, offset);
+        buffer.put(encodedValues.get(i));
+        offset += encodedValues.get(i).length;
+      }
+      buffer.putInt(valueOffsets + encodedValues.size() * Integer.BYTES, offset);
+
+      buffer.position(HEADER_SIZE);
+      CRC32 checksum = new CRC32();
+      checksum.update(buffer);
+      buffer.putInt(24, (int) checksum.getValue());
+
+      buffer.clear();
+
+      if (this.listener != null) {
+        this.listener.rebuilt(buffer.asReadOnlyBuffer(), this.ranges.size(),
+            System.nanoTime() - startTime);
+      }
+
+      return buffer;
+    }
+
+    /**
+     * Retrieves the value indices of a list of ranges.
+     */
+    @NonNull
+    private int[] valueIndices(@NonNull List<AddressRange> ranges,
+        @NonNull Map<String, Integer> valueIndices) {
+      int[] indices = new int[ranges.size()];
+      Arrays.setAll(indices, (i) -> valueIndices.get(this.ranges.get(ranges.get(i))));
+      return indices;
+    }
+
+    /**
+     * Compiles the current state of this writer and writes the resulting database to the
+     * specified file (replacing any existing file).
+     *
+     * @param path a file path.
+     * @throws IOException when writing the file fails.
+     */
+    public void write(@NonNull Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        this.write(channel);
+      }
+    }
+
+    /**
+     * Compiles the current state of this writer and writes the resulting database to the
+     * specified channel.
+     *
+     * @param channel a channel.
+     * @throws IOException when writing to the channel fails.
+     */
+    public void write(@NonNull WritableByteChannel channel) throws IOException {
+      ByteBuffer buffer = this.compile();
+
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+}
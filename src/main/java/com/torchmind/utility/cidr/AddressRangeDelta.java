@@ -0,0 +1,314 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Represents an immutable batch of changes to a mapping of address ranges to values.
+ *
+ * Changes are kept in the order they were added to the builder and are applied in that order
+ * (e.g. a later change to the same range supersedes an earlier change).
+ *
+ * @param <V> the value type.
+ * @author Johannes Donath
+ */
+public final class AddressRangeDelta<V> {
+
+  private static final AddressRangeDelta<?> EMPTY = new AddressRangeDelta<>(
+      Collections.emptyList(), Collections.emptyList());
+  private static final Comparator<AddressRange> ORDER = AddressRangeDelta::compare;
+
+  private final List<AddressRange> ranges;
+  private final List<V> values;
+
+  private AddressRangeDelta(@NonNull List<AddressRange> ranges, @NonNull List<V> values) {
+    this.ranges = ranges;
+    this.values = values;
+  }
+
+  /**
+   * Creates a new empty delta builder.
+   *
+   * @param <V> the value type.
+   * @return a builder.
+   */
+  @NonNull
+  public static <V> Builder<V> builder() {
+    return (new Builder<>());
+  }
+
+  /**
+   * Compares two ranges in the order expected by {@link #diff(Iterable, Iterable, Object)}.
+   *
+   * @param a an address range.
+   * @param b another address range.
+   * @return a negative value, zero or a positive value when the first range is ordered before,
+   *     equal to or after the second range respectively.
+   * @throws IllegalArgumentException when an unsupported range type is passed.
+   */
+  private static int compare(@NonNull AddressRange a, @NonNull AddressRange b) {
+    int order = Boolean.compare(b instanceof AddressRange4, a instanceof AddressRange4);
+    if (order == 0) {
+      order = AddressIntervals.compare(AddressRangeTrie.high(a), AddressRangeTrie.low(a),
+          AddressRangeTrie.high(b), AddressRangeTrie.low(b));
+    }
+
+    return (order != 0 ? order : Integer.compare(a.prefixLength(), b.prefixLength()));
+  }
+
+  /**
+   * Computes the changes which transform one version of a range list into another within a single
+   * pass over both lists.
+   *
+   * Both lists are expected to be sorted in {@link #order() canonical order} (as is the case for
+   * the ranges passed by {@link AddressRangeTrie#forEach(BiConsumer)} or decoded by
+   * {@link AddressRangeCodec}). Duplicate ranges are permitted. The resulting delta removes every
+   * range which is only present within the previous list and associates every range which is
+   * only present within the next list with the specified value (in canonical order).
+   *
+   * @param previous the previous list of ranges.
+   * @param next the next list of ranges.
+   * @param value the value to associate with added ranges.
+   * @param <V> the value type.
+   * @return a delta (or the empty delta when both lists contain the same ranges).
+   * @throws IllegalArgumentException when either list is not sorted or contains an unsupported
+   *     range type.
+   */
+  @NonNull
+  public static <V> AddressRangeDelta<V> diff(@NonNull Iterable<? extends AddressRange> previous,
+      @NonNull Iterable<? extends AddressRange> next, @NonNull V value) {
+    Objects.requireNonNull(value, "value");
+
+    Iterator<? extends AddressRange> it1 = previous.iterator();
+    Iterator<? extends AddressRange> it2 = next.iterator();
+    AddressRange a = next(it1, null);
+    AddressRange b = next(it2, null);
+    Builder<V> builder = null;
+
+    while (a != null || b != null) {
+      int order = (a == null ? 1 : b == null ? -1 : compare(a, b));
+      if (order == 0) {
+        a = next(it1, a);
+        b = next(it2, b);
+        continue;
+      }
+
+      if (builder == null) {
+        builder = new Builder<>();
+      }
+      if (order < 0) {
+        builder.remove(a);
+        a = next(it1, a);
+      } else {
+        builder.put(b, value);
+        b = next(it2, b);
+      }
+    }
+
+    return (builder == null ? empty() : builder.build());
+  }
+
+  /**
+   * Retrieves an empty delta.
+   *
+   * @param <V> the value type.
+   * @return an empty delta.
+   */
+  @NonNull
+  @SuppressWarnings("unchecked")
+  public static <V> AddressRangeDelta<V> empty() {
+    return (AddressRangeDelta<V>) EMPTY;
+  }
+
+  /**
+   * Retrieves the next distinct range from a sorted list.
+   *
+   * @param iterator an iterator.
+   * @param current the current range or null if no range has been retrieved yet.
+   * @return a range or null if the list has been exhausted.
+   * @throws IllegalArgumentException when the list is not sorted.
+   */
+  @Nullable
+  private static AddressRange next(@NonNull Iterator<? extends AddressRange> iterator,
+      @Nullable AddressRange current) {
+    while (iterator.hasNext()) {
+      AddressRange range = Objects.requireNonNull(iterator.next(), "range");
+      if (current == null) {
+        return range;
+      }
+
+      int order = compare(current, range);
+      if (order < 0) {
+        return range;
+      }
+      if (order > 0) {
+        throw new IllegalArgumentException(
+            "Invalid range order: " + range + " succeeds " + current);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Retrieves a comparator which orders IPv4 ranges before IPv6 ranges and ranges of the same
+   * family by their (unsigned) network address and prefix length.
+   *
+   * @return a comparator.
+   */
+  @NonNull
+  public static Comparator<AddressRange> order() {
+    return ORDER;
+  }
+
+  /**
+   * Passes every change to the specified consumer (in order). Removals are passed with a null
+   * value.
+   *
+   * @param consumer a consumer.
+   */
+  public void forEach(@NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    for (int i = 0; i < this.ranges.size(); i++) {
+      consumer.accept(this.ranges.get(i), this.values.get(i));
+    }
+  }
+
+  /**
+   * Evaluates whether this delta contains no changes.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return this.ranges.isEmpty();
+  }
+
+  /**
+   * Retrieves the amount of changes within this delta.
+   *
+   * @return an amount of changes.
+   */
+  public int size() {
+    return this.ranges.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    AddressRangeDelta<?> that = (AddressRangeDelta<?>) o;
+    return this.ranges.equals(that.ranges) && this.values.equals(that.values);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.ranges, this.values);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("AddressRangeDelta{");
+
+    for (int i = 0; i < this.ranges.size(); i++) {
+      if (i != 0) {
+        builder.append(", ");
+      }
+
+      V value = this.values.get(i);
+      builder.append(value == null ? "-" : "+").append(this.ranges.get(i));
+      if (value != null) {
+        builder.append('=').append(value);
+      }
+    }
+
+    return builder.append('}').toString();
+  }
+
+  /**
+   * Provides a factory for immutable deltas.
+   *
+   * @param <V> the value type.
+   */
+  public static final class Builder<V> {
+
+    private final List<AddressRange> ranges = new ArrayList<>();
+    private final List<V> values = new ArrayList<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Builds a new immutable delta based on the current state of this builder.
+     *
+     * @return a delta.
+     */
+    @NonNull
+    public AddressRangeDelta<V> build() {
+      return (new AddressRangeDelta<>(Collections.unmodifiableList(new ArrayList<>(this.ranges)),
+          Collections.unmodifiableList(new ArrayList<>(this.values))));
+    }
+
+    /**
+     * Associates the specified range with a value (replacing any previously associated value).
+     *
+     * @param range an address range.
+     * @param value a value.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder<V> put(@NonNull AddressRange range, @NonNull V value) {
+      this.ranges.add(Objects.requireNonNull(range, "range"));
+      this.values.add(Objects.requireNonNull(value, "value"));
+      return this;
+    }
+
+    /**
+     * Removes the specified range.
+     *
+     * @param range an address range.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder<V> remove(@NonNull AddressRange range) {
+      this.ranges.add(Objects.requireNonNull(range, "range"));
+      this.values.add(null);
+      return this;
+    }
+  }
+}
@@ -0,0 +1,662 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Provides a probabilistic prefilter which decides whether an address is definitely not part of
+ * a (potentially very large) set of ranges.
+ *
+ * IPv4 ranges with a prefix length of up to {@link Builder#bitmapPrefixLength(int)} bits are
+ * expanded into a bitmap which is indexed by the leading bits of an address. All remaining ranges
+ * are inserted into a blocked Bloom filter (one per address family) using their network address
+ * and prefix length as a key. Each block spans a single cache line (512 bits) and every key sets
+ * all of its bits within the same block. An address is thus evaluated by reading a single bit of
+ * the bitmap and a single block for each distinct prefix length within the filter.
+ *
+ * A negative result is always exact: When {@link #matches(int)} returns false, the address is not
+ * contained within any range. A positive result has to be confirmed using an exact lookup
+ * structure (see {@link #guard(AddressMatcher)}). The configured false positive rate applies to
+ * each probed prefix length individually.
+ *
+ * Instances are immutable and may be shared between threads freely.
+ *
+ * @author Johannes Donath
+ */
+public final class AddressRangeFilter implements AddressMatcher {
+
+  /**
+   * Defines the default false positive rate per probed prefix length.
+   */
+  public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+  /**
+   * Defines the default maximum prefix length of IPv4 ranges which are expanded into the bitmap.
+   */
+  public static final int DEFAULT_BITMAP_PREFIX_LENGTH = 16;
+
+  /**
+   * Defines the maximum permitted bitmap prefix length (resulting in a bitmap of 2 MiB).
+   */
+  public static final int MAX_BITMAP_PREFIX_LENGTH = 24;
+
+  private static final int BLOCK_BITS = 512;
+  private static final int BLOCK_WORDS = BLOCK_BITS / Long.SIZE;
+  private static final int MAX_HASH_COUNT = 16;
+
+  private final long[] bitmap;
+  private final int bitmapShift;
+  private final Bloom bloom4;
+  private final Bloom bloom6;
+  private final int[] prefixLengths4;
+  private final int[] prefixLengths6;
+  private final int size;
+
+  private AddressRangeFilter(@Nullable long[] bitmap, int bitmapPrefixLength, @NonNull Bloom bloom4,
+      @NonNull Bloom bloom6, @NonNull int[] prefixLengths4, @NonNull int[] prefixLengths6,
+      int size) {
+    this.bitmap = bitmap;
+    this.bitmapShift = AddressRange4.MAX_PREFIX_LENGTH - bitmapPrefixLength;
+    this.bloom4 = bloom4;
+    this.bloom6 = bloom6;
+    this.prefixLengths4 = prefixLengths4;
+    this.prefixLengths6 = prefixLengths6;
+    this.size = size;
+  }
+
+  /**
+   * Creates a new empty filter builder.
+   *
+   * @return a builder.
+   */
+  @NonNull
+  public static Builder builder() {
+    return (new Builder());
+  }
+
+  /**
+   * Creates a new filter from the specified ranges using the default configuration.
+   *
+   * @param ranges a collection of ranges.
+   * @return a filter.
+   * @throws IllegalArgumentException when an unsupported range type is passed.
+   */
+  @NonNull
+  public static AddressRangeFilter of(@NonNull Collection<? extends AddressRange> ranges) {
+    return builder().addAll(ranges).build();
+  }
+
+  /**
+   * Computes the block selector of an IPv4 key.
+   *
+   * @param network a masked network address.
+   * @param prefixLength a prefix length.
+   * @return a hash.
+   */
+  private static int blockHash(int network, int prefixLength) {
+    return AddressMatchers.hash(((long) network << 8) | prefixLength);
+  }
+
+  /**
+   * Computes the block selector of an IPv6 key.
+   *
+   * @param high the upper half of a masked network address.
+   * @param low the lower half of a masked network address.
+   * @param prefixLength a prefix length.
+   * @return a hash.
+   */
+  private static int blockHash(long high, long low, int prefixLength) {
+    return AddressMatchers.hash(high * 0x9E3779B97F4A7C15L + low + prefixLength);
+  }
+
+  /**
+   * Computes the bit selector of an IPv4 key.
+   *
+   * @param network a masked network address.
+   * @param prefixLength a prefix length.
+   * @return a hash.
+   */
+  private static int bitHash(int network, int prefixLength) {
+    return AddressMatchers.hash((((long) network << 8) | prefixLength) * 0xC2B2AE3D27D4EB4FL + 1);
+  }
+
+  /**
+   * Computes the bit selector of an IPv6 key.
+   *
+   * @param high the upper half of a masked network address.
+   * @param low the lower half of a masked network address.
+   * @param prefixLength a prefix length.
+   * @return a hash.
+   */
+  private static int bitHash(long high, long low, int prefixLength) {
+    return AddressMatchers.hash(high + low * 0xC2B2AE3D27D4EB4FL + prefixLength);
+  }
+
+  /**
+   * Estimates the probability that an address which is not part of any range is reported as a
+   * potential match (assuming uniformly distributed keys and addresses).
+   *
+   * @return a probability between 0 and 1 (the larger of both address families).
+   */
+  public double expectedFalsePositiveRate() {
+    return Math.max(this.bloom4.falsePositiveRate(this.prefixLengths4.length),
+        this.bloom6.falsePositiveRate(this.prefixLengths6.length));
+  }
+
+  /**
+   * Wraps an exact matcher (which is expected to match the same ranges as this filter) in order
+   * to skip its evaluation for all addresses which are rejected by this filter.
+   *
+   * @param matcher an exact matcher.
+   * @return a matcher.
+   */
+  @NonNull
+  public AddressMatcher guard(@NonNull AddressMatcher matcher) {
+    return (new Guard(this, matcher));
+  }
+
+  /**
+   * Retrieves the amount of hash functions per key.
+   *
+   * @return an amount of hash functions (or zero when no range was inserted into a Bloom
+   *     filter).
+   */
+  public int hashCount() {
+    return Math.max(this.bloom4.hashCount, this.bloom6.hashCount);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.matches(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.matches(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return false;
+  }
+
+  /**
+   * Evaluates whether the specified address is potentially part of a range within this filter.
+   *
+   * @param address a numeric IPv4 address (in network byte order).
+   * @return false if the address is definitely not part of any range, true otherwise.
+   */
+  @Override
+  public boolean matches(int address) {
+    if (this.bitmap != null) {
+      int index = address >>> this.bitmapShift;
+
+      if ((this.bitmap[index >>> 6] & (1L << index)) != 0) {
+        return true;
+      }
+    }
+
+    for (int prefixLength : this.prefixLengths4) {
+      int network = address & AddressRange4.mask(prefixLength);
+
+      if (this.bloom4.mightContain(blockHash(network, prefixLength),
+          bitHash(network, prefixLength))) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Evaluates whether the specified address is potentially part of a range within this filter.
+   *
+   * @param high the upper 64 bits of a numeric IPv6 address (in network byte order).
+   * @param low the lower 64 bits of a numeric IPv6 address (in network byte order).
+   * @return false if the address is definitely not part of any range, true otherwise.
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    for (int prefixLength : this.prefixLengths6) {
+      long networkHigh = high & AddressRange6.maskHigh(prefixLength);
+      long networkLow = low & AddressRange6.maskLow(prefixLength);
+
+      if (this.bloom6.mightContain(blockHash(networkHigh, networkLow, prefixLength),
+          bitHash(networkHigh, networkLow, prefixLength))) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Retrieves the amount of memory occupied by the bitmap and Bloom filters (in bytes).
+   *
+   * @return an amount of bytes.
+   */
+  public long memorySize() {
+    long words = this.bloom4.bits.length + this.bloom6.bits.length;
+    if (this.bitmap != null) {
+      words += this.bitmap.length;
+    }
+
+    return words * Long.BYTES;
+  }
+
+  /**
+   * Retrieves the amount of Bloom filter blocks which are read when evaluating an address of the
+   * specified family which is not part of the bitmap.
+   *
+   * @param inet6 true to select the IPv6 family, false to select the IPv4 family.
+   * @return an amount of blocks.
+   */
+  public int probeCount(boolean inet6) {
+    return (inet6 ? this.prefixLengths6 : this.prefixLengths4).length;
+  }
+
+  /**
+   * Retrieves the amount of ranges within this filter.
+   *
+   * @return an amount of ranges.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "AddressRangeFilter{size=" + this.size + ", memorySize=" + this.memorySize()
+        + ", hashCount=" + this.hashCount() + ", expectedFalsePositiveRate="
+        + this.expectedFalsePositiveRate() + "}";
+  }
+
+  /**
+   * Provides a factory for immutable filters.
+   */
+  public static final class Builder {
+
+    private long[] entries4 = new long[16];
+    private long[] entries6 = new long[48];
+    private int count4;
+    private int count6;
+    private double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+    private int bitmapPrefixLength = DEFAULT_BITMAP_PREFIX_LENGTH;
+    private MatchListener listener;
+
+    private Builder() {
+    }
+
+    /**
+     * Adds the specified range to this builder.
+     *
+     * @param range an address range.
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public Builder add(@NonNull AddressRange range) {
+      if (range instanceof AddressRange4) {
+        if (this.count4 == this.entries4.length) {
+          this.entries4 = Arrays.copyOf(this.entries4, this.entries4.length * 2);
+        }
+
+        this.entries4[this.count4++] = (Integer.toUnsignedLong(((AddressRange4) range).network())
+            << 8) | range.prefixLength();
+      } else if (range instanceof AddressRange6) {
+        int offset = this.count6 * 3;
+        if (offset == this.entries6.length) {
+          this.entries6 = Arrays.copyOf(this.entries6, this.entries6.length * 2);
+        }
+
+        AddressRange6 range6 = (AddressRange6) range;
+        this.entries6[offset] = range6.networkHigh();
+        this.entries6[offset + 1] = range6.networkLow();
+        this.entries6[offset + 2] = range6.prefixLength();
+        this.count6++;
+      } else {
+        throw new IllegalArgumentException(
+            "Unsupported address range type: " + range.getClass().getCanonicalName());
+      }
+
+      return this;
+    }
+
+    /**
+     * Adds all specified ranges to this builder.
+     *
+     * @param ranges a collection of ranges.
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public Builder addAll(@NonNull Collection<? extends AddressRange> ranges) {
+      ranges.forEach(this::add);
+      return this;
+    }
+
+    /**
+     * Selects the maximum prefix length of IPv4 ranges which are expanded into a bitmap instead of
+     * being inserted into the Bloom filter (the bitmap occupies {@code 2^length} bits).
+     *
+     * @param prefixLength a prefix length or zero to disable the bitmap.
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when the prefix length exceeds {@link
+     *     #MAX_BITMAP_PREFIX_LENGTH}.
+     */
+    @NonNull
+    public Builder bitmapPrefixLength(int prefixLength) {
+      if (prefixLength < 0 || prefixLength > MAX_BITMAP_PREFIX_LENGTH) {
+        throw new IllegalArgumentException("Invalid bitmap prefix length: " + prefixLength);
+      }
+
+      this.bitmapPrefixLength = prefixLength;
+      return this;
+    }
+
+    /**
+     * Builds a new immutable filter based on the current state of this builder.
+     *
+     * @return a filter.
+     */
+    @NonNull
+    public AddressRangeFilter build() {
+      long startTime = System.nanoTime();
+
+      long[] bitmap = null;
+      int bitmapShift = AddressRange4.MAX_PREFIX_LENGTH - this.bitmapPrefixLength;
+      if (this.bitmapPrefixLength != 0) {
+        bitmap = new long[Math.max(1, (1 << this.bitmapPrefixLength) >>> 6)];
+      }
+
+      // short prefixes are expanded into the bitmap while all others are counted per length
+      int bloomCount4 = 0;
+      long lengthMask4 = 0;
+      for (int i = 0; i < this.count4; i++) {
+        int network = (int) (this.entries4[i] >>> 8);
+        int prefixLength = (int) this.entries4[i] & 0xFF;
+
+        if (bitmap != null && prefixLength <= this.bitmapPrefixLength) {
+          int first = network >>> bitmapShift;
+          int last = first + (1 << (this.bitmapPrefixLength - prefixLength)) - 1;
+          for (int index = first; index <= last; index++) {
+            bitmap[index >>> 6] |= 1L << index;
+          }
+        } else {
+          bloomCount4++;
+          lengthMask4 |= 1L << prefixLength;
+        }
+      }
+
+      long lengthMask6Low = 0;
+      long lengthMask6High = 0;
+      long lengthMask6Last = 0;
+      for (int i = 0; i < this.count6; i++) {
+        int prefixLength = (int) this.entries6[i * 3 + 2];
+
+        if (prefixLength < 64) {
+          lengthMask6Low |= 1L << prefixLength;
+        } else if (prefixLength < 128) {
+          lengthMask6High |= 1L << (prefixLength - 64);
+        } else {
+          lengthMask6Last = 1;
+        }
+      }
+
+      Bloom bloom4 = new Bloom(bloomCount4, this.falsePositiveRate);
+      for (int i = 0; i < this.count4; i++) {
+        int network = (int) (this.entries4[i] >>> 8);
+        int prefixLength = (int) this.entries4[i] & 0xFF;
+
+        if (bitmap == null || prefixLength > this.bitmapPrefixLength) {
+          bloom4.add(blockHash(network, prefixLength), bitHash(network, prefixLength));
+        }
+      }
+
+      Bloom bloom6 = new Bloom(this.count6, this.falsePositiveRate);
+      for (int i = 0; i < this.count6; i++) {
+        long high = this.entries6[i * 3];
+        long low = this.entries6[i * 3 + 1];
+        int prefixLength = (int) this.entries6[i * 3 + 2];
+
+        bloom6.add(blockHash(high, low, prefixLength), bitHash(high, low, prefixLength));
+      }
+
+      // prefix lengths are probed from the most specific to the least specific length
+      int[] prefixLengths4 = new int[Long.bitCount(lengthMask4)];
+      for (int length = AddressRange4.MAX_PREFIX_LENGTH, i = 0; length >= 0; length--) {
+        if ((lengthMask4 & (1L << length)) != 0) {
+          prefixLengths4[i++] = length;
+        }
+      }
+      int[] prefixLengths6 = new int[Long.bitCount(lengthMask6Low)
+          + Long.bitCount(lengthMask6High) + (int) lengthMask6Last];
+      for (int length = AddressRange6.MAX_PREFIX_LENGTH, i = 0; length >= 0; length--) {
+        boolean present;
+        if (length < 64) {
+          present = (lengthMask6Low & (1L << length)) != 0;
+        } else if (length < 128) {
+          present = (lengthMask6High & (1L << (length - 64))) != 0;
+        } else {
+          present = lengthMask6Last != 0;
+        }
+
+        if (present) {
+          prefixLengths6[i++] = length;
+        }
+      }
+
+      AddressRangeFilter filter = new AddressRangeFilter(bitmap, this.bitmapPrefixLength, bloom4,
+          bloom6, prefixLengths4, prefixLengths6, this.count4 + this.count6);
+      if (this.listener != null) {
+        this.listener.rebuilt(filter, filter.size, System.nanoTime() - startTime);
+      }
+
+      return filter;
+    }
+
+    /**
+     * Selects the desired false positive rate of a single probed prefix length (which determines
+     * the size of the Bloom filters).
+     *
+     * @param rate a rate (exclusive 0 to exclusive 1).
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when the rate is out of bounds.
+     */
+    @NonNull
+    public Builder falsePositiveRate(double rate) {
+      if (!(rate > 0 && rate < 1)) {
+        throw new IllegalArgumentException("Invalid false positive rate: " + rate);
+      }
+
+      this.falsePositiveRate = rate;
+      return this;
+    }
+
+    /**
+     * Registers a listener which is notified whenever a filter is built by this builder.
+     *
+     * @param listener a listener or null to remove a previously registered listener.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder listener(@Nullable MatchListener listener) {
+      this.listener = listener;
+      return this;
+    }
+  }
+
+  /**
+   * Represents a blocked Bloom filter in which every key occupies a single 512 bit block.
+   */
+  private static final class Bloom {
+
+    private final long[] bits;
+    private final int blockCount;
+    private final int hashCount;
+    private final int keyCount;
+
+    private Bloom(int keyCount, double falsePositiveRate) {
+      this.keyCount = keyCount;
+
+      if (keyCount == 0) {
+        this.bits = new long[0];
+        this.blockCount = 0;
+        this.hashCount = 0;
+        return;
+      }
+
+      // m = -n ln(p) / ln(2)^2 and k = m / n ln(2)
+      double bitCount = -keyCount * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+      long blockCount = Math.max(1, (long) Math.ceil(bitCount / BLOCK_BITS));
+      if (blockCount > Integer.MAX_VALUE / BLOCK_WORDS) {
+        throw new IllegalArgumentException("Bloom filter exceeds maximum size");
+      }
+
+      this.blockCount = (int) blockCount;
+      this.bits = new long[this.blockCount * BLOCK_WORDS];
+      this.hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT,
+          Math.round((double) blockCount * BLOCK_BITS / keyCount * Math.log(2))));
+    }
+
+    /**
+     * Inserts a key.
+     *
+     * @param blockHash the block selector of the key.
+     * @param bitHash the bit selector of the key.
+     */
+    private void add(int blockHash, int bitHash) {
+      int offset = this.offset(blockHash);
+      int step = (bitHash >>> 16) | 1;
+
+      for (int i = 0; i < this.hashCount; i++) {
+        int bit = bitHash & (BLOCK_BITS - 1);
+        this.bits[offset + (bit >>> 6)] |= 1L << bit;
+        bitHash += step;
+      }
+    }
+
+    /**
+     * Estimates the false positive rate of an evaluation which probes the specified amount of
+     * keys.
+     *
+     * @param probes an amount of probes.
+     * @return a rate.
+     */
+    private double falsePositiveRate(int probes) {
+      if (this.keyCount == 0) {
+        return 0;
+      }
+
+      double rate = Math.pow(1 - Math.exp(
+          -(double) this.hashCount * this.keyCount / ((double) this.blockCount * BLOCK_BITS)),
+          this.hashCount);
+      return 1 - Math.pow(1 - rate, probes);
+    }
+
+    /**
+     * Evaluates whether a key may have been inserted.
+     *
+     * @param blockHash the block selector of the key.
+     * @param bitHash the bit selector of the key.
+     * @return false if the key has definitely not been inserted, true otherwise.
+     */
+    private boolean mightContain(int blockHash, int bitHash) {
+      int offset = this.offset(blockHash);
+      int step = (bitHash >>> 16) | 1;
+
+      for (int i = 0; i < this.hashCount; i++) {
+        int bit = bitHash & (BLOCK_BITS - 1);
+        if ((this.bits[offset + (bit >>> 6)] & (1L << bit)) == 0) {
+          return false;
+        }
+        bitHash += step;
+      }
+
+      return true;
+    }
+
+    /**
+     * Maps a block selector onto the index of the first word of its block.
+     *
+     * @param blockHash a block selector.
+     * @return an index.
+     */
+    private int offset(int blockHash) {
+      return (int) ((Integer.toUnsignedLong(blockHash) * this.blockCount) >>> 32) * BLOCK_WORDS;
+    }
+  }
+
+  /**
+   * Skips the evaluation of an exact matcher for all addresses which are rejected by a filter.
+   */
+  private static final class Guard implements AddressMatcher {
+
+    private final AddressRangeFilter filter;
+    private final AddressMatcher matcher;
+
+    private Guard(@NonNull AddressRangeFilter filter, @NonNull AddressMatcher matcher) {
+      this.filter = filter;
+      this.matcher = matcher;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(@NonNull InetAddress address) {
+      return this.filter.matches(address) && this.matcher.matches(address);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(int address) {
+      return this.filter.matches(address) && this.matcher.matches(address);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(long high, long low) {
+      return this.filter.matches(high, low) && this.matcher.matches(high, low);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public String toString() {
+      return "Guard{" + this.filter + ", " + this.matcher + "}";
+    }
+  }
+}
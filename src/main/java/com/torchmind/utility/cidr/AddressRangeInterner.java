@@ -0,0 +1,367 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides a bounded cache of canonical address range instances which permits callers to share a
+ * single instance per distinct range (for instance when the same ranges are parsed from a large
+ * amount of configuration sources).
+ *
+ * Ranges are stored within a fixed size table of two-way buckets which are indexed by a hash of
+ * the numeric network address and prefix length. Lookups thus never box their key and never
+ * allocate when the range is already known. When both slots of a bucket are occupied, one of
+ * them is evicted at random. Canonical instances are created from their numeric form and thus do
+ * not retain a base address unless it is requested.
+ *
+ * Interning is performed on a best effort basis: Once a range has been evicted, or when two
+ * threads intern the same range concurrently, a subsequent call may return a different (but
+ * equal) instance. Instances are safe for concurrent use.
+ *
+ * @author Johannes Donath
+ * @see AddressRange#intern(String)
+ */
+public final class AddressRangeInterner {
+
+  /**
+   * Defines the amount of ranges retained by the shared interner.
+   */
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  private static final AddressRangeInterner SHARED = new AddressRangeInterner(DEFAULT_CAPACITY);
+
+  private final AtomicReferenceArray<AddressRange> slots;
+  private final int mask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a new interner which retains up to the specified amount of ranges.
+   *
+   * @param capacity a capacity (rounded up to the next power of two).
+   * @throws IllegalArgumentException when the capacity is not positive or exceeds 2^30.
+   */
+  public AddressRangeInterner(int capacity) {
+    if (capacity <= 0 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+
+    int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Retrieves the interner which is shared by all callers of {@link AddressRange#intern(String)}.
+   *
+   * @return an interner.
+   */
+  @NonNull
+  public static AddressRangeInterner shared() {
+    return SHARED;
+  }
+
+  /**
+   * Computes the bucket hash of an IPv4 range.
+   *
+   * @param network a network address.
+   * @param prefixLength a prefix length.
+   * @return a hash.
+   */
+  private static int hash(int network, int prefixLength) {
+    return AddressMatchers.hash(((long) network << 8) | prefixLength);
+  }
+
+  /**
+   * Computes the bucket hash of an IPv6 range.
+   *
+   * @param high the upper half of a network address.
+   * @param low the lower half of a network address.
+   * @param prefixLength a prefix length.
+   * @return a hash.
+   */
+  private static int hash(long high, long low, int prefixLength) {
+    return AddressMatchers.hash(high * 0x9E3779B97F4A7C15L + low + prefixLength);
+  }
+
+  /**
+   * Retrieves the maximum amount of ranges retained by this interner.
+   *
+   * @return a capacity.
+   */
+  public int capacity() {
+    return this.slots.length();
+  }
+
+  /**
+   * Evicts all ranges from this interner (statistics are retained).
+   */
+  public void clear() {
+    for (int i = 0; i < this.slots.length(); i++) {
+      this.slots.set(i, null);
+    }
+  }
+
+  /**
+   * Retrieves the amount of ranges which have been evicted in order to make room for another
+   * range.
+   *
+   * @return an amount of evictions.
+   */
+  public long evictions() {
+    return this.evictions.sum();
+  }
+
+  /**
+   * Retrieves the ratio of lookups which returned a previously interned range.
+   *
+   * @return a ratio between 0 and 1 (or 0 when no lookups have been performed yet).
+   */
+  public double hitRate() {
+    long hits = this.hits.sum();
+    long total = hits + this.misses.sum();
+    return (total == 0 ? 0 : (double) hits / total);
+  }
+
+  /**
+   * Retrieves the amount of lookups which returned a previously interned range.
+   *
+   * @return an amount of hits.
+   */
+  public long hits() {
+    return this.hits.sum();
+  }
+
+  /**
+   * Retrieves the canonical instance which is equal to the specified range (or interns the range
+   * itself when no such instance is known).
+   *
+   * @param range an address range.
+   * @return a canonical range.
+   * @throws IllegalArgumentException when an unsupported range type is passed.
+   */
+  @NonNull
+  public AddressRange intern(@NonNull AddressRange range) {
+    if (range instanceof AddressRange4) {
+      AddressRange4 range4 = (AddressRange4) range;
+      return this.intern4(range4.network(), range4.prefixLength(), range4);
+    }
+    if (range instanceof AddressRange6) {
+      AddressRange6 range6 = (AddressRange6) range;
+      return this.intern6(range6.networkHigh(), range6.networkLow(), range6.prefixLength(),
+          range6);
+    }
+
+    throw new IllegalArgumentException(
+        "Unsupported address range type: " + range.getClass().getCanonicalName());
+  }
+
+  /**
+   * Retrieves the canonical instance of the specified IPv4 range.
+   *
+   * @param network a numeric network address (in network byte order).
+   * @param prefixLength a prefix length.
+   * @return a canonical range.
+   * @throws IllegalArgumentException when the resulting mask is invalid.
+   */
+  @NonNull
+  public AddressRange4 intern(int network, int prefixLength) {
+    return this.intern4(network, prefixLength, null);
+  }
+
+  /**
+   * Retrieves the canonical instance of the specified IPv6 range.
+   *
+   * @param high the upper 64 bits of a numeric network address (in network byte order).
+   * @param low the lower 64 bits of a numeric network address (in network byte order).
+   * @param prefixLength a prefix length.
+   * @return a canonical range.
+   * @throws IllegalArgumentException when the resulting mask is invalid.
+   */
+  @NonNull
+  public AddressRange6 intern(long high, long low, int prefixLength) {
+    return this.intern6(high, low, prefixLength, null);
+  }
+
+  /**
+   * Looks up or stores an IPv4 range.
+   *
+   * @param network a network address.
+   * @param prefixLength a prefix length.
+   * @param candidate an instance to store on a miss or null to construct a new instance.
+   * @return a canonical range.
+   */
+  @NonNull
+  private AddressRange4 intern4(int network, int prefixLength, AddressRange4 candidate) {
+    int index = hash(network, prefixLength) & this.mask & ~1;
+
+    for (int i = index; i < index + 2; i++) {
+      AddressRange range = this.slots.get(i);
+
+      if (range instanceof AddressRange4 && ((AddressRange4) range).network() == network
+          && range.prefixLength() == prefixLength) {
+        this.hits.increment();
+        return (AddressRange4) range;
+      }
+    }
+
+    if (candidate == null) {
+      candidate = new AddressRange4(network, prefixLength);
+    }
+
+    return (AddressRange4) this.store(index, candidate);
+  }
+
+  /**
+   * Looks up or stores an IPv6 range.
+   *
+   * @param high the upper half of a network address.
+   * @param low the lower half of a network address.
+   * @param prefixLength a prefix length.
+   * @param candidate an instance to store on a miss or null to construct a new instance.
+   * @return a canonical range.
+   */
+  @NonNull
+  private AddressRange6 intern6(long high, long low, int prefixLength, AddressRange6 candidate) {
+    int index = hash(high, low, prefixLength) & this.mask & ~1;
+
+    for (int i = index; i < index + 2; i++) {
+      AddressRange range = this.slots.get(i);
+
+      if (range instanceof AddressRange6) {
+        AddressRange6 range6 = (AddressRange6) range;
+
+        if (range6.networkHigh() == high && range6.networkLow() == low
+            && range6.prefixLength() == prefixLength) {
+          this.hits.increment();
+          return range6;
+        }
+      }
+    }
+
+    if (candidate == null) {
+      candidate = new AddressRange6(high, low, prefixLength);
+    }
+
+    return (AddressRange6) this.store(index, candidate);
+  }
+
+  /**
+   * Retrieves the amount of lookups which did not return a previously interned range.
+   *
+   * @return an amount of misses.
+   */
+  public long misses() {
+    return this.misses.sum();
+  }
+
+  /**
+   * Parses a CIDR notation and retrieves the canonical instance of the resulting range.
+   *
+   * The notation is parsed into its numeric form directly, thus no range is constructed when a
+   * canonical instance is already known.
+   *
+   * @param notation a notation.
+   * @return a canonical range.
+   * @throws IllegalArgumentException when the notation is malformed.
+   * @see AddressParser#parseRange(CharSequence)
+   */
+  @NonNull
+  public AddressRange parse(@NonNull CharSequence notation) {
+    long[] result = new long[3];
+
+    if (AddressParser.parseNumericRange(notation, 0, notation.length(), result)) {
+      return this.intern6(result[0], result[1], (int) result[2], null);
+    }
+
+    return this.intern4((int) result[1], (int) result[2], null);
+  }
+
+  /**
+   * Resets all statistics of this interner.
+   */
+  public void resetStatistics() {
+    this.hits.reset();
+    this.misses.reset();
+    this.evictions.reset();
+  }
+
+  /**
+   * Retrieves the amount of ranges currently retained by this interner.
+   *
+   * This method iterates the entire table and is thus intended for diagnostic purposes only.
+   *
+   * @return an amount of ranges.
+   */
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < this.slots.length(); i++) {
+      if (this.slots.get(i) != null) {
+        size++;
+      }
+    }
+
+    return size;
+  }
+
+  /**
+   * Stores a range which was not found within its bucket.
+   *
+   * When a concurrent invocation stores an equal range into a free slot first, its instance is
+   * returned instead.
+   *
+   * @param index the index of the first slot within the bucket.
+   * @param range a range.
+   * @return a canonical range.
+   */
+  @NonNull
+  private AddressRange store(int index, @NonNull AddressRange range) {
+    this.misses.increment();
+
+    for (int i = index; i < index + 2; i++) {
+      if (this.slots.compareAndSet(i, null, range)) {
+        return range;
+      }
+
+      AddressRange existing = this.slots.get(i);
+      if (range.equals(existing)) {
+        return existing;
+      }
+    }
+
+    if (this.slots.getAndSet(index + ThreadLocalRandom.current().nextInt(2), range) != null) {
+      this.evictions.increment();
+    }
+
+    return range;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "AddressRangeInterner{capacity=" + this.capacity() + ", hits=" + this.hits()
+        + ", misses=" + this.misses() + ", evictions=" + this.evictions() + "}";
+  }
+}
@@ -0,0 +1,762 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Loads address ranges from line based text files (such as bogon lists or the first column of
+ * CSV files) while parsing the file contents concurrently.
+ *
+ * Files are read sequentially in chunks of a configurable size which are split on line
+ * boundaries and parsed within a pool. Parsed ranges are passed to the consumer within the
+ * calling thread in file order, thus permitting the use of consumers which are not thread safe
+ * (such as {@link AddressRangeSet.Builder#add(AddressRange)}). At most two chunks per pool thread
+ * are held in memory at any given time.
+ *
+ * Each line is processed as follows:
+ *
+ * <ul>
+ * <li>Everything following a {@code #} character is considered a comment and removed.</li>
+ * <li>Empty lines (or lines consisting only of whitespace) are skipped.</li>
+ * <li>The first field (terminated by a comma or whitespace) is parsed while all other fields are
+ * ignored. Fields enclosed in double quotes are taken as a whole (excluding the quotes).</li>
+ * <li>Fields in CIDR notation (such as {@code 10.0.0.0/8}) or plain addresses are parsed as
+ * described in {@link AddressParser#parseRange(CharSequence)}.</li>
+ * <li>Fields in range notation (such as {@code 10.0.0.0-10.0.0.255} or {@code 10.0.0.0 -
+ * 10.0.0.255}) are converted into the minimal list of CIDR blocks which cover the (inclusive)
+ * range. Whitespace surrounding the separator does not terminate the field.</li>
+ * </ul>
+ *
+ * Lines which cannot be parsed are reported to an error handler while the load continues.
+ *
+ * Additionally, the prefix fields of JSON documents (such as the IP range dumps published by cloud
+ * providers) may be streamed using {@link #loadJson(ReadableByteChannel, Consumer,
+ * ErrorHandler)}.
+ *
+ * @author Johannes Donath
+ */
+public final class AddressRangeLoader {
+
+  /**
+   * Defines the chunk size (in bytes) which is used unless specified otherwise.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  private static final ErrorHandler FAIL = (lineNumber, line, cause) -> {
+    throw new IllegalArgumentException("Line " + lineNumber + ": " + cause.getMessage(), cause);
+  };
+
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+
+  /**
+   * Creates a new loader which parses chunks of the default size within the common pool.
+   */
+  public AddressRangeLoader() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a new loader which parses chunks of the default size within a pool.
+   *
+   * @param pool a pool.
+   */
+  public AddressRangeLoader(@NonNull ForkJoinPool pool) {
+    this(pool, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Creates a new loader which parses chunks of the specified size within a pool.
+   *
+   * @param pool a pool.
+   * @param chunkSize a chunk size (in bytes).
+   * @throws IllegalArgumentException when the chunk size is not positive.
+   */
+  public AddressRangeLoader(@NonNull ForkJoinPool pool, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+    }
+
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Loads all ranges from the specified file and aborts on the first malformed line.
+   *
+   * @param path a file path.
+   * @param consumer a consumer which receives all ranges.
+   * @return the amount of loaded ranges.
+   * @throws IOException when reading the file fails.
+   * @throws IllegalArgumentException when a malformed line is encountered.
+   */
+  public long load(@NonNull Path path, @NonNull Consumer<? super AddressRange> consumer)
+      throws IOException {
+    return this.load(path, consumer, FAIL);
+  }
+
+  /**
+   * Loads all ranges from the specified file.
+   *
+   * @param path a file path.
+   * @param consumer a consumer which receives all ranges.
+   * @param errorHandler a handler which receives all malformed lines.
+   * @return the amount of loaded ranges.
+   * @throws IOException when reading the file fails.
+   */
+  public long load(@NonNull Path path, @NonNull Consumer<? super AddressRange> consumer,
+      @NonNull ErrorHandler errorHandler) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return this.load(channel, consumer, errorHandler);
+    }
+  }
+
+  /**
+   * Loads all ranges from the specified channel (the channel is not closed by this method).
+   *
+   * @param channel a channel.
+   * @param consumer a consumer which receives all ranges.
+   * @param errorHandler a handler which receives all malformed lines.
+   * @return the amount of loaded ranges.
+   * @throws IOException when reading from the channel fails.
+   */
+  public long load(@NonNull ReadableByteChannel channel,
+      @NonNull Consumer<? super AddressRange> consumer, @NonNull ErrorHandler errorHandler)
+      throws IOException {
+    Deque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+    int window = Math.max(2, this.pool.getParallelism() * 2);
+    Delivery delivery = new Delivery(consumer, errorHandler);
+
+    try {
+      byte[] buffer = new byte[this.chunkSize];
+      int length = 0;
+
+      while (true) {
+        if (length == buffer.length) {
+          // the current line exceeds the chunk size
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length));
+        if (read == -1) {
+          if (length != 0) {
+            pending.add(this.pool.submit(new Chunk(buffer, length)));
+          }
+
+          break;
+        }
+
+        length += read;
+        if (length != buffer.length) {
+          continue;
+        }
+
+        int split = length - 1;
+        while (split >= 0 && buffer[split] != '\n') {
+          split--;
+        }
+        if (split == -1) {
+          continue;
+        }
+
+        byte[] next = new byte[Math.max(this.chunkSize, (length - split - 1) * 2)];
+        System.arraycopy(buffer, split + 1, next, 0, length - split - 1);
+        pending.add(this.pool.submit(new Chunk(buffer, split + 1)));
+
+        length = length - split - 1;
+        buffer = next;
+
+        while (pending.size() >= window) {
+          delivery.accept(pending.remove().join());
+        }
+      }
+
+      while (!pending.isEmpty()) {
+        delivery.accept(pending.remove().join());
+      }
+    } finally {
+      pending.forEach((task) -> task.cancel(false));
+    }
+
+    return delivery.rangeCount;
+  }
+
+  /**
+   * Loads all ranges from the prefix fields of the specified JSON document and aborts on the first
+   * malformed prefix.
+   *
+   * @param path a file path.
+   * @param consumer a consumer which receives all ranges.
+   * @return the amount of loaded ranges.
+   * @throws IOException when reading the file fails or the document is truncated.
+   * @throws IllegalArgumentException when a malformed prefix is encountered.
+   * @see #loadJson(ReadableByteChannel, Consumer, ErrorHandler)
+   */
+  public long loadJson(@NonNull Path path, @NonNull Consumer<? super AddressRange> consumer)
+      throws IOException {
+    return this.loadJson(path, consumer, FAIL);
+  }
+
+  /**
+   * Loads all ranges from the prefix fields of the specified JSON document.
+   *
+   * @param path a file path.
+   * @param consumer a consumer which receives all ranges.
+   * @param errorHandler a handler which receives all malformed prefixes.
+   * @return the amount of loaded ranges.
+   * @throws IOException when reading the file fails or the document is truncated.
+   * @see #loadJson(ReadableByteChannel, Consumer, ErrorHandler)
+   */
+  public long loadJson(@NonNull Path path, @NonNull Consumer<? super AddressRange> consumer,
+      @NonNull ErrorHandler errorHandler) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return this.loadJson(channel, consumer, errorHandler);
+    }
+  }
+
+  /**
+   * Loads all ranges from the prefix fields of a JSON document (such as the IP range dumps
+   * published by cloud providers) within the specified channel (the channel is not closed by this
+   * method).
+   *
+   * The document is scanned in chunks without being materialized. Every string which is assigned
+   * to a key ending in {@code prefix}, {@code prefixes} or {@code cidr} (compared case
+   * insensitively, thus matching {@code ip_prefix}, {@code ipv6_prefix}, {@code ipv4Prefix} or
+   * {@code addressPrefixes} alike) or which is an element of an array assigned to such a key is
+   * parsed in CIDR or range notation while all other values are ignored. Unlike line based files,
+   * documents are parsed within the calling thread.
+   *
+   * Malformed prefixes are reported along with the line on which their value starts.
+   *
+   * @param channel a channel.
+   * @param consumer a consumer which receives all ranges.
+   * @param errorHandler a handler which receives all malformed prefixes.
+   * @return the amount of loaded ranges.
+   * @throws IOException when reading from the channel fails or the document is truncated.
+   */
+  public long loadJson(@NonNull ReadableByteChannel channel,
+      @NonNull Consumer<? super AddressRange> consumer, @NonNull ErrorHandler errorHandler)
+      throws IOException {
+    JsonExtractor extractor = new JsonExtractor(consumer, errorHandler);
+    ByteBuffer buffer = ByteBuffer.allocate(this.chunkSize);
+
+    while (channel.read(buffer) != -1) {
+      byte[] data = buffer.array();
+      for (int i = 0; i < buffer.position(); i++) {
+        extractor.accept(data[i]);
+      }
+
+      buffer.clear();
+    }
+
+    return extractor.finish();
+  }
+
+  /**
+   * Receives lines (or prefix values of JSON documents) which could not be parsed.
+   */
+  @FunctionalInterface
+  public interface ErrorHandler {
+
+    /**
+     * Handles a malformed line.
+     *
+     * @param lineNumber the line number (starting at one).
+     * @param line the line contents (excluding line terminators) or the prefix value.
+     * @param cause the exception which has been thrown by the parser.
+     */
+    void error(long lineNumber, @NonNull String line, @NonNull IllegalArgumentException cause);
+  }
+
+  /**
+   * Parses a single chunk of lines into a list of ranges.
+   */
+  private static final class Chunk implements Callable<Chunk> {
+
+    private final byte[] data;
+    private final int length;
+    private final List<AddressRange> ranges = new ArrayList<>();
+    private final List<Error> errors = new ArrayList<>();
+    private int lineCount;
+
+    private Chunk(@NonNull byte[] data, int length) {
+      this.data = data;
+      this.length = length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public Chunk call() {
+      AsciiSequence text = new AsciiSequence(this.data, 0, this.length);
+      int start = 0;
+
+      while (start < this.length) {
+        int end = start;
+        while (end < this.length && this.data[end] != '\n') {
+          end++;
+        }
+
+        this.lineCount++;
+
+        try {
+          this.parseLine(text, start, end);
+        } catch (IllegalArgumentException ex) {
+          int lineEnd = (end > start && this.data[end - 1] == '\r' ? end - 1 : end);
+
+          this.errors.add(new Error(this.lineCount, this.ranges.size(),
+              new String(this.data, start, lineEnd - start, StandardCharsets.UTF_8), ex));
+        }
+
+        start = end + 1;
+      }
+
+      return this;
+    }
+
+    /**
+     * Parses a single line.
+     *
+     * @param text the chunk contents.
+     * @param start the index of the first character (inclusive).
+     * @param end the index of the last character (exclusive).
+     * @throws IllegalArgumentException when the line is malformed.
+     */
+    private void parseLine(@NonNull AsciiSequence text, int start, int end) {
+      for (int i = start; i < end; i++) {
+        if (this.data[i] == '#') {
+          end = i;
+          break;
+        }
+      }
+
+      start = this.skipWhitespace(start, end);
+      if (start == end) {
+        return;
+      }
+
+      if (this.data[start] == '"') {
+        // quoted fields are taken as a whole and may thus contain separators
+        int fieldEnd = start + 1;
+        while (fieldEnd < end && this.data[fieldEnd] != '"') {
+          fieldEnd++;
+        }
+        if (fieldEnd == end) {
+          throw new IllegalArgumentException(
+              "Invalid field: Missing closing quote in \"" + text.subSequence(start, end) + "\"");
+        }
+
+        this.parseField(text, start + 1, fieldEnd);
+        return;
+      }
+
+      // the range separator is located before the line is split into fields as it may be
+      // surrounded by whitespace (such as in 10.0.0.0 - 10.0.0.255)
+      int fieldEnd = this.findFieldEnd(start, end);
+      int separator = this.skipWhitespace(fieldEnd, end);
+      if (fieldEnd > start && this.data[fieldEnd - 1] == '-') {
+        fieldEnd = this.findFieldEnd(separator, end);
+      } else if (separator < end && this.data[separator] == '-') {
+        fieldEnd = this.findFieldEnd(this.skipWhitespace(separator + 1, end), end);
+      }
+
+      this.parseField(text, start, fieldEnd);
+    }
+
+    /**
+     * Parses a single field in CIDR or range notation.
+     *
+     * @param text the chunk contents.
+     * @param start the index of the first character (inclusive).
+     * @param end the index of the last character (exclusive).
+     * @throws IllegalArgumentException when the field is malformed.
+     */
+    private void parseField(@NonNull AsciiSequence text, int start, int end) {
+      for (int i = start; i < end; i++) {
+        if (this.data[i] == '-') {
+          AddressParser.parseInterval(text, start, end).forEachRange(this.ranges::add);
+          return;
+        }
+      }
+
+      this.ranges.add(AddressParser.parseRange(text, start, end));
+    }
+
+    /**
+     * Locates the end of the field which starts at the specified index.
+     *
+     * @param start the index of the first character (inclusive).
+     * @param end the index of the last character of the line (exclusive).
+     * @return the index of the first separator or end.
+     */
+    private int findFieldEnd(int start, int end) {
+      while (start < end && this.data[start] != ',' && !isWhitespace(this.data[start])) {
+        start++;
+      }
+
+      return start;
+    }
+
+    /**
+     * Locates the first non-whitespace character within a section of a line.
+     *
+     * @param start the index of the first character (inclusive).
+     * @param end the index of the last character of the line (exclusive).
+     * @return the index of the first non-whitespace character or end.
+     */
+    private int skipWhitespace(int start, int end) {
+      while (start < end && isWhitespace(this.data[start])) {
+        start++;
+      }
+
+      return start;
+    }
+
+    /**
+     * Evaluates whether the specified character separates fields.
+     *
+     * @param c a character.
+     * @return true if whitespace, false otherwise.
+     */
+    private static boolean isWhitespace(byte c) {
+      return c == ' ' || c == '\t' || c == '\r';
+    }
+  }
+
+  /**
+   * Extracts prefix values from a JSON document which is passed one byte at a time.
+   *
+   * Strings are classified once the following token is known: A string which is followed by a
+   * colon is a key while all other strings are values. Non-ASCII characters are not decoded as
+   * neither prefix keys nor prefix values contain them.
+   */
+  private static final class JsonExtractor {
+
+    private final Consumer<? super AddressRange> consumer;
+    private final ErrorHandler errorHandler;
+    private final StringBuilder string = new StringBuilder();
+    private boolean[] prefixArrays = new boolean[16];
+    private int depth;
+    private long lineNumber = 1;
+    private long rangeCount;
+
+    private boolean inString;
+    private boolean escaped;
+    private int unicodeDigits;
+    private int unicodeValue;
+    private boolean stringIsPrefix;
+    private long stringLineNumber;
+
+    private boolean pending;
+    private boolean afterColon;
+    private boolean keyIsPrefix;
+
+    private JsonExtractor(@NonNull Consumer<? super AddressRange> consumer,
+        @NonNull ErrorHandler errorHandler) {
+      this.consumer = consumer;
+      this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Processes the next byte of the document.
+     *
+     * @param c a byte.
+     * @throws IOException when the document is malformed.
+     */
+    private void accept(byte c) throws IOException {
+      if (this.inString) {
+        this.acceptString(c);
+        return;
+      }
+
+      if (c == '\n') {
+        this.lineNumber++;
+      }
+      if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+        return;
+      }
+
+      if (this.pending) {
+        this.pending = false;
+
+        if (c == ':') {
+          this.keyIsPrefix = isPrefixKey(this.string);
+          this.afterColon = true;
+          return;
+        }
+        if (this.stringIsPrefix) {
+          this.parse();
+        }
+      }
+
+      boolean prefix = (this.afterColon ? this.keyIsPrefix
+          : this.depth != 0 && this.prefixArrays[this.depth - 1]);
+      this.afterColon = false;
+
+      switch (c) {
+        case '"':
+          this.inString = true;
+          this.string.setLength(0);
+          this.stringIsPrefix = prefix;
+          this.stringLineNumber = this.lineNumber;
+          break;
+        case '[':
+        case '{':
+          if (this.depth == this.prefixArrays.length) {
+            this.prefixArrays = Arrays.copyOf(this.prefixArrays, this.depth * 2);
+          }
+
+          this.prefixArrays[this.depth++] = (c == '[' && prefix);
+          break;
+        case ']':
+        case '}':
+          if (this.depth == 0) {
+            throw new IOException(
+                "Invalid document: Unbalanced '" + (char) c + "' on line " + this.lineNumber);
+          }
+
+          this.depth--;
+          break;
+        default:
+          break;
+      }
+    }
+
+    /**
+     * Processes the next byte of a string.
+     *
+     * @param c a byte.
+     * @throws IOException when the string contains an invalid escape sequence.
+     */
+    private void acceptString(byte c) throws IOException {
+      if (this.unicodeDigits != 0) {
+        int digit = Character.digit(c, 16);
+        if (digit == -1) {
+          throw new IOException("Invalid document: Malformed escape on line " + this.lineNumber);
+        }
+
+        this.unicodeValue = (this.unicodeValue << 4) | digit;
+        if (--this.unicodeDigits == 0) {
+          this.string.append((char) this.unicodeValue);
+        }
+        return;
+      }
+
+      if (this.escaped) {
+        this.escaped = false;
+
+        switch (c) {
+          case 'b':
+            this.string.append('\b');
+            break;
+          case 'f':
+            this.string.append('\f');
+            break;
+          case 'n':
+            this.string.append('\n');
+            break;
+          case 'r':
+            this.string.append('\r');
+            break;
+          case 't':
+            this.string.append('\t');
+            break;
+          case 'u':
+            this.unicodeDigits = 4;
+            this.unicodeValue = 0;
+            break;
+          default:
+            this.string.append((char) c);
+            break;
+        }
+        return;
+      }
+
+      if (c == '\\') {
+        this.escaped = true;
+      } else if (c == '"') {
+        this.inString = false;
+        this.pending = true;
+      } else {
+        this.string.append((char) (c & 0xFF));
+      }
+    }
+
+    /**
+     * Completes the document.
+     *
+     * @return the amount of delivered ranges.
+     * @throws IOException when the document is truncated.
+     */
+    private long finish() throws IOException {
+      if (this.pending && this.stringIsPrefix) {
+        this.parse();
+      }
+      if (this.inString || this.depth != 0) {
+        throw new IOException("Invalid document: Unexpected end of input");
+      }
+
+      return this.rangeCount;
+    }
+
+    /**
+     * Parses the current string in CIDR or range notation.
+     */
+    private void parse() {
+      try {
+        for (int i = 0; i < this.string.length(); i++) {
+          if (this.string.charAt(i) == '-') {
+            AddressParser.parseInterval(this.string).forEachRange(this::deliver);
+            return;
+          }
+        }
+
+        this.deliver(AddressParser.parseRange(this.string));
+      } catch (IllegalArgumentException ex) {
+        this.errorHandler.error(this.stringLineNumber, this.string.toString(), ex);
+      }
+    }
+
+    /**
+     * Passes a range to the consumer.
+     *
+     * @param range a range.
+     */
+    private void deliver(@NonNull AddressRange range) {
+      this.consumer.accept(range);
+      this.rangeCount++;
+    }
+
+    /**
+     * Evaluates whether the specified key identifies prefix values.
+     *
+     * @param key a key.
+     * @return true if prefix key, false otherwise.
+     */
+    private static boolean isPrefixKey(@NonNull CharSequence key) {
+      return endsWithIgnoreCase(key, "prefix") || endsWithIgnoreCase(key, "prefixes")
+          || endsWithIgnoreCase(key, "cidr");
+    }
+
+    /**
+     * Evaluates whether a character sequence ends with the specified lower case suffix while
+     * ignoring the case of the sequence.
+     *
+     * @param sequence a sequence.
+     * @param suffix a lower case suffix.
+     * @return true if matching, false otherwise.
+     */
+    private static boolean endsWithIgnoreCase(@NonNull CharSequence sequence,
+        @NonNull String suffix) {
+      int offset = sequence.length() - suffix.length();
+      if (offset < 0) {
+        return false;
+      }
+
+      for (int i = 0; i < suffix.length(); i++) {
+        if (Character.toLowerCase(sequence.charAt(offset + i)) != suffix.charAt(i)) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Represents a malformed line (using a line number relative to the beginning of its chunk along
+   * with the amount of ranges which have been parsed from preceding lines of the chunk).
+   */
+  private static final class Error {
+
+    private final int lineNumber;
+    private final int rangeIndex;
+    private final String line;
+    private final IllegalArgumentException cause;
+
+    private Error(int lineNumber, int rangeIndex, @NonNull String line,
+        @NonNull IllegalArgumentException cause) {
+      this.lineNumber = lineNumber;
+      this.rangeIndex = rangeIndex;
+      this.line = line;
+      this.cause = cause;
+    }
+  }
+
+  /**
+   * Passes the results of completed chunks to the consumer and error handler in file order.
+   */
+  private static final class Delivery {
+
+    private final Consumer<? super AddressRange> consumer;
+    private final ErrorHandler errorHandler;
+    private long lineCount;
+    private long rangeCount;
+
+    private Delivery(@NonNull Consumer<? super AddressRange> consumer,
+        @NonNull ErrorHandler errorHandler) {
+      this.consumer = consumer;
+      this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Passes the ranges and errors of a chunk in line order (thus an error handler which throws
+     * prevents the delivery of all ranges from subsequent lines).
+     *
+     * @param chunk a completed chunk.
+     */
+    private void accept(@NonNull Chunk chunk) {
+      List<AddressRange> ranges = chunk.ranges;
+      int rangeIndex = 0;
+
+      for (Error error : chunk.errors) {
+        for (; rangeIndex < error.rangeIndex; rangeIndex++) {
+          this.consumer.accept(ranges.get(rangeIndex));
+          this.rangeCount++;
+        }
+
+        this.errorHandler.error(this.lineCount + error.lineNumber, error.line, error.cause);
+      }
+
+      for (; rangeIndex < ranges.size(); rangeIndex++) {
+        this.consumer.accept(ranges.get(rangeIndex));
+        this.rangeCount++;
+      }
+
+      this.lineCount += chunk.lineCount;
+    }
+  }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Represents an immutable set of addresses which is made up of an arbitrary amount of IPv4 and
+ * IPv6 ranges.
+ *
+ * Sets are stored as sorted lists of disjoint address intervals (overlapping and adjacent ranges
+ * are merged upon construction) and are thus always expressed through the minimal amount of CIDR
+ * blocks which cover exactly the same addresses. Construction sorts the passed ranges once
+ * (O(n log n)) while all set operations sweep both operands linearly.
+ *
+ * @author Johannes Donath
+ */
+public final class AddressRangeSet implements AddressMatcher {
+
+  private static final AddressRangeSet EMPTY = new AddressRangeSet(AddressIntervals.EMPTY,
+      AddressIntervals.EMPTY);
+  private static final long MAX_INET4 = 0xFFFFFFFFL;
+
+  private final long[] intervals4;
+  private final long[] intervals6;
+
+  private AddressRangeSet(@NonNull long[] intervals4, @NonNull long[] intervals6) {
+    this.intervals4 = intervals4;
+    this.intervals6 = intervals6;
+  }
+
+  /**
+   * Creates a new empty set builder.
+   *
+   * @return a builder.
+   */
+  @NonNull
+  public static Builder builder() {
+    return (new Builder());
+  }
+
+  /**
+   * Retrieves an empty set.
+   *
+   * @return an empty set.
+   */
+  @NonNull
+  public static AddressRangeSet empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Creates a new set which consists of the specified ranges.
+   *
+   * @param ranges an array of ranges.
+   * @return a set.
+   */
+  @NonNull
+  public static AddressRangeSet of(@NonNull AddressRange... ranges) {
+    return of(Arrays.asList(ranges));
+  }
+
+  /**
+   * Creates a new set which consists of the specified ranges.
+   *
+   * @param ranges a collection of ranges.
+   * @return a set.
+   */
+  @NonNull
+  public static AddressRangeSet of(@NonNull Collection<? extends AddressRange> ranges) {
+    return builder().addAll(ranges).build();
+  }
+
+  /**
+   * Creates a new set which contains all addresses (of either family) which are not part of this
+   * set.
+   *
+   * @return a set.
+   */
+  @NonNull
+  public AddressRangeSet complement() {
+    return (new AddressRangeSet(AddressIntervals.complement(this.intervals4, 0, MAX_INET4),
+        AddressIntervals.complement(this.intervals6, -1, -1)));
+  }
+
+  /**
+   * Invokes the specified consumer with each range of the minimal list of ranges which make up
+   * this set (IPv4 ranges in ascending order followed by IPv6 ranges in ascending order).
+   *
+   * @param consumer a consumer.
+   */
+  public void forEach(@NonNull Consumer<? super AddressRange> consumer) {
+    for (int i = 0; i < this.intervals4.length; i += AddressIntervals.STRIDE) {
+      AddressIntervals.decompose(0, this.intervals4[i + 1], 0, this.intervals4[i + 3],
+          AddressRange4.MAX_PREFIX_LENGTH,
+          (high, low, prefixLength) -> consumer
+              .accept(new AddressRange4((int) low, prefixLength)));
+    }
+
+    for (int i = 0; i < this.intervals6.length; i += AddressIntervals.STRIDE) {
+      AddressIntervals.decompose(this.intervals6[i], this.intervals6[i + 1], this.intervals6[i + 2],
+          this.intervals6[i + 3], AddressRange6.MAX_PREFIX_LENGTH,
+          (high, low, prefixLength) -> consumer
+              .accept(new AddressRange6(high, low, prefixLength)));
+    }
+  }
+
+  /**
+   * Creates a new set which contains all addresses which are part of both this and the specified
+   * set.
+   *
+   * @param other a set.
+   * @return a set.
+   */
+  @NonNull
+  public AddressRangeSet intersect(@NonNull AddressRangeSet other) {
+    return (new AddressRangeSet(AddressIntervals.intersect(this.intervals4, other.intervals4),
+        AddressIntervals.intersect(this.intervals6, other.intervals6)));
+  }
+
+  /**
+   * Retrieves the disjoint list of intervals which make up this set (IPv4 intervals in ascending
+   * order followed by IPv6 intervals in ascending order).
+   *
+   * Unlike {@link #ranges()}, consecutive addresses are always expressed by a single interval
+   * regardless of their alignment.
+   *
+   * @return an unmodifiable list of intervals.
+   */
+  @NonNull
+  public List<AddressInterval> intervals() {
+    List<AddressInterval> intervals = new ArrayList<>(
+        (this.intervals4.length + this.intervals6.length) / AddressIntervals.STRIDE);
+
+    for (int i = 0; i < this.intervals4.length; i += AddressIntervals.STRIDE) {
+      intervals.add(new AddressInterval(false, 0, this.intervals4[i + 1], 0,
+          this.intervals4[i + 3]));
+    }
+    for (int i = 0; i < this.intervals6.length; i += AddressIntervals.STRIDE) {
+      intervals.add(new AddressInterval(true, this.intervals6[i], this.intervals6[i + 1],
+          this.intervals6[i + 2], this.intervals6[i + 3]));
+    }
+
+    return Collections.unmodifiableList(intervals);
+  }
+
+  /**
+   * Evaluates whether this set contains no addresses.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return this.intervals4.length == 0 && this.intervals6.length == 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    byte[] encoded = address.getAddress();
+
+    if (address instanceof Inet4Address) {
+      return this.matches(AddressRange4.decode(encoded, 0));
+    }
+    if (address instanceof Inet6Address) {
+      return this.matches(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return AddressIntervals.indexOf(this.intervals4, 0, address & 0xFFFFFFFFL) != -1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return AddressIntervals.indexOf(this.intervals6, high, low) != -1;
+  }
+
+  /**
+   * Retrieves the minimal list of ranges which make up this set (IPv4 ranges in ascending order
+   * followed by IPv6 ranges in ascending order).
+   *
+   * @return an unmodifiable list of ranges.
+   */
+  @NonNull
+  public List<AddressRange> ranges() {
+    List<AddressRange> ranges = new ArrayList<>();
+    this.forEach(ranges::add);
+    return Collections.unmodifiableList(ranges);
+  }
+
+  /**
+   * Creates a new set which contains all addresses which are part of this set but not part of the
+   * specified set.
+   *
+   * @param other a set.
+   * @return a set.
+   */
+  @NonNull
+  public AddressRangeSet subtract(@NonNull AddressRangeSet other) {
+    return (new AddressRangeSet(
+        AddressIntervals.subtract(this.intervals4, other.intervals4, 0, MAX_INET4),
+        AddressIntervals.subtract(this.intervals6, other.intervals6, -1, -1)));
+  }
+
+  /**
+   * Creates a new set which contains all addresses which are part of either this or the
+   * specified set.
+   *
+   * @param other a set.
+   * @return a set.
+   */
+  @NonNull
+  public AddressRangeSet union(@NonNull AddressRangeSet other) {
+    return (new AddressRangeSet(AddressIntervals.union(this.intervals4, other.intervals4),
+        AddressIntervals.union(this.intervals6, other.intervals6)));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    AddressRangeSet that = (AddressRangeSet) o;
+    return Arrays.equals(this.intervals4, that.intervals4) && Arrays
+        .equals(this.intervals6, that.intervals6);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(this.intervals4) + Arrays.hashCode(this.intervals6);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return this.ranges().toString();
+  }
+
+  /**
+   * Provides a factory for immutable address range sets.
+   */
+  public static final class Builder {
+
+    private long[] intervals4 = AddressIntervals.EMPTY;
+    private long[] intervals6 = AddressIntervals.EMPTY;
+    private int count4;
+    private int count6;
+    private MatchListener listener;
+
+    private Builder() {
+    }
+
+    /**
+     * Adds the specified range to this builder.
+     *
+     * @param range an address range.
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public Builder add(@NonNull AddressRange range) {
+      if (range instanceof AddressRange4) {
+        this.intervals4 = AddressIntervals.append(this.intervals4, this.count4++, range);
+      } else {
+        this.intervals6 = AddressIntervals.append(this.intervals6, this.count6, range);
+        this.count6++;
+      }
+
+      return this;
+    }
+
+    /**
+     * Adds all addresses within the specified interval to this builder.
+     *
+     * @param interval an interval.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder add(@NonNull AddressInterval interval) {
+      if (interval.isInet6()) {
+        this.intervals6 = AddressIntervals.append(this.intervals6, this.count6++,
+            interval.firstHigh(), interval.firstLow(), interval.lastHigh(), interval.lastLow());
+      } else {
+        this.intervals4 = AddressIntervals.append(this.intervals4, this.count4++, 0,
+            interval.firstLow(), 0, interval.lastLow());
+      }
+
+      return this;
+    }
+
+    /**
+     * Adds all specified ranges to this builder.
+     *
+     * @param ranges a collection of ranges.
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public Builder addAll(@NonNull Collection<? extends AddressRange> ranges) {
+      ranges.forEach(this::add);
+      return this;
+    }
+
+    /**
+     * Adds all ranges of the specified set to this builder.
+     *
+     * @param set a set.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder addAll(@NonNull AddressRangeSet set) {
+      for (int i = 0; i < set.intervals4.length; i += AddressIntervals.STRIDE) {
+        this.intervals4 = AddressIntervals.append(this.intervals4, this.count4++,
+            set.intervals4[i], set.intervals4[i + 1], set.intervals4[i + 2],
+            set.intervals4[i + 3]);
+      }
+      for (int i = 0; i < set.intervals6.length; i += AddressIntervals.STRIDE) {
+        this.intervals6 = AddressIntervals.append(this.intervals6, this.count6++,
+            set.intervals6[i], set.intervals6[i + 1], set.intervals6[i + 2],
+            set.intervals6[i + 3]);
+      }
+
+      return this;
+    }
+
+    /**
+     * Builds a new immutable set based on the current state of this builder.
+     *
+     * @return a set.
+     */
+    @NonNull
+    public AddressRangeSet build() {
+      long startTime = System.nanoTime();
+      AddressRangeSet set = new AddressRangeSet(
+          AddressIntervals.normalize(this.intervals4, this.count4),
+          AddressIntervals.normalize(this.intervals6, this.count6));
+
+      if (this.listener != null) {
+        this.listener.rebuilt(set, this.count4 + this.count6, System.nanoTime() - startTime);
+      }
+
+      return set;
+    }
+
+    /**
+     * Registers a listener which is notified whenever a set is built by this builder.
+     *
+     * @param listener a listener or null to remove a previously registered listener.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder listener(@Nullable MatchListener listener) {
+      this.listener = listener;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.function.BiConsumer;
+
+/**
+ * Provides an immutable (persistent) variant of {@link AddressRangeTrie}.
+ *
+ * Snapshots are never modified once constructed. Instead, {@link #apply(AddressRangeDelta)}
+ * produces a new snapshot which only copies the nodes along the paths of the changed ranges while
+ * sharing all unchanged sub-tries with its predecessor. Snapshots may thus be read by an arbitrary
+ * amount of threads without any synchronization and are cheap to derive from one another.
+ *
+ * @param <V> the value type.
+ * @author Johannes Donath
+ * @see ConcurrentAddressRangeTable
+ */
+public final class AddressRangeSnapshot<V> implements AddressMatcher {
+
+  private static final AddressRangeSnapshot<?> EMPTY = new AddressRangeSnapshot<>(null, null, 0,
+      0);
+
+  private final Node<V> root4;
+  private final Node<V> root6;
+  private final int size;
+  private final long version;
+
+  private AddressRangeSnapshot(@Nullable Node<V> root4, @Nullable Node<V> root6, int size,
+      long version) {
+    this.root4 = root4;
+    this.root6 = root6;
+    this.size = size;
+    this.version = version;
+  }
+
+  /**
+   * Retrieves an empty snapshot (with version zero).
+   *
+   * @param <V> the value type.
+   * @return an empty snapshot.
+   */
+  @NonNull
+  @SuppressWarnings("unchecked")
+  public static <V> AddressRangeSnapshot<V> empty() {
+    return (AddressRangeSnapshot<V>) EMPTY;
+  }
+
+  /**
+   * Evaluates whether a 128-bit key is covered by the prefix of the specified node.
+   *
+   * @param node a node.
+   * @param high the upper half of the key.
+   * @param low the lower half of the key.
+   * @return true if covered, false otherwise.
+   */
+  private static boolean covers(@NonNull Node<?> node, long high, long low) {
+    return (high & AddressRange6.maskHigh(node.prefixLength)) == node.high
+        && (low & AddressRange6.maskLow(node.prefixLength)) == node.low;
+  }
+
+  /**
+   * Creates a new snapshot which reflects all changes of the specified delta (in order).
+   *
+   * The returned snapshot shares all sub-tries which are unaffected by the delta with this
+   * snapshot and carries the next version number. When the delta does not alter any mapping, this
+   * snapshot is returned instead.
+   *
+   * @param delta a delta.
+   * @return a snapshot.
+   * @throws IllegalArgumentException when the delta contains an unsupported range type.
+   */
+  @NonNull
+  public AddressRangeSnapshot<V> apply(@NonNull AddressRangeDelta<? extends V> delta) {
+    Builder<V> builder = new Builder<>(this.root4, this.root6, this.size);
+    delta.forEach(builder::apply);
+
+    if (builder.root4 == this.root4 && builder.root6 == this.root6) {
+      return this;
+    }
+
+    return (new AddressRangeSnapshot<>(builder.root4, builder.root6, builder.size,
+        this.version + 1));
+  }
+
+  /**
+   * Retrieves the value associated with exactly the specified range.
+   *
+   * @param range an address range.
+   * @return a value or null if no such range has been stored.
+   */
+  @Nullable
+  public V get(@NonNull AddressRange range) {
+    Node<V> node = (range instanceof AddressRange4 ? this.root4 : this.root6);
+    long high = AddressRangeTrie.high(range);
+    long low = AddressRangeTrie.low(range);
+    int prefixLength = range.prefixLength();
+
+    while (node != null && node.prefixLength <= prefixLength && covers(node, high, low)) {
+      if (node.prefixLength == prefixLength) {
+        return node.value;
+      }
+
+      node = node.child(AddressRangeTrie.bit(high, low, node.prefixLength));
+    }
+
+    return null;
+  }
+
+  /**
+   * Retrieves the amount of ranges stored within this snapshot.
+   *
+   * @return an amount of ranges.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Evaluates whether this snapshot is empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Retrieves the version of this snapshot (e.g. the amount of effective deltas which have been
+   * applied since the empty snapshot).
+   *
+   * @return a version.
+   */
+  public long version() {
+    return this.version;
+  }
+
+  /**
+   * Passes every range and its associated value to the specified consumer (IPv4 ranges first, each
+   * family ordered by base address and prefix length).
+   *
+   * @param consumer a consumer.
+   */
+  public void forEach(@NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    forEach(this.root4, consumer);
+    forEach(this.root6, consumer);
+  }
+
+  /**
+   * Passes every range within the sub-trie of a node to the specified consumer.
+   *
+   * @param node a node.
+   * @param consumer a consumer.
+   */
+  private static <V> void forEach(@Nullable Node<V> node,
+      @NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    if (node == null) {
+      return;
+    }
+
+    if (node.value != null) {
+      consumer.accept(node.range, node.value);
+    }
+
+    forEach(node.left, consumer);
+    forEach(node.right, consumer);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.longestMatch(address) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return matches(this.root4, ((long) address) << 32, 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return matches(this.root6, high, low);
+  }
+
+  /**
+   * Evaluates whether any range below the specified node contains the specified key.
+   *
+   * @param node a root node.
+   * @param high the upper half of the key.
+   * @param low the lower half of the key.
+   * @return true if a range matches, false otherwise.
+   */
+  private static boolean matches(@Nullable Node<?> node, long high, long low) {
+    while (node != null && covers(node, high, low)) {
+      if (node.value != null) {
+        return true;
+      }
+
+      node = node.child(AddressRangeTrie.bit(high, low, node.prefixLength));
+    }
+
+    return false;
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param address an address.
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.longestMatch(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.longestMatch(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return null;
+  }
+
+  /**
+   * Retrieves the value of the most specific IPv4 range which contains the specified address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(int address) {
+    return longestMatch(this.root4, ((long) address) << 32, 0);
+  }
+
+  /**
+   * Retrieves the value of the most specific IPv6 range which contains the specified address.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(long high, long low) {
+    return longestMatch(this.root6, high, low);
+  }
+
+  /**
+   * Retrieves the value of the most specific range below the specified node which contains the
+   * specified key.
+   *
+   * @param node a root node.
+   * @param high the upper half of the key.
+   * @param low the lower half of the key.
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  private static <V> V longestMatch(@Nullable Node<V> node, long high, long low) {
+    V match = null;
+
+    while (node != null && covers(node, high, low)) {
+      if (node.value != null) {
+        match = node.value;
+      }
+
+      node = node.child(AddressRangeTrie.bit(high, low, node.prefixLength));
+    }
+
+    return match;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "AddressRangeSnapshot{version=" + this.version + ", size=" + this.size + "}";
+  }
+
+  /**
+   * Accumulates the roots of a snapshot while a delta is applied.
+   *
+   * @param <V> the value type.
+   */
+  private static final class Builder<V> {
+
+    private Node<V> root4;
+    private Node<V> root6;
+    private int size;
+
+    private Builder(@Nullable Node<V> root4, @Nullable Node<V> root6, int size) {
+      this.root4 = root4;
+      this.root6 = root6;
+      this.size = size;
+    }
+
+    /**
+     * Applies a single change.
+     *
+     * @param range an address range.
+     * @param value a value or null to remove the range.
+     */
+    private void apply(@NonNull AddressRange range, @Nullable V value) {
+      long high = AddressRangeTrie.high(range);
+      long low = AddressRangeTrie.low(range);
+      int prefixLength = range.prefixLength();
+      boolean inet4 = range instanceof AddressRange4;
+
+      Node<V> root = (inet4 ? this.root4 : this.root6);
+      if (value == null) {
+        root = this.remove(root, high, low, prefixLength);
+      } else {
+        root = this.put(root, range, high, low, prefixLength, value);
+      }
+
+      if (inet4) {
+        this.root4 = root;
+      } else {
+        this.root6 = root;
+      }
+    }
+
+    /**
+     * Associates a range with a value within the sub-trie of the specified node.
+     *
+     * @param node a node.
+     * @param range an address range.
+     * @param high the upper half of the key.
+     * @param low the lower half of the key.
+     * @param prefixLength the prefix length.
+     * @param value a value.
+     * @return the replacement node (or the passed node if the mapping was already present).
+     */
+    @NonNull
+    private Node<V> put(@Nullable Node<V> node, @NonNull AddressRange range, long high, long low,
+        int prefixLength, @NonNull V value) {
+      if (node == null) {
+        this.size++;
+        return (new Node<>(range, high, low, prefixLength, value, null, null));
+      }
+
+      int common = AddressRangeTrie.commonPrefixLength(high, low, node.high, node.low,
+          Math.min(prefixLength, node.prefixLength));
+
+      if (common == node.prefixLength) {
+        if (common == prefixLength) {
+          if (value.equals(node.value) && range.equals(node.range)) {
+            return node;
+          }
+          if (node.value == null) {
+            this.size++;
+          }
+
+          return (new Node<>(range, high, low, prefixLength, value, node.left, node.right));
+        }
+
+        int direction = AddressRangeTrie.bit(high, low, common);
+        Node<V> child = node.child(direction);
+        Node<V> replacement = this.put(child, range, high, low, prefixLength, value);
+
+        return (replacement == child ? node : node.withChild(direction, replacement));
+      }
+
+      this.size++;
+      Node<V> leaf = new Node<>(range, high, low, prefixLength, value, null, null);
+
+      if (common == prefixLength) {
+        // the new range covers the existing node and thus becomes its parent
+        return leaf.withChild(AddressRangeTrie.bit(node.high, node.low, common), node);
+      }
+
+      // both ranges diverge at an intermediate bit thus requiring a glue node
+      Node<V> glue = new Node<>(null, high & AddressRange6.maskHigh(common),
+          low & AddressRange6.maskLow(common), common, null, null, null);
+      int direction = AddressRangeTrie.bit(high, low, common);
+      return glue.withChild(direction, leaf).withChild(direction ^ 1, node);
+    }
+
+    /**
+     * Removes a range from the sub-trie of the specified node.
+     *
+     * @param node a node.
+     * @param high the upper half of the key.
+     * @param low the lower half of the key.
+     * @param prefixLength the prefix length.
+     * @return the replacement node (or the passed node if the range was not present).
+     */
+    @Nullable
+    private Node<V> remove(@Nullable Node<V> node, long high, long low, int prefixLength) {
+      if (node == null || node.prefixLength > prefixLength || !covers(node, high, low)) {
+        return node;
+      }
+
+      if (node.prefixLength == prefixLength) {
+        if (node.value == null) {
+          return node;
+        }
+
+        this.size--;
+        if (node.left != null && node.right != null) {
+          // nodes with two children remain in place as glue
+          return (new Node<>(null, node.high, node.low, node.prefixLength, null, node.left,
+              node.right));
+        }
+
+        return (node.left != null ? node.left : node.right);
+      }
+
+      int direction = AddressRangeTrie.bit(high, low, node.prefixLength);
+      Node<V> child = node.child(direction);
+      Node<V> replacement = this.remove(child, high, low, prefixLength);
+
+      if (replacement == child) {
+        return node;
+      }
+
+      // glue nodes which are left with a single child are no longer required
+      if (replacement == null && node.value == null) {
+        return node.child(direction ^ 1);
+      }
+
+      return node.withChild(direction, replacement);
+    }
+  }
+
+  /**
+   * Represents a single immutable node within the trie (either a range with an associated value or
+   * a glue node which joins two diverging sub-tries).
+   *
+   * @param <V> the value type.
+   */
+  private static final class Node<V> {
+
+    private final long high;
+    private final long low;
+    private final int prefixLength;
+
+    private final AddressRange range;
+    private final V value;
+    private final Node<V> left;
+    private final Node<V> right;
+
+    private Node(@Nullable AddressRange range, long high, long low, int prefixLength,
+        @Nullable V value, @Nullable Node<V> left, @Nullable Node<V> right) {
+      this.range = range;
+      this.high = high;
+      this.low = low;
+      this.prefixLength = prefixLength;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Nullable
+    private Node<V> child(int direction) {
+      return (direction == 0 ? this.left : this.right);
+    }
+
+    @NonNull
+    private Node<V> withChild(int direction, @Nullable Node<V> node) {
+      if (direction == 0) {
+        return (new Node<>(this.range, this.high, this.low, this.prefixLength, this.value, node,
+            this.right));
+      }
+
+      return (new Node<>(this.range, this.high, this.low, this.prefixLength, this.value, this.left,
+          node));
+    }
+  }
+}
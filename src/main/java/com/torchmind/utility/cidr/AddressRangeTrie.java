@@ -0,0 +1,795 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Provides a path-compressed binary (Patricia) trie which maps address ranges to arbitrary values
+ * and permits longest-prefix-match lookups.
+ *
+ * IPv4 and IPv6 ranges are kept within two separate tries. Lookups visit at most one node per
+ * distinct prefix length along the path of the address and are thus bound by the address size
+ * regardless of the amount of ranges stored within the trie.
+ *
+ * Tries may optionally operate in dual-stack mode in which case IPv6 addresses which embed an IPv4
+ * address (such as {@code ::ffff:10.0.0.1}) are additionally evaluated against the IPv4 ranges of
+ * the trie. When both families match an address, the value of the IPv4 range takes precedence.
+ *
+ * This implementation is not thread safe: Concurrent modifications need to be synchronized
+ * externally.
+ *
+ * @param <V> the value type.
+ * @author Johannes Donath
+ */
+public final class AddressRangeTrie<V> implements AddressMatcher {
+
+  private Node<V> root4;
+  private Node<V> root6;
+  private int size;
+  private final int embeddings;
+
+  /**
+   * Creates a new empty trie which evaluates IPv4 and IPv6 addresses independently.
+   */
+  public AddressRangeTrie() {
+    this.embeddings = 0;
+  }
+
+  /**
+   * Creates a new empty dual-stack trie which evaluates IPv6 addresses that embed an IPv4 address
+   * in any of the specified formats against its IPv4 ranges as well.
+   *
+   * @param embeddings a set of recognized formats.
+   */
+  public AddressRangeTrie(@NonNull Set<Inet4Embedding> embeddings) {
+    this.embeddings = Inet4Embedding.mask(embeddings);
+  }
+
+  /**
+   * Computes the length of the common prefix of two 128-bit keys.
+   *
+   * @param high1 the upper half of the first key.
+   * @param low1 the lower half of the first key.
+   * @param high2 the upper half of the second key.
+   * @param low2 the lower half of the second key.
+   * @param limit the maximum length to report.
+   * @return the length of the common prefix.
+   */
+  static int commonPrefixLength(long high1, long low1, long high2, long low2, int limit) {
+    long difference = high1 ^ high2;
+    int length;
+
+    if (difference != 0) {
+      length = Long.numberOfLeadingZeros(difference);
+    } else {
+      length = 64 + Long.numberOfLeadingZeros(low1 ^ low2);
+    }
+
+    return Math.min(length, limit);
+  }
+
+  /**
+   * Retrieves a single bit of a 128-bit key.
+   *
+   * @param high the upper half of the key.
+   * @param low the lower half of the key.
+   * @param index the bit index (counted from the most significant bit).
+   * @return the bit value (0 or 1).
+   */
+  static int bit(long high, long low, int index) {
+    if (index < 64) {
+      return (int) ((high >>> (63 - index)) & 1);
+    }
+
+    return (int) ((low >>> (127 - index)) & 1);
+  }
+
+  /**
+   * Evaluates whether a 128-bit key is covered by the prefix of the specified node.
+   *
+   * @param node a node.
+   * @param high the upper half of the key.
+   * @param low the lower half of the key.
+   * @return true if covered, false otherwise.
+   */
+  private static boolean covers(@NonNull Node<?> node, long high, long low) {
+    return (high & AddressRange6.maskHigh(node.prefixLength)) == node.high
+        && (low & AddressRange6.maskLow(node.prefixLength)) == node.low;
+  }
+
+  /**
+   * Retrieves the value associated with exactly the specified range.
+   *
+   * @param range an address range.
+   * @return a value or null if no such range has been stored.
+   */
+  @Nullable
+  public V get(@NonNull AddressRange range) {
+    Node<V> node = this.root(range);
+    long high = high(range);
+    long low = low(range);
+    int prefixLength = range.prefixLength();
+
+    while (node != null && node.prefixLength <= prefixLength && covers(node, high, low)) {
+      if (node.prefixLength == prefixLength) {
+        return node.value;
+      }
+
+      node = node.child(bit(high, low, node.prefixLength));
+    }
+
+    return null;
+  }
+
+  /**
+   * Retrieves the upper 64 bits of the key of a range (IPv4 ranges are aligned to the most
+   * significant bit).
+   *
+   * @param range an address range.
+   * @return the upper half of a key.
+   * @throws IllegalArgumentException when an unsupported range type is passed.
+   */
+  static long high(@NonNull AddressRange range) {
+    if (range instanceof AddressRange4) {
+      return ((long) ((AddressRange4) range).network()) << 32;
+    }
+    if (range instanceof AddressRange6) {
+      return ((AddressRange6) range).networkHigh();
+    }
+
+    throw new IllegalArgumentException(
+        "Unsupported address range type: " + range.getClass().getCanonicalName());
+  }
+
+  /**
+   * Retrieves the lower 64 bits of the key of a range.
+   *
+   * @param range an address range.
+   * @return the lower half of a key.
+   */
+  static long low(@NonNull AddressRange range) {
+    if (range instanceof AddressRange6) {
+      return ((AddressRange6) range).networkLow();
+    }
+
+    return 0;
+  }
+
+  /**
+   * Retrieves the root node of the trie which is responsible for the specified range type.
+   *
+   * @param range an address range.
+   * @return a root node or null if the respective trie is empty.
+   */
+  @Nullable
+  private Node<V> root(@NonNull AddressRange range) {
+    return (range instanceof AddressRange4 ? this.root4 : this.root6);
+  }
+
+  /**
+   * Replaces the root node of the trie which is responsible for the specified range type.
+   *
+   * @param range an address range.
+   * @param node a new root node.
+   */
+  private void root(@NonNull AddressRange range, @Nullable Node<V> node) {
+    if (range instanceof AddressRange4) {
+      this.root4 = node;
+    } else {
+      this.root6 = node;
+    }
+  }
+
+  /**
+   * Applies all changes of the specified delta (in order).
+   *
+   * Each change is applied in place, thus the cost of this operation is proportional to the size
+   * of the delta rather than the size of the trie.
+   *
+   * @param delta a delta.
+   * @throws IllegalArgumentException when the delta contains an unsupported range type.
+   */
+  public void apply(@NonNull AddressRangeDelta<? extends V> delta) {
+    delta.forEach((range, value) -> {
+      if (value == null) {
+        this.remove(range);
+      } else {
+        this.put(range, value);
+      }
+    });
+  }
+
+  /**
+   * Associates the specified range with a value (replacing any previously associated value).
+   *
+   * @param range an address range.
+   * @param value a value.
+   * @return the previously associated value or null if the range was not present.
+   */
+  @Nullable
+  public V put(@NonNull AddressRange range, @NonNull V value) {
+    Objects.requireNonNull(value, "value");
+
+    long high = high(range);
+    long low = low(range);
+    int prefixLength = range.prefixLength();
+
+    Node<V> parent = null;
+    Node<V> node = this.root(range);
+
+    if (node == null) {
+      this.root(range, new Node<>(range, high, low, prefixLength, value));
+      this.size++;
+      return null;
+    }
+
+    while (true) {
+      int common = commonPrefixLength(high, low, node.high, node.low,
+          Math.min(prefixLength, node.prefixLength));
+
+      if (common == node.prefixLength) {
+        if (common == prefixLength) {
+          V previous = node.value;
+          if (previous == null) {
+            this.size++;
+          }
+
+          node.range = range;
+          node.value = value;
+          return previous;
+        }
+
+        int direction = bit(high, low, common);
+        Node<V> child = node.child(direction);
+        if (child == null) {
+          node.child(direction, new Node<>(range, high, low, prefixLength, value));
+          this.size++;
+          return null;
+        }
+
+        parent = node;
+        node = child;
+        continue;
+      }
+
+      Node<V> replacement;
+      if (common == prefixLength) {
+        // the new range covers the existing node and thus becomes its parent
+        replacement = new Node<>(range, high, low, prefixLength, value);
+        replacement.child(bit(node.high, node.low, common), node);
+      } else {
+        // both ranges diverge at an intermediate bit thus requiring a glue node
+        replacement = new Node<>(null, high & AddressRange6.maskHigh(common),
+            low & AddressRange6.maskLow(common), common, null);
+
+        int direction = bit(high, low, common);
+        replacement.child(direction, new Node<>(range, high, low, prefixLength, value));
+        replacement.child(direction ^ 1, node);
+      }
+
+      if (parent == null) {
+        this.root(range, replacement);
+      } else {
+        parent.child(bit(high, low, parent.prefixLength), replacement);
+      }
+
+      this.size++;
+      return null;
+    }
+  }
+
+  /**
+   * Removes the value associated with exactly the specified range.
+   *
+   * @param range an address range.
+   * @return the previously associated value or null if the range was not present.
+   */
+  @Nullable
+  public V remove(@NonNull AddressRange range) {
+    long high = high(range);
+    long low = low(range);
+    int prefixLength = range.prefixLength();
+
+    Node<V> grandparent = null;
+    Node<V> parent = null;
+    Node<V> node = this.root(range);
+
+    while (node != null && node.prefixLength < prefixLength && covers(node, high, low)) {
+      grandparent = parent;
+      parent = node;
+      node = node.child(bit(high, low, node.prefixLength));
+    }
+
+    if (node == null || node.prefixLength != prefixLength || node.value == null
+        || !covers(node, high, low)) {
+      return null;
+    }
+
+    V previous = node.value;
+    node.range = null;
+    node.value = null;
+    this.size--;
+
+    if (node.left != null && node.right != null) {
+      // nodes with two children remain in place as glue
+      return previous;
+    }
+
+    Node<V> child = (node.left != null ? node.left : node.right);
+    this.replace(range, parent, node, child);
+
+    // glue nodes which are left with a single child are no longer required
+    if (child == null && parent != null && parent.value == null) {
+      Node<V> sibling = (parent.left != null ? parent.left : parent.right);
+      this.replace(range, grandparent, parent, sibling);
+    }
+
+    return previous;
+  }
+
+  /**
+   * Replaces a child node within its parent (or the root of the trie).
+   *
+   * @param range a range of the respective address type.
+   * @param parent a parent node or null if the node is a root node.
+   * @param node the node to replace.
+   * @param replacement a replacement node.
+   */
+  private void replace(@NonNull AddressRange range, @Nullable Node<V> parent,
+      @NonNull Node<V> node, @Nullable Node<V> replacement) {
+    if (parent == null) {
+      this.root(range, replacement);
+    } else if (parent.left == node) {
+      parent.left = replacement;
+    } else {
+      parent.right = replacement;
+    }
+  }
+
+  /**
+   * Removes all ranges from this trie.
+   */
+  public void clear() {
+    this.root4 = null;
+    this.root6 = null;
+    this.size = 0;
+  }
+
+  /**
+   * Retrieves the amount of ranges stored within this trie.
+   *
+   * @return an amount of ranges.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Evaluates whether this trie is empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Passes every range and its associated value to the specified consumer (IPv4 ranges first, each
+   * family ordered by base address and prefix length).
+   *
+   * @param consumer a consumer.
+   */
+  public void forEach(@NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    forEach(this.root4, consumer);
+    forEach(this.root6, consumer);
+  }
+
+  /**
+   * Passes every range within the sub-trie of a node to the specified consumer.
+   *
+   * @param node a node.
+   * @param consumer a consumer.
+   */
+  private static <V> void forEach(@Nullable Node<V> node,
+      @NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    if (node == null) {
+      return;
+    }
+
+    if (node.value != null) {
+      consumer.accept(node.range, node.value);
+    }
+
+    forEach(node.left, consumer);
+    forEach(node.right, consumer);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.longestMatch(address) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return matches(this.root4, ((long) address) << 32, 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    if (matches(this.root6, high, low)) {
+      return true;
+    }
+
+    return Inet4Embedding.isEmbedded(this.embeddings, high, low)
+        && this.matches(Inet4Embedding.extract(low));
+  }
+
+  /**
+   * Evaluates whether any range below the specified node contains the specified key.
+   *
+   * @param node a root node.
+   * @param high the upper half of the key.
+   * @param low the lower half of the key.
+   * @return true if a range matches, false otherwise.
+   */
+  private static boolean matches(@Nullable Node<?> node, long high, long low) {
+    while (node != null && covers(node, high, low)) {
+      if (node.value != null) {
+        return true;
+      }
+
+      node = node.child(bit(high, low, node.prefixLength));
+    }
+
+    return false;
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param address an address.
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.longestMatch(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.longestMatch(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return null;
+  }
+
+  /**
+   * Retrieves the value of the most specific IPv4 range which contains the specified address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(int address) {
+    return longestMatch(this.root4, ((long) address) << 32, 0);
+  }
+
+  /**
+   * Retrieves the value of the most specific IPv6 range which contains the specified address
+   * (or, in dual-stack mode, the value of the most specific IPv4 range which contains the
+   * embedded address if any).
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(long high, long low) {
+    if (Inet4Embedding.isEmbedded(this.embeddings, high, low)) {
+      V match = this.longestMatch(Inet4Embedding.extract(low));
+
+      if (match != null) {
+        return match;
+      }
+    }
+
+    return longestMatch(this.root6, high, low);
+  }
+
+  /**
+   * Retrieves the value of the most specific range below the specified node which contains the
+   * specified key.
+   *
+   * @param node a root node.
+   * @param high the upper half of the key.
+   * @param low the lower half of the key.
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  private static <V> V longestMatch(@Nullable Node<V> node, long high, long low) {
+    V match = null;
+
+    while (node != null && covers(node, high, low)) {
+      if (node.value != null) {
+        match = node.value;
+      }
+
+      node = node.child(bit(high, low, node.prefixLength));
+    }
+
+    return match;
+  }
+
+  /**
+   * Retrieves the values of all ranges which contain the specified address (ordered from the least
+   * to the most specific range).
+   *
+   * @param address an address.
+   * @return a list of values.
+   */
+  @NonNull
+  public List<V> allMatches(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.allMatches(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.allMatches(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return Collections.emptyList();
+  }
+
+  /**
+   * Retrieves the values of all IPv4 ranges which contain the specified address (ordered from the
+   * least to the most specific range).
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a list of values.
+   */
+  @NonNull
+  public List<V> allMatches(int address) {
+    return allMatches(this.root4, ((long) address) << 32, 0);
+  }
+
+  /**
+   * Retrieves the values of all IPv6 ranges which contain the specified address (ordered from the
+   * least to the most specific range). In dual-stack mode, the values of all IPv4 ranges which
+   * contain the embedded address follow in the same order.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a list of values.
+   */
+  @NonNull
+  public List<V> allMatches(long high, long low) {
+    List<V> matches = allMatches(this.root6, high, low);
+
+    if (Inet4Embedding.isEmbedded(this.embeddings, high, low)) {
+      matches.addAll(this.allMatches(Inet4Embedding.extract(low)));
+    }
+
+    return matches;
+  }
+
+  /**
+   * Retrieves the values of all ranges below the specified node which contain the specified key.
+   *
+   * @param node a root node.
+   * @param high the upper half of the key.
+   * @param low the lower half of the key.
+   * @return a list of values.
+   */
+  @NonNull
+  private static <V> List<V> allMatches(@Nullable Node<V> node, long high, long low) {
+    List<V> matches = new ArrayList<>();
+
+    while (node != null && covers(node, high, low)) {
+      if (node.value != null) {
+        matches.add(node.value);
+      }
+
+      node = node.child(bit(high, low, node.prefixLength));
+    }
+
+    return matches;
+  }
+
+  /**
+   * Passes every range which contains (or equals) the specified range to the specified consumer
+   * (ordered from the least to the most specific range).
+   *
+   * At most one node is visited per prefix length along the path of the range.
+   *
+   * @param range an address range.
+   * @param consumer a consumer.
+   */
+  public void forEachCovering(@NonNull AddressRange range,
+      @NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    this.forEachOverlapping(range, consumer, true, false);
+  }
+
+  /**
+   * Passes every range which is contained within (or equal to) the specified range to the
+   * specified consumer.
+   *
+   * The trie is descended along the path of the range after which only the matching subtree is
+   * visited (e.g. the cost is proportional to the address size plus the amount of reported
+   * ranges).
+   *
+   * @param range an address range.
+   * @param consumer a consumer.
+   */
+  public void forEachCoveredBy(@NonNull AddressRange range,
+      @NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    this.forEachOverlapping(range, consumer, false, true);
+  }
+
+  /**
+   * Passes every range which shares at least one address with the specified range to the
+   * specified consumer (e.g. all ranges which either contain or are contained within the range).
+   *
+   * Containing ranges are reported first (ordered from the least to the most specific range)
+   * followed by all contained ranges.
+   *
+   * @param range an address range.
+   * @param consumer a consumer.
+   */
+  public void forEachOverlapping(@NonNull AddressRange range,
+      @NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    this.forEachOverlapping(range, consumer, true, true);
+  }
+
+  /**
+   * Passes the containing and/or contained ranges of the specified range to a consumer.
+   *
+   * @param range an address range.
+   * @param consumer a consumer.
+   * @param covering true if containing ranges are to be reported.
+   * @param coveredBy true if contained ranges are to be reported.
+   */
+  private void forEachOverlapping(@NonNull AddressRange range,
+      @NonNull BiConsumer<? super AddressRange, ? super V> consumer, boolean covering,
+      boolean coveredBy) {
+    Node<V> node = this.root(range);
+    long high = high(range);
+    long low = low(range);
+    int prefixLength = range.prefixLength();
+
+    while (node != null) {
+      if (node.prefixLength >= prefixLength) {
+        // the node and its entire subtree are located within the range when the range covers the
+        // node's prefix
+        if ((node.high & AddressRange6.maskHigh(prefixLength)) != high
+            || (node.low & AddressRange6.maskLow(prefixLength)) != low) {
+          return;
+        }
+
+        if (node.prefixLength == prefixLength && covering && !coveredBy && node.value != null) {
+          consumer.accept(node.range, node.value);
+        }
+        if (coveredBy) {
+          forEach(node, consumer);
+        }
+
+        return;
+      }
+
+      if (!covers(node, high, low)) {
+        return;
+      }
+      if (covering && node.value != null) {
+        consumer.accept(node.range, node.value);
+      }
+
+      node = node.child(bit(high, low, node.prefixLength));
+    }
+  }
+
+  /**
+   * Evaluates whether any range within this trie shares at least one address with the specified
+   * range.
+   *
+   * @param range an address range.
+   * @return true if overlapping, false otherwise.
+   */
+  public boolean overlaps(@NonNull AddressRange range) {
+    Node<V> node = this.root(range);
+    long high = high(range);
+    long low = low(range);
+    int prefixLength = range.prefixLength();
+
+    while (node != null) {
+      if (node.prefixLength >= prefixLength) {
+        // every subtree contains at least one range as valueless nodes always have two children
+        return (node.high & AddressRange6.maskHigh(prefixLength)) == high
+            && (node.low & AddressRange6.maskLow(prefixLength)) == low;
+      }
+
+      if (!covers(node, high, low)) {
+        return false;
+      }
+      if (node.value != null) {
+        return true;
+      }
+
+      node = node.child(bit(high, low, node.prefixLength));
+    }
+
+    return false;
+  }
+
+  /**
+   * Represents a single node within the trie (either a range with an associated value or a glue
+   * node which joins two diverging sub-tries).
+   *
+   * @param <V> the value type.
+   */
+  private static final class Node<V> {
+
+    private final long high;
+    private final long low;
+    private final int prefixLength;
+
+    private AddressRange range;
+    private V value;
+    private Node<V> left;
+    private Node<V> right;
+
+    private Node(@Nullable AddressRange range, long high, long low, int prefixLength,
+        @Nullable V value) {
+      this.range = range;
+      this.high = high;
+      this.low = low;
+      this.prefixLength = prefixLength;
+      this.value = value;
+    }
+
+    @Nullable
+    private Node<V> child(int direction) {
+      return (direction == 0 ? this.left : this.right);
+    }
+
+    private void child(int direction, @Nullable Node<V> node) {
+      if (direction == 0) {
+        this.left = node;
+      } else {
+        this.right = node;
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Provides a lazy spliterator over a consecutive span of numeric 32-bit addresses.
+ *
+ * Addresses are tracked as unsigned values within a {@code long} counter in order to permit spans
+ * which cover the entire address space. Splitting always divides the remaining span in half thus
+ * distributing a parallel scan evenly.
+ *
+ * @author Johannes Donath
+ */
+final class AddressSpliterator4 implements Spliterator.OfInt {
+
+  private static final int CHARACTERISTICS =
+      ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+  private long next;
+  private final long end;
+
+  /**
+   * Creates a new spliterator.
+   *
+   * @param next the first address (as an unsigned value).
+   * @param end the address following the last address (as an unsigned value).
+   */
+  AddressSpliterator4(long next, long end) {
+    this.next = next;
+    this.end = end;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int characteristics() {
+    return CHARACTERISTICS;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long estimateSize() {
+    return this.end - this.next;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void forEachRemaining(@NonNull IntConsumer action) {
+    long next = this.next;
+    long end = this.end;
+    this.next = end;
+
+    for (; next < end; next++) {
+      action.accept((int) next);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean tryAdvance(@NonNull IntConsumer action) {
+    if (this.next >= this.end) {
+      return false;
+    }
+
+    action.accept((int) this.next++);
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public Spliterator.OfInt trySplit() {
+    long middle = (this.next + this.end) >>> 1;
+
+    if (middle <= this.next) {
+      return null;
+    }
+
+    AddressSpliterator4 prefix = new AddressSpliterator4(this.next, middle);
+    this.next = middle;
+    return prefix;
+  }
+}
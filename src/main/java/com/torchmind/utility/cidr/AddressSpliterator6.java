@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.Inet6Address;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Provides a lazy spliterator over a consecutive span of numeric 128-bit addresses.
+ *
+ * The spliterator is driven by an unsigned 128-bit counter. Consumers which wish to avoid the
+ * construction of address objects may use {@link #tryAdvance(AddressConsumer)} and {@link
+ * #forEachRemaining(AddressConsumer)} instead of their generic counterparts. Splitting always
+ * divides the remaining span in half thus distributing a parallel scan evenly.
+ *
+ * Spans which contain more than {@link Long#MAX_VALUE} addresses report an estimated size of
+ * {@link Long#MAX_VALUE} and are not considered {@link #SIZED} until they have been split
+ * sufficiently.
+ *
+ * @author Johannes Donath
+ */
+public final class AddressSpliterator6 implements Spliterator<Inet6Address> {
+
+  private static final int CHARACTERISTICS = ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+
+  private long nextHigh;
+  private long nextLow;
+  private final long lastHigh;
+  private final long lastLow;
+  private boolean exhausted;
+
+  /**
+   * Creates a new spliterator.
+   *
+   * @param nextHigh the upper 64 bits of the first address.
+   * @param nextLow the lower 64 bits of the first address.
+   * @param lastHigh the upper 64 bits of the last address (inclusive).
+   * @param lastLow the lower 64 bits of the last address (inclusive).
+   */
+  AddressSpliterator6(long nextHigh, long nextLow, long lastHigh, long lastLow) {
+    this.nextHigh = nextHigh;
+    this.nextLow = nextLow;
+    this.lastHigh = lastHigh;
+    this.lastLow = lastLow;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int characteristics() {
+    if (this.estimateSize() != Long.MAX_VALUE) {
+      return CHARACTERISTICS | SIZED | SUBSIZED;
+    }
+
+    return CHARACTERISTICS;
+  }
+
+  /**
+   * Computes the upper 64 bits of the distance between the next and the last address.
+   *
+   * @return the upper half of a distance.
+   */
+  private long distanceHigh() {
+    long borrow = (Long.compareUnsigned(this.lastLow, this.nextLow) < 0 ? 1 : 0);
+    return this.lastHigh - this.nextHigh - borrow;
+  }
+
+  /**
+   * Computes the lower 64 bits of the distance between the next and the last address.
+   *
+   * @return the lower half of a distance.
+   */
+  private long distanceLow() {
+    return this.lastLow - this.nextLow;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long estimateSize() {
+    if (this.exhausted) {
+      return 0;
+    }
+
+    long distance = this.distanceLow();
+    if (this.distanceHigh() != 0 || distance < 0 || distance == Long.MAX_VALUE) {
+      return Long.MAX_VALUE;
+    }
+
+    return distance + 1;
+  }
+
+  /**
+   * Passes all remaining addresses to the specified consumer.
+   *
+   * @param action a consumer.
+   */
+  public void forEachRemaining(@NonNull AddressConsumer action) {
+    if (this.exhausted) {
+      return;
+    }
+
+    long high = this.nextHigh;
+    long low = this.nextLow;
+    this.exhausted = true;
+
+    while (true) {
+      action.accept(high, low);
+
+      if (high == this.lastHigh && low == this.lastLow) {
+        return;
+      }
+
+      low++;
+      if (low == 0) {
+        high++;
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void forEachRemaining(@NonNull Consumer<? super Inet6Address> action) {
+    this.forEachRemaining((high, low) -> action.accept(AddressRange6.encode(high, low)));
+  }
+
+  /**
+   * Passes the next address to the specified consumer (if any).
+   *
+   * @param action a consumer.
+   * @return true if an address was passed, false if no addresses remain.
+   */
+  public boolean tryAdvance(@NonNull AddressConsumer action) {
+    if (this.exhausted) {
+      return false;
+    }
+
+    long high = this.nextHigh;
+    long low = this.nextLow;
+
+    if (high == this.lastHigh && low == this.lastLow) {
+      this.exhausted = true;
+    } else {
+      this.nextLow = low + 1;
+      if (this.nextLow == 0) {
+        this.nextHigh = high + 1;
+      }
+    }
+
+    action.accept(high, low);
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean tryAdvance(@NonNull Consumer<? super Inet6Address> action) {
+    return this.tryAdvance((high, low) -> action.accept(AddressRange6.encode(high, low)));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nullable
+  @Override
+  public AddressSpliterator6 trySplit() {
+    if (this.exhausted) {
+      return null;
+    }
+
+    long distanceHigh = this.distanceHigh();
+    long distanceLow = this.distanceLow();
+    if (distanceHigh == 0 && distanceLow == 0) {
+      return null;
+    }
+
+    // the prefix receives the lower half of the span (rounded up) and ends at next + distance / 2
+    long halfHigh = distanceHigh >>> 1;
+    long halfLow = (distanceLow >>> 1) | (distanceHigh << 63);
+    long middleLow = this.nextLow + halfLow;
+    long middleHigh = this.nextHigh + halfHigh
+        + (Long.compareUnsigned(middleLow, this.nextLow) < 0 ? 1 : 0);
+
+    AddressSpliterator6 prefix = new AddressSpliterator6(this.nextHigh, this.nextLow, middleHigh,
+        middleLow);
+
+    this.nextLow = middleLow + 1;
+    this.nextHigh = middleHigh + (this.nextLow == 0 ? 1 : 0);
+    return prefix;
+  }
+
+  /**
+   * Receives numeric 128-bit addresses.
+   */
+  @FunctionalInterface
+  public interface AddressConsumer {
+
+    /**
+     * Handles an address.
+     *
+     * @param high the upper 64 bits of the address (in network byte order).
+     * @param low the lower 64 bits of the address (in network byte order).
+     */
+    void accept(long high, long low);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Provides a character sequence view of a section of a byte array which holds ASCII encoded text
+ * (bytes outside of the ASCII range are mapped to their respective Latin-1 characters and are
+ * thus rejected by all address parsers).
+ *
+ * @author Johannes Donath
+ */
+final class AsciiSequence implements CharSequence {
+
+  private final byte[] data;
+  private final int offset;
+  private final int length;
+
+  AsciiSequence(@NonNull byte[] data, int offset, int length) {
+    this.data = data;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= this.length) {
+      throw new IndexOutOfBoundsException("Invalid index: " + index);
+    }
+
+    return (char) (this.data[this.offset + index] & 0xFF);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int length() {
+    return this.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > this.length || start > end) {
+      throw new IndexOutOfBoundsException("Invalid section: " + start + " to " + end);
+    }
+
+    return (new AsciiSequence(this.data, this.offset + start, end - start));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return (new String(this.data, this.offset, this.length, StandardCharsets.ISO_8859_1));
+  }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Decorates an arbitrary matcher with a bounded cache of per-address results (for instance in
+ * front of a large rule set which is evaluated against a small amount of frequent clients).
+ *
+ * Results are kept within a fixed size table of four-way buckets which are indexed by a hash of
+ * the numeric address. IPv4 entries are packed into a single long (address, result, reference
+ * bit and generation) while IPv6 entries are stored as immutable objects which are only allocated
+ * on a miss. Lookups thus never box their key. When all ways of a bucket are occupied, an entry is
+ * evicted using the CLOCK (second chance) algorithm within the bucket.
+ *
+ * The decorated matcher is retrieved from a source upon every evaluation. Whenever the source
+ * returns a different instance (such as a newly published {@link AddressRangeSnapshot}), all
+ * cached results are invalidated in constant time by advancing the cache generation. All
+ * counters may be updated and read concurrently.
+ *
+ * @author Johannes Donath
+ * @see AddressMatchers#cache(AddressMatcher, int)
+ * @see AddressMatchers#cache(Supplier, int)
+ */
+public final class CachingMatcher implements AddressMatcher {
+
+  private static final int WAYS = 4;
+  private static final long RESULT = 1L << 32;
+  private static final long REFERENCED = 1L << 33;
+  private static final int GENERATION_SHIFT = 34;
+  private static final int GENERATION_MASK = (1 << 30) - 1;
+
+  private final Supplier<? extends AddressMatcher> source;
+  private final AtomicLongArray entries4;
+  private final AtomicReferenceArray<Entry6> entries6;
+  private final int bucketMask;
+  private volatile State state;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  CachingMatcher(@NonNull Supplier<? extends AddressMatcher> source, int capacity) {
+    int size = Math.max(WAYS, Integer.highestOneBit(capacity - 1) << 1);
+
+    this.source = source;
+    this.entries4 = new AtomicLongArray(size);
+    this.entries6 = new AtomicReferenceArray<>(size);
+    this.bucketMask = size / WAYS - 1;
+    this.state = new State(source.get(), 1);
+  }
+
+  /**
+   * Retrieves the maximum amount of results retained per address family.
+   *
+   * @return a capacity.
+   */
+  public int capacity() {
+    return this.entries4.length();
+  }
+
+  /**
+   * Retrieves the matcher which is currently decorated.
+   *
+   * @return a matcher.
+   */
+  @NonNull
+  public AddressMatcher delegate() {
+    return this.state().matcher;
+  }
+
+  /**
+   * Retrieves the amount of results which have been evicted in order to make room for another
+   * result.
+   *
+   * @return an amount of evictions.
+   */
+  public long evictions() {
+    return this.evictions.sum();
+  }
+
+  /**
+   * Retrieves the ratio of evaluations which were answered from the cache.
+   *
+   * @return a ratio between 0 and 1 (or 0 when no evaluations have been performed yet).
+   */
+  public double hitRate() {
+    long hits = this.hits.sum();
+    long total = hits + this.misses.sum();
+    return (total == 0 ? 0 : (double) hits / total);
+  }
+
+  /**
+   * Retrieves the amount of evaluations which were answered from the cache.
+   *
+   * @return an amount of evaluations.
+   */
+  public long hits() {
+    return this.hits.sum();
+  }
+
+  /**
+   * Discards all cached results (for instance when a decorated matcher has been mutated in
+   * place).
+   */
+  public void invalidate() {
+    this.advance(this.state.matcher, true);
+  }
+
+  /**
+   * Retrieves the amount of times all cached results have been discarded (either explicitly or
+   * due to a change of the decorated matcher).
+   *
+   * @return an amount of invalidations.
+   */
+  public long invalidations() {
+    return this.invalidations.sum();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.matches(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.matches(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return this.state().matcher.matches(address);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    State state = this.state();
+    long stamp = (long) state.generation << GENERATION_SHIFT;
+    long tag = stamp | Integer.toUnsignedLong(address);
+    int bucket = (AddressMatchers.hash(address) & this.bucketMask) * WAYS;
+
+    for (int i = bucket; i < bucket + WAYS; i++) {
+      long entry = this.entries4.get(i);
+
+      if ((entry & ~(RESULT | REFERENCED)) == tag) {
+        if ((entry & REFERENCED) == 0) {
+          this.entries4.compareAndSet(i, entry, entry | REFERENCED);
+        }
+
+        this.hits.increment();
+        return (entry & RESULT) != 0;
+      }
+    }
+
+    boolean result = state.matcher.matches(address);
+    this.misses.increment();
+
+    int victim = -1;
+    for (int i = bucket; i < bucket + WAYS; i++) {
+      if ((this.entries4.get(i) >>> GENERATION_SHIFT) != state.generation) {
+        victim = i;
+        break;
+      }
+    }
+    if (victim == -1) {
+      victim = bucket;
+      for (int i = bucket; i < bucket + WAYS; i++) {
+        long entry = this.entries4.get(i);
+
+        if ((entry & REFERENCED) == 0) {
+          victim = i;
+          break;
+        }
+        this.entries4.compareAndSet(i, entry, entry & ~REFERENCED);
+      }
+      this.evictions.increment();
+    }
+
+    this.entries4.set(victim, tag | (result ? RESULT : 0));
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    State state = this.state();
+    int bucket = (AddressMatchers.hash(high * 0x9E3779B97F4A7C15L + low) & this.bucketMask) * WAYS;
+
+    for (int i = bucket; i < bucket + WAYS; i++) {
+      Entry6 entry = this.entries6.get(i);
+
+      if (entry != null && entry.generation == state.generation && entry.high == high
+          && entry.low == low) {
+        if (!entry.referenced) {
+          entry.referenced = true;
+        }
+
+        this.hits.increment();
+        return entry.result;
+      }
+    }
+
+    boolean result = state.matcher.matches(high, low);
+    this.misses.increment();
+
+    int victim = -1;
+    for (int i = bucket; i < bucket + WAYS; i++) {
+      Entry6 entry = this.entries6.get(i);
+
+      if (entry == null || entry.generation != state.generation) {
+        victim = i;
+        break;
+      }
+    }
+    if (victim == -1) {
+      victim = bucket;
+      for (int i = bucket; i < bucket + WAYS; i++) {
+        Entry6 entry = this.entries6.get(i);
+
+        if (entry == null || !entry.referenced) {
+          victim = i;
+          break;
+        }
+        entry.referenced = false;
+      }
+      this.evictions.increment();
+    }
+
+    this.entries6.set(victim, new Entry6(high, low, state.generation, result));
+    return result;
+  }
+
+  /**
+   * Retrieves the amount of evaluations which were passed to the decorated matcher.
+   *
+   * @return an amount of evaluations.
+   */
+  public long misses() {
+    return this.misses.sum();
+  }
+
+  /**
+   * Resets the hit, miss, eviction and invalidation counters of this cache.
+   */
+  public void resetStatistics() {
+    this.hits.reset();
+    this.misses.reset();
+    this.evictions.reset();
+    this.invalidations.reset();
+  }
+
+  /**
+   * Retrieves the current state and advances the generation when the source returns a different
+   * matcher.
+   *
+   * @return a state.
+   */
+  @NonNull
+  private State state() {
+    AddressMatcher matcher = this.source.get();
+    State state = this.state;
+
+    if (state.matcher != matcher) {
+      state = this.advance(matcher, false);
+    }
+
+    return state;
+  }
+
+  /**
+   * Publishes a new generation for the specified matcher.
+   *
+   * When the generation counter wraps, all entries are discarded explicitly as they could
+   * otherwise be mistaken for entries of the new generation.
+   *
+   * @param matcher a matcher.
+   * @param force true to advance even when the matcher has not changed.
+   * @return the resulting state.
+   */
+  @NonNull
+  private synchronized State advance(@NonNull AddressMatcher matcher, boolean force) {
+    State state = this.state;
+    if (!force && state.matcher == matcher) {
+      return state;
+    }
+
+    int generation = (state.generation + 1) & GENERATION_MASK;
+    if (generation == 0) {
+      for (int i = 0; i < this.entries4.length(); i++) {
+        this.entries4.set(i, 0);
+        this.entries6.set(i, null);
+      }
+      generation = 1;
+    }
+
+    state = new State(matcher, generation);
+    this.state = state;
+    this.invalidations.increment();
+    return state;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "CachingMatcher{" + this.state.matcher + ", capacity=" + this.capacity() + "}";
+  }
+
+  /**
+   * Represents the decorated matcher along with the generation of its cached results.
+   */
+  private static final class State {
+
+    private final AddressMatcher matcher;
+    private final int generation;
+
+    private State(@NonNull AddressMatcher matcher, int generation) {
+      this.matcher = matcher;
+      this.generation = generation;
+    }
+  }
+
+  /**
+   * Represents a cached IPv6 result.
+   *
+   * The reference bit is updated without synchronization as a lost update merely affects the
+   * choice of the next evicted entry.
+   */
+  private static final class Entry6 {
+
+    private final long high;
+    private final long low;
+    private final int generation;
+    private final boolean result;
+    private boolean referenced;
+
+    private Entry6(long high, long low, int generation, boolean result) {
+      this.high = high;
+      this.low = low;
+      this.generation = generation;
+      this.result = result;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.InetAddress;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Provides a lock-free range table which may be reloaded while it is being read.
+ *
+ * The table merely references an immutable {@link AddressRangeSnapshot}. Lookups perform a
+ * single volatile read of the current snapshot and never block or observe partially applied
+ * changes. Writers derive a new snapshot from the current one (sharing all unchanged sub-tries)
+ * and publish it atomically. Concurrent writers do not block each other either: When another
+ * delta has been published in the meantime, the delta is re-applied to the newer snapshot.
+ *
+ * Callers which need to perform multiple lookups against a consistent state should retrieve the
+ * current snapshot via {@link #snapshot()} once and query it directly.
+ *
+ * @param <V> the value type.
+ * @author Johannes Donath
+ */
+public final class ConcurrentAddressRangeTable<V> implements AddressMatcher {
+
+  private final AtomicReference<AddressRangeSnapshot<V>> snapshot;
+  private final MatchListener listener;
+
+  /**
+   * Creates a new empty table.
+   */
+  public ConcurrentAddressRangeTable() {
+    this(AddressRangeSnapshot.empty(), null);
+  }
+
+  /**
+   * Creates a new table which initially references the specified snapshot.
+   *
+   * @param snapshot an initial snapshot.
+   * @param listener a listener which is notified whenever a new snapshot is published or null.
+   */
+  public ConcurrentAddressRangeTable(@NonNull AddressRangeSnapshot<V> snapshot,
+      @Nullable MatchListener listener) {
+    this.snapshot = new AtomicReference<>(Objects.requireNonNull(snapshot, "snapshot"));
+    this.listener = listener;
+  }
+
+  /**
+   * Applies the specified delta and publishes the resulting snapshot.
+   *
+   * @param delta a delta.
+   * @return the published snapshot.
+   * @throws IllegalArgumentException when the delta contains an unsupported range type.
+   */
+  @NonNull
+  public AddressRangeSnapshot<V> apply(@NonNull AddressRangeDelta<? extends V> delta) {
+    long start = (this.listener != null ? System.nanoTime() : 0);
+
+    while (true) {
+      AddressRangeSnapshot<V> current = this.snapshot.get();
+      AddressRangeSnapshot<V> next = current.apply(delta);
+
+      if (next == current) {
+        return current;
+      }
+      if (this.snapshot.compareAndSet(current, next)) {
+        if (this.listener != null) {
+          this.listener.rebuilt(next, next.size(), System.nanoTime() - start);
+        }
+
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Applies the specified delta within the specified executor (e.g. away from any thread which
+   * performs lookups).
+   *
+   * @param delta a delta.
+   * @param executor an executor.
+   * @return a future which completes with the published snapshot.
+   */
+  @NonNull
+  public CompletableFuture<AddressRangeSnapshot<V>> applyAsync(
+      @NonNull AddressRangeDelta<? extends V> delta, @NonNull Executor executor) {
+    return CompletableFuture.supplyAsync(() -> this.apply(delta), executor);
+  }
+
+  /**
+   * Replaces the current snapshot entirely (for instance with a snapshot which has been
+   * constructed from a fresh copy of a data source).
+   *
+   * @param snapshot a new snapshot.
+   * @return the previous snapshot.
+   */
+  @NonNull
+  public AddressRangeSnapshot<V> replace(@NonNull AddressRangeSnapshot<V> snapshot) {
+    AddressRangeSnapshot<V> previous = this.snapshot.getAndSet(
+        Objects.requireNonNull(snapshot, "snapshot"));
+
+    if (this.listener != null) {
+      this.listener.rebuilt(snapshot, snapshot.size(), 0);
+    }
+
+    return previous;
+  }
+
+  /**
+   * Retrieves the current snapshot.
+   *
+   * @return a snapshot.
+   */
+  @NonNull
+  public AddressRangeSnapshot<V> snapshot() {
+    return this.snapshot.get();
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address within
+   * the current snapshot.
+   *
+   * @param address an address.
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(@NonNull InetAddress address) {
+    return this.snapshot.get().longestMatch(address);
+  }
+
+  /**
+   * Retrieves the value of the most specific IPv4 range which contains the specified address
+   * within the current snapshot.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(int address) {
+    return this.snapshot.get().longestMatch(address);
+  }
+
+  /**
+   * Retrieves the value of the most specific IPv6 range which contains the specified address
+   * within the current snapshot.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V longestMatch(long high, long low) {
+    return this.snapshot.get().longestMatch(high, low);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.snapshot.get().matches(address);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return this.snapshot.get().matches(address);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return this.snapshot.get().matches(high, low);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void matches(@NonNull int[] addresses, int offset, int length, @NonNull long[] result) {
+    this.snapshot.get().matches(addresses, offset, length, result);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void matches(@NonNull long[] addresses, int offset, int length,
+      @NonNull long[] result) {
+    this.snapshot.get().matches(addresses, offset, length, result);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "ConcurrentAddressRangeTable{snapshot=" + this.snapshot.get() + "}";
+  }
+}
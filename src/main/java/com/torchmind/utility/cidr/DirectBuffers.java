@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Provides utility methods for the allocation and explicit release of direct buffers.
+ *
+ * The JDK does not provide a supported way of releasing a direct buffer before it is garbage
+ * collected. Buffers are thus released through {@code sun.misc.Unsafe#invokeCleaner} when the
+ * method is available (e.g. on JDK 9 and newer when the {@code jdk.unsupported} module is
+ * readable) while other runtimes fall back to the garbage collector. Callers may check for the
+ * availability of explicit releases using {@link #isReleaseSupported()}.
+ *
+ * @author Johannes Donath
+ */
+final class DirectBuffers {
+
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+
+    try {
+      Class<?> type = Class.forName("sun.misc.Unsafe");
+      Field field = type.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+
+      unsafe = field.get(null);
+      invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException ignore) {
+      unsafe = null;
+      invokeCleaner = null;
+    }
+
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private DirectBuffers() {
+  }
+
+  /**
+   * Evaluates whether direct buffers are released explicitly by {@link #free(ByteBuffer)}.
+   *
+   * @return true if supported, false if buffers are released by the garbage collector instead.
+   */
+  static boolean isReleaseSupported() {
+    return INVOKE_CLEANER != null;
+  }
+
+  /**
+   * Allocates a new direct buffer which uses the native byte order.
+   *
+   * @param capacity a capacity (in bytes).
+   * @return a buffer.
+   */
+  @NonNull
+  static ByteBuffer allocate(int capacity) {
+    return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Releases the memory of the specified buffer immediately (if supported by the runtime).
+   *
+   * The buffer (as well as any of its views) must not be accessed once this method has been
+   * invoked.
+   *
+   * @param buffer a direct buffer or null.
+   * @throws IllegalStateException when the runtime fails to release the buffer.
+   * @see #isReleaseSupported()
+   */
+  static void free(@Nullable ByteBuffer buffer) {
+    if (buffer == null || !buffer.isDirect() || INVOKE_CLEANER == null) {
+      return;
+    }
+
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, buffer);
+    } catch (InvocationTargetException ex) {
+      throw new IllegalStateException("Failed to release direct buffer", ex.getCause());
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Failed to release direct buffer", ex);
+    }
+  }
+
+  /**
+   * Copies the specified buffer into a new direct buffer of the specified capacity and releases
+   * the original buffer.
+   *
+   * @param buffer a direct buffer.
+   * @param length the amount of bytes to copy.
+   * @param capacity a new capacity (in bytes).
+   * @return a buffer.
+   */
+  @NonNull
+  static ByteBuffer resize(@NonNull ByteBuffer buffer, int length, int capacity) {
+    ByteBuffer resized = allocate(capacity);
+
+    ByteBuffer source = buffer.duplicate();
+    source.clear();
+    source.limit(length);
+
+    resized.put(source);
+    resized.clear();
+
+    free(buffer);
+    return resized;
+  }
+}
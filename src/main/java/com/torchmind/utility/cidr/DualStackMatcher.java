@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Set;
+
+/**
+ * Decorates an arbitrary matcher in order to evaluate IPv6 addresses which embed an IPv4 address
+ * against their IPv4 equivalent as well.
+ *
+ * An embedded address matches when either the IPv6 address itself or its IPv4 equivalent is
+ * matched by the decorated matcher. All other addresses are passed on unaltered.
+ *
+ * @author Johannes Donath
+ * @see AddressMatchers#dualStack(AddressMatcher, Set)
+ */
+final class DualStackMatcher implements AddressMatcher {
+
+  private final AddressMatcher delegate;
+  private final int embeddings;
+
+  DualStackMatcher(@NonNull AddressMatcher delegate, int embeddings) {
+    this.delegate = delegate;
+    this.embeddings = embeddings;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.delegate.matches(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.matches(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    return this.delegate.matches(address);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return this.delegate.matches(address);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    if (this.delegate.matches(high, low)) {
+      return true;
+    }
+
+    return Inet4Embedding.isEmbedded(this.embeddings, high, low)
+        && this.delegate.matches(Inet4Embedding.extract(low));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void matches(@NonNull int[] addresses, int offset, int length, @NonNull long[] result) {
+    this.delegate.matches(addresses, offset, length, result);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "DualStackMatcher{" + this.delegate + "}";
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Set;
+
+/**
+ * Enumerates the IPv6 address formats which carry an IPv4 address within their lower 32 bits.
+ *
+ * Embedded addresses are detected and extracted purely based on the numeric form of an address
+ * and thus never allocate.
+ *
+ * @author Johannes Donath
+ * @see AddressMatchers#dualStack(AddressMatcher, Set)
+ * @see AddressRangeTrie#AddressRangeTrie(Set)
+ */
+public enum Inet4Embedding {
+
+  /**
+   * IPv4-mapped addresses ({@code ::ffff:0:0/96} as defined in RFC 4291).
+   */
+  MAPPED {
+    @Override
+    public boolean isEmbedded(long high, long low) {
+      return high == 0 && (low >>> 32) == 0xFFFFL;
+    }
+  },
+
+  /**
+   * Deprecated IPv4-compatible addresses ({@code ::/96} as defined in RFC 4291) with the exception
+   * of the unspecified ({@code ::}) and loopback ({@code ::1}) addresses.
+   */
+  COMPATIBLE {
+    @Override
+    public boolean isEmbedded(long high, long low) {
+      return high == 0 && (low >>> 32) == 0 && (low >>> 1) != 0;
+    }
+  },
+
+  /**
+   * NAT64 addresses within the well-known prefix ({@code 64:ff9b::/96} as defined in RFC 6052).
+   */
+  NAT64 {
+    @Override
+    public boolean isEmbedded(long high, long low) {
+      return high == 0x0064FF9B00000000L && (low >>> 32) == 0;
+    }
+  };
+
+  private static final Inet4Embedding[] VALUES = values();
+
+  /**
+   * Evaluates whether the specified numeric IPv6 address embeds an IPv4 address in this format.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return true if embedded, false otherwise.
+   */
+  public abstract boolean isEmbedded(long high, long low);
+
+  /**
+   * Extracts the embedded IPv4 address from the lower half of an IPv6 address.
+   *
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a numeric IPv4 address (in network byte order).
+   */
+  public static int extract(long low) {
+    return (int) low;
+  }
+
+  /**
+   * Converts a set of formats into its bitmask representation.
+   *
+   * @param embeddings a set of formats.
+   * @return a bitmask.
+   */
+  static int mask(@NonNull Set<Inet4Embedding> embeddings) {
+    int mask = 0;
+
+    for (Inet4Embedding embedding : embeddings) {
+      mask |= 1 << embedding.ordinal();
+    }
+
+    return mask;
+  }
+
+  /**
+   * Evaluates whether the specified numeric IPv6 address embeds an IPv4 address in any of the
+   * formats within the specified bitmask.
+   *
+   * @param mask a bitmask of formats.
+   * @param high the upper 64 bits of the address.
+   * @param low the lower 64 bits of the address.
+   * @return true if embedded, false otherwise.
+   */
+  static boolean isEmbedded(int mask, long high, long low) {
+    if (mask == 0) {
+      return false;
+    }
+
+    for (Inet4Embedding embedding : VALUES) {
+      if ((mask & (1 << embedding.ordinal())) != 0 && embedding.isEmbedded(high, low)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.net.InetAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorates an arbitrary matcher with hit and miss counters as well as a latency histogram.
+ *
+ * Instrumentation is entirely opt-in: Matchers which have not been wrapped do not perform any
+ * additional work. Wrapping each range of a rule set individually yields per-range counters
+ * while wrapping a lookup structure (such as {@link AddressRangeTrie}) yields counters for the
+ * structure as a whole.
+ *
+ * Hit and miss counters are exact while latencies are only measured for a random sample of
+ * evaluations (one out of {@code sampleInterval} on average) as reading the system clock typically
+ * costs more than evaluating a single range. Slow lookups are thus only reported when sampled.
+ * Batch evaluations are counted per address but are recorded as a single histogram sample
+ * (covering the entire batch). All counters may be updated and read concurrently.
+ *
+ * @author Johannes Donath
+ * @see AddressMatchers#instrument(AddressMatcher)
+ */
+public final class InstrumentedMatcher implements AddressMatcher {
+
+  private final AddressMatcher delegate;
+  private final MatchListener listener;
+  private final long slowThreshold;
+  private final int sampleMask;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LatencyHistogram latencies = new LatencyHistogram();
+
+  InstrumentedMatcher(@NonNull AddressMatcher delegate, @Nullable MatchListener listener,
+      long slowThreshold, int sampleInterval) {
+    this.delegate = delegate;
+    this.listener = listener;
+    this.slowThreshold = slowThreshold;
+    this.sampleMask = sampleInterval - 1;
+  }
+
+  /**
+   * Retrieves the decorated matcher.
+   *
+   * @return a matcher.
+   */
+  @NonNull
+  public AddressMatcher delegate() {
+    return this.delegate;
+  }
+
+  /**
+   * Retrieves the amount of matching addresses.
+   *
+   * @return an amount of addresses.
+   */
+  public long hits() {
+    return this.hits.sum();
+  }
+
+  /**
+   * Retrieves the latency histogram of this matcher.
+   *
+   * @return a histogram.
+   */
+  @NonNull
+  public LatencyHistogram latencies() {
+    return this.latencies;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    if (!this.sample()) {
+      boolean result = this.delegate.matches(address);
+      (result ? this.hits : this.misses).increment();
+      return result;
+    }
+
+    long start = System.nanoTime();
+    boolean result = this.delegate.matches(address);
+    this.record(result, System.nanoTime() - start);
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    if (!this.sample()) {
+      boolean result = this.delegate.matches(address);
+      (result ? this.hits : this.misses).increment();
+      return result;
+    }
+
+    long start = System.nanoTime();
+    boolean result = this.delegate.matches(address);
+    this.record(result, System.nanoTime() - start);
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    if (!this.sample()) {
+      boolean result = this.delegate.matches(high, low);
+      (result ? this.hits : this.misses).increment();
+      return result;
+    }
+
+    long start = System.nanoTime();
+    boolean result = this.delegate.matches(high, low);
+    this.record(result, System.nanoTime() - start);
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void matches(@NonNull int[] addresses, int offset, int length, @NonNull long[] result) {
+    long start = System.nanoTime();
+    this.delegate.matches(addresses, offset, length, result);
+    this.recordBatch(length, result, System.nanoTime() - start);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void matches(@NonNull long[] addresses, int offset, int length,
+      @NonNull long[] result) {
+    long start = System.nanoTime();
+    this.delegate.matches(addresses, offset, length, result);
+    this.recordBatch(length, result, System.nanoTime() - start);
+  }
+
+  /**
+   * Retrieves the amount of addresses which did not match.
+   *
+   * @return an amount of addresses.
+   */
+  public long misses() {
+    return this.misses.sum();
+  }
+
+  /**
+   * Decides whether the duration of the current evaluation shall be measured.
+   *
+   * @return true if sampled, false otherwise.
+   */
+  private boolean sample() {
+    return this.sampleMask == 0 || (ThreadLocalRandom.current().nextInt() & this.sampleMask) == 0;
+  }
+
+  /**
+   * Records the result of a single evaluation.
+   *
+   * @param matched true if the address matched, false otherwise.
+   * @param duration the evaluation duration (in nanoseconds).
+   */
+  private void record(boolean matched, long duration) {
+    (matched ? this.hits : this.misses).increment();
+    this.latencies.record(duration);
+
+    if (this.listener != null && duration >= this.slowThreshold) {
+      this.listener.slowLookup(this, matched, duration);
+    }
+  }
+
+  /**
+   * Records the result of a batch evaluation.
+   *
+   * @param length the amount of evaluated addresses.
+   * @param result the result bitset.
+   * @param duration the evaluation duration (in nanoseconds).
+   */
+  private void recordBatch(int length, @NonNull long[] result, long duration) {
+    long hits = 0;
+    for (int word = 0; word * 64 < length; word++) {
+      hits += Long.bitCount(result[word]);
+    }
+
+    this.hits.add(hits);
+    this.misses.add(length - hits);
+    this.latencies.record(duration);
+
+    if (this.listener != null && duration >= this.slowThreshold) {
+      this.listener.slowLookup(this, hits != 0, duration);
+    }
+  }
+
+  /**
+   * Resets all counters and the latency histogram of this matcher.
+   */
+  public void reset() {
+    this.hits.reset();
+    this.misses.reset();
+    this.latencies.reset();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "InstrumentedMatcher{delegate=" + this.delegate + ", hits=" + this.hits() + ", misses="
+        + this.misses() + ", latencies=" + this.latencies + "}";
+  }
+}
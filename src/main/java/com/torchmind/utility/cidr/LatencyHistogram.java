@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides a concurrent histogram of durations with exponentially sized buckets.
+ *
+ * Bucket {@code i} counts durations between {@code 2^(i - 1)} (inclusive) and {@code 2^i}
+ * (exclusive) nanoseconds while bucket zero counts durations of zero nanoseconds. All counters are
+ * backed by {@link LongAdder} instances and thus scale with the amount of recording threads.
+ * Snapshots taken while values are recorded are not necessarily consistent with one another.
+ *
+ * @author Johannes Donath
+ */
+public final class LatencyHistogram {
+
+  /**
+   * Defines the amount of buckets within every histogram.
+   */
+  public static final int BUCKET_COUNT = 64;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+  private final LongAdder total = new LongAdder();
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      this.buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Retrieves the bucket which counts a given duration.
+   *
+   * @param duration a duration (in nanoseconds).
+   * @return a bucket index.
+   */
+  static int bucket(long duration) {
+    return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, duration)));
+  }
+
+  /**
+   * Retrieves the amount of recorded durations.
+   *
+   * @return an amount of durations.
+   */
+  public long count() {
+    long count = 0;
+
+    for (LongAdder bucket : this.buckets) {
+      count += bucket.sum();
+    }
+
+    return count;
+  }
+
+  /**
+   * Retrieves the amount of durations which have been recorded within the specified bucket.
+   *
+   * @param bucket a bucket index.
+   * @return an amount of durations.
+   * @throws IndexOutOfBoundsException when the bucket index is out of bounds.
+   */
+  public long count(int bucket) {
+    return this.buckets[bucket].sum();
+  }
+
+  /**
+   * Retrieves the arithmetic mean of all recorded durations.
+   *
+   * @return a duration (in nanoseconds) or zero if no durations have been recorded.
+   */
+  public double mean() {
+    long count = this.count();
+    return (count == 0 ? 0 : ((double) this.total.sum()) / count);
+  }
+
+  /**
+   * Retrieves an upper bound for the duration at the specified quantile (e.g. the exclusive upper
+   * bound of the bucket which contains the quantile).
+   *
+   * @param quantile a quantile between zero and one (inclusive).
+   * @return a duration (in nanoseconds) or zero if no durations have been recorded.
+   * @throws IllegalArgumentException when the quantile is out of bounds.
+   */
+  public long quantile(double quantile) {
+    if (!(quantile >= 0 && quantile <= 1)) {
+      throw new IllegalArgumentException("Invalid quantile: " + quantile);
+    }
+
+    long[] counts = this.snapshot();
+    long count = 0;
+    for (long bucket : counts) {
+      count += bucket;
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(quantile * count));
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      rank -= counts[i];
+
+      if (rank <= 0) {
+        return (i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << i);
+      }
+    }
+
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Records a duration.
+   *
+   * @param duration a duration (in nanoseconds).
+   */
+  public void record(long duration) {
+    this.buckets[bucket(duration)].increment();
+    this.total.add(duration);
+  }
+
+  /**
+   * Resets all buckets to zero.
+   */
+  public void reset() {
+    for (LongAdder bucket : this.buckets) {
+      bucket.reset();
+    }
+
+    this.total.reset();
+  }
+
+  /**
+   * Retrieves a copy of all bucket counts.
+   *
+   * @return an array of {@link #BUCKET_COUNT} counts.
+   */
+  @NonNull
+  public long[] snapshot() {
+    long[] counts = new long[BUCKET_COUNT];
+
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = this.buckets[i].sum();
+    }
+
+    return counts;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "LatencyHistogram{count=" + this.count() + ", mean=" + this.mean() + ", p50="
+        + this.quantile(.5) + ", p99=" + this.quantile(.99) + "}";
+  }
+}
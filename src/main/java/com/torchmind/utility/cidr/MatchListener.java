@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Receives notable events from instrumented matchers and lookup structure builders (for instance
+ * in order to forward them to a metrics system or to commit JDK Flight Recorder events).
+ *
+ * Listeners are only invoked when explicitly registered (see {@link
+ * AddressMatchers#instrument(AddressMatcher, MatchListener, long, int)} and the {@code listener}
+ * methods of the respective builders). Unregistered structures do not perform any additional
+ * work. Implementations may be invoked concurrently and should return quickly.
+ *
+ * @author Johannes Donath
+ */
+public interface MatchListener {
+
+  /**
+   * Handles a sampled lookup which exceeded the configured threshold.
+   *
+   * @param matcher the instrumented matcher.
+   * @param matched true if the address matched, false otherwise.
+   * @param duration the lookup duration (in nanoseconds).
+   */
+  default void slowLookup(@NonNull InstrumentedMatcher matcher, boolean matched, long duration) {
+  }
+
+  /**
+   * Handles the (re-)construction of a lookup structure.
+   *
+   * @param structure the newly constructed structure.
+   * @param size the amount of ranges within the structure.
+   * @param duration the construction duration (in nanoseconds).
+   */
+  default void rebuilt(@NonNull Object structure, int size, long duration) {
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filters a section of an address collection within a fork join pool.
+ *
+ * The source is split recursively until each section falls below a given threshold. Every section
+ * collects its matches into a private list which is published once the section completes thus
+ * permitting the caller to construct a correctly sized result set once all sections have been
+ * processed.
+ *
+ * @author Johannes Donath
+ */
+final class MatchingTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  private final AddressMatcher matcher;
+  private final Spliterator<? extends InetAddress> source;
+  private final long threshold;
+  private final Queue<List<InetAddress>> results;
+  private final AtomicInteger count;
+
+  private MatchingTask(@NonNull AddressMatcher matcher,
+      @NonNull Spliterator<? extends InetAddress> source, long threshold,
+      @NonNull Queue<List<InetAddress>> results, @NonNull AtomicInteger count) {
+    this.matcher = matcher;
+    this.source = source;
+    this.threshold = threshold;
+    this.results = results;
+    this.count = count;
+  }
+
+  MatchingTask(@NonNull AddressMatcher matcher, @NonNull Spliterator<? extends InetAddress> source,
+      long threshold) {
+    this(matcher, source, threshold, new ConcurrentLinkedQueue<>(), new AtomicInteger());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void compute() {
+    Spliterator<? extends InetAddress> source = this.source;
+    List<MatchingTask> forks = new ArrayList<>();
+
+    Spliterator<? extends InetAddress> prefix;
+    while (source.estimateSize() > this.threshold && (prefix = source.trySplit()) != null) {
+      MatchingTask task = new MatchingTask(this.matcher, prefix, this.threshold, this.results,
+          this.count);
+      task.fork();
+      forks.add(task);
+    }
+
+    List<InetAddress> matches = new ArrayList<>();
+    source.forEachRemaining((a) -> {
+      if (this.matcher.matches(a)) {
+        matches.add(a);
+      }
+    });
+
+    if (!matches.isEmpty()) {
+      this.results.add(matches);
+      this.count.addAndGet(matches.size());
+    }
+
+    for (MatchingTask task : forks) {
+      task.join();
+    }
+  }
+
+  /**
+   * Retrieves the total amount of matches (only valid once the task has completed).
+   *
+   * @return an amount of matches.
+   */
+  int count() {
+    return this.count.get();
+  }
+
+  /**
+   * Retrieves the matches of all sections (only valid once the task has completed).
+   *
+   * @return a queue of partial results.
+   */
+  @NonNull
+  Queue<List<InetAddress>> results() {
+    return this.results;
+  }
+}
@@ -0,0 +1,932 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.Closeable;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Provides an immutable longest-prefix-match map which keeps its ranges outside of the Java heap.
+ *
+ * Ranges are stored as packed fixed size records within direct buffers (one per address family)
+ * which are sorted by their network address and prefix length. Every record additionally refers
+ * to the most specific record which encloses it. Lookups locate the last record which begins at
+ * or before the address using a binary search and follow these references until a record which
+ * contains the address is found (at most once per prefix length, typically not at all).
+ *
+ * The heap footprint of a map is thus independent of the amount of ranges it holds: Only the
+ * distinct values are kept on heap while each IPv4 range occupies {@value #RECORD_SIZE4} bytes
+ * and each IPv6 range occupies {@value #RECORD_SIZE6} bytes of native memory. Builders stage their
+ * ranges within native memory as well (sorting them in place) and require roughly twice the final
+ * amount of native memory while building. Each family is limited to {@code 2^31} bytes (e.g. 134
+ * million IPv4 or 67 million IPv6 ranges).
+ *
+ * Native memory is released when the map is {@link #close() closed} (or, when the runtime does
+ * not permit explicit releases, once the map is garbage collected). Whether explicit releases are
+ * available may be checked using {@link #isExplicitReleaseSupported()}. Maps may be shared between
+ * threads freely but must not be closed while other threads are still accessing them.
+ *
+ * @param <V> the value type.
+ * @author Johannes Donath
+ * @see OffHeapAddressRangeSet
+ */
+public final class OffHeapAddressRangeMap<V> implements AddressMatcher, Closeable {
+
+  /**
+   * Defines the size of a single IPv4 record: the network address, the prefix length, the value
+   * index and the index of the enclosing record (four ints).
+   */
+  static final int RECORD_SIZE4 = 16;
+
+  /**
+   * Defines the size of a single IPv6 record: the network address (two longs), the prefix length,
+   * the value index, the index of the enclosing record and four bytes of padding.
+   */
+  static final int RECORD_SIZE6 = 32;
+
+  private final AtomicReference<Storage> storage;
+  private final int count4;
+  private final int count6;
+  private final Object[] values;
+
+  private OffHeapAddressRangeMap(@NonNull ByteBuffer records4, int count4,
+      @NonNull ByteBuffer records6, int count6, @NonNull Object[] values) {
+    this.storage = new AtomicReference<>(new Storage(records4, records6));
+    this.count4 = count4;
+    this.count6 = count6;
+    this.values = values;
+  }
+
+  /**
+   * Creates a new empty map builder.
+   *
+   * @param <V> the value type.
+   * @return a builder.
+   */
+  @NonNull
+  public static <V> Builder<V> builder() {
+    return (new Builder<>());
+  }
+
+  /**
+   * Creates a new map from the specified ranges and their associated values.
+   *
+   * @param ranges a map of ranges and their respective values.
+   * @param <V> the value type.
+   * @return a map.
+   * @throws IllegalArgumentException when an unsupported range type is passed.
+   */
+  @NonNull
+  public static <V> OffHeapAddressRangeMap<V> of(
+      @NonNull Map<? extends AddressRange, ? extends V> ranges) {
+    Builder<V> builder = builder();
+    ranges.forEach(builder::put);
+    return builder.build();
+  }
+
+  /**
+   * Evaluates whether the runtime permits the explicit release of native memory when a map is
+   * closed.
+   *
+   * When explicit releases are not supported (for instance because the {@code jdk.unsupported}
+   * module is not available), closing a map merely detaches its native memory which is then
+   * released once it is garbage collected.
+   *
+   * @return true if supported, false otherwise.
+   */
+  public static boolean isExplicitReleaseSupported() {
+    return DirectBuffers.isReleaseSupported();
+  }
+
+  /**
+   * Releases the native memory which is occupied by this map.
+   *
+   * Subsequent invocations have no effect while any other method (with the exception of {@link
+   * #toString()}) fails with an {@link IllegalStateException} once the map has been closed. The
+   * memory is released exactly once even when multiple threads close the map concurrently.
+   *
+   * @throws IllegalStateException when the runtime fails to release the memory.
+   */
+  @Override
+  public void close() {
+    Storage storage = this.storage.getAndSet(null);
+
+    if (storage != null) {
+      DirectBuffers.free(storage.records4);
+      DirectBuffers.free(storage.records6);
+    }
+  }
+
+  /**
+   * Retrieves the amount of native memory occupied by this map (in bytes).
+   *
+   * @return an amount of bytes.
+   */
+  public long footprint() {
+    Storage storage = this.storage();
+    return ((long) storage.records4.capacity()) + storage.records6.capacity();
+  }
+
+  /**
+   * Passes every range and its associated value to the specified consumer (IPv4 ranges first,
+   * each family ordered by network address and prefix length).
+   *
+   * @param consumer a consumer.
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(@NonNull BiConsumer<? super AddressRange, ? super V> consumer) {
+    Storage storage = this.storage();
+    ByteBuffer records4 = storage.records4;
+    for (int i = 0; i < this.count4; i++) {
+      int offset = i * RECORD_SIZE4;
+      consumer.accept(AddressRange.of(records4.getInt(offset), records4.getInt(offset + 4)),
+          (V) this.values[records4.getInt(offset + 8)]);
+    }
+
+    ByteBuffer records6 = storage.records6;
+    for (int i = 0; i < this.count6; i++) {
+      int offset = i * RECORD_SIZE6;
+      consumer.accept(AddressRange.of(records6.getLong(offset), records6.getLong(offset + 8),
+          records6.getInt(offset + 16)), (V) this.values[records6.getInt(offset + 20)]);
+    }
+  }
+
+  /**
+   * Retrieves the value which is associated with exactly the specified range.
+   *
+   * @param range an address range.
+   * @return a value or null if no such range has been stored.
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public V get(@NonNull AddressRange range) {
+    Storage storage = this.storage();
+    int index = -1;
+
+    if (range instanceof AddressRange4) {
+      ByteBuffer records = storage.records4;
+      int network = ((AddressRange4) range).network();
+      int record = search4(records, this.count4, network);
+
+      // records which share a network are ordered by their prefix length
+      while (record != -1 && records.getInt(record * RECORD_SIZE4) == network) {
+        int offset = record * RECORD_SIZE4;
+
+        if (records.getInt(offset + 4) == range.prefixLength()) {
+          index = records.getInt(offset + 8);
+          break;
+        }
+
+        record--;
+      }
+    } else if (range instanceof AddressRange6) {
+      ByteBuffer records = storage.records6;
+      long high = ((AddressRange6) range).networkHigh();
+      long low = ((AddressRange6) range).networkLow();
+      int record = search6(records, this.count6, high, low);
+
+      while (record != -1 && records.getLong(record * RECORD_SIZE6) == high
+          && records.getLong(record * RECORD_SIZE6 + 8) == low) {
+        int offset = record * RECORD_SIZE6;
+
+        if (records.getInt(offset + 16) == range.prefixLength()) {
+          index = records.getInt(offset + 20);
+          break;
+        }
+
+        record--;
+      }
+    }
+
+    return (index == -1 ? null : (V) this.values[index]);
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param address an address.
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  public V get(@NonNull InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return this.get(AddressRange4.decode(address.getAddress(), 0));
+    }
+    if (address instanceof Inet6Address) {
+      byte[] encoded = address.getAddress();
+      return this.get(AddressRange6.decode(encoded, 0), AddressRange6.decode(encoded, 8));
+    }
+
+    this.storage();
+    return null;
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public V get(int address) {
+    int index = this.lookup(address);
+    return (index == -1 ? null : (V) this.values[index]);
+  }
+
+  /**
+   * Retrieves the value of the most specific range which contains the specified address.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a value or null if no range matches.
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public V get(long high, long low) {
+    int index = this.lookup(high, low);
+    return (index == -1 ? null : (V) this.values[index]);
+  }
+
+  /**
+   * Evaluates whether this map is empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    this.storage();
+    return this.count4 == 0 && this.count6 == 0;
+  }
+
+  /**
+   * Retrieves the index of the value of the most specific range which contains the specified
+   * address.
+   *
+   * @param address a numeric address (in network byte order).
+   * @return a value index or -1 if no range matches.
+   * @see #value(int)
+   */
+  public int lookup(int address) {
+    ByteBuffer records = this.storage().records4;
+    int record = search4(records, this.count4, address);
+
+    while (record != -1) {
+      int offset = record * RECORD_SIZE4;
+
+      if ((address & AddressRange4.mask(records.getInt(offset + 4))) == records.getInt(offset)) {
+        return records.getInt(offset + 8);
+      }
+
+      record = records.getInt(offset + 12);
+    }
+
+    return -1;
+  }
+
+  /**
+   * Retrieves the index of the value of the most specific range which contains the specified
+   * address.
+   *
+   * @param high the upper 64 bits of the address (in network byte order).
+   * @param low the lower 64 bits of the address (in network byte order).
+   * @return a value index or -1 if no range matches.
+   * @see #value(int)
+   */
+  public int lookup(long high, long low) {
+    ByteBuffer records = this.storage().records6;
+    int record = search6(records, this.count6, high, low);
+
+    while (record != -1) {
+      int offset = record * RECORD_SIZE6;
+      int prefixLength = records.getInt(offset + 16);
+
+      if ((high & AddressRange6.maskHigh(prefixLength)) == records.getLong(offset)
+          && (low & AddressRange6.maskLow(prefixLength)) == records.getLong(offset + 8)) {
+        return records.getInt(offset + 20);
+      }
+
+      record = records.getInt(offset + 24);
+    }
+
+    return -1;
+  }
+
+  /**
+   * Locates the last IPv4 record which begins at or before the specified address.
+   *
+   * @param records a buffer of sorted records.
+   * @param count the amount of records.
+   * @param address a numeric address.
+   * @return a record index or -1 if all records begin after the address.
+   */
+  private static int search4(@NonNull ByteBuffer records, int count, int address) {
+    int key = address ^ Integer.MIN_VALUE;
+    int lower = 0;
+    int upper = count - 1;
+
+    while (lower <= upper) {
+      int middle = (lower + upper) >>> 1;
+
+      if ((records.getInt(middle * RECORD_SIZE4) ^ Integer.MIN_VALUE) > key) {
+        upper = middle - 1;
+      } else {
+        lower = middle + 1;
+      }
+    }
+
+    return upper;
+  }
+
+  /**
+   * Locates the last IPv6 record which begins at or before the specified address.
+   *
+   * @param records a buffer of sorted records.
+   * @param count the amount of records.
+   * @param high the upper 64 bits of the address.
+   * @param low the lower 64 bits of the address.
+   * @return a record index or -1 if all records begin after the address.
+   */
+  private static int search6(@NonNull ByteBuffer records, int count, long high, long low) {
+    int lower = 0;
+    int upper = count - 1;
+
+    while (lower <= upper) {
+      int middle = (lower + upper) >>> 1;
+      int offset = middle * RECORD_SIZE6;
+
+      if (AddressIntervals.compare(records.getLong(offset), records.getLong(offset + 8), high, low)
+          > 0) {
+        upper = middle - 1;
+      } else {
+        lower = middle + 1;
+      }
+    }
+
+    return upper;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.get(address) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return this.lookup(address) != -1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return this.lookup(high, low) != -1;
+  }
+
+  /**
+   * Retrieves the amount of ranges within this map.
+   *
+   * @return an amount of ranges.
+   */
+  public int size() {
+    this.storage();
+    return this.count4 + this.count6;
+  }
+
+  /**
+   * Retrieves the native storage of this map or fails when this map has been closed.
+   *
+   * @return a storage.
+   * @throws IllegalStateException when the map has been closed.
+   */
+  @NonNull
+  private Storage storage() {
+    Storage storage = this.storage.get();
+
+    if (storage == null) {
+      throw new IllegalStateException("Map has been closed");
+    }
+
+    return storage;
+  }
+
+  /**
+   * Retrieves the value with the specified index.
+   *
+   * @param index a value index.
+   * @return a value.
+   * @throws IndexOutOfBoundsException when the index is out of bounds.
+   * @see #lookup(int)
+   * @see #lookup(long, long)
+   */
+  @NonNull
+  @SuppressWarnings("unchecked")
+  public V value(int index) {
+    this.storage();
+    return (V) this.values[index];
+  }
+
+  /**
+   * Retrieves the amount of distinct values within this map.
+   *
+   * @return an amount of values.
+   */
+  public int valueCount() {
+    this.storage();
+    return this.values.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "OffHeapAddressRangeMap{size=" + (this.count4 + this.count6) + ", closed="
+        + (this.storage.get() == null) + "}";
+  }
+
+  /**
+   * Provides a factory for off-heap maps.
+   *
+   * Ranges are appended to native staging buffers as they are passed to the builder. Building a
+   * map sorts these buffers in place, discards all but the last change to each range and links
+   * every record with its enclosing record.
+   *
+   * @param <V> the value type.
+   */
+  public static final class Builder<V> {
+
+    private final Records records4 = new Records(false);
+    private final Records records6 = new Records(true);
+    private final Map<V, Integer> valueIndices = new HashMap<>();
+    private final List<V> values = new ArrayList<>();
+    private MatchListener listener;
+
+    private Builder() {
+    }
+
+    /**
+     * Registers a listener which is notified whenever a map is built by this builder.
+     *
+     * @param listener a listener or null to remove a previously registered listener.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder<V> listener(@Nullable MatchListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Associates the specified range with a value (replacing any previously associated value).
+     *
+     * @param range an address range.
+     * @param value a value.
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     * @throws IllegalStateException when the native capacity of a family is exhausted.
+     */
+    @NonNull
+    public Builder<V> put(@NonNull AddressRange range, @NonNull V value) {
+      Objects.requireNonNull(value, "value");
+
+      Integer index = this.valueIndices.get(value);
+      if (index == null) {
+        index = this.values.size();
+        this.valueIndices.put(value, index);
+        this.values.add(value);
+      }
+
+      this.append(range, index);
+      return this;
+    }
+
+    /**
+     * Removes the specified range from this builder.
+     *
+     * @param range an address range.
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     * @throws IllegalStateException when the native capacity of a family is exhausted.
+     */
+    @NonNull
+    public Builder<V> remove(@NonNull AddressRange range) {
+      this.append(range, -1);
+      return this;
+    }
+
+    /**
+     * Appends a change to the staging buffer of the respective address family.
+     *
+     * @param range an address range.
+     * @param value a value index or -1 to remove the range.
+     */
+    private void append(@NonNull AddressRange range, int value) {
+      if (range instanceof AddressRange4) {
+        this.records4.append(((AddressRange4) range).network(), 0, range.prefixLength(), value);
+      } else if (range instanceof AddressRange6) {
+        AddressRange6 range6 = (AddressRange6) range;
+        this.records6
+            .append(range6.networkHigh(), range6.networkLow(), range.prefixLength(), value);
+      } else {
+        throw new IllegalArgumentException(
+            "Unsupported address range type: " + range.getClass().getCanonicalName());
+      }
+    }
+
+    /**
+     * Builds a new map based on the current state of this builder and resets the builder.
+     *
+     * @return a map.
+     */
+    @NonNull
+    public OffHeapAddressRangeMap<V> build() {
+      long startTime = System.nanoTime();
+
+      int count4 = this.records4.finish();
+      int count6 = this.records6.finish();
+
+      // values which have been superseded or removed are discarded
+      int[] indices = new int[this.values.size()];
+      Arrays.fill(indices, -1);
+      List<Object> values = new ArrayList<>();
+      this.records4.compact(indices, this.values, values);
+      this.records6.compact(indices, this.values, values);
+
+      OffHeapAddressRangeMap<V> map = new OffHeapAddressRangeMap<>(this.records4.release(),
+          count4, this.records6.release(), count6, values.toArray());
+
+      this.valueIndices.clear();
+      this.values.clear();
+
+      if (this.listener != null) {
+        this.listener.rebuilt(map, map.size(), System.nanoTime() - startTime);
+      }
+
+      return map;
+    }
+  }
+
+  /**
+   * Holds the native records of both address families until the map is closed.
+   */
+  private static final class Storage {
+
+    private final ByteBuffer records4;
+    private final ByteBuffer records6;
+
+    private Storage(@NonNull ByteBuffer records4, @NonNull ByteBuffer records6) {
+      this.records4 = records4;
+      this.records6 = records6;
+    }
+  }
+
+  /**
+   * Stages the records of a single address family within native memory.
+   *
+   * While staging, the parent field of each record holds its sequence number which permits later
+   * changes to a range to supersede earlier ones regardless of the (unstable) sort order.
+   */
+  private static final class Records {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final boolean inet6;
+    private final int recordSize;
+    private ByteBuffer buffer;
+    private int count;
+
+    private Records(boolean inet6) {
+      this.inet6 = inet6;
+      this.recordSize = (inet6 ? RECORD_SIZE6 : RECORD_SIZE4);
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param high the network address (or its upper 64 bits for IPv6).
+     * @param low the lower 64 bits of the network address (IPv6 only).
+     * @param prefixLength the prefix length.
+     * @param value a value index or -1.
+     */
+    private void append(long high, long low, int prefixLength, int value) {
+      if (this.buffer == null) {
+        this.buffer = DirectBuffers.allocate(INITIAL_CAPACITY * this.recordSize);
+      }
+
+      if (((long) this.count + 1) * this.recordSize > this.buffer.capacity()) {
+        long capacity = Math.min(((long) this.buffer.capacity()) * 2,
+            Integer.MAX_VALUE / this.recordSize * this.recordSize);
+
+        if (capacity < ((long) this.count + 1) * this.recordSize) {
+          throw new IllegalStateException("Exhausted native capacity of " + this.count + " ranges");
+        }
+
+        this.buffer = DirectBuffers.resize(this.buffer, this.count * this.recordSize,
+            (int) capacity);
+      }
+
+      int offset = this.count * this.recordSize;
+      if (this.inet6) {
+        this.buffer.putLong(offset, high);
+        this.buffer.putLong(offset + 8, low);
+        this.buffer.putInt(offset + 16, prefixLength);
+        this.buffer.putInt(offset + 20, value);
+        this.buffer.putInt(offset + 24, this.count);
+        this.buffer.putInt(offset + 28, 0);
+      } else {
+        this.buffer.putInt(offset, (int) high);
+        this.buffer.putInt(offset + 4, prefixLength);
+        this.buffer.putInt(offset + 8, value);
+        this.buffer.putInt(offset + 12, this.count);
+      }
+
+      this.count++;
+    }
+
+    /**
+     * Compares two records by their network address, prefix length and sequence number.
+     *
+     * @param a the index of the first record.
+     * @param b the index of the second record.
+     * @return a negative value, zero or a positive value if the first record is ordered before,
+     *     equal to or after the second record respectively.
+     */
+    private int compare(int a, int b) {
+      ByteBuffer buffer = this.buffer;
+      int offsetA = a * this.recordSize;
+      int offsetB = b * this.recordSize;
+      int result;
+
+      if (this.inet6) {
+        result = AddressIntervals.compare(buffer.getLong(offsetA), buffer.getLong(offsetA + 8),
+            buffer.getLong(offsetB), buffer.getLong(offsetB + 8));
+        offsetA += 16;
+        offsetB += 16;
+      } else {
+        result = Integer.compareUnsigned(buffer.getInt(offsetA), buffer.getInt(offsetB));
+        offsetA += 4;
+        offsetB += 4;
+      }
+
+      if (result == 0) {
+        result = Integer.compare(buffer.getInt(offsetA), buffer.getInt(offsetB));
+      }
+      if (result == 0) {
+        result = Integer.compare(buffer.getInt(offsetA + 8), buffer.getInt(offsetB + 8));
+      }
+
+      return result;
+    }
+
+    /**
+     * Re-assigns value indices in order of their first use and collects the values which remain
+     * in use.
+     *
+     * @param indices a mapping of original value indices to their new indices (or -1 if not yet
+     *     assigned).
+     * @param source the original values.
+     * @param target the list of values which remain in use.
+     */
+    private void compact(@NonNull int[] indices, @NonNull List<?> source,
+        @NonNull List<Object> target) {
+      int valueOffset = (this.inet6 ? 20 : 8);
+
+      for (int i = 0; i < this.count; i++) {
+        int offset = i * this.recordSize + valueOffset;
+        int value = this.buffer.getInt(offset);
+
+        if (indices[value] == -1) {
+          indices[value] = target.size();
+          target.add(source.get(value));
+        }
+
+        this.buffer.putInt(offset, indices[value]);
+      }
+    }
+
+    /**
+     * Copies a record to another index.
+     *
+     * @param from the source index.
+     * @param to the target index.
+     */
+    private void copy(int from, int to) {
+      int source = from * this.recordSize;
+      int target = to * this.recordSize;
+
+      for (int i = 0; i < this.recordSize; i += Long.BYTES) {
+        this.buffer.putLong(target + i, this.buffer.getLong(source + i));
+      }
+    }
+
+    /**
+     * Swaps two records.
+     *
+     * @param a the index of the first record.
+     * @param b the index of the second record.
+     */
+    private void swap(int a, int b) {
+      int offsetA = a * this.recordSize;
+      int offsetB = b * this.recordSize;
+
+      for (int i = 0; i < this.recordSize; i += Long.BYTES) {
+        long value = this.buffer.getLong(offsetA + i);
+        this.buffer.putLong(offsetA + i, this.buffer.getLong(offsetB + i));
+        this.buffer.putLong(offsetB + i, value);
+      }
+    }
+
+    /**
+     * Restores the heap property below the specified record.
+     *
+     * @param root the index of the root record.
+     * @param end the amount of records within the heap.
+     */
+    private void siftDown(int root, int end) {
+      while (true) {
+        int child = root * 2 + 1;
+        if (child >= end) {
+          return;
+        }
+
+        if (child + 1 < end && this.compare(child, child + 1) < 0) {
+          child++;
+        }
+        if (this.compare(root, child) >= 0) {
+          return;
+        }
+
+        this.swap(root, child);
+        root = child;
+      }
+    }
+
+    /**
+     * Sorts all records in place (using a heap sort in order to avoid any auxiliary memory).
+     */
+    private void sort() {
+      for (int i = this.count / 2 - 1; i >= 0; i--) {
+        this.siftDown(i, this.count);
+      }
+
+      for (int end = this.count - 1; end > 0; end--) {
+        this.swap(0, end);
+        this.siftDown(0, end);
+      }
+    }
+
+    /**
+     * Sorts all staged records, discards superseded changes as well as removals and links each
+     * remaining record with its enclosing record.
+     *
+     * @return the final amount of records.
+     */
+    private int finish() {
+      if (this.buffer == null) {
+        return 0;
+      }
+
+      this.sort();
+
+      // only the last change to a range is retained (e.g. the last record within each run of
+      // records which share their network address and prefix length)
+      int valueOffset = (this.inet6 ? 20 : 8);
+      int retained = 0;
+
+      for (int i = 0; i < this.count; i++) {
+        if (i + 1 < this.count && this.sameRange(i, i + 1)) {
+          continue;
+        }
+        if (this.buffer.getInt(i * this.recordSize + valueOffset) == -1) {
+          continue;
+        }
+
+        if (retained != i) {
+          this.copy(i, retained);
+        }
+        retained++;
+      }
+
+      this.count = retained;
+      this.link();
+      return retained;
+    }
+
+    /**
+     * Evaluates whether two records refer to the same range.
+     *
+     * @param a the index of the first record.
+     * @param b the index of the second record.
+     * @return true if equal, false otherwise.
+     */
+    private boolean sameRange(int a, int b) {
+      int offsetA = a * this.recordSize;
+      int offsetB = b * this.recordSize;
+
+      if (this.inet6) {
+        return this.buffer.getLong(offsetA) == this.buffer.getLong(offsetB)
+            && this.buffer.getLong(offsetA + 8) == this.buffer.getLong(offsetB + 8)
+            && this.buffer.getInt(offsetA + 16) == this.buffer.getInt(offsetB + 16);
+      }
+
+      return this.buffer.getInt(offsetA) == this.buffer.getInt(offsetB)
+          && this.buffer.getInt(offsetA + 4) == this.buffer.getInt(offsetB + 4);
+    }
+
+    /**
+     * Evaluates whether a record contains another record.
+     *
+     * @param outer the index of the potentially enclosing record.
+     * @param inner the index of the potentially enclosed record (ordered after the outer
+     *     record).
+     * @return true if enclosed, false otherwise.
+     */
+    private boolean contains(int outer, int inner) {
+      int offsetOuter = outer * this.recordSize;
+      int offsetInner = inner * this.recordSize;
+
+      if (this.inet6) {
+        int prefixLength = this.buffer.getInt(offsetOuter + 16);
+        return (this.buffer.getLong(offsetInner) & AddressRange6.maskHigh(prefixLength))
+            == this.buffer.getLong(offsetOuter)
+            && (this.buffer.getLong(offsetInner + 8) & AddressRange6.maskLow(prefixLength))
+            == this.buffer.getLong(offsetOuter + 8);
+      }
+
+      return (this.buffer.getInt(offsetInner)
+          & AddressRange4.mask(this.buffer.getInt(offsetOuter + 4)))
+          == this.buffer.getInt(offsetOuter);
+    }
+
+    /**
+     * Links every record with the most specific record which encloses it.
+     */
+    private void link() {
+      int parentOffset = (this.inet6 ? 24 : 12);
+      int[] stack = new int[(this.inet6 ? AddressRange6.MAX_PREFIX_LENGTH
+          : AddressRange4.MAX_PREFIX_LENGTH) + 1];
+      int depth = 0;
+
+      for (int i = 0; i < this.count; i++) {
+        while (depth != 0 && !this.contains(stack[depth - 1], i)) {
+          depth--;
+        }
+
+        this.buffer.putInt(i * this.recordSize + parentOffset,
+            (depth == 0 ? -1 : stack[depth - 1]));
+        stack[depth++] = i;
+      }
+    }
+
+    /**
+     * Transfers the staged records into an exactly sized buffer and resets this instance.
+     *
+     * @return a buffer.
+     */
+    @NonNull
+    private ByteBuffer release() {
+      int length = this.count * this.recordSize;
+      ByteBuffer buffer = (this.buffer == null ? DirectBuffers.allocate(0)
+          : DirectBuffers.resize(this.buffer, length, length));
+
+      this.buffer = null;
+      this.count = 0;
+      return buffer;
+    }
+  }
+}
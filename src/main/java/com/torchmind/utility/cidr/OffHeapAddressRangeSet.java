@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Represents an immutable set of address ranges which is kept outside of the Java heap.
+ *
+ * Unlike {@link AddressRangeSet}, ranges are retained as passed (e.g. overlapping ranges are not
+ * merged) which permits the construction of sets from very large inputs without ever
+ * materializing them on heap. Refer to {@link OffHeapAddressRangeMap} for details on the storage
+ * layout and the lifetime of the native memory.
+ *
+ * @author Johannes Donath
+ */
+public final class OffHeapAddressRangeSet implements AddressMatcher, Closeable {
+
+  private final OffHeapAddressRangeMap<Boolean> map;
+
+  private OffHeapAddressRangeSet(@NonNull OffHeapAddressRangeMap<Boolean> map) {
+    this.map = map;
+  }
+
+  /**
+   * Creates a new empty set builder.
+   *
+   * @return a builder.
+   */
+  @NonNull
+  public static Builder builder() {
+    return (new Builder());
+  }
+
+  /**
+   * Creates a new set which consists of the specified ranges.
+   *
+   * @param ranges a collection of ranges.
+   * @return a set.
+   * @throws IllegalArgumentException when an unsupported range type is passed.
+   */
+  @NonNull
+  public static OffHeapAddressRangeSet of(@NonNull Collection<? extends AddressRange> ranges) {
+    Builder builder = builder();
+    ranges.forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Creates a new set which consists of the minimal ranges of the specified on-heap set.
+   *
+   * @param set an address set.
+   * @return a set.
+   */
+  @NonNull
+  public static OffHeapAddressRangeSet of(@NonNull AddressRangeSet set) {
+    Builder builder = builder();
+    set.forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Evaluates whether the runtime permits the explicit release of native memory when a set is
+   * closed.
+   *
+   * @return true if supported, false otherwise.
+   * @see OffHeapAddressRangeMap#isExplicitReleaseSupported()
+   */
+  public static boolean isExplicitReleaseSupported() {
+    return OffHeapAddressRangeMap.isExplicitReleaseSupported();
+  }
+
+  /**
+   * Releases the native memory which is occupied by this set.
+   *
+   * @see OffHeapAddressRangeMap#close()
+   */
+  @Override
+  public void close() {
+    this.map.close();
+  }
+
+  /**
+   * Evaluates whether this set contains exactly the specified range.
+   *
+   * @param range an address range.
+   * @return true if contained, false otherwise.
+   */
+  public boolean contains(@NonNull AddressRange range) {
+    return this.map.get(range) != null;
+  }
+
+  /**
+   * Passes every range to the specified consumer (IPv4 ranges first, each family ordered by
+   * network address and prefix length).
+   *
+   * @param consumer a consumer.
+   */
+  public void forEach(@NonNull Consumer<? super AddressRange> consumer) {
+    this.map.forEach((range, value) -> consumer.accept(range));
+  }
+
+  /**
+   * Retrieves the amount of native memory occupied by this set (in bytes).
+   *
+   * @return an amount of bytes.
+   */
+  public long footprint() {
+    return this.map.footprint();
+  }
+
+  /**
+   * Evaluates whether this set is empty.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return this.map.isEmpty();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(@NonNull InetAddress address) {
+    return this.map.matches(address);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(int address) {
+    return this.map.matches(address);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean matches(long high, long low) {
+    return this.map.matches(high, low);
+  }
+
+  /**
+   * Retrieves the amount of ranges within this set.
+   *
+   * @return an amount of ranges.
+   */
+  public int size() {
+    return this.map.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    return "OffHeapAddressRangeSet{" + this.map + "}";
+  }
+
+  /**
+   * Provides a factory for off-heap sets.
+   */
+  public static final class Builder {
+
+    private final OffHeapAddressRangeMap.Builder<Boolean> map = OffHeapAddressRangeMap.builder();
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a range to this builder.
+     *
+     * @param range an address range.
+     * @return a reference to this builder.
+     * @throws IllegalArgumentException when an unsupported range type is passed.
+     */
+    @NonNull
+    public Builder add(@NonNull AddressRange range) {
+      this.map.put(range, Boolean.TRUE);
+      return this;
+    }
+
+    /**
+     * Builds a new set based on the current state of this builder and resets the builder.
+     *
+     * @return a set.
+     */
+    @NonNull
+    public OffHeapAddressRangeSet build() {
+      return (new OffHeapAddressRangeSet(this.map.build()));
+    }
+
+    /**
+     * Registers a listener which is notified whenever a set is built by this builder.
+     *
+     * @param listener a listener or null to remove a previously registered listener.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder listener(@Nullable MatchListener listener) {
+      this.map.listener(listener);
+      return this;
+    }
+
+    /**
+     * Removes a previously added range from this builder.
+     *
+     * @param range an address range.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder remove(@NonNull AddressRange range) {
+      this.map.remove(range);
+      return this;
+    }
+  }
+}
@@ -6,5 +6,6 @@
 module com.torchmind.utility.cidr {
   exports com.torchmind.utility.cidr;
 
+  requires jdk.unsupported;
   requires static com.github.spotbugs.annotations;
 }
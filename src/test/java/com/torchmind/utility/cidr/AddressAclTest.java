@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import com.torchmind.utility.cidr.AddressAcl.Action;
+import com.torchmind.utility.cidr.AddressAcl.Rule;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressAcl}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressAclTest {
+
+  /**
+   * Evaluates a list of rules sequentially.
+   *
+   * @param rules a list of rules.
+   * @param high the upper half of an address.
+   * @param low the lower half of an address (or an IPv4 address when high is -1).
+   * @return the index of the first matching rule or -1.
+   */
+  private static int scan(List<Rule> rules, long high, long low) {
+    for (int i = 0; i < rules.size(); i++) {
+      AddressRange range = rules.get(i).range();
+      boolean matches = (high == -1 ? range.matches((int) low) : range.matches(high, low));
+
+      if (matches) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Generates a random rule.
+   *
+   * @param random a source of randomness.
+   * @return a rule.
+   */
+  private static Rule rule(Random random) {
+    AddressRange range;
+
+    if (random.nextInt(4) == 0) {
+      int prefixLength = 16 + random.nextInt(113);
+      range = AddressRange.of((0x20010DB800000000L | (random.nextLong() & 0xFFFFL << 32))
+              & AddressRange6.maskHigh(prefixLength),
+          (random.nextLong() & 0xFFFFL) & AddressRange6.maskLow(prefixLength), prefixLength);
+    } else {
+      int prefixLength = random.nextInt(33);
+      range = AddressRange.of(
+          (0x0A000000 | random.nextInt() & 0x00FF00FF) & AddressRange4.mask(prefixLength),
+          prefixLength);
+    }
+
+    return (random.nextBoolean() ? Rule.allow(range) : Rule.deny(range));
+  }
+
+  /**
+   * Compares a compiled list against a sequential evaluation of its rules.
+   *
+   * @param acl a compiled list.
+   * @param rules the expected rules.
+   * @param random a source of randomness.
+   */
+  private static void verify(AddressAcl acl, List<Rule> rules, Random random) {
+    Assert.assertEquals(rules, acl.rules());
+
+    for (int i = 0; i < 5000; i++) {
+      int address = 0x0A000000 | random.nextInt() & 0x00FF00FF;
+      if ((i & 1) == 0 && !rules.isEmpty()) {
+        AddressRange range = rules.get(random.nextInt(rules.size())).range();
+
+        if (range instanceof AddressRange4) {
+          address = ((AddressRange4) range).network() | (random.nextInt() & 0xFF);
+        }
+      }
+
+      int expected = scan(rules, -1, Integer.toUnsignedLong(address));
+      Assert.assertEquals(expected, acl.lookup(address));
+      Assert.assertEquals(expected == -1 ? acl.defaultAction() : rules.get(expected).action(),
+          acl.decide(address));
+
+      long high = 0x20010DB800000000L | (random.nextLong() & 0xFFFFL << 32);
+      long low = random.nextLong() & 0xFFFFL;
+      Assert.assertEquals(scan(rules, high, low), acl.lookup(high, low));
+    }
+  }
+
+  /**
+   * Tests first-match evaluation, rule auditing and shadowed rules.
+   */
+  @Test
+  public void testDecide() throws UnknownHostException {
+    AddressAcl acl = AddressAcl.compiler()
+        .deny(AddressRange.of("10.10.0.0/16"))
+        .allow(AddressRange.of("10.0.0.0/8"))
+        .deny(AddressRange.of("10.10.10.0/24"))
+        .allow(AddressRange.of("2001:db8::/32"))
+        .deny(AddressRange.of("2001:db8:1::/48"))
+        .compile();
+
+    Assert.assertEquals(Action.DENY, acl.defaultAction());
+    Assert.assertEquals(0, acl.lookup(InetAddress.getByName("10.10.10.1")));
+    Assert.assertEquals(1, acl.lookup(InetAddress.getByName("10.11.0.1")));
+    Assert.assertEquals(-1, acl.lookup(InetAddress.getByName("11.0.0.1")));
+    Assert.assertEquals(3, acl.lookup(InetAddress.getByName("2001:db8:1::1")));
+    Assert.assertEquals(-1, acl.lookup(InetAddress.getByName("2001:db9::1")));
+
+    Assert.assertFalse(acl.matches(InetAddress.getByName("10.10.0.1")));
+    Assert.assertTrue(acl.matches(InetAddress.getByName("10.0.0.1")));
+    Assert.assertFalse(acl.matches(InetAddress.getByName("11.0.0.1")));
+    Assert.assertTrue(acl.matches(InetAddress.getByName("2001:db8:1::1")));
+    Assert.assertEquals(Rule.deny(AddressRange.of("10.10.0.0/16")), acl.rule(0));
+
+    Assert.assertArrayEquals(new int[]{2, 4}, acl.shadowedRules());
+
+    AddressAcl permissive = AddressAcl.of(Arrays.asList(
+        Rule.deny(AddressRange.of("10.0.0.0/8")),
+        Rule.deny(AddressRange.of("10.0.0.0/8"))), Action.ALLOW);
+    Assert.assertTrue(permissive.matches(InetAddress.getByName("11.0.0.1")));
+    Assert.assertFalse(permissive.matches(InetAddress.getByName("10.0.0.1")));
+    Assert.assertArrayEquals(new int[]{1}, permissive.shadowedRules());
+    Assert.assertEquals(4, permissive.size());
+  }
+
+  /**
+   * Tests whether randomly generated lists agree with a sequential evaluation when compiled from
+   * scratch and after incremental changes.
+   */
+  @Test
+  public void testRandom() {
+    Random random = new Random(0xC1D8);
+    List<Rule> rules = new ArrayList<>();
+    AddressAcl.Compiler compiler = AddressAcl.compiler().defaultAction(Action.ALLOW);
+
+    for (int i = 0; i < 2000; i++) {
+      Rule rule = rule(random);
+      rules.add(rule);
+      compiler.add(rule);
+    }
+    verify(compiler.compile(), rules, random);
+
+    for (int round = 0; round < 50; round++) {
+      for (int i = random.nextInt(4); i >= 0; i--) {
+        int position = random.nextInt(rules.size());
+        Rule rule = (random.nextInt(4) == 0
+            ? rules.get(random.nextInt(rules.size())) : rule(random));
+
+        rules.set(position, rule);
+        compiler.set(position, rule);
+      }
+
+      if (random.nextInt(4) == 0) {
+        Rule rule = rule(random);
+        rules.add(rule);
+        compiler.add(rule);
+      }
+
+      AddressAcl acl = compiler.compile();
+      verify(acl, rules, random);
+      Assert.assertEquals(AddressAcl.of(rules, Action.ALLOW).size(), acl.size());
+    }
+
+    AddressAcl empty = AddressAcl.compiler().compile();
+    Assert.assertEquals(2, empty.size());
+    Assert.assertFalse(empty.matches(0));
+    Assert.assertFalse(empty.matches(-1L, -1L));
+    Assert.assertEquals(0, empty.shadowedRules().length);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressInterval} and {@link AddressIntervalMap}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressIntervalTest {
+
+  /**
+   * Tests parsing, containment and conversion from ranges.
+   */
+  @Test
+  public void testInterval() throws UnknownHostException {
+    AddressInterval interval = AddressInterval.parse("10.0.0.5 - 10.0.0.17");
+    Assert.assertEquals(AddressInterval.of(0x0A000005, 0x0A000011), interval);
+    Assert.assertEquals(interval, AddressParser.parseInterval("10.0.0.5-10.0.0.17"));
+    Assert.assertEquals(interval, AddressInterval.of(InetAddress.getByName("10.0.0.5"),
+        InetAddress.getByName("10.0.0.17")));
+    Assert.assertEquals("10.0.0.5 - 10.0.0.17", interval.toString());
+    Assert.assertEquals(BigInteger.valueOf(13), interval.exactSize());
+
+    Assert.assertTrue(interval.matches(0x0A000005));
+    Assert.assertTrue(interval.matches(0x0A000011));
+    Assert.assertFalse(interval.matches(0x0A000004));
+    Assert.assertFalse(interval.matches(0x0A000012));
+    Assert.assertFalse(interval.matches(0L, 0x0A000005L));
+    Assert.assertTrue(interval.matches(InetAddress.getByName("10.0.0.10")));
+    Assert.assertTrue(interval.contains(AddressRange.of("10.0.0.8/29")));
+    Assert.assertFalse(interval.contains(AddressRange.of("10.0.0.16/28")));
+    Assert.assertTrue(interval.overlaps(AddressInterval.parse("10.0.0.17 - 10.0.0.20")));
+    Assert.assertFalse(interval.overlaps(AddressInterval.parse("10.0.0.18 - 10.0.0.20")));
+
+    Assert.assertEquals(Arrays.asList(AddressRange.of("10.0.0.5/32"),
+        AddressRange.of("10.0.0.6/31"), AddressRange.of("10.0.0.8/29"),
+        AddressRange.of("10.0.0.16/31")), interval.ranges());
+    Assert.assertEquals(AddressInterval.parse("10.0.0.0 - 10.255.255.255"),
+        AddressInterval.of(AddressRange.of("10.0.0.0/8")));
+
+    AddressInterval all6 = AddressInterval.parse("::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+    Assert.assertEquals(BigInteger.ONE.shiftLeft(128), all6.exactSize());
+    Assert.assertEquals(Arrays.asList(AddressRange.of("::/0")), all6.ranges());
+    Assert.assertEquals(Arrays.asList(AddressRange.of("0.0.0.0/0")),
+        AddressInterval.parse("0.0.0.0 - 255.255.255.255").ranges());
+
+    AddressInterval interval6 = AddressInterval.parse(" 2001:db8::1 -  2001:db8::1:0 ");
+    Assert.assertTrue(interval6.matches(0x20010DB800000000L, 0xFFFFL));
+    Assert.assertFalse(interval6.matches(0x20010DB800000000L, 0x10001L));
+    Assert.assertTrue(interval6.contains(AddressRange.of("2001:db8::8000/113")));
+
+    Consumer<String> reject = (s) -> {
+      try {
+        AddressInterval.parse(s);
+        throw new AssertionError("Expected IllegalArgumentException for notation: " + s);
+      } catch (IllegalArgumentException ignore) {
+      }
+    };
+
+    reject.accept("10.0.0.1");
+    reject.accept("10.0.0.2 - 10.0.0.1");
+    reject.accept("10.0.0.1 - ::1");
+    reject.accept("10.0.0.1 - ");
+    reject.accept("2001:db8::2 - 2001:db8::1");
+  }
+
+  /**
+   * Tests whether decomposition produces the minimal list of blocks which cover exactly the
+   * addresses of randomly generated intervals.
+   */
+  @Test
+  public void testDecompose() {
+    Random random = new Random(0x1D5);
+
+    for (int i = 0; i < 2000; i++) {
+      long a = Integer.toUnsignedLong(random.nextInt()) >>> random.nextInt(32);
+      long b = a + (random.nextInt(4) == 0 ? random.nextInt(1024) : Integer.toUnsignedLong(
+          random.nextInt()) >>> random.nextInt(32));
+      if (b > 0xFFFFFFFFL) {
+        b = 0xFFFFFFFFL;
+      }
+
+      AddressInterval interval = AddressInterval.of((int) a, (int) b);
+      List<AddressRange> ranges = interval.ranges();
+
+      long next = a;
+      for (AddressRange range : ranges) {
+        AddressRange4 range4 = (AddressRange4) range;
+        Assert.assertEquals(next, Integer.toUnsignedLong(range4.network()));
+
+        // a block is only minimal when it cannot be merged with its sibling
+        if (range4.prefixLength() != 0) {
+          Assert.assertFalse(interval.contains(range4.supernet()));
+        }
+        next = Integer.toUnsignedLong(range4.last()) + 1;
+      }
+      Assert.assertEquals(b + 1, next);
+      Assert.assertEquals(interval, AddressRangeSet.of(ranges).intervals().get(0));
+
+      long high = random.nextLong() >>> 1;
+      long low = random.nextLong();
+      long lastHigh = high + random.nextInt(2);
+      long lastLow = random.nextLong();
+      if (AddressIntervals.compare(high, low, lastHigh, lastLow) > 0) {
+        lastLow = low;
+      }
+      AddressInterval interval6 = AddressInterval.of(high, low, lastHigh, lastLow);
+
+      BigInteger size = BigInteger.ZERO;
+      for (AddressRange range : interval6.ranges()) {
+        Assert.assertTrue(interval6.contains(range));
+        size = size.add(BigInteger.ONE.shiftLeft(range.hostLength()));
+      }
+      Assert.assertEquals(interval6.exactSize(), size);
+    }
+  }
+
+  /**
+   * Tests lookups within an interval map.
+   */
+  @Test
+  public void testMap() throws UnknownHostException {
+    AddressIntervalMap<String> map = AddressIntervalMap.<String>builder()
+        .put(AddressInterval.parse("10.0.0.20 - 10.0.0.30"), "b")
+        .put(AddressInterval.parse("10.0.0.5 - 10.0.0.19"), "a")
+        .put(AddressInterval.parse("2001:db8::1 - 2001:db8::ff"), "c")
+        .build();
+
+    Assert.assertEquals(3, map.size());
+    Assert.assertEquals("a", map.get(0x0A000005));
+    Assert.assertEquals("a", map.get(0x0A000013));
+    Assert.assertEquals("b", map.get(0x0A000014));
+    Assert.assertNull(map.get(0x0A00001F));
+    Assert.assertNull(map.get(0x0A000004));
+    Assert.assertEquals("c", map.get(InetAddress.getByName("2001:db8::80")));
+    Assert.assertNull(map.get(InetAddress.getByName("2001:db8::100")));
+    Assert.assertEquals(2, map.lookup(0x20010DB800000000L, 1L));
+    Assert.assertEquals(AddressInterval.parse("10.0.0.5 - 10.0.0.19"), map.interval(0));
+    Assert.assertTrue(map.matches(InetAddress.getByName("10.0.0.30")));
+
+    try {
+      AddressIntervalMap.<String>builder()
+          .put(AddressInterval.parse("10.0.0.0 - 10.0.0.10"), "a")
+          .put(AddressInterval.parse("10.0.0.10 - 10.0.0.20"), "b")
+          .build();
+      throw new AssertionError("Expected IllegalArgumentException for overlapping intervals");
+    } catch (IllegalArgumentException ignore) {
+    }
+
+    try {
+      AddressIntervalMap.<String>builder().put(AddressInterval.parse("10.0.0.0 - 10.0.0.10"), null);
+      throw new AssertionError("Expected NullPointerException for null value");
+    } catch (NullPointerException ignore) {
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.function.Consumer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressParser}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressParserTest {
+
+  /**
+   * Tests {@link AddressParser#parseInet4(CharSequence)}.
+   */
+  @Test
+  public void testParseInet4() {
+    Assert.assertEquals(0x00000000, AddressParser.parseInet4("0.0.0.0"));
+    Assert.assertEquals(0x0A0A0D25, AddressParser.parseInet4("10.10.13.37"));
+    Assert.assertEquals(0xFFFFFFFF, AddressParser.parseInet4("255.255.255.255"));
+    Assert.assertEquals(0xC0A80001, AddressParser.parseInet4("192.168.000.001"));
+    Assert.assertEquals(0x0A000001, AddressParser.parseInet4("xx10.0.0.1yy", 2, 10));
+
+    Consumer<String> reject = (s) -> {
+      try {
+        AddressParser.parseInet4(s);
+        throw new AssertionError("Expected IllegalArgumentException for literal: " + s);
+      } catch (IllegalArgumentException ignore) {
+      }
+    };
+
+    reject.accept("");
+    reject.accept("10");
+    reject.accept("10.0.0");
+    reject.accept("10.0.0.0.0");
+    reject.accept("10.0.0.256");
+    reject.accept("10.0.0.0001");
+    reject.accept("10..0.0");
+    reject.accept("10.0.0.");
+    reject.accept(".10.0.0");
+    reject.accept("10.0.0.a");
+    reject.accept("localhost");
+    reject.accept("10.0.0.1 ");
+  }
+
+  /**
+   * Tests {@link AddressParser#parseInet6(CharSequence, long[])} against the reference
+   * implementation.
+   */
+  @Test
+  public void testParseInet6() throws UnknownHostException {
+    String[] literals = new String[]{
+        "::",
+        "::1",
+        "1::",
+        "2001:db8::",
+        "2001:db8::1",
+        "2001:DB8:0:0:8:800:200C:417A",
+        "fe80::1:2:3:4",
+        "1:2:3:4:5:6:7:8",
+        "1:2:3:4:5:6:7::",
+        "::2:3:4:5:6:7:8",
+        "1:2:3::6:7:8",
+        "0000:0000:0000:0000:0000:0000:0000:0001",
+        "::ffff:10.0.0.1",
+        "64:ff9b::192.0.2.33",
+        "1:2:3:4:5:6:10.0.0.1",
+        "::10.0.0.1",
+    };
+
+    for (String literal : literals) {
+      long[] result = new long[2];
+      AddressParser.parseInet6(literal, result);
+
+      byte[] expected = InetAddress.getByName(literal).getAddress();
+      if (expected.length == 4) {
+        // IPv4 mapped addresses are converted by the reference implementation
+        Assert.assertEquals(literal, 0L, result[0]);
+        Assert.assertEquals(literal,
+            0x0000FFFF00000000L | (AddressRange4.decode(expected, 0) & 0xFFFFFFFFL), result[1]);
+        continue;
+      }
+
+      Assert.assertEquals(literal, AddressRange6.decode(expected, 0), result[0]);
+      Assert.assertEquals(literal, AddressRange6.decode(expected, 8), result[1]);
+    }
+
+    Consumer<String> reject = (s) -> {
+      try {
+        AddressParser.parseInet6(s, new long[2]);
+        throw new AssertionError("Expected IllegalArgumentException for literal: " + s);
+      } catch (IllegalArgumentException ignore) {
+      }
+    };
+
+    reject.accept("");
+    reject.accept(":");
+    reject.accept(":::");
+    reject.accept(":1::");
+    reject.accept("1:");
+    reject.accept("1::2::3");
+    reject.accept("1:2:3:4:5:6:7");
+    reject.accept("1:2:3:4:5:6:7:8:9");
+    reject.accept("1:2:3:4:5:6:7:8::");
+    reject.accept("12345::");
+    reject.accept("g::");
+    reject.accept("fe80::1%eth0");
+    reject.accept("[::1]");
+    reject.accept("::10.0.0.1:1");
+    reject.accept("1:2:3:4:5:6:7:10.0.0.1");
+    reject.accept("::ffff:10.0.0.256");
+  }
+
+  /**
+   * Tests {@link AddressParser#parseRange(CharSequence)}.
+   */
+  @Test
+  public void testParseRange() {
+    Assert.assertEquals(AddressRange.of(0x0A000000, 8), AddressParser.parseRange("10.0.0.0/8"));
+    Assert.assertEquals(AddressRange.of(0x0A000001, 32), AddressParser.parseRange("10.0.0.1"));
+    Assert.assertEquals(AddressRange.of(0x20010DB800000000L, 0L, 32),
+        AddressParser.parseRange("2001:db8::/32"));
+    Assert.assertEquals(AddressRange.of(0x20010DB800000000L, 0L, 64),
+        AddressParser.parseRange("2001:db8::"));
+    Assert.assertEquals(AddressRange.of(0L, 0x0000FFFF0A000000L, 104),
+        AddressParser.parseRange("::ffff:10.0.0.0/104"));
+    Assert.assertEquals(AddressRange.of(0x0A0A0000, 16),
+        AddressParser.parseRange("# 10.10.0.0/16 #", 2, 14));
+
+    Consumer<String> reject = (s) -> {
+      try {
+        AddressParser.parseRange(s);
+        throw new AssertionError("Expected IllegalArgumentException for notation: " + s);
+      } catch (IllegalArgumentException ignore) {
+      }
+    };
+
+    reject.accept("10.0.0.0/");
+    reject.accept("10.0.0.0/33");
+    reject.accept("10.0.0.0/-1");
+    reject.accept("10.0.0.0/8/8");
+    reject.accept("10.0.0.1/8");
+    reject.accept("2001:db8::/129");
+    reject.accept("localhost/8");
+  }
+}
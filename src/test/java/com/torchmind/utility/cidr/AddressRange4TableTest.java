@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressRange4Table}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressRange4TableTest {
+
+  /**
+   * Tests lookups against a small set of overlapping ranges.
+   */
+  @Test
+  public void testLookup() throws UnknownHostException {
+    AddressRange4Table<String> table = AddressRange4Table.<String>builder()
+        .put((AddressRange4) AddressRange.of("10.0.0.0/8"), "a")
+        .put((AddressRange4) AddressRange.of("10.10.10.0/24"), "b")
+        .put((AddressRange4) AddressRange.of("10.10.10.128/25"), "c")
+        .put((AddressRange4) AddressRange.of("10.10.10.130/32"), "a")
+        .build();
+
+    Assert.assertEquals(4, table.size());
+    Assert.assertEquals(3, table.valueCount());
+
+    Assert.assertEquals("a", table.get(0x0A000001));
+    Assert.assertEquals("b", table.get(0x0A0A0A01));
+    Assert.assertEquals("c", table.get(0x0A0A0A81));
+    Assert.assertEquals("a", table.get(0x0A0A0A82));
+    Assert.assertEquals("c", table.get(0x0A0A0A83));
+    Assert.assertNull(table.get(0x0B000000));
+    Assert.assertEquals(-1, table.lookup(0x0B000000));
+    Assert.assertEquals("c", table.get(InetAddress.getByName("10.10.10.255")));
+    Assert.assertNull(table.get(InetAddress.getByName("2001:db8::1")));
+
+    Assert.assertTrue(table.matches(0x0AFFFFFF));
+    Assert.assertFalse(table.matches(0x09FFFFFF));
+    Assert.assertEquals((1L << 24) * 4 + 256 * 4, table.footprint());
+  }
+
+  /**
+   * Compares the table against {@link AddressRangeTrie} using randomly generated ranges.
+   */
+  @Test
+  public void testRandomized() {
+    Random random = new Random(0xC1D8);
+    AddressRangeTrie<Integer> trie = new AddressRangeTrie<>();
+    AddressRange4Table.Builder<Integer> builder = AddressRange4Table.builder();
+
+    for (int i = 0; i < 5000; i++) {
+      int prefixLength = random.nextInt(33);
+      AddressRange4 range = AddressRange
+          .of((random.nextInt() & 0xFF0FFFFF) & AddressRange4.mask(prefixLength), prefixLength);
+      int value = random.nextInt(64);
+
+      trie.put(range, value);
+      builder.put(range, value);
+    }
+
+    AddressRange4Table<Integer> table = builder.build();
+    Assert.assertEquals(trie.size(), table.size());
+
+    for (int i = 0; i < 100000; i++) {
+      int address = random.nextInt() & 0xFF0FFFFF;
+      Assert.assertEquals(trie.longestMatch(address), table.get(address));
+    }
+  }
+}
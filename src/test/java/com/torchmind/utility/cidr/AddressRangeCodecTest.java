@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressRangeCodec}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressRangeCodecTest {
+
+  /**
+   * Encodes a collection of ranges.
+   *
+   * @param ranges a collection of ranges.
+   * @return a payload.
+   */
+  private static byte[] encode(List<AddressRange> ranges) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long written = AddressRangeCodec.write(ranges, Channels.newChannel(out));
+
+    Assert.assertEquals(out.size(), written);
+    return out.toByteArray();
+  }
+
+  /**
+   * Decodes a payload.
+   *
+   * @param payload a payload.
+   * @return a list of ranges.
+   */
+  private static List<AddressRange> decode(byte[] payload) throws IOException {
+    return AddressRangeCodec.readList(Channels.newChannel(new ByteArrayInputStream(payload)));
+  }
+
+  /**
+   * Tests whether ranges survive an encoding round trip in ascending order and without
+   * duplicates.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    Random random = new Random(0xC1D8);
+    Set<AddressRange> expected4 = new LinkedHashSet<>();
+    Set<AddressRange> expected6 = new LinkedHashSet<>();
+    List<AddressRange> ranges = new ArrayList<>();
+
+    for (int i = 0; i < 20000; i++) {
+      AddressRange range;
+      if ((i & 3) == 0) {
+        int prefixLength = random.nextInt(129);
+        range = AddressRange.of(random.nextLong() & AddressRange6.maskHigh(prefixLength),
+            random.nextLong() & AddressRange6.maskLow(prefixLength), prefixLength);
+        expected6.add(range);
+      } else {
+        int prefixLength = random.nextInt(33);
+        range = AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+            prefixLength);
+        expected4.add(range);
+      }
+
+      ranges.add(range);
+      if ((i % 10) == 0) {
+        ranges.add(range);
+      }
+    }
+
+    List<AddressRange> decoded = decode(encode(ranges));
+    Assert.assertEquals(expected4.size() + expected6.size(), decoded.size());
+    Assert.assertEquals(expected4, new LinkedHashSet<>(decoded.subList(0, expected4.size())));
+    Assert.assertEquals(expected6,
+        new LinkedHashSet<>(decoded.subList(expected4.size(), decoded.size())));
+
+    for (int i = 1; i < decoded.size(); i++) {
+      AddressRange previous = decoded.get(i - 1);
+      AddressRange current = decoded.get(i);
+
+      if (previous instanceof AddressRange4 && current instanceof AddressRange4) {
+        long a = Integer.toUnsignedLong(((AddressRange4) previous).network());
+        long b = Integer.toUnsignedLong(((AddressRange4) current).network());
+        Assert.assertTrue(a < b || (a == b && previous.prefixLength() < current.prefixLength()));
+      } else if (previous instanceof AddressRange6 && current instanceof AddressRange6) {
+        AddressRange6 a = (AddressRange6) previous;
+        AddressRange6 b = (AddressRange6) current;
+        int order = AddressIntervals.compare(a.networkHigh(), a.networkLow(), b.networkHigh(),
+            b.networkLow());
+        Assert.assertTrue(order < 0 || (order == 0 && a.prefixLength() < b.prefixLength()));
+      } else {
+        Assert.assertTrue(previous instanceof AddressRange4);
+      }
+    }
+
+    Assert.assertEquals(0, decode(encode(new ArrayList<>())).size());
+  }
+
+  /**
+   * Tests whether payloads are decoded directly into lookup structures and are considerably
+   * smaller than their textual representation.
+   */
+  @Test
+  public void testReadSet() throws IOException {
+    List<AddressRange> ranges = new ArrayList<>();
+    StringBuilder text = new StringBuilder();
+
+    for (int i = 0; i < 4096; i++) {
+      AddressRange range = AddressRange.of(0x0A000000 | (i << 8), 24);
+      ranges.add(range);
+      text.append(range).append('\n');
+    }
+    ranges.add(AddressRange.of("2001:db8::/32"));
+
+    byte[] payload = encode(ranges);
+    Assert.assertTrue(
+        payload.length * 4 < text.toString().getBytes(StandardCharsets.US_ASCII).length);
+
+    AddressRangeSet set = AddressRangeCodec.readSet(
+        Channels.newChannel(new ByteArrayInputStream(payload)));
+    Assert.assertTrue(set.matches(0x0A0FFFFF));
+    Assert.assertFalse(set.matches(0x0A100000));
+    Assert.assertTrue(set.matches(0x20010DB800000000L, 1));
+  }
+
+  /**
+   * Tests whether malformed payloads are rejected.
+   */
+  @Test
+  public void testMalformed() throws IOException {
+    byte[] payload = encode(Arrays.asList(AddressRange.of("10.0.0.0/8"),
+        AddressRange.of("192.168.0.0/16"), AddressRange.of("fe80::/10")));
+
+    // no range of a malformed payload may reach the consumer
+    List<AddressRange> delivered = new ArrayList<>();
+    Consumer<byte[]> reject = (p) -> {
+      try {
+        AddressRangeCodec.read(Channels.newChannel(new ByteArrayInputStream(p)), delivered::add);
+        throw new AssertionError("Expected IOException for malformed payload");
+      } catch (IOException ignore) {
+      }
+      Assert.assertEquals(0, delivered.size());
+    };
+
+    for (int i = 0; i < payload.length; i++) {
+      byte[] corrupted = payload.clone();
+      corrupted[i] ^= 0x01;
+      reject.accept(corrupted);
+    }
+    reject.accept(Arrays.copyOf(payload, payload.length - 1));
+    reject.accept(new byte[0]);
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Provides test cases for {@link AddressRangeDatabase}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressRangeDatabaseTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests writing, mapping and querying a small database.
+   */
+  @Test
+  public void testLookup() throws IOException {
+    Path path = this.folder.newFile("ranges.db").toPath();
+
+    AddressRangeDatabase.writer()
+        .put(AddressRange.of("0.0.0.0/0"), "default")
+        .put(AddressRange.of("10.0.0.0/8"), "a")
+        .put(AddressRange.of("10.10.0.0/16"), "b")
+        .put(AddressRange.of("10.10.10.0/24"), "a")
+        .put(AddressRange.of("255.255.255.255/32"), "broadcast")
+        .put(AddressRange.of("::/0"), "default")
+        .put(AddressRange.of("2001:db8::/32"), "é")
+        .put(AddressRange.of("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff/128"), "last")
+        .write(path);
+
+    AddressRangeDatabase database = AddressRangeDatabase.open(path);
+    Assert.assertEquals(AddressRangeDatabase.VERSION, database.version());
+    Assert.assertEquals(6, database.valueCount());
+
+    Assert.assertEquals("default", database.get(InetAddress.getByName("0.0.0.0")));
+    Assert.assertEquals("default", database.get(InetAddress.getByName("9.255.255.255")));
+    Assert.assertEquals("a", database.get(InetAddress.getByName("10.0.0.0")));
+    Assert.assertEquals("b", database.get(InetAddress.getByName("10.10.0.1")));
+    Assert.assertEquals("a", database.get(InetAddress.getByName("10.10.10.1")));
+    Assert.assertEquals("b", database.get(InetAddress.getByName("10.10.11.0")));
+    Assert.assertEquals("default", database.get(InetAddress.getByName("11.0.0.0")));
+    Assert.assertEquals("broadcast", database.get(InetAddress.getByName("255.255.255.255")));
+    Assert.assertEquals("default", database.get(InetAddress.getByName("::1")));
+    Assert.assertEquals("é", database.get(InetAddress.getByName("2001:db8::1")));
+    Assert.assertEquals("last",
+        database.get(InetAddress.getByName("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+
+    // 0/0, 10/8, 10.10/16, 10.10.10/24, 10.10/16, 10/8, 0/0 and the broadcast address followed
+    // by ::/0, 2001:db8::/32, ::/0 and the last address
+    Assert.assertEquals(8 + 4, database.intervalCount());
+  }
+
+  /**
+   * Tests the rejection of corrupted files.
+   */
+  @Test
+  public void testCorruption() throws IOException {
+    ByteBuffer buffer = AddressRangeDatabase.writer()
+        .put(AddressRange.of("10.0.0.0/8"), "a")
+        .compile();
+    Assert.assertTrue(AddressRangeDatabase.wrap(buffer, true).matches(0x0A000001));
+
+    buffer.put(buffer.limit() - 1, (byte) 'b');
+    Assert.assertEquals("b", AddressRangeDatabase.wrap(buffer, false).get(0x0A000001));
+    try {
+      AddressRangeDatabase.wrap(buffer, true);
+      Assert.fail("Expected checksum mismatch");
+    } catch (IOException ignore) {
+    }
+
+    buffer.putShort(4, (short) (AddressRangeDatabase.VERSION + 1));
+    try {
+      AddressRangeDatabase.wrap(buffer, false);
+      Assert.fail("Expected unsupported version");
+    } catch (IOException ignore) {
+    }
+
+    try {
+      AddressRangeDatabase.wrap(ByteBuffer.allocate(64), false);
+      Assert.fail("Expected missing header");
+    } catch (IOException ignore) {
+    }
+  }
+
+  /**
+   * Tests the rejection of crafted headers and value tables (which carry a valid checksum).
+   */
+  @Test
+  public void testCorruptHeader() throws IOException {
+    ByteBuffer buffer = AddressRangeDatabase.writer()
+        .put(AddressRange.of("2001:db8::/32"), "a")
+        .compile();
+
+    // section offsets would wrap back onto the original layout in int arithmetic
+    buffer.putInt(8, 0x40000000);
+    reject(buffer);
+    buffer.putInt(8, 0);
+
+    buffer = AddressRangeDatabase.writer()
+        .put(AddressRange.of("10.0.0.0/8"), "a")
+        .put(AddressRange.of("10.10.0.0/16"), "b")
+        .compile();
+    int valueSize = buffer.getInt(20);
+    int valueOffsets = buffer.capacity() - valueSize - 3 * Integer.BYTES;
+    Assert.assertEquals(0, buffer.getInt(valueOffsets));
+
+    buffer.putInt(valueOffsets + Integer.BYTES, valueSize + 1);
+    reject(buffer);
+    buffer.putInt(valueOffsets + Integer.BYTES, -1);
+    reject(buffer);
+    buffer.putInt(valueOffsets + Integer.BYTES, 1);
+
+    // the value index of the first IPv4 interval
+    int values4 = 32 + 2 * buffer.getInt(8) * Integer.BYTES;
+    buffer.putInt(values4, 2);
+    checksum(buffer);
+    reject(buffer);
+
+    AddressRangeDatabase database = AddressRangeDatabase.wrap(buffer, false);
+    Assert.assertEquals("b", database.get(0x0A0A0001));
+    try {
+      database.get(0x0A000001);
+      Assert.fail("Expected invalid value index");
+    } catch (UncheckedIOException ignore) {
+    }
+  }
+
+  /**
+   * Updates the checksum of a database in order to emulate a crafted file.
+   *
+   * @param buffer a database buffer.
+   */
+  private static void checksum(ByteBuffer buffer) {
+    ByteBuffer payload = buffer.duplicate();
+    payload.position(32);
+
+    CRC32 checksum = new CRC32();
+    checksum.update(payload);
+    buffer.putInt(24, (int) checksum.getValue());
+  }
+
+  /**
+   * Asserts that a database buffer is rejected when opened.
+   *
+   * @param buffer a database buffer.
+   */
+  private static void reject(ByteBuffer buffer) {
+    checksum(buffer);
+
+    try {
+      AddressRangeDatabase.wrap(buffer, true);
+      Assert.fail("Expected invalid database");
+    } catch (IOException ignore) {
+    }
+  }
+
+  /**
+   * Compares the database against a trie using randomly generated ranges.
+   */
+  @Test
+  public void testRandomized() throws IOException {
+    Random random = new Random(0xC1D8);
+    AddressRangeTrie<String> trie = new AddressRangeTrie<>();
+    AddressRangeDatabase.Writer writer = AddressRangeDatabase.writer();
+
+    for (int i = 0; i < 5000; i++) {
+      String value = Integer.toString(random.nextInt(16));
+
+      if ((i & 3) == 0) {
+        int prefixLength = random.nextInt(129);
+        AddressRange6 range = AddressRange.of(
+            random.nextLong() & AddressRange6.maskHigh(prefixLength) & 0xFFFF00000000FFFFL,
+            random.nextLong() & AddressRange6.maskLow(prefixLength), prefixLength);
+        trie.put(range, value);
+        writer.put(range, value);
+      } else {
+        int prefixLength = random.nextInt(33);
+        AddressRange4 range = AddressRange
+            .of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength);
+        trie.put(range, value);
+        writer.put(range, value);
+      }
+    }
+
+    Path path = this.folder.newFile("random.db").toPath();
+    writer.write(path);
+    Assert.assertEquals(writer.compile(), ByteBuffer.wrap(Files.readAllBytes(path)));
+    AddressRangeDatabase database = AddressRangeDatabase.open(path);
+
+    for (int i = 0; i < 50000; i++) {
+      int address = random.nextInt();
+      Assert.assertEquals(trie.longestMatch(address), database.get(address));
+
+      long high = random.nextLong() & 0xFFFF00000000FFFFL;
+      long low = random.nextLong();
+      Assert.assertEquals(trie.longestMatch(high, low), database.get(high, low));
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressRangeFilter}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressRangeFilterTest {
+
+  /**
+   * Tests whether listed addresses are never rejected and unlisted addresses are rejected at
+   * roughly the configured rate.
+   */
+  @Test
+  public void testFilter() {
+    Random random = new Random(0xB100);
+    List<AddressRange> ranges = new ArrayList<>();
+    AddressRangeTrie<Boolean> trie = new AddressRangeTrie<>();
+
+    for (int i = 0; i < 20000; i++) {
+      int prefixLength = (random.nextInt(100) == 0 ? 8 + random.nextInt(9)
+          : 30 + random.nextInt(3));
+      AddressRange range = AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+          prefixLength);
+
+      ranges.add(range);
+      trie.put(range, Boolean.TRUE);
+    }
+    for (int i = 0; i < 2000; i++) {
+      int prefixLength = 48 + random.nextInt(81);
+      AddressRange range = AddressRange.of(
+          (0x20010DB800000000L | random.nextLong() >>> 32) & AddressRange6.maskHigh(prefixLength),
+          random.nextLong() & AddressRange6.maskLow(prefixLength), prefixLength);
+
+      ranges.add(range);
+      trie.put(range, Boolean.TRUE);
+    }
+
+    AddressRangeFilter filter = AddressRangeFilter.builder()
+        .falsePositiveRate(0.001)
+        .addAll(ranges)
+        .build();
+    Assert.assertEquals(22000, filter.size());
+    Assert.assertEquals(3, filter.probeCount(false));
+    Assert.assertTrue(filter.memorySize() > 0);
+    Assert.assertTrue(filter.hashCount() > 0);
+    Assert.assertTrue(filter.expectedFalsePositiveRate() < 0.1);
+
+    for (AddressRange range : ranges) {
+      if (range instanceof AddressRange4) {
+        AddressRange4 range4 = (AddressRange4) range;
+        Assert.assertTrue(filter.matches(range4.network()));
+        Assert.assertTrue(filter.matches(range4.last()));
+      } else {
+        AddressRange6 range6 = (AddressRange6) range;
+        Assert.assertTrue(filter.matches(range6.networkHigh(), range6.networkLow()));
+        Assert.assertTrue(filter.matches(range6.lastHigh(), range6.lastLow()));
+      }
+    }
+
+    AddressMatcher guarded = filter.guard(trie);
+    int falsePositives = 0;
+    int unlisted = 0;
+    for (int i = 0; i < 100000; i++) {
+      int address = random.nextInt();
+      boolean listed = trie.matches(address);
+
+      Assert.assertEquals(listed, guarded.matches(address));
+      if (!listed) {
+        unlisted++;
+        if (filter.matches(address)) {
+          falsePositives++;
+        }
+      }
+    }
+    Assert.assertTrue("False positive rate: " + (double) falsePositives / unlisted,
+        falsePositives < unlisted * 0.01);
+
+    for (int i = 0; i < 10000; i++) {
+      long high = 0x20010DB800000000L | random.nextLong() >>> 32;
+      long low = random.nextLong();
+      Assert.assertEquals(trie.matches(high, low), guarded.matches(high, low));
+    }
+  }
+
+  /**
+   * Tests the bitmap configuration.
+   */
+  @Test
+  public void testBitmap() throws UnknownHostException {
+    AddressRangeFilter filter = AddressRangeFilter.builder()
+        .bitmapPrefixLength(24)
+        .add(AddressRange.of("10.0.0.0/8"))
+        .add(AddressRange.of("192.168.1.0/24"))
+        .build();
+    Assert.assertEquals(0, filter.probeCount(false));
+    Assert.assertEquals(2 * 1024 * 1024, filter.memorySize());
+    Assert.assertEquals(0.0, filter.expectedFalsePositiveRate(), 0.0);
+    Assert.assertTrue(filter.matches(InetAddress.getByName("10.1.2.3")));
+    Assert.assertTrue(filter.matches(InetAddress.getByName("192.168.1.77")));
+    Assert.assertFalse(filter.matches(InetAddress.getByName("192.168.2.1")));
+    Assert.assertFalse(filter.matches(InetAddress.getByName("2001:db8::1")));
+
+    AddressRangeFilter unmapped = AddressRangeFilter.builder()
+        .bitmapPrefixLength(0)
+        .addAll(Arrays.asList(AddressRange.of("0.0.0.0/0"), AddressRange.of("::/0")))
+        .build();
+    Assert.assertEquals(1, unmapped.probeCount(false));
+    Assert.assertEquals(1, unmapped.probeCount(true));
+    Assert.assertTrue(unmapped.matches(0x7F000001));
+    Assert.assertTrue(unmapped.matches(-1L, -1L));
+
+    try {
+      AddressRangeFilter.builder().falsePositiveRate(1.0);
+      throw new AssertionError("Expected IllegalArgumentException for invalid rate");
+    } catch (IllegalArgumentException ignore) {
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.UnknownHostException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressRangeInterner}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressRangeInternerTest {
+
+  /**
+   * Tests whether equal ranges are resolved to a single instance.
+   */
+  @Test
+  public void testIntern() throws UnknownHostException {
+    AddressRangeInterner interner = new AddressRangeInterner(64);
+    Assert.assertEquals(64, interner.capacity());
+
+    AddressRange range4 = interner.parse("10.0.0.0/8");
+    Assert.assertEquals(AddressRange.of("10.0.0.0/8"), range4);
+    Assert.assertSame(range4, interner.parse("10.0.0.0/8"));
+    Assert.assertSame(range4, interner.intern(0x0A000000, 8));
+    Assert.assertSame(range4, interner.intern(AddressRange.of("10.0.0.0/8")));
+    Assert.assertNotSame(range4, interner.parse("10.0.0.0/9"));
+
+    AddressRange range6 = interner.parse("fe80::/10");
+    Assert.assertEquals(AddressRange.of("fe80::/10"), range6);
+    Assert.assertSame(range6, interner.intern(0xFE80000000000000L, 0, 10));
+    Assert.assertSame(range6, interner.intern(AddressRange.of("fe80::/10")));
+    Assert.assertEquals(AddressRange.of("2001:db8::/64"), interner.parse("2001:db8::"));
+    Assert.assertEquals(AddressRange.of("10.0.0.1/32"), interner.parse("10.0.0.1"));
+
+    Assert.assertEquals(5, interner.hits());
+    Assert.assertEquals(5, interner.misses());
+    Assert.assertEquals(0.5, interner.hitRate(), 1e-9);
+    Assert.assertEquals(5, interner.size());
+
+    interner.resetStatistics();
+    Assert.assertEquals(0, interner.hits());
+    Assert.assertEquals(0.0, interner.hitRate(), 0.0);
+
+    try {
+      interner.parse("10.0.0.1/8");
+      throw new AssertionError("Expected IllegalArgumentException for misaligned range");
+    } catch (IllegalArgumentException ignore) {
+    }
+
+    Assert.assertSame(AddressRange.intern("192.168.0.0/16"),
+        AddressRange.intern("192.168.0.0/16"));
+  }
+
+  /**
+   * Tests whether the interner remains bounded when more ranges are interned than fit.
+   */
+  @Test
+  public void testEviction() {
+    AddressRangeInterner interner = new AddressRangeInterner(16);
+
+    for (int i = 0; i < 1000; i++) {
+      AddressRange4 range = interner.intern(i << 8, 24);
+      Assert.assertEquals(i << 8, range.network());
+      Assert.assertEquals(24, range.prefixLength());
+    }
+
+    Assert.assertEquals(16, interner.size());
+    Assert.assertEquals(1000, interner.misses());
+    Assert.assertEquals(1000 - 16, interner.evictions());
+
+    interner.clear();
+    Assert.assertEquals(0, interner.size());
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Provides test cases for {@link AddressRangeLoader}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressRangeLoaderTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests the supported line formats as well as the reporting of malformed lines.
+   */
+  @Test
+  public void testFormats() throws IOException {
+    Path path = this.folder.newFile("ranges.txt").toPath();
+    Files.write(path, Arrays.asList(
+        "# bogons",
+        "10.0.0.0/8",
+        "",
+        "  192.168.0.0/16   # private",
+        "10.0.0.0-10.0.0.6\r",
+        "\"2001:db8::/32\",GB,example",
+        "network,geoname_id",
+        "10.0.0.1-10.0.0.0",
+        "2001:db8::-2001:db8::1",
+        "172.16.0.0",
+        "this is not an address"
+    ), StandardCharsets.UTF_8);
+
+    for (int chunkSize : new int[]{1, 7, 64, AddressRangeLoader.DEFAULT_CHUNK_SIZE}) {
+      List<String> ranges = new ArrayList<>();
+      List<String> errors = new ArrayList<>();
+
+      long count = new AddressRangeLoader(ForkJoinPool.commonPool(), chunkSize)
+          .load(path, (r) -> ranges.add(r.toString()),
+              (lineNumber, line, cause) -> errors.add(lineNumber + ": " + line));
+
+      Assert.assertEquals(Arrays.asList(
+          "10.0.0.0/8",
+          "192.168.0.0/16",
+          "10.0.0.0/30",
+          "10.0.0.4/31",
+          "10.0.0.6/32",
+          "2001:db8:0:0:0:0:0:0/32",
+          "2001:db8:0:0:0:0:0:0/127",
+          "172.16.0.0/32"
+      ), ranges);
+      Assert.assertEquals(ranges.size(), count);
+      Assert.assertEquals(Arrays.asList(
+          "7: network,geoname_id",
+          "8: 10.0.0.1-10.0.0.0",
+          "11: this is not an address"
+      ), errors);
+    }
+
+    try {
+      new AddressRangeLoader().load(path, (r) -> {
+      });
+      Assert.fail("Expected malformed line");
+    } catch (IllegalArgumentException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("Line 7: "));
+    }
+  }
+
+  /**
+   * Tests range notations with and without whitespace surrounding the separator both as the sole
+   * contents of a line and as the first field of a CSV row.
+   */
+  @Test
+  public void testRangeNotation() throws IOException {
+    Path path = this.folder.newFile("notation.txt").toPath();
+    Files.write(path, Arrays.asList(
+        "10.0.0.0 - 10.0.0.255",
+        "10.0.1.0-10.0.1.255",
+        "10.0.2.0 -10.0.2.255 # comment",
+        "10.0.3.0- 10.0.3.255\t",
+        "10.0.4.0 - 10.0.4.255,US,example",
+        "\"10.0.5.0 - 10.0.5.255\",GB",
+        "10.0.6.0/24,some-name",
+        "2001:db8:: - 2001:db8::1 extra",
+        "10.0.7.0 -"
+    ), StandardCharsets.UTF_8);
+
+    for (int chunkSize : new int[]{1, 16, AddressRangeLoader.DEFAULT_CHUNK_SIZE}) {
+      List<String> ranges = new ArrayList<>();
+      List<String> errors = new ArrayList<>();
+
+      new AddressRangeLoader(ForkJoinPool.commonPool(), chunkSize)
+          .load(path, (r) -> ranges.add(r.toString()),
+              (lineNumber, line, cause) -> errors.add(lineNumber + ": " + line));
+
+      Assert.assertEquals(Arrays.asList(
+          "10.0.0.0/24",
+          "10.0.1.0/24",
+          "10.0.2.0/24",
+          "10.0.3.0/24",
+          "10.0.4.0/24",
+          "10.0.5.0/24",
+          "10.0.6.0/24",
+          "2001:db8:0:0:0:0:0:0/127"
+      ), ranges);
+      Assert.assertEquals(Arrays.asList("9: 10.0.7.0 -"), errors);
+    }
+  }
+
+  /**
+   * Tests the decomposition of vendor feeds which list arbitrary start-end intervals (such as
+   * {@code 10.0.0.5 - 10.0.0.17}).
+   */
+  @Test
+  public void testIntervalFeed() throws IOException {
+    Random random = new Random(0x20);
+    List<String> lines = new ArrayList<>();
+    List<AddressRange> expected = new ArrayList<>();
+
+    for (int i = 0; i < 2000; i++) {
+      long first = random.nextInt() & 0xFFFFFFFFL;
+      long last = Math.min(0xFFFFFFFFL, first + random.nextInt(1 << 20));
+      AddressInterval interval = AddressInterval.of((int) first, (int) last);
+
+      lines.add(interval.toString() + (i % 2 == 0 ? "" : ",vendor,example"));
+      expected.addAll(interval.ranges());
+    }
+    lines.add("2001:db8::1 - 2001:db8::ff");
+    expected.addAll(AddressInterval.parse("2001:db8::1-2001:db8::ff").ranges());
+
+    Path path = this.folder.newFile("intervals.txt").toPath();
+    Files.write(path, lines, StandardCharsets.UTF_8);
+
+    List<AddressRange> ranges = new ArrayList<>();
+    new AddressRangeLoader(ForkJoinPool.commonPool(), 4096).load(path, ranges::add);
+    Assert.assertEquals(expected, ranges);
+  }
+
+  /**
+   * Tests the extraction of prefix fields from JSON documents in the formats published by cloud
+   * providers.
+   */
+  @Test
+  public void testJson() throws IOException {
+    Path path = this.folder.newFile("ranges.json").toPath();
+    Files.write(path, Arrays.asList(
+        "{",
+        "  \"syncToken\": \"1700000000\",",
+        "  \"prefixes\": [",
+        "    {\"ip_prefix\": \"3.5.140.0/22\", \"region\": \"ap-northeast-2\"},",
+        "    {\"ipv4Prefix\": \"34.80.0.0\\/15\", \"scope\": \"asia-east1\"},",
+        "    {\"ipv6Prefix\": \"2600:1900:4030::/44\", \"count\": 1, \"ok\": true}",
+        "  ],",
+        "  \"ipv6_prefixes\": [{\"ipv6_prefix\": \"2600:1f00:c000::/40\"}],",
+        "  \"values\": [{\"name\": \"prefix\", \"properties\": {",
+        "    \"addressPrefixes\": [\"13.66.60.119/32\", \"bogus\", \"10.0.0.0 - 10.0.0.6\"],",
+        "    \"description\": \"10.0.0.0/8\"",
+        "  }}],",
+        "  \"cidr\": \"192.168.0.0/16\"",
+        "}"
+    ), StandardCharsets.UTF_8);
+
+    for (int chunkSize : new int[]{1, 7, AddressRangeLoader.DEFAULT_CHUNK_SIZE}) {
+      List<String> events = new ArrayList<>();
+
+      long count = new AddressRangeLoader(ForkJoinPool.commonPool(), chunkSize)
+          .loadJson(path, (r) -> events.add(r.toString()),
+              (lineNumber, line, cause) -> events.add(lineNumber + ": " + line));
+
+      Assert.assertEquals(Arrays.asList(
+          "3.5.140.0/22",
+          "34.80.0.0/15",
+          "2600:1900:4030:0:0:0:0:0/44",
+          "2600:1f00:c000:0:0:0:0:0/40",
+          "13.66.60.119/32",
+          "10: bogus",
+          "10.0.0.0/30",
+          "10.0.0.4/31",
+          "10.0.0.6/32",
+          "192.168.0.0/16"
+      ), events);
+      Assert.assertEquals(events.size() - 1, count);
+    }
+
+    try {
+      new AddressRangeLoader().loadJson(path, (r) -> {
+      });
+      Assert.fail("Expected malformed prefix");
+    } catch (IllegalArgumentException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("Line 10: "));
+    }
+
+    Files.write(path, "{\"prefixes\": [\"10.0.0.0/8\"".getBytes(StandardCharsets.UTF_8));
+    try {
+      new AddressRangeLoader().loadJson(path, (r) -> {
+      });
+      Assert.fail("Expected truncated document");
+    } catch (IOException ignore) {
+    }
+  }
+
+  /**
+   * Tests whether ranges and malformed lines are reported interleaved in file order and whether
+   * a throwing error handler prevents the delivery of all subsequent ranges.
+   */
+  @Test
+  public void testOrder() throws IOException {
+    Path path = this.folder.newFile("order.txt").toPath();
+    Files.write(path, Arrays.asList(
+        "10.0.0.0/8",
+        "bogus",
+        "192.168.0.0/16",
+        "172.16.0.0/12"
+    ), StandardCharsets.UTF_8);
+
+    for (int chunkSize : new int[]{1, 16, AddressRangeLoader.DEFAULT_CHUNK_SIZE}) {
+      AddressRangeLoader loader = new AddressRangeLoader(ForkJoinPool.commonPool(), chunkSize);
+      List<String> events = new ArrayList<>();
+
+      loader.load(path, (r) -> events.add(r.toString()),
+          (lineNumber, line, cause) -> events.add(lineNumber + ": " + line));
+      Assert.assertEquals(Arrays.asList(
+          "10.0.0.0/8",
+          "2: bogus",
+          "192.168.0.0/16",
+          "172.16.0.0/12"
+      ), events);
+
+      events.clear();
+      try {
+        loader.load(path, (r) -> events.add(r.toString()));
+        Assert.fail("Expected malformed line");
+      } catch (IllegalArgumentException ex) {
+        Assert.assertTrue(ex.getMessage().startsWith("Line 2: "));
+      }
+      Assert.assertEquals(Arrays.asList("10.0.0.0/8"), events);
+    }
+  }
+
+  /**
+   * Compares the loader against sequential parsing using a larger randomly generated file.
+   */
+  @Test
+  public void testRandomized() throws IOException {
+    Random random = new Random(0xC1D8);
+    List<String> lines = new ArrayList<>();
+
+    for (int i = 0; i < 20000; i++) {
+      int prefixLength = random.nextInt(33);
+      lines.add(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength)
+          .toString());
+    }
+
+    Path path = this.folder.newFile("random.txt").toPath();
+    Files.write(path, lines, StandardCharsets.UTF_8);
+
+    List<String> ranges = new ArrayList<>();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      new AddressRangeLoader(pool, 4096).load(path, (r) -> ranges.add(r.toString()));
+    } finally {
+      pool.shutdown();
+    }
+    Assert.assertEquals(lines, ranges);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressRangeSet}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressRangeSetTest {
+
+  /**
+   * Tests the aggregation of overlapping and adjacent ranges as well as all set operations.
+   */
+  @Test
+  public void testAlgebra() throws UnknownHostException {
+    AddressRangeSet set = AddressRangeSet.of(
+        AddressRange.of("10.0.0.0/25"),
+        AddressRange.of("10.0.0.128/25"),
+        AddressRange.of("10.0.1.0/24"),
+        AddressRange.of("10.0.1.17/32"),
+        AddressRange.of("2001:db8::/33"),
+        AddressRange.of("2001:db8:8000::/33")
+    );
+
+    Assert.assertEquals("[10.0.0.0/23, 2001:db8:0:0:0:0:0:0/32]", set.toString());
+    Assert.assertTrue(set.matches(InetAddress.getByName("10.0.1.255")));
+    Assert.assertFalse(set.matches(InetAddress.getByName("10.0.2.0")));
+    Assert.assertTrue(set.matches(InetAddress.getByName("2001:db8:ffff::1")));
+    Assert.assertFalse(set.matches(InetAddress.getByName("2001:db9::")));
+
+    AddressRangeSet hole = AddressRangeSet.of(AddressRange.of("10.0.0.1/32"));
+    Assert.assertEquals(
+        "[10.0.0.0/32, 10.0.0.2/31, 10.0.0.4/30, 10.0.0.8/29, 10.0.0.16/28, 10.0.0.32/27, "
+            + "10.0.0.64/26, 10.0.0.128/25, 10.0.1.0/24, 2001:db8:0:0:0:0:0:0/32]",
+        set.subtract(hole).toString());
+    Assert.assertEquals(set, set.subtract(hole).union(hole));
+    Assert.assertEquals(hole, set.intersect(hole));
+    Assert.assertEquals("[10.0.0.0/8]",
+        AddressRangeSet.of(AddressRange.of("10.0.0.0/8")).intersect(
+            AddressRangeSet.of(AddressRange.of("0.0.0.0/0"))).toString());
+
+    AddressRangeSet complement = set.complement();
+    Assert.assertFalse(complement.matches(InetAddress.getByName("10.0.0.1")));
+    Assert.assertTrue(complement.matches(InetAddress.getByName("10.0.2.0")));
+    Assert.assertTrue(complement.matches(0));
+    Assert.assertTrue(complement.matches(-1));
+    Assert.assertTrue(complement.matches(-1L, -1L));
+    Assert.assertEquals(set, complement.complement());
+    Assert.assertTrue(set.intersect(complement).isEmpty());
+    Assert.assertEquals("[0.0.0.0/0, 0:0:0:0:0:0:0:0/0]", set.union(complement).toString());
+    Assert.assertTrue(AddressRangeSet.empty().complement().complement().isEmpty());
+  }
+
+  /**
+   * Compares all set operations against a per address evaluation within a small portion of the
+   * address space.
+   */
+  @Test
+  public void testRandomized() {
+    Random random = new Random(0xC1D8);
+    List<AddressRange> rangesA = new ArrayList<>();
+    List<AddressRange> rangesB = new ArrayList<>();
+
+    for (int i = 0; i < 400; i++) {
+      int prefixLength = 18 + random.nextInt(15);
+      AddressRange4 range = AddressRange
+          .of((0x0A000000 | (random.nextInt() & 0xFFFF)) & AddressRange4.mask(prefixLength),
+              prefixLength);
+      ((i & 1) == 0 ? rangesA : rangesB).add(range);
+    }
+
+    AddressRangeSet a = AddressRangeSet.of(rangesA);
+    AddressRangeSet b = AddressRangeSet.of(rangesB);
+    AddressRangeSet union = a.union(b);
+    AddressRangeSet intersection = a.intersect(b);
+    AddressRangeSet difference = a.subtract(b);
+    AddressRangeSet complement = a.complement();
+
+    for (int address = 0x0A000000; address <= 0x0A00FFFF; address++) {
+      boolean inA = matchesAny(rangesA, address);
+      boolean inB = matchesAny(rangesB, address);
+
+      Assert.assertEquals(inA, a.matches(address));
+      Assert.assertEquals(inA || inB, union.matches(address));
+      Assert.assertEquals(inA && inB, intersection.matches(address));
+      Assert.assertEquals(inA && !inB, difference.matches(address));
+      Assert.assertEquals(!inA, complement.matches(address));
+    }
+
+    // a minimal list never contains two sibling blocks which could be merged into their parent
+    List<AddressRange> ranges = union.ranges();
+    for (int i = 1; i < ranges.size(); i++) {
+      AddressRange4 previous = (AddressRange4) ranges.get(i - 1);
+      AddressRange4 current = (AddressRange4) ranges.get(i);
+
+      Assert.assertFalse(previous.prefixLength() == current.prefixLength()
+          && (previous.network() & AddressRange4.mask(previous.prefixLength() - 1))
+          == (current.network() & AddressRange4.mask(current.prefixLength() - 1)));
+    }
+    Assert.assertEquals(union, AddressRangeSet.of(ranges));
+  }
+
+  private static boolean matchesAny(List<AddressRange> ranges, int address) {
+    for (AddressRange range : ranges) {
+      if (((AddressRange4) range).matches(address)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+}
@@ -16,10 +16,24 @@
  */
 package com.torchmind.utility.cidr;
 
+import java.math.BigInteger;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -36,6 +50,76 @@ import org.mockito.junit.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class AddressRangeTest {
 
+  /**
+   * Tests {@link AddressRange4#addresses()} and {@link AddressRange6#spliterator()}.
+   */
+  @Test
+  public void testAddresses() throws UnknownHostException {
+    AddressRange4 range4 = (AddressRange4) AddressRange.of("10.0.0.0/22");
+    int[] addresses4 = range4.addresses().toArray();
+    Assert.assertEquals(1024, addresses4.length);
+    for (int i = 0; i < addresses4.length; i++) {
+      Assert.assertEquals(0x0A000000 + i, addresses4[i]);
+    }
+    Assert.assertEquals(0x0A0003FF, range4.last());
+    Assert.assertEquals(range4.addresses().asLongStream().sum(),
+        range4.addresses().parallel().asLongStream().sum());
+
+    AddressRange4 broadcast = (AddressRange4) AddressRange.of("255.255.255.252/30");
+    Assert.assertArrayEquals(new int[]{0xFFFFFFFC, 0xFFFFFFFD, 0xFFFFFFFE, 0xFFFFFFFF},
+        broadcast.addresses().toArray());
+
+    Spliterator.OfInt spliterator4 = AddressRange.of(0, 0).spliterator();
+    Assert.assertEquals(1L << 32, spliterator4.estimateSize());
+    Spliterator.OfInt prefix4 = spliterator4.trySplit();
+    Assert.assertEquals(1L << 31, prefix4.estimateSize());
+    Assert.assertEquals(1L << 31, spliterator4.estimateSize());
+    Assert.assertTrue(prefix4.tryAdvance((int address) -> Assert.assertEquals(0, address)));
+    Assert.assertTrue(
+        spliterator4.tryAdvance((int address) -> Assert.assertEquals(0x80000000, address)));
+
+    // spans which cross a 64-bit boundary are counted and split correctly
+    AddressRange6 range6 = AddressRange.of(0x20010DB800000000L, 0xFFFFFFFFFFFFFFF0L, 124);
+    Assert.assertEquals(16, range6.addresses().count());
+    AddressSpliterator6 spliterator6 = new AddressSpliterator6(0x20010DB800000000L,
+        0xFFFFFFFFFFFFFFF8L, 0x20010DB800000001L, 0x0000000000000007L);
+    Assert.assertEquals(16, spliterator6.estimateSize());
+    AddressSpliterator6 prefix6 = spliterator6.trySplit();
+    Assert.assertEquals(8, prefix6.estimateSize());
+    Assert.assertEquals(8, spliterator6.estimateSize());
+
+    List<long[]> visited = new ArrayList<>();
+    prefix6.forEachRemaining((long high, long low) -> visited.add(new long[]{high, low}));
+    spliterator6.forEachRemaining((long high, long low) -> visited.add(new long[]{high, low}));
+    Assert.assertEquals(16, visited.size());
+    Assert.assertArrayEquals(new long[]{0x20010DB800000000L, 0xFFFFFFFFFFFFFFF8L}, visited.get(0));
+    Assert.assertArrayEquals(new long[]{0x20010DB800000000L, 0xFFFFFFFFFFFFFFFFL}, visited.get(7));
+    Assert.assertArrayEquals(new long[]{0x20010DB800000001L, 0L}, visited.get(8));
+    Assert.assertArrayEquals(new long[]{0x20010DB800000001L, 7L}, visited.get(15));
+    Assert.assertEquals(0, spliterator6.estimateSize());
+    Assert.assertNull(spliterator6.trySplit());
+
+    // spans which exceed a long are split evenly until they become sized
+    AddressSpliterator6 everything = AddressRange.of(0L, 0L, 0).spliterator();
+    Assert.assertEquals(Long.MAX_VALUE, everything.estimateSize());
+    Assert.assertEquals(0, everything.characteristics() & Spliterator.SIZED);
+    AddressSpliterator6 lower = everything.trySplit();
+    Assert.assertTrue(lower.tryAdvance(
+        (long high, long low) -> Assert.assertEquals(0, high | low)));
+    Assert.assertTrue(everything.tryAdvance((long high, long low) -> {
+      Assert.assertEquals(0x8000000000000000L, high);
+      Assert.assertEquals(0, low);
+    }));
+
+    AddressSpliterator6 sized = AddressRange.of(0L, 0L, 66).spliterator();
+    Assert.assertEquals(1L << 62, sized.estimateSize());
+    Assert.assertNotEquals(0, sized.characteristics() & Spliterator.SIZED);
+
+    AddressRange6 small = (AddressRange6) AddressRange.of("2001:db8::/126");
+    Assert.assertEquals(InetAddress.getByName("2001:db8::1"),
+        small.addresses().skip(1).findFirst().orElse(null));
+  }
+
   /**
    * Tests whether {@link AbstractAddressRange#AbstractAddressRange(InetAddress, int)} verifies
    * passed masks correctly.
@@ -160,6 +244,46 @@ public class AddressRangeTest {
         AddressRange.of("1000:0000:0000:0000:0000:0000:0000:0000/116").blockSize());
     Assert.assertEquals(8192L,
         AddressRange.of("1000:0000:0000:0000:0000:0000:0000:0000/115").blockSize());
+
+    // blocks which exceed a long saturate while their exact size remains available
+    Assert.assertEquals(1L << 62, AddressRange.of(0L, 0L, 66).blockSize());
+    Assert.assertEquals(Long.MAX_VALUE, AddressRange.of(0L, 0L, 65).blockSize());
+    Assert.assertEquals(Long.MAX_VALUE, AddressRange.of(0L, 0L, 0).blockSize());
+    Assert.assertEquals(128, AddressRange.of(0L, 0L, 0).hostLength());
+    Assert.assertEquals(BigInteger.ONE.shiftLeft(128),
+        AddressRange.of(0L, 0L, 0).exactBlockSize());
+    Assert.assertEquals(BigInteger.valueOf(4294967296L), AddressRange.of(0, 0).exactBlockSize());
+  }
+
+  /**
+   * Tests {@link AddressRange#contains(AddressRange)} and {@link
+   * AddressRange#overlaps(AddressRange)}.
+   */
+  @Test
+  public void testContains() throws UnknownHostException {
+    AddressRange range4 = AddressRange.of("10.0.0.0/8");
+    AddressRange range6 = AddressRange.of("2001:db8::/32");
+
+    Assert.assertTrue(range4.contains(range4));
+    Assert.assertTrue(range4.contains(AddressRange.of("10.255.0.0/16")));
+    Assert.assertTrue(range4.contains(AddressRange.of("10.0.0.1/32")));
+    Assert.assertFalse(range4.contains(AddressRange.of("0.0.0.0/0")));
+    Assert.assertFalse(range4.contains(AddressRange.of("11.0.0.0/16")));
+    Assert.assertFalse(range4.contains(range6));
+    Assert.assertTrue(AddressRange.of("0.0.0.0/0").contains(range4));
+
+    Assert.assertTrue(range6.contains(AddressRange.of("2001:db8:ffff::/48")));
+    Assert.assertTrue(range6.contains(AddressRange.of("2001:db8::1/128")));
+    Assert.assertFalse(range6.contains(AddressRange.of("2001:db9::/48")));
+    Assert.assertFalse(range6.contains(AddressRange.of("2001::/16")));
+    Assert.assertFalse(range6.contains(range4));
+
+    Assert.assertTrue(range4.overlaps(AddressRange.of("0.0.0.0/0")));
+    Assert.assertTrue(range4.overlaps(AddressRange.of("10.1.0.0/16")));
+    Assert.assertFalse(range4.overlaps(AddressRange.of("11.0.0.0/8")));
+    Assert.assertTrue(range6.overlaps(AddressRange.of("2001::/16")));
+    Assert.assertFalse(range6.overlaps(AddressRange.of("2001:db9::/32")));
+    Assert.assertFalse(range6.overlaps(range4));
   }
 
   /**
@@ -594,6 +718,257 @@ public class AddressRangeTest {
     }
   }
 
+  /**
+   * Tests {@link AddressRange#matches(String)} with IPv4-mapped literals.
+   */
+  @Test
+  public void testMatchMappedLiteral() throws UnknownHostException {
+    AddressRange range4 = AddressRange.of("10.0.0.0/8");
+    AddressRange range6 = AddressRange.of("::/0");
+
+    for (String literal : new String[]{"::ffff:10.0.0.1", "::ffff:192.168.0.1", "2001:db8::1",
+        "10.0.0.1"}) {
+      InetAddress address = InetAddress.getByName(literal);
+
+      Assert.assertEquals(literal, range4.matches(address), range4.matches(literal));
+      Assert.assertEquals(literal, range6.matches(address), range6.matches(literal));
+    }
+
+    Assert.assertTrue(range4.matches("::ffff:10.0.0.1"));
+    Assert.assertFalse(range6.matches("::ffff:10.0.0.1"));
+  }
+
+  /**
+   * Tests {@link AddressRange4#matches(int)} and {@link AddressRange6#matches(long, long)}.
+   */
+  @Test
+  public void testMatchNumeric() throws UnknownHostException {
+    AddressRange4 range01 = (AddressRange4) AddressRange.of("10.10.0.0/16");
+    AddressRange4 range02 = (AddressRange4) AddressRange.of("0.0.0.0/0");
+    AddressRange4 range03 = (AddressRange4) AddressRange.of("255.255.255.255/32");
+    AddressRange6 range04 = (AddressRange6) AddressRange.of("2001:db8::/32");
+    AddressRange6 range05 = (AddressRange6) AddressRange.of("2001:db8::ff00/120");
+
+    Assert.assertTrue(range01.matches(0x0A0A0000));
+    Assert.assertTrue(range01.matches(0x0A0AFFFF));
+    Assert.assertFalse(range01.matches(0x0A0B0000));
+    Assert.assertFalse(range01.matches(0x8A0A0000));
+
+    Assert.assertTrue(range02.matches(0x00000000));
+    Assert.assertTrue(range02.matches(0xFFFFFFFF));
+
+    Assert.assertTrue(range03.matches(0xFFFFFFFF));
+    Assert.assertFalse(range03.matches(0xFFFFFFFE));
+
+    Assert.assertTrue(range04.matches(0x20010DB800000000L, 0L));
+    Assert.assertTrue(range04.matches(0x20010DB8FFFFFFFFL, -1L));
+    Assert.assertFalse(range04.matches(0x20010DB900000000L, 0L));
+
+    Assert.assertTrue(range05.matches(0x20010DB800000000L, 0xFF00L));
+    Assert.assertTrue(range05.matches(0x20010DB800000000L, 0xFFFFL));
+    Assert.assertFalse(range05.matches(0x20010DB800000000L, 0x1FF00L));
+    Assert.assertFalse(range05.matches(0x20010DB800000001L, 0xFF00L));
+
+    Assert.assertFalse(range01.matches(InetAddress.getByName("2001:db8::1")));
+    Assert.assertFalse(range04.matches(InetAddress.getByName("10.10.0.1")));
+  }
+
+  /**
+   * Tests {@link AddressMatcher#matches(int[], int, int, long[])} and {@link
+   * AddressMatcher#matches(long[], int, int, long[])}.
+   */
+  @Test
+  public void testMatchBatch() throws UnknownHostException {
+    Random random = new Random(0xC1D8);
+    AddressRangeTrie<Boolean> trie = new AddressRangeTrie<>();
+    trie.put(AddressRange.of("10.0.0.0/9"), true);
+    trie.put(AddressRange.of("2001:db8::/33"), true);
+
+    AddressMatcher[] matchers = new AddressMatcher[]{
+        AddressRange.of("10.0.0.0/9"),
+        AddressRange.of("2001:db8::/33"),
+        trie,
+        AddressRange4Table.of(Collections.singletonMap(
+            (AddressRange4) AddressRange.of("10.0.0.0/9"), true))
+    };
+
+    int[] addresses4 = new int[200];
+    long[] addresses6 = new long[400];
+    for (int i = 0; i < addresses4.length; i++) {
+      addresses4[i] = 0x0A000000 | (random.nextInt() & 0x00FFFFFF);
+      addresses6[i * 2] = 0x20010DB800000000L | (random.nextLong() & 0x00000000FFFFFFFFL);
+      addresses6[i * 2 + 1] = random.nextLong();
+    }
+
+    for (AddressMatcher matcher : matchers) {
+      long[] result4 = new long[]{-1, -1, -1, -1};
+      long[] result6 = new long[]{-1, -1, -1, -1};
+      matcher.matches(addresses4, 7, 130, result4);
+      matcher.matches(addresses6, 7, 130, result6);
+
+      for (int i = 0; i < 192; i++) {
+        boolean expected4 = i < 130 && matcher.matches(addresses4[7 + i]);
+        boolean expected6 = i < 130 && matcher
+            .matches(addresses6[(7 + i) * 2], addresses6[(7 + i) * 2 + 1]);
+
+        Assert.assertEquals(expected4, (result4[i >>> 6] & (1L << i)) != 0);
+        Assert.assertEquals(expected6, (result6[i >>> 6] & (1L << i)) != 0);
+      }
+
+      Assert.assertEquals(-1L, result4[3]);
+      Assert.assertEquals(-1L, result6[3]);
+    }
+
+    try {
+      matchers[0].matches(addresses4, 100, 101, new long[4]);
+      throw new AssertionError("Expected IndexOutOfBoundsException due to invalid batch");
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+    try {
+      matchers[0].matches(addresses4, 0, 129, new long[2]);
+      throw new AssertionError("Expected IndexOutOfBoundsException due to short bitset");
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+  }
+
+  /**
+   * Tests matching of addresses which are embedded within raw buffers.
+   */
+  @Test
+  public void testMatchBuffer() throws UnknownHostException {
+    AddressRange range4 = AddressRange.of("10.0.0.0/9");
+    AddressRange range6 = AddressRange.of("2001:db8::/33");
+    AddressRangeTrie<Boolean> trie = new AddressRangeTrie<>();
+    trie.put(range4, true);
+    trie.put(range6, true);
+
+    // a simplified IPv4 header (source at offset 12, destination at offset 16) followed by the
+    // addresses of an IPv6 header (source at offset 28, destination at offset 44)
+    byte[] packet = new byte[64];
+    System.arraycopy(InetAddress.getByName("10.127.0.1").getAddress(), 0, packet, 12, 4);
+    System.arraycopy(InetAddress.getByName("10.128.0.1").getAddress(), 0, packet, 16, 4);
+    System.arraycopy(InetAddress.getByName("2001:db8:7fff::1").getAddress(), 0, packet, 28, 16);
+    System.arraycopy(InetAddress.getByName("2001:db8:8000::1").getAddress(), 0, packet, 44, 16);
+
+    ByteBuffer heap = ByteBuffer.wrap(packet).order(ByteOrder.LITTLE_ENDIAN);
+    ByteBuffer direct = ByteBuffer.allocateDirect(packet.length);
+    direct.put(packet).position(8);
+
+    Assert.assertTrue(range4.matches(packet, 12));
+    Assert.assertFalse(range4.matches(packet, 16));
+    Assert.assertTrue(range4.matches(heap, 12));
+    Assert.assertFalse(range4.matches(direct, 16));
+    Assert.assertTrue(range6.matches(packet, 28));
+    Assert.assertFalse(range6.matches(packet, 44));
+    Assert.assertTrue(range6.matches(heap, 28));
+    Assert.assertFalse(range6.matches(direct, 44));
+    Assert.assertEquals(8, direct.position());
+
+    for (AddressMatcher matcher : new AddressMatcher[]{range4, range6, trie}) {
+      for (int offset : new int[]{12, 16, 28, 44}) {
+        int length = (offset < 28 ? 4 : 16);
+        boolean expected = matcher.matches(InetAddress.getByAddress(
+            Arrays.copyOfRange(packet, offset, offset + length)));
+
+        Assert.assertEquals(expected, matcher.matches(packet, offset, length));
+        Assert.assertEquals(expected, matcher.matches(heap, offset, length));
+        Assert.assertEquals(expected, matcher.matches(direct, offset, length));
+      }
+    }
+
+    int[] offsets = new int[]{12, 16, 12, 16};
+    long[] result = new long[]{-1};
+    trie.matches(packet, 4, offsets, 1, 3, result);
+    Assert.assertEquals(0b010L, result[0]);
+    trie.matches(direct, 16, new int[]{44, 28}, 0, 2, result);
+    Assert.assertEquals(0b10L, result[0]);
+
+    try {
+      trie.matches(packet, 8, offsets, 0, 4, result);
+      throw new AssertionError("Expected IllegalArgumentException due to invalid address length");
+    } catch (IllegalArgumentException ignore) {
+    }
+    try {
+      range6.matches(packet, 50);
+      throw new AssertionError("Expected IndexOutOfBoundsException due to truncated address");
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+  }
+
+  /**
+   * Tests {@link AddressRange#matching(Set)} and its parallel and lazy variants.
+   */
+  @Test
+  public void testMatching() throws UnknownHostException {
+    AddressRange range = AddressRange.of("10.0.0.0/9");
+    Set<InetAddress> addresses = new HashSet<>();
+    Set<InetAddress> expected = new HashSet<>();
+
+    for (int i = 0; i < 20000; i++) {
+      InetAddress address = AddressRange4.encode(0x0A000000 + i * 997);
+      addresses.add(address);
+
+      if (range.matches(address)) {
+        expected.add(address);
+      }
+    }
+    addresses.add(InetAddress.getByName("2001:db8::1"));
+
+    Assert.assertFalse(expected.isEmpty());
+    Assert.assertEquals(expected, range.matching(addresses));
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Assert.assertEquals(expected, range.matching(addresses, pool));
+      Assert.assertEquals(expected, range.matching(new ArrayList<>(addresses), pool));
+    } finally {
+      pool.shutdown();
+    }
+
+    Assert.assertEquals(expected,
+        range.matching(addresses.parallelStream()).collect(Collectors.toSet()));
+
+    List<InetAddress> iterated = new ArrayList<>();
+    Iterator<InetAddress> iterator = range.matching(addresses.iterator());
+    while (iterator.hasNext()) {
+      iterated.add(iterator.next());
+    }
+    Assert.assertEquals(expected.size(), iterated.size());
+    Assert.assertEquals(expected, new HashSet<>(iterated));
+  }
+
+  /**
+   * Tests {@link AddressRange#of(int, int)} and {@link AddressRange#of(long, long, int)}.
+   */
+  @Test
+  public void testNumericFactory() throws UnknownHostException {
+    Assert.assertEquals(AddressRange.of("10.10.0.0/16"), AddressRange.of(0x0A0A0000, 16));
+    Assert.assertEquals(AddressRange.of("2001:db8::/32"),
+        AddressRange.of(0x20010DB800000000L, 0L, 32));
+    Assert.assertEquals("0:0:0:0:0:ffff:a00:0/104",
+        AddressRange.of(0L, 0x0000FFFF0A000000L, 104).toString());
+
+    Assert.assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xF0, 0, 0},
+        AddressRange.of(0x0A000000, 12).encoded());
+    Assert.assertArrayEquals(
+        new byte[]{-1, -1, -1, -1, -1, -1, -1, -1, (byte) 0x80, 0, 0, 0, 0, 0, 0, 0},
+        AddressRange.of(0L, 0L, 65).encoded());
+
+    for (int prefixLength : new int[]{-1, 33}) {
+      try {
+        AddressRange.of(0, prefixLength);
+        throw new AssertionError("Expected IllegalArgumentException for prefix " + prefixLength);
+      } catch (IllegalArgumentException ignore) {
+      }
+    }
+
+    try {
+      AddressRange.of(0L, 1L, 64);
+      throw new AssertionError("Expected IllegalArgumentException due to invalid base");
+    } catch (IllegalArgumentException ignore) {
+    }
+  }
+
   /**
    * Tests {@link AddressRange#of(String)}.
    */
@@ -633,6 +1008,100 @@ public class AddressRangeTest {
     }
   }
 
+  /**
+   * Tests {@link AddressRange#subnets(int)}.
+   */
+  @Test
+  public void testSubnets() throws UnknownHostException {
+    AddressRange4 range4 = (AddressRange4) AddressRange.of("10.0.0.0/16");
+    List<AddressRange4> subnets4 = range4.subnets(24).collect(Collectors.toList());
+    Assert.assertEquals(256, subnets4.size());
+    Assert.assertEquals(AddressRange.of("10.0.0.0/24"), subnets4.get(0));
+    Assert.assertEquals(AddressRange.of("10.0.1.0/24"), subnets4.get(1));
+    Assert.assertEquals(AddressRange.of("10.0.255.0/24"), subnets4.get(255));
+    Assert.assertEquals(subnets4, range4.subnets(24).parallel().collect(Collectors.toList()));
+
+    Assert.assertEquals(Collections.singletonList(range4),
+        range4.subnets(16).collect(Collectors.toList()));
+    Assert.assertEquals(AddressRange.of("255.255.255.255/32"),
+        AddressRange.of(0xFFFF0000, 16).subnets(32).skip(0xFFFF).findFirst().orElse(null));
+    Assert.assertEquals(2, AddressRange.of(0, 0).subnets(1).count());
+
+    AddressRange6 range6 = (AddressRange6) AddressRange.of("2001:db8::/32");
+    Assert.assertEquals(1L << 32, range6.subnets(64).spliterator().estimateSize());
+    Assert.assertEquals(Arrays.asList(AddressRange.of("2001:db8::/64"),
+        AddressRange.of("2001:db8:0:1::/64")), range6.subnets(64).limit(2)
+        .collect(Collectors.toList()));
+    Assert.assertEquals(AddressRange.of("2001:db8:0:ffff::/64"),
+        ((AddressRange6) AddressRange.of("2001:db8::/48")).subnets(64).parallel()
+            .reduce((a, b) -> b).orElse(null));
+
+    // subnets which are spread across both halves of the address are shifted correctly
+    List<AddressRange6> subnets6 = ((AddressRange6) AddressRange.of("2001:db8::/62"))
+        .subnets(66).collect(Collectors.toList());
+    Assert.assertEquals(16, subnets6.size());
+    Assert.assertEquals(AddressRange.of("2001:db8::4000:0:0:0/66"), subnets6.get(1));
+    Assert.assertEquals(AddressRange.of("2001:db8:0:1::/66"), subnets6.get(4));
+    Assert.assertEquals(AddressRange.of("2001:db8:0:3:c000::/66"), subnets6.get(15));
+
+    Assert.assertEquals(Long.MAX_VALUE,
+        AddressRange.of(0L, 0L, 0).subnets(128).spliterator().estimateSize());
+    Assert.assertEquals(AddressRange.of("::2/128"),
+        AddressRange.of(0L, 0L, 0).subnets(128).skip(2).findFirst().orElse(null));
+
+    for (int prefixLength : new int[]{15, 33}) {
+      try {
+        range4.subnets(prefixLength);
+        throw new AssertionError("Expected IllegalArgumentException for prefix " + prefixLength);
+      } catch (IllegalArgumentException ignore) {
+      }
+    }
+  }
+
+  /**
+   * Tests {@link AddressRange#supernet()}, {@link AddressRange#sibling()} and {@link
+   * AddressRange#isAdjacent(AddressRange)}.
+   */
+  @Test
+  public void testSupernet() throws UnknownHostException {
+    Assert.assertEquals(AddressRange.of("10.0.0.0/15"), AddressRange.of("10.1.0.0/16").supernet());
+    Assert.assertEquals(AddressRange.of("10.0.0.0/8"), AddressRange.of("10.1.2.0/24").supernet(8));
+    Assert.assertEquals(AddressRange.of("0.0.0.0/0"), AddressRange.of("128.0.0.0/1").supernet());
+    Assert.assertNull(AddressRange.of("0.0.0.0/0").supernet());
+    Assert.assertEquals(AddressRange.of("2001:db8::/31"),
+        AddressRange.of("2001:db9::/32").supernet());
+    Assert.assertEquals(AddressRange.of("2001:db8::/64"),
+        AddressRange.of("2001:db8::8000:0:0:0/65").supernet());
+    Assert.assertNull(AddressRange.of(0L, 0L, 0).supernet());
+
+    Assert.assertEquals(AddressRange.of("10.1.0.0/16"), AddressRange.of("10.0.0.0/16").sibling());
+    Assert.assertEquals(AddressRange.of("10.0.0.0/16"), AddressRange.of("10.1.0.0/16").sibling());
+    Assert.assertEquals(AddressRange.of("0.0.0.0/1"), AddressRange.of("128.0.0.0/1").sibling());
+    Assert.assertEquals(AddressRange.of("10.0.0.1/32"), AddressRange.of("10.0.0.0/32").sibling());
+    Assert.assertNull(AddressRange.of("0.0.0.0/0").sibling());
+    Assert.assertEquals(AddressRange.of("2001:db8::8000:0:0:0/65"),
+        AddressRange.of("2001:db8::/65").sibling());
+    Assert.assertEquals(AddressRange.of("2001:db8::1/128"),
+        AddressRange.of("2001:db8::/128").sibling());
+
+    Assert.assertTrue(AddressRange.of("10.0.0.0/16").isAdjacent(AddressRange.of("10.1.0.0/24")));
+    Assert.assertTrue(AddressRange.of("10.1.0.0/24").isAdjacent(AddressRange.of("10.0.0.0/16")));
+    Assert.assertFalse(AddressRange.of("10.0.0.0/16").isAdjacent(AddressRange.of("10.1.1.0/24")));
+    Assert.assertFalse(AddressRange.of("10.0.0.0/16").isAdjacent(AddressRange.of("10.0.0.0/24")));
+    Assert.assertFalse(
+        AddressRange.of("255.0.0.0/8").isAdjacent(AddressRange.of("0.0.0.0/8")));
+    Assert.assertFalse(AddressRange.of("10.0.0.0/16").isAdjacent(AddressRange.of("::/0")));
+    Assert.assertTrue(
+        AddressRange.of("2001:db8::/64").isAdjacent(AddressRange.of("2001:db8:0:1::/64")));
+    Assert.assertTrue(
+        AddressRange.of("2001:db8:0:1::/64").isAdjacent(AddressRange.of("2001:db8::/64")));
+    Assert.assertTrue(
+        AddressRange.of("2001:db8::/65").isAdjacent(AddressRange.of("2001:db8::8000:0:0:0/65")));
+    Assert.assertFalse(
+        AddressRange.of("2001:db8::/64").isAdjacent(AddressRange.of("2001:db8:0:2::/64")));
+    Assert.assertFalse(AddressRange.of("ffff::/16").isAdjacent(AddressRange.of("::/16")));
+  }
+
   /**
    * Tests {@link AddressRange#toString()}.
    */
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressRangeTrie}.
+ *
+ * @author Johannes Donath
+ */
+public class AddressRangeTrieTest {
+
+  /**
+   * Tests basic insertion, lookup and removal of ranges.
+   */
+  @Test
+  public void testLongestMatch() throws UnknownHostException {
+    AddressRangeTrie<String> trie = new AddressRangeTrie<>();
+
+    Assert.assertNull(trie.put(AddressRange.of("10.0.0.0/8"), "a"));
+    Assert.assertNull(trie.put(AddressRange.of("10.10.0.0/16"), "b"));
+    Assert.assertNull(trie.put(AddressRange.of("10.10.10.0/24"), "c"));
+    Assert.assertNull(trie.put(AddressRange.of("10.128.0.0/9"), "d"));
+    Assert.assertNull(trie.put(AddressRange.of("2001:db8::/32"), "e"));
+    Assert.assertNull(trie.put(AddressRange.of("2001:db8::1/128"), "f"));
+    Assert.assertEquals("a", trie.put(AddressRange.of("10.0.0.0/8"), "a"));
+    Assert.assertEquals(6, trie.size());
+
+    Assert.assertEquals("a", trie.longestMatch(InetAddress.getByName("10.0.0.1")));
+    Assert.assertEquals("b", trie.longestMatch(InetAddress.getByName("10.10.0.1")));
+    Assert.assertEquals("c", trie.longestMatch(InetAddress.getByName("10.10.10.1")));
+    Assert.assertEquals("d", trie.longestMatch(InetAddress.getByName("10.200.0.1")));
+    Assert.assertNull(trie.longestMatch(InetAddress.getByName("11.0.0.1")));
+    Assert.assertEquals("e", trie.longestMatch(InetAddress.getByName("2001:db8::2")));
+    Assert.assertEquals("f", trie.longestMatch(InetAddress.getByName("2001:db8::1")));
+    Assert.assertNull(trie.longestMatch(InetAddress.getByName("2001:db9::1")));
+
+    Assert.assertEquals(Arrays.asList("a", "b", "c"), trie.allMatches(0x0A0A0A01));
+    Assert.assertEquals(Arrays.asList("e", "f"),
+        trie.allMatches(InetAddress.getByName("2001:db8::1")));
+
+    Assert.assertEquals("b", trie.get(AddressRange.of("10.10.0.0/16")));
+    Assert.assertNull(trie.get(AddressRange.of("10.10.0.0/15")));
+
+    Assert.assertEquals("b", trie.remove(AddressRange.of("10.10.0.0/16")));
+    Assert.assertNull(trie.remove(AddressRange.of("10.10.0.0/16")));
+    Assert.assertEquals("a", trie.longestMatch(0x0A0A0001));
+    Assert.assertEquals("c", trie.longestMatch(0x0A0A0A01));
+    Assert.assertEquals(5, trie.size());
+
+    Map<String, String> contents = new LinkedHashMap<>();
+    trie.forEach((r, v) -> contents.put(r.toString(), v));
+    Assert.assertEquals(Arrays.asList("10.0.0.0/8", "10.10.10.0/24", "10.128.0.0/9",
+        "2001:db8:0:0:0:0:0:0/32", "2001:db8:0:0:0:0:0:1/128"),
+        new ArrayList<>(contents.keySet()));
+  }
+
+  /**
+   * Tests the evaluation of embedded IPv4 addresses in dual-stack mode.
+   */
+  @Test
+  public void testDualStack() throws UnknownHostException {
+    AddressRangeTrie<String> trie = new AddressRangeTrie<>(
+        EnumSet.of(Inet4Embedding.MAPPED, Inet4Embedding.NAT64));
+    trie.put(AddressRange.of("10.0.0.0/8"), "a");
+    trie.put(AddressRange.of("10.10.0.0/16"), "b");
+    trie.put(AddressRange.of("64:ff9b::/96"), "c");
+
+    long mapped = 0x0000FFFF0A0A0001L;
+    long compatible = 0x000000000A0A0001L;
+
+    Assert.assertEquals("b", trie.longestMatch(0, mapped));
+    Assert.assertTrue(trie.matches(0, mapped));
+    Assert.assertEquals("b", trie.longestMatch(0x0064FF9B00000000L, compatible));
+    Assert.assertEquals(Arrays.asList("c", "a", "b"),
+        trie.allMatches(0x0064FF9B00000000L, compatible));
+    Assert.assertEquals("c", trie.longestMatch(0x0064FF9B00000000L, 0x0B000001L));
+    Assert.assertNull(trie.longestMatch(0, compatible));
+    Assert.assertFalse(trie.matches(0, 0x0000FFFF0B000001L));
+    Assert.assertEquals("b", trie.longestMatch(InetAddress.getByName("64:ff9b::10.10.0.1")));
+
+    AddressRangeTrie<String> plain = new AddressRangeTrie<>();
+    plain.put(AddressRange.of("10.0.0.0/8"), "a");
+    Assert.assertFalse(plain.matches(0, mapped));
+
+    AddressMatcher range = AddressMatchers.dualStack(AddressRange.of("10.0.0.0/8"));
+    Assert.assertTrue(range.matches(0, mapped));
+    Assert.assertTrue(range.matches(0, compatible));
+    Assert.assertTrue(range.matches(0x0064FF9B00000000L, compatible));
+    Assert.assertTrue(range.matches(0x0A000001));
+    Assert.assertFalse(range.matches(0, 1));
+    Assert.assertFalse(range.matches(0x20010DB800000000L, compatible));
+    Assert.assertTrue(range.matches(InetAddress.getByName("::10.0.0.1")));
+    Assert.assertTrue(range.matches(InetAddress.getByName("10.0.0.1")));
+
+    AddressMatcher nat64 = AddressMatchers
+        .dualStack(AddressRange.of("10.0.0.0/8"), EnumSet.of(Inet4Embedding.NAT64));
+    Assert.assertFalse(nat64.matches(0, mapped));
+    Assert.assertTrue(nat64.matches(0x0064FF9B00000000L, compatible));
+  }
+
+  /**
+   * Compares range-to-range queries against a linear scan over randomly generated ranges.
+   */
+  @Test
+  public void testOverlapping() throws UnknownHostException {
+    Random random = new Random(0xC1D8);
+    AddressRangeTrie<AddressRange> trie = new AddressRangeTrie<>();
+    List<AddressRange> ranges = new ArrayList<>();
+
+    for (int i = 0; i < 2000; i++) {
+      int prefixLength = 96 + random.nextInt(33);
+      AddressRange range = AddressRange.of(0x20010DB800000000L,
+          ((long) random.nextInt(1 << 8) << 32 | random.nextInt(1 << 16))
+              & AddressRange6.maskLow(prefixLength), prefixLength);
+
+      if (trie.put(range, range) == null) {
+        ranges.add(range);
+      }
+    }
+    for (int i = 0; i < ranges.size(); i += 5) {
+      trie.remove(ranges.get(i));
+    }
+    for (int i = 0; i < ranges.size(); i += 5) {
+      ranges.set(i, null);
+    }
+    ranges.removeIf((r) -> r == null);
+
+    for (int i = 0; i < 2000; i++) {
+      int prefixLength = 90 + random.nextInt(39);
+      AddressRange query = AddressRange.of(0x20010DB800000000L,
+          ((long) random.nextInt(1 << 8) << 32 | random.nextInt(1 << 16))
+              & AddressRange6.maskLow(prefixLength), prefixLength);
+
+      Set<AddressRange> covering = new HashSet<>();
+      Set<AddressRange> coveredBy = new HashSet<>();
+      Set<AddressRange> overlapping = new HashSet<>();
+      for (AddressRange range : ranges) {
+        if (range.contains(query)) {
+          covering.add(range);
+        }
+        if (query.contains(range)) {
+          coveredBy.add(range);
+        }
+        if (range.overlaps(query)) {
+          overlapping.add(range);
+        }
+      }
+
+      List<AddressRange> actual = new ArrayList<>();
+      trie.forEachCovering(query, (r, v) -> actual.add(r));
+      Assert.assertEquals(covering.size(), actual.size());
+      Assert.assertEquals(covering, new HashSet<>(actual));
+      for (int j = 1; j < actual.size(); j++) {
+        Assert.assertTrue(actual.get(j - 1).prefixLength() < actual.get(j).prefixLength());
+      }
+
+      actual.clear();
+      trie.forEachCoveredBy(query, (r, v) -> actual.add(r));
+      Assert.assertEquals(coveredBy.size(), actual.size());
+      Assert.assertEquals(coveredBy, new HashSet<>(actual));
+
+      actual.clear();
+      trie.forEachOverlapping(query, (r, v) -> actual.add(r));
+      Assert.assertEquals(overlapping.size(), actual.size());
+      Assert.assertEquals(overlapping, new HashSet<>(actual));
+      Assert.assertEquals(!overlapping.isEmpty(), trie.overlaps(query));
+    }
+
+    Assert.assertFalse(trie.overlaps(AddressRange.of("10.0.0.0/8")));
+    Assert.assertFalse(new AddressRangeTrie<>().overlaps(AddressRange.of("10.0.0.0/8")));
+  }
+
+  /**
+   * Compares the trie against a linear scan over randomly generated ranges.
+   */
+  @Test
+  public void testRandomized() {
+    Random random = new Random(0xC1D8);
+    AddressRangeTrie<AddressRange4> trie = new AddressRangeTrie<>();
+    List<AddressRange4> ranges = new ArrayList<>();
+
+    for (int i = 0; i < 2000; i++) {
+      int prefixLength = random.nextInt(33);
+      AddressRange4 range = AddressRange
+          .of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength);
+
+      if (trie.put(range, range) == null) {
+        ranges.add(range);
+      }
+    }
+
+    // remove a fraction of the ranges in order to exercise the removal of glue nodes
+    for (int i = 0; i < ranges.size(); i += 3) {
+      Assert.assertEquals(ranges.get(i), trie.remove(ranges.get(i)));
+    }
+    for (int i = 0; i < ranges.size(); i += 3) {
+      ranges.set(i, null);
+    }
+    ranges.removeIf((r) -> r == null);
+    Assert.assertEquals(ranges.size(), trie.size());
+
+    for (int i = 0; i < 20000; i++) {
+      int address = random.nextInt();
+      if ((i & 1) == 0) {
+        // ensure that specific ranges are hit frequently as well
+        address = ranges.get(random.nextInt(ranges.size())).network() | (address & 0xFF);
+      }
+
+      AddressRange4 expected = null;
+
+      for (AddressRange4 range : ranges) {
+        if (range.matches(address) && (expected == null
+            || expected.prefixLength() < range.prefixLength())) {
+          expected = range;
+        }
+      }
+
+      Assert.assertEquals(expected, trie.longestMatch(address));
+    }
+  }
+}
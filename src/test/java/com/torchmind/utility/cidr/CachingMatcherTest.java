@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link CachingMatcher}.
+ *
+ * @author Johannes Donath
+ */
+public class CachingMatcherTest {
+
+  /**
+   * Tests whether cached results agree with the decorated matcher and are counted correctly.
+   */
+  @Test
+  public void testCache() throws UnknownHostException {
+    AddressRangeTrie<String> trie = new AddressRangeTrie<>();
+    Random random = new Random(0xCAC4E);
+    for (int i = 0; i < 500; i++) {
+      int prefixLength = 8 + random.nextInt(17);
+      trie.put(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength), prefixLength),
+          "a");
+    }
+    trie.put(AddressRange.of("2001:db8::/48"), "b");
+
+    CachingMatcher cache = AddressMatchers.cache(trie, 256);
+    Assert.assertEquals(256, cache.capacity());
+    Assert.assertSame(trie, cache.delegate());
+
+    // a small working set which entirely fits into the cache
+    int[] addresses = new int[64];
+    for (int i = 0; i < addresses.length; i++) {
+      addresses[i] = random.nextInt();
+    }
+    for (int round = 0; round < 10; round++) {
+      for (int address : addresses) {
+        Assert.assertEquals(trie.matches(address), cache.matches(address));
+      }
+    }
+    Assert.assertEquals(64, cache.misses());
+    Assert.assertEquals(576, cache.hits());
+    Assert.assertEquals(0.9, cache.hitRate(), 1e-9);
+
+    // a large working set which forces evictions
+    for (int i = 0; i < 10000; i++) {
+      int address = random.nextInt();
+      Assert.assertEquals(trie.matches(address), cache.matches(address));
+    }
+    Assert.assertTrue(cache.evictions() > 0);
+
+    for (int i = 0; i < 1000; i++) {
+      long low = random.nextInt(64);
+      long high = 0x20010DB800000000L | (random.nextInt(2) & 1L);
+      Assert.assertEquals(trie.matches(high, low), cache.matches(high, low));
+    }
+    Assert.assertTrue(cache.matches(InetAddress.getByName("2001:db8::1")));
+    Assert.assertFalse(cache.matches(InetAddress.getByName("2001:db9::1")));
+
+    cache.resetStatistics();
+    Assert.assertEquals(0, cache.hits());
+    Assert.assertEquals(0.0, cache.hitRate(), 0.0);
+  }
+
+  /**
+   * Tests whether cached results are discarded when the decorated snapshot changes or the cache
+   * is invalidated explicitly.
+   */
+  @Test
+  public void testInvalidate() throws UnknownHostException {
+    ConcurrentAddressRangeTable<String> table = new ConcurrentAddressRangeTable<>();
+    CachingMatcher cache = AddressMatchers.cache(table, 64);
+
+    Assert.assertFalse(cache.matches(0x0A000001));
+    Assert.assertFalse(cache.matches(0x0A000001));
+    Assert.assertFalse(cache.matches(0x20010DB800000000L, 1L));
+    Assert.assertEquals(1, cache.hits());
+
+    table.apply(AddressRangeDelta.<String>builder()
+        .put(AddressRange.of("10.0.0.0/8"), "a")
+        .put(AddressRange.of("2001:db8::/32"), "b")
+        .build());
+    Assert.assertTrue(cache.matches(0x0A000001));
+    Assert.assertTrue(cache.matches(0x20010DB800000000L, 1L));
+    Assert.assertSame(table.snapshot(), cache.delegate());
+    Assert.assertEquals(1, cache.invalidations());
+    Assert.assertEquals(1, cache.hits());
+
+    Assert.assertTrue(cache.matches(0x0A000001));
+    Assert.assertEquals(2, cache.hits());
+
+    cache.invalidate();
+    Assert.assertTrue(cache.matches(0x0A000001));
+    Assert.assertEquals(2, cache.hits());
+    Assert.assertEquals(2, cache.invalidations());
+
+    try {
+      AddressMatchers.cache(table, 0);
+      throw new AssertionError("Expected IllegalArgumentException for invalid capacity");
+    } catch (IllegalArgumentException ignore) {
+    }
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link AddressRangeSnapshot} and {@link ConcurrentAddressRangeTable}.
+ *
+ * @author Johannes Donath
+ */
+public class ConcurrentAddressRangeTableTest {
+
+  /**
+   * Tests the application of deltas and the isolation of previous snapshots.
+   */
+  @Test
+  public void testSnapshots() throws UnknownHostException {
+    ConcurrentAddressRangeTable<String> table = new ConcurrentAddressRangeTable<>();
+    AddressRangeSnapshot<String> initial = table.snapshot();
+    Assert.assertTrue(initial.isEmpty());
+    Assert.assertEquals(0, initial.version());
+
+    AddressRangeSnapshot<String> first = table.apply(AddressRangeDelta.<String>builder()
+        .put(AddressRange.of("10.0.0.0/8"), "a")
+        .put(AddressRange.of("10.10.0.0/16"), "b")
+        .put(AddressRange.of("10.128.0.0/9"), "c")
+        .put(AddressRange.of("2001:db8::/32"), "d")
+        .build());
+    Assert.assertSame(first, table.snapshot());
+    Assert.assertEquals(1, first.version());
+    Assert.assertEquals(4, first.size());
+    Assert.assertEquals("b", table.longestMatch(InetAddress.getByName("10.10.0.1")));
+    Assert.assertEquals("c", table.longestMatch(0x0A800001));
+    Assert.assertTrue(table.matches(InetAddress.getByName("2001:db8::1")));
+
+    AddressRangeSnapshot<String> second = table.apply(AddressRangeDelta.<String>builder()
+        .remove(AddressRange.of("10.0.0.0/8"))
+        .put(AddressRange.of("10.10.0.0/16"), "e")
+        .remove(AddressRange.of("2001:db8::/32"))
+        .build());
+    Assert.assertEquals(2, second.version());
+    Assert.assertEquals(2, second.size());
+    Assert.assertNull(second.longestMatch(0x0A000001));
+    Assert.assertEquals("e", second.longestMatch(0x0A0A0001));
+    Assert.assertFalse(second.matches(InetAddress.getByName("2001:db8::1")));
+    Assert.assertNull(second.get(AddressRange.of("10.0.0.0/8")));
+
+    // previous snapshots remain untouched
+    Assert.assertEquals(4, first.size());
+    Assert.assertEquals("a", first.longestMatch(0x0A000001));
+    Assert.assertEquals("b", first.get(AddressRange.of("10.10.0.0/16")));
+    Assert.assertTrue(initial.isEmpty());
+
+    // deltas which do not alter any mapping do not produce a new version
+    Assert.assertSame(second, table.apply(AddressRangeDelta.<String>builder()
+        .put(AddressRange.of("10.10.0.0/16"), "e")
+        .remove(AddressRange.of("192.168.0.0/16"))
+        .build()));
+    Assert.assertSame(second, table.apply(AddressRangeDelta.empty()));
+
+    Assert.assertSame(second, table.replace(first));
+    Assert.assertEquals("a", table.longestMatch(0x0A000001));
+  }
+
+  /**
+   * Tests snapshots against the mutable trie using randomized deltas.
+   */
+  @Test
+  public void testRandomized() {
+    Random random = new Random(0xC1D8);
+    AddressRangeTrie<Integer> trie = new AddressRangeTrie<>();
+    AddressRangeSnapshot<Integer> snapshot = AddressRangeSnapshot.empty();
+    List<AddressRange> ranges = new ArrayList<>();
+
+    for (int i = 0; i < 256; i++) {
+      int prefixLength = 4 + random.nextInt(29);
+      ranges.add(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+          prefixLength));
+    }
+
+    for (int round = 0; round < 64; round++) {
+      AddressRangeDelta.Builder<Integer> builder = AddressRangeDelta.builder();
+
+      for (int i = 0; i < 32; i++) {
+        AddressRange range = ranges.get(random.nextInt(ranges.size()));
+
+        if (random.nextInt(3) == 0) {
+          builder.remove(range);
+          trie.remove(range);
+        } else {
+          int value = random.nextInt(8);
+          builder.put(range, value);
+          trie.put(range, value);
+        }
+      }
+
+      AddressRangeSnapshot<Integer> previous = snapshot;
+      Map<AddressRange, Integer> before = new LinkedHashMap<>();
+      previous.forEach(before::put);
+
+      snapshot = snapshot.apply(builder.build());
+      Assert.assertEquals(trie.size(), snapshot.size());
+
+      Map<AddressRange, Integer> expected = new LinkedHashMap<>();
+      Map<AddressRange, Integer> actual = new LinkedHashMap<>();
+      trie.forEach(expected::put);
+      snapshot.forEach(actual::put);
+      Assert.assertEquals(expected, actual);
+
+      Map<AddressRange, Integer> after = new LinkedHashMap<>();
+      previous.forEach(after::put);
+      Assert.assertEquals(before, after);
+
+      for (int i = 0; i < 1024; i++) {
+        int address = random.nextInt();
+        Assert.assertEquals(trie.longestMatch(address), snapshot.longestMatch(address));
+        Assert.assertEquals(trie.matches(address), snapshot.matches(address));
+      }
+    }
+  }
+
+  /**
+   * Tests whether deltas computed between two sorted range lists transform one version into the
+   * other.
+   */
+  @Test
+  public void testDiff() throws UnknownHostException {
+    Random random = new Random(0xC1D8);
+    Set<AddressRange> ranges = new HashSet<>();
+
+    while (ranges.size() < 4096) {
+      if (random.nextInt(4) == 0) {
+        int prefixLength = random.nextInt(129);
+        ranges.add(AddressRange.of(random.nextLong() & AddressRange6.maskHigh(prefixLength),
+            random.nextLong() & AddressRange6.maskLow(prefixLength), prefixLength));
+      } else {
+        int prefixLength = random.nextInt(33);
+        ranges.add(AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+            prefixLength));
+      }
+    }
+
+    List<AddressRange> previous = new ArrayList<>(ranges);
+    previous.sort(AddressRangeDelta.order());
+    List<AddressRange> next = new ArrayList<>();
+    for (AddressRange range : previous) {
+      if (random.nextInt(100) == 0) {
+        continue;
+      }
+
+      next.add(range);
+      if (random.nextInt(100) == 0) {
+        next.add(range);
+      }
+    }
+    next.add(AddressRange.of("0.0.0.0/0"));
+    next.add(AddressRange.of("::/0"));
+    next.sort(AddressRangeDelta.order());
+
+    AddressRangeTrie<Boolean> trie = new AddressRangeTrie<>();
+    AddressRangeSnapshot<Boolean> snapshot = AddressRangeSnapshot.<Boolean>empty()
+        .apply(AddressRangeDelta.diff(new ArrayList<>(), previous, Boolean.TRUE));
+    previous.forEach((range) -> trie.put(range, Boolean.TRUE));
+    Assert.assertEquals(previous.size(), snapshot.size());
+
+    AddressRangeDelta<Boolean> delta = AddressRangeDelta.diff(previous, next, Boolean.TRUE);
+    Set<AddressRange> changed = new HashSet<>(previous);
+    changed.addAll(next);
+    changed.removeIf((range) -> previous.contains(range) && next.contains(range));
+    Assert.assertEquals(changed.size(), delta.size());
+    Assert.assertSame(AddressRangeDelta.empty(), AddressRangeDelta.diff(next, next, Boolean.TRUE));
+
+    trie.apply(delta);
+    snapshot = snapshot.apply(delta);
+
+    Set<AddressRange> expected = new HashSet<>(next);
+    Set<AddressRange> actual = new HashSet<>();
+    trie.forEach((range, value) -> actual.add(range));
+    Assert.assertEquals(expected, actual);
+    actual.clear();
+    snapshot.forEach((range, value) -> actual.add(range));
+    Assert.assertEquals(expected, actual);
+
+    // ranges passed by the trie are already in canonical order
+    List<AddressRange> ordered = new ArrayList<>();
+    trie.forEach((range, value) -> ordered.add(range));
+    Assert.assertTrue(AddressRangeDelta.diff(ordered, next, Boolean.TRUE).isEmpty());
+
+    try {
+      AddressRangeDelta.diff(previous, ordered.subList(1, 3).stream()
+          .sorted(AddressRangeDelta.order().reversed())::iterator, Boolean.TRUE);
+      throw new AssertionError("Expected IllegalArgumentException for unsorted list");
+    } catch (IllegalArgumentException ignore) {
+    }
+  }
+
+  /**
+   * Tests whether concurrent readers observe consistent snapshots while reloads are in progress.
+   */
+  @Test
+  public void testConcurrentReload() throws Exception {
+    Random random = new Random(0xC1D8);
+    ConcurrentAddressRangeTable<Long> table = new ConcurrentAddressRangeTable<>();
+
+    int[] probes4 = new int[512];
+    Set<AddressRange> ranges4 = new HashSet<>();
+    for (int i = 0; i < probes4.length; i++) {
+      int prefixLength = 8 + random.nextInt(25);
+      AddressRange4 range = AddressRange.of(random.nextInt() & AddressRange4.mask(prefixLength),
+          prefixLength);
+      ranges4.add(range);
+      probes4[i] = range.network();
+    }
+
+    long[] probes6 = new long[128];
+    List<AddressRange> ranges6 = new ArrayList<>();
+    for (int i = 0; i < probes6.length; i++) {
+      long high = 0x20010DB800000000L | (long) i << 16;
+      ranges6.add(AddressRange.of(high, 0, 48));
+      probes6[i] = high;
+    }
+
+    int generations = 500;
+    int readers = 4;
+    AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+
+    try {
+      List<Future<Long>> results = new ArrayList<>();
+      for (int reader = 0; reader < readers; reader++) {
+        results.add(executor.submit(() -> {
+          long lookups = 0;
+          long last = -1;
+
+          while (!done.get() || lookups == 0) {
+            AddressRangeSnapshot<Long> snapshot = table.snapshot();
+            Long generation = snapshot.longestMatch(probes4[0]);
+
+            if (generation == null) {
+              Assert.assertTrue(snapshot.isEmpty());
+              continue;
+            }
+
+            // every snapshot carries a single generation within all of its ranges
+            Assert.assertTrue(generation >= last);
+            last = generation;
+
+            for (int probe : probes4) {
+              Assert.assertEquals(generation, snapshot.longestMatch(probe));
+            }
+
+            boolean even = (generation & 1) == 0;
+            for (long probe : probes6) {
+              Assert.assertEquals(even ? generation : null, snapshot.longestMatch(probe, 1));
+            }
+            Assert.assertEquals(ranges4.size() + (even ? ranges6.size() : 0), snapshot.size());
+
+            lookups++;
+          }
+
+          return lookups;
+        }));
+      }
+
+      executor.submit(() -> {
+        for (long generation = 0; generation < generations; generation++) {
+          AddressRangeDelta.Builder<Long> builder = AddressRangeDelta.builder();
+          for (AddressRange range : ranges4) {
+            builder.put(range, generation);
+          }
+          for (AddressRange range : ranges6) {
+            if ((generation & 1) == 0) {
+              builder.put(range, generation);
+            } else {
+              builder.remove(range);
+            }
+          }
+
+          table.apply(builder.build());
+        }
+
+        done.set(true);
+        return null;
+      }).get(1, TimeUnit.MINUTES);
+
+      for (Future<Long> result : results) {
+        Assert.assertTrue(result.get(1, TimeUnit.MINUTES) > 0);
+      }
+    } finally {
+      done.set(true);
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(generations, table.snapshot().version());
+    Assert.assertEquals(Long.valueOf(generations - 1), table.longestMatch(probes4[0]));
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link InstrumentedMatcher} and {@link LatencyHistogram}.
+ *
+ * @author Johannes Donath
+ */
+public class InstrumentedMatcherTest {
+
+  /**
+   * Tests the hit and miss counters as well as the listener notifications.
+   */
+  @Test
+  public void testCounters() throws UnknownHostException {
+    List<Boolean> slowLookups = new ArrayList<>();
+    List<Integer> rebuilds = new ArrayList<>();
+    MatchListener listener = new MatchListener() {
+      @Override
+      public void slowLookup(InstrumentedMatcher matcher, boolean matched, long duration) {
+        slowLookups.add(matched);
+      }
+
+      @Override
+      public void rebuilt(Object structure, int size, long duration) {
+        rebuilds.add(size);
+      }
+    };
+
+    AddressRange4Table<String> table = AddressRange4Table.<String>builder()
+        .listener(listener)
+        .put(AddressRange.of(0x0A000000, 8), "a")
+        .put(AddressRange.of(0x0A0A0000, 16), "b")
+        .build();
+    Assert.assertEquals(1, rebuilds.size());
+    Assert.assertEquals(2, (int) rebuilds.get(0));
+
+    InstrumentedMatcher matcher = AddressMatchers.instrument(table, listener, 0, 1);
+    Assert.assertSame(table, matcher.delegate());
+    Assert.assertTrue(matcher.matches(InetAddress.getByName("10.0.0.1")));
+    Assert.assertTrue(matcher.matches(0x0A0A0001));
+    Assert.assertFalse(matcher.matches(0x0B000001));
+    Assert.assertFalse(matcher.matches(0L, 1L));
+
+    long[] result = new long[2];
+    matcher.matches(new int[]{0x0A000001, 0x0B000001, 0x0A0A0001}, 0, 3, result);
+    Assert.assertEquals(0b101L, result[0]);
+
+    Assert.assertEquals(4, matcher.hits());
+    Assert.assertEquals(3, matcher.misses());
+    Assert.assertEquals(5, matcher.latencies().count());
+    Assert.assertEquals(5, slowLookups.size());
+    Assert.assertEquals(true, slowLookups.get(0));
+    Assert.assertEquals(false, slowLookups.get(2));
+
+    matcher.reset();
+    Assert.assertEquals(0, matcher.hits());
+    Assert.assertEquals(0, matcher.latencies().count());
+
+    InstrumentedMatcher silent = AddressMatchers.instrument(AddressRange.of("10.0.0.0/8"));
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertTrue(silent.matches(0x0A000001));
+    }
+    Assert.assertEquals(1000, silent.hits());
+    Assert.assertTrue(silent.latencies().count() < 1000);
+    Assert.assertEquals(5, slowLookups.size());
+  }
+
+  /**
+   * Tests the bucketing and quantiles of the latency histogram.
+   */
+  @Test
+  public void testHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(0, histogram.quantile(.5));
+
+    for (int i = 0; i < 90; i++) {
+      histogram.record(100);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(5000);
+    }
+    histogram.record(0);
+
+    Assert.assertEquals(101, histogram.count());
+    Assert.assertEquals(90, histogram.count(7));
+    Assert.assertEquals(10, histogram.count(13));
+    Assert.assertEquals(1, histogram.count(0));
+    Assert.assertEquals(128, histogram.quantile(.5));
+    Assert.assertEquals(8192, histogram.quantile(.99));
+    Assert.assertEquals(1, histogram.quantile(0));
+    Assert.assertEquals((90 * 100 + 10 * 5000) / 101.0, histogram.mean(), 1e-9);
+    Assert.assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucket(-1L >>> 1));
+  }
+}
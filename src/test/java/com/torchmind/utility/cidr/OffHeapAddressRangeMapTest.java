@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.torchmind.utility.cidr;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Provides test cases for {@link OffHeapAddressRangeMap} and {@link OffHeapAddressRangeSet}.
+ *
+ * @author Johannes Donath
+ */
+public class OffHeapAddressRangeMapTest {
+
+  /**
+   * Tests longest prefix matching, exact lookups and the replacement and removal of ranges.
+   */
+  @Test
+  public void testLookup() throws UnknownHostException {
+    try (OffHeapAddressRangeMap<String> map = OffHeapAddressRangeMap.<String>builder()
+        .put(AddressRange.of("10.0.0.0/8"), "a")
+        .put(AddressRange.of("10.10.0.0/16"), "b")
+        .put(AddressRange.of("10.10.10.0/24"), "c")
+        .put(AddressRange.of("10.20.0.0/16"), "d")
+        .put(AddressRange.of("10.10.0.0/16"), "e")
+        .put(AddressRange.of("192.168.0.0/16"), "f")
+        .remove(AddressRange.of("192.168.0.0/16"))
+        .put(AddressRange.of("2001:db8::/32"), "a")
+        .put(AddressRange.of("2001:db8:1::/48"), "g")
+        .build()) {
+      Assert.assertEquals(6, map.size());
+      Assert.assertEquals(5, map.valueCount());
+      Assert.assertEquals(4 * OffHeapAddressRangeMap.RECORD_SIZE4
+          + 2 * OffHeapAddressRangeMap.RECORD_SIZE6, map.footprint());
+
+      Assert.assertEquals("a", map.get(InetAddress.getByName("10.0.0.1")));
+      Assert.assertEquals("e", map.get(InetAddress.getByName("10.10.0.1")));
+      Assert.assertEquals("c", map.get(InetAddress.getByName("10.10.10.1")));
+      Assert.assertEquals("e", map.get(InetAddress.getByName("10.10.11.1")));
+      Assert.assertEquals("d", map.get(InetAddress.getByName("10.20.255.255")));
+      Assert.assertEquals("a", map.get(InetAddress.getByName("10.30.0.1")));
+      Assert.assertNull(map.get(InetAddress.getByName("11.0.0.1")));
+      Assert.assertNull(map.get(InetAddress.getByName("192.168.0.1")));
+      Assert.assertFalse(map.matches(InetAddress.getByName("9.255.255.255")));
+
+      Assert.assertEquals("g", map.get(InetAddress.getByName("2001:db8:1::1")));
+      Assert.assertEquals("a", map.get(InetAddress.getByName("2001:db8:2::1")));
+      Assert.assertNull(map.get(InetAddress.getByName("2001:db9::1")));
+      Assert.assertEquals(map.lookup(0x0A000001),
+          map.lookup(0x20010DB800020000L, 1));
+
+      Assert.assertEquals("e", map.get(AddressRange.of("10.10.0.0/16")));
+      Assert.assertNull(map.get(AddressRange.of("10.10.0.0/17")));
+      Assert.assertNull(map.get(AddressRange.of("192.168.0.0/16")));
+      Assert.assertEquals("g", map.get(AddressRange.of("2001:db8:1::/48")));
+
+      List<String> ranges = new ArrayList<>();
+      map.forEach((range, value) -> ranges.add(range + "=" + value));
+      Assert.assertEquals(Arrays.asList("10.0.0.0/8=a", "10.10.0.0/16=e", "10.10.10.0/24=c",
+          "10.20.0.0/16=d", "2001:db8:0:0:0:0:0:0/32=a", "2001:db8:1:0:0:0:0:0/48=g"),
+          ranges);
+    }
+  }
+
+  /**
+   * Tests whether random maps agree with an equivalent trie.
+   */
+  @Test
+  public void testRandom() {
+    Random random = new Random(0xC1D8);
+    AddressRangeTrie<Integer> trie = new AddressRangeTrie<>();
+    OffHeapAddressRangeMap.Builder<Integer> builder = OffHeapAddressRangeMap.builder();
+
+    for (int i = 0; i < 5000; i++) {
+      int prefixLength4 = random.nextInt(AddressRange4.MAX_PREFIX_LENGTH + 1);
+      AddressRange range4 = AddressRange
+          .of(random.nextInt() & AddressRange4.mask(prefixLength4), prefixLength4);
+      int prefixLength6 = random.nextInt(AddressRange6.MAX_PREFIX_LENGTH + 1);
+      long high6 = 0x20010DB800000000L | (random.nextLong() >>> 32);
+      AddressRange range6 = AddressRange.of(high6 & AddressRange6.maskHigh(prefixLength6),
+          random.nextLong() & AddressRange6.maskLow(prefixLength6), prefixLength6);
+
+      int value = random.nextInt(64);
+      trie.put(range4, value);
+      trie.put(range6, value);
+      builder.put(range4, value).put(range6, value);
+
+      if (random.nextInt(8) == 0) {
+        trie.remove(range4);
+        builder.remove(range4);
+      }
+    }
+
+    try (OffHeapAddressRangeMap<Integer> map = builder.build()) {
+      Assert.assertEquals(trie.size(), map.size());
+      trie.forEach((range, value) -> Assert.assertEquals(value, map.get(range)));
+
+      for (int i = 0; i < 100000; i++) {
+        int address = random.nextInt();
+        Assert.assertEquals(trie.longestMatch(address), map.get(address));
+
+        long high = 0x20010DB800000000L | (random.nextLong() >>> 32);
+        long low = random.nextLong();
+        Assert.assertEquals(trie.longestMatch(high, low), map.get(high, low));
+      }
+    }
+  }
+
+  /**
+   * Tests whether closed maps reject further accesses.
+   */
+  @Test
+  public void testClose() throws UnknownHostException {
+    OffHeapAddressRangeMap<String> map = OffHeapAddressRangeMap.<String>builder()
+        .put(AddressRange.of("10.0.0.0/8"), "a")
+        .build();
+    Assert.assertTrue(map.matches(0x0A000001));
+
+    map.close();
+    map.close();
+    Assert.assertTrue(map.toString().contains("closed=true"));
+
+    List<Runnable> accesses = Arrays.asList(() -> map.matches(0x0A000001), map::size,
+        map::isEmpty, map::valueCount, () -> map.value(0), map::footprint,
+        () -> map.get(AddressRange.of(0x0A000000, 8)));
+    for (Runnable access : accesses) {
+      try {
+        access.run();
+        Assert.fail("Expected IllegalStateException");
+      } catch (IllegalStateException ignore) {
+      }
+    }
+  }
+
+  /**
+   * Tests whether concurrent invocations of close release the native memory exactly once.
+   */
+  @Test
+  public void testConcurrentClose() throws Exception {
+    // the test runtime grants access to the unsupported API, thus releases are explicit
+    Assert.assertTrue(OffHeapAddressRangeMap.isExplicitReleaseSupported());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      for (int round = 0; round < 64; round++) {
+        OffHeapAddressRangeMap<String> map = OffHeapAddressRangeMap.<String>builder()
+            .put(AddressRange.of(0x0A000000, 8), "a")
+            .put(AddressRange.of(0x20010DB800000000L, 0, 32), "b")
+            .build();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+          futures.add(executor.submit(() -> {
+            latch.await();
+            map.close();
+            return null;
+          }));
+        }
+
+        latch.countDown();
+        for (Future<?> future : futures) {
+          future.get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertTrue(map.toString().contains("closed=true"));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Tests the construction of sets.
+   */
+  @Test
+  public void testSet() throws UnknownHostException {
+    try (OffHeapAddressRangeSet set = OffHeapAddressRangeSet.of(AddressRangeSet.of(
+        AddressRange.of("10.0.0.0/9"), AddressRange.of("10.128.0.0/9"),
+        AddressRange.of("2001:db8::/32")))) {
+      Assert.assertEquals(2, set.size());
+      Assert.assertTrue(set.contains(AddressRange.of("10.0.0.0/8")));
+      Assert.assertTrue(set.matches(InetAddress.getByName("10.255.0.1")));
+      Assert.assertTrue(set.matches(InetAddress.getByName("2001:db8::1")));
+      Assert.assertFalse(set.matches(InetAddress.getByName("11.0.0.1")));
+    }
+
+    try (OffHeapAddressRangeSet set = OffHeapAddressRangeSet.builder().build()) {
+      Assert.assertTrue(set.isEmpty());
+      Assert.assertEquals(0, set.footprint());
+      Assert.assertFalse(set.matches(0x0A000001));
+    }
+  }
+}